@@ -2,30 +2,44 @@ package net.dsc.cluster;
 
 import static net.dsc.cluster.HazelcastTableNameConstant.CONTROLLER_LOAD_MAP_NAME;
 import static net.dsc.cluster.HazelcastTableNameConstant.CONTROLLER_MAP_NAME;
-import static net.dsc.cluster.HazelcastTableNameConstant.CONTROLLER_SWITCH_MULITMAP_NAME;
-import static net.dsc.cluster.HazelcastTableNameConstant.MASTER_MAP;
+import static net.dsc.cluster.HazelcastTableNameConstant.HOST_LOCATION_MAP_NAME;
 import static net.dsc.cluster.HazelcastTableNameConstant.SWITCHS_LINKS_MULITMAP_NAME;
 import static net.dsc.cluster.HazelcastTableNameConstant.SWITCHS_MAP_NAME;
+import static net.dsc.cluster.HazelcastTableNameConstant.SWITCH_OWNERSHIP_MAP_NAME;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import net.dsc.cluster.model.ControllerModel;
+import net.dsc.cluster.model.ControllerTrafficModel;
+import net.dsc.cluster.model.HostLocationModel;
 import net.dsc.cluster.model.LinkModel;
-import net.dsc.cluster.model.SwitchConnectModel;
 import net.dsc.cluster.model.SwitchModel;
+import net.dsc.cluster.model.SwitchOwnershipModel;
+import net.dsc.cluster.processor.LoadDeltaProcessor;
+import net.dsc.cluster.processor.LoadSetProcessor;
+import net.dsc.cluster.processor.OwnershipUpdateProcessor;
 import net.dsc.cluster.web.ClusterWebRoutable;
 import net.dsc.hazelcast.IHazelcastService;
-import net.dsc.hazelcast.listener.ControllerMembershipListener;
 import net.dsc.hazelcast.listener.IControllerListener;
 import net.dsc.hazelcast.listener.ISwitchListener;
+import net.dsc.hazelcast.message.FlowBatchMessage;
+import net.dsc.hazelcast.message.FlowMessage;
 import net.dsc.hazelcast.message.RoleMessage;
 import net.floodlightcontroller.core.IFloodlightProviderService;
 import net.floodlightcontroller.core.IOFSwitch;
@@ -35,17 +49,24 @@ import net.floodlightcontroller.core.module.FloodlightModuleException;
 import net.floodlightcontroller.core.module.IFloodlightModule;
 import net.floodlightcontroller.core.module.IFloodlightService;
 import net.floodlightcontroller.restserver.IRestApiService;
+import net.floodlightcontroller.staticflowentry.StaticFlowEntryPusher;
+import net.floodlightcontroller.threadpool.IThreadPoolService;
 
 import org.projectfloodlight.openflow.protocol.OFControllerRole;
 import org.projectfloodlight.openflow.types.DatapathId;
-import org.projectfloodlight.openflow.types.U64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.hazelcast.core.IMap;
-import com.hazelcast.core.Member;
+import com.hazelcast.core.MemberAttributeEvent;
 import com.hazelcast.core.MembershipEvent;
+import com.hazelcast.core.MembershipListener;
 import com.hazelcast.core.MultiMap;
 
 public class ClusterManager implements IFloodlightModule, IClusterService,
@@ -53,34 +74,165 @@ public class ClusterManager implements IFloodlightModule, IClusterService,
 
 	private static final Logger log = LoggerFactory
 			.getLogger(ClusterManager.class);
+	/** 新成员加入后等待其连接交换机再移交 */
+	public static final long REBALANCE_DELAY_MS = 2000;
+	/** 周期性检查，纠正握手时先到先得造成的偏离 */
+	public static final long REBALANCE_INTERVAL_MS = 5000;
+	/** 链路更新失败后的重试次数和间隔 */
+	public static final int LINK_UPDATE_RETRIES = 3;
+	public static final long LINK_UPDATE_RETRY_MS = 500;
 
 	protected IFloodlightProviderService floodlightProvider;
 	protected IOFSwitchService switchService;
 	protected IHazelcastService hazelcast;
 	protected IRestApiService restApiService;
+	protected IThreadPoolService threadPoolService;
+	protected FailoverManager failover;
+	protected TrafficLoadReporter trafficReporter;
+	protected HostLocationStore hostLocations;
+	//交换机握手和断开时的集群更新在此线程上提交，不占用I/O线程；单线程保证同一交换机的更新按顺序提交
+	private final ExecutorService registrationExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "dsc-switch-registration");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	//ownership=consistent-hash时按一致性哈希环分配master，否则先到先得
+	protected boolean hashOwnership;
+	private volatile ConsistentHashRing ring;
+	//每个交换机最后提交的链路更新，后续更新在其完成后提交
+	private final Map<String, ListenableFuture<Boolean>> linkUpdates = new HashMap<String, ListenableFuture<Boolean>>();
+	//正在移交给哈希环归属控制器的交换机，完成前周期性检查不再重复移交
+	private final Set<String> handingOver = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
 	private IMap<String, ControllerModel> controllers;
 	private IMap<String, SwitchModel> switchs;
-	private MultiMap<ControllerModel, SwitchConnectModel> controllerMappingSwitch;
+	private IMap<String, SwitchOwnershipModel> switchOwnership;
 	private IMap<String, Integer> controllerLoad;
-	private IMap<String, String> masterMap;
 	private MultiMap<String, LinkModel> switchlinks;
+	//本地交换机归属索引，由switch_ownership条目事件维护
+	private final SwitchOwnershipIndex ownership = new SwitchOwnershipIndex();
+	//全局链路图，由switchlinks条目事件维护
+	private final GlobalLinkGraph linkGraph = new GlobalLinkGraph();
+	private final InterDomainRouting.RouteCache routeCache = new InterDomainRouting.RouteCache(linkGraph);
+	//本地负载视图，由controller_load条目事件维护
+	private final ControllerLoadView loadView = new ControllerLoadView();
+	//交换机和控制器表的本地副本，供REST接口生成快照
+	private final LocalMapView<SwitchModel> switchView = new LocalMapView<SwitchModel>();
+	private final LocalMapView<ControllerModel> controllerView = new LocalMapView<ControllerModel>();
+	private volatile ClusterSnapshot snapshot;
 	public ClusterManager() {
 	}
 	//链路集合
 	@Override
-	public void addLink(String dpid, LinkModel link) {
-		switchlinks.put(dpid, link);
-		
+	public void addLink(final String dpid, final LinkModel link) {
+		// 链路发现在LLDP处理线程上调用，MultiMap没有异步接口，交给异步层执行
+		submitLinkUpdate(dpid, "add " + link, new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return switchlinks.put(dpid, link);
+			}
+		});
 	}
 	@Override
-	public void deleteLink(String dpid, LinkModel link) {
-		switchlinks.remove(dpid, link);
+	public void deleteLink(final String dpid, final LinkModel link) {
+		submitLinkUpdate(dpid, "delete " + link, new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return switchlinks.remove(dpid, link);
+			}
+		});
+	}
+	/**
+	 * 同一交换机的链路更新按调用顺序依次提交，前一个完成(或最终失败)后才提交下一个，
+	 * 避免异步线程池打乱添加和删除的顺序；不同交换机之间仍并行
+	 */
+	private void submitLinkUpdate(String dpid, String description, Callable<Boolean> update) {
+		final SettableFuture<Boolean> done = SettableFuture.create();
+		ListenableFuture<Boolean> previous;
+		synchronized (linkUpdates) {
+			previous = linkUpdates.put(dpid, done);
+		}
+		final LinkUpdate u = new LinkUpdate(dpid, description, update, done);
+		if (previous == null) {
+			u.attempt(0);
+			return;
+		}
+		previous.addListener(new Runnable() {
+			@Override
+			public void run() {
+				u.attempt(0);
+			}
+		}, MoreExecutors.sameThreadExecutor());
+	}
+	/**
+	 * 一次链路更新，失败时经调度线程重试；MultiMap的put/remove是幂等的
+	 */
+	private class LinkUpdate {
+		final String dpid;
+		final String description;
+		final Callable<Boolean> update;
+		final SettableFuture<Boolean> done;
+
+		LinkUpdate(String dpid, String description, Callable<Boolean> update, SettableFuture<Boolean> done) {
+			this.dpid = dpid;
+			this.description = description;
+			this.update = update;
+			this.done = done;
+		}
+
+		void attempt(final int n) {
+			Futures.addCallback(hazelcast.submitAsync(SWITCHS_LINKS_MULITMAP_NAME, update), new FutureCallback<Boolean>() {
+				@Override
+				public void onSuccess(Boolean result) {
+					finish(result);
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					if (n >= LINK_UPDATE_RETRIES) {
+						log.error("link update {} of {} failed after {} attempts: {}",
+								new Object[] { description, dpid, n + 1, t.toString() });
+						finish(false);
+						return;
+					}
+					log.warn("link update {} of {} failed, retrying: {}", new Object[] { description, dpid, t.toString() });
+					threadPoolService.getScheduledExecutor().schedule(new Runnable() {
+						@Override
+						public void run() {
+							attempt(n + 1);
+						}
+					}, LINK_UPDATE_RETRY_MS, TimeUnit.MILLISECONDS);
+				}
+			});
+		}
+
+		private void finish(Boolean result) {
+			synchronized (linkUpdates) {
+				if (linkUpdates.get(dpid) == done)
+					linkUpdates.remove(dpid);
+			}
+			done.set(result);
+		}
 	}
 	@Override
 	public MultiMap<String, LinkModel> getLinks() {
 		return switchlinks;
 	}
+	@Override
+	public GlobalLinkGraph getLinkGraph() {
+		return linkGraph;
+	}
+	@Override
+	public HostLocationStore getHostLocations() {
+		return hostLocations;
+	}
+	@Override
+	public List<InterDomainRouting.RouteHop> getRoute(String src, int srcPort, String dst, int dstPort) {
+		return routeCache.getRoute(src, srcPort, dst, dstPort);
+	}
 	
 	// 交换机集合
 	@Override
@@ -101,56 +253,66 @@ public class ClusterManager implements IFloodlightModule, IClusterService,
 	// 控制器负载
 	@Override
 	public List<String> getSortedControllerLoad() {
-		List<String> list = new ArrayList<String>();
-		if (controllerLoad != null && !controllerLoad.isEmpty()) {
-			List<Map.Entry<String, Integer>> entryList = new ArrayList<Map.Entry<String, Integer>>(
-					controllerLoad.entrySet());
-			Collections.sort(entryList,
-					new Comparator<Map.Entry<String, Integer>>() {
-						public int compare(Entry<String, Integer> entry1,
-								Entry<String, Integer> entry2) {
-							int value1 = 0, value2 = 0;
-							value1 = entry1.getValue();
-							value2 = entry2.getValue();
-							return value1 - value2;
-						}
-					});
-			for (Iterator<Map.Entry<String, Integer>> i = entryList.iterator(); i
-					.hasNext();) {
-				Map.Entry<String, Integer> entry = i.next();
-				list.add(entry.getKey());
+		return loadView.getSorted();
+	}
+
+	@Override
+	public Map<String, Integer> getControllerLoadSnapshot() {
+		return loadView.getLoads();
+	}
+
+	@Override
+	public ClusterSnapshot getSnapshot() {
+		long version = snapshotVersion();
+		ClusterSnapshot s = snapshot;
+		if (s != null && s.getVersion() == version)
+			return s;
+		synchronized (this) {
+			s = snapshot;
+			if (s == null || s.getVersion() != version) {
+				// 先取版本再复制，复制期间的变化会使下次读取重新生成
+				s = new ClusterSnapshot(version, switchView.getEntries(), controllerView.getEntries(),
+						loadView.getLoads(), ownership.getAllRoles(), linkGraph.getLinks());
+				snapshot = s;
 			}
+			return s;
 		}
-		return list;
+	}
+	private long snapshotVersion() {
+		return switchView.getVersion() + controllerView.getVersion() + loadView.getVersion()
+				+ ownership.getVersion() + linkGraph.getVersion();
+	}
+
+	@Override
+	public Map<String, ControllerTrafficModel> getTrafficLoad() {
+		return trafficReporter.getReports();
 	}
 
 	@Override
-	public synchronized void ControllerLoadIncrease(String controllerId, int num) {
+	public void ControllerLoadIncrease(String controllerId, int num) {
 		log.info("controller {} increase {}", controllerId, num);
 		if (num < 0)
 			throw new IllegalArgumentException("num < 0");
-		Integer i = controllerLoad.get(controllerId);
-		if (null == i)
-			controllerLoad.put(controllerId, num);
-		else
-			controllerLoad.put(controllerId, i + num);
-
+		controllerLoad.executeOnKey(controllerId, new LoadDeltaProcessor(num));
 	}
 
 	@Override
-	public synchronized void ControllerLoadReduce(String controllerId, int num) {
+	public void ControllerLoadReduce(String controllerId, int num) {
 		if (num < 0)
 			throw new IllegalArgumentException("num < 0");
-		Integer i = controllerLoad.get(controllerId);
-		if (null == i)
-			ControllerLoadReset(controllerId);
-		else
-			controllerLoad.set(controllerId, i - num < 0 ? 0 : i - num);
+		controllerLoad.executeOnKey(controllerId, new LoadDeltaProcessor(-num));
 	}
 
 	@Override
 	public void ControllerLoadReset(String controllerId) {
-		controllerLoad.put(controllerId, 0);
+		controllerLoad.set(controllerId, 0);
+	}
+
+	@Override
+	public void ControllerLoadSet(String controllerId, int num) {
+		if (num < 0)
+			throw new IllegalArgumentException("num < 0");
+		controllerLoad.executeOnKey(controllerId, new LoadSetProcessor(num));
 	}
 	
 	@Override
@@ -174,31 +336,24 @@ public class ClusterManager implements IFloodlightModule, IClusterService,
 		return controllers;
 	}
 	
-	//masterMap
-	@Override
-	public void putMasterMap(String dpid) {
-		masterMap.put(dpid, floodlightProvider.getControllerModel()
-				.getControllerId());
-	}
-
-	@Override
-	public void removeMasterMap(String dpid) {
-//		ControllerModel uuid=floodlightProvider.getControllerModel();
-//		masterMap.remove(dpid);
-	}
+	/**
+	 * 返回本地维护的dpid->master控制器只读视图，不产生远程调用
+	 */
 	@Override
 	public Map<String, String> getMasterMap() {
-		return getMasterMapFromCS();
+		return ownership.getMasterMap();
 	}
-	
+
+	/**
+	 * 直接从switch_ownership读取dpid->master控制器
+	 */
 	@Override
 	public Map<String, String> getMasterMapFromCS() {
 		Map<String, String> master=new HashMap<String, String>();
-		for(ControllerModel c:controllerMappingSwitch.keySet()){
-			for(SwitchConnectModel s:controllerMappingSwitch.get(c)){
-				if(s.getRole().equals(OFControllerRole.ROLE_MASTER.toString())){
-					master.put(s.getDpid(),c.getControllerId());
-				}
+		for(SwitchOwnershipModel s:switchOwnership.values()){
+			String c=s.getMaster();
+			if(c!=null){
+				master.put(s.getDpid(),c);
 			}
 		}
 		return master;
@@ -219,47 +374,255 @@ public class ClusterManager implements IFloodlightModule, IClusterService,
 
 	@Override
 	public boolean isConnected(String dpid, String uuid) {
-		ControllerModel c = controllers.get(uuid);
-		Collection<SwitchConnectModel> switchs = controllerMappingSwitch.get(c);
-		for (SwitchConnectModel s : switchs) {
-			if (s.getDpid().equals(dpid))
-				return true;
-		}
-		return false;
+		return ownership.isConnected(dpid, uuid);
 	}
 
 	@Override
-	public void removeControllerMappingSwitch(ControllerModel c, String dpid,String role) {
-		controllerMappingSwitch.remove(c, new SwitchConnectModel(c.getControllerId(), dpid, role));
+	public Map<String, Set<String>> getSwitchConnections() {
+		return ownership.getConnections();
 	}
 
 	@Override
-	public synchronized void putControllerMappingSwitch(ControllerModel c,
-			String dpid, String role) {
-		putControllerMappingSwitch(c, new SwitchConnectModel(c.getControllerId(), dpid, role));
+	public Map<String, String> getSwitchRoles(String dpid) {
+		return ownership.getRoles(dpid);
 	}
-	
-	private void putControllerMappingSwitch(ControllerModel c,
-			SwitchConnectModel s) {
-		for (Iterator<SwitchConnectModel> i = controllerMappingSwitch.get(c)
-				.iterator(); i.hasNext();) {
-			SwitchConnectModel scm = i.next();
-			if (scm.getDpid().equals(s.getDpid())) {
-				controllerMappingSwitch.remove(c, scm);
-				controllerMappingSwitch.put(c, s);
-				return;
+
+	@Override
+	public Set<String> getControllerSwitches(String controllerId) {
+		return ownership.getSwitches(controllerId);
+	}
+
+	@Override
+	public Set<String> getAllMappedSwitches() {
+		return ownership.getAllSwitches();
+	}
+
+	@Override
+	public ListenableFuture<Void> registerSwitchAsync(final SwitchRegistration r) {
+		final SettableFuture<Void> done = SettableFuture.create();
+		registrationExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					submitRegistration(r, done);
+				} catch (Exception e) {
+					done.setException(new SwitchRegistrationException(r, e));
+				}
+			}
+		});
+		return done;
+	}
+	/**
+	 * 并行提交各表的异步更新，全部完成时结束；有失败时以SwitchRegistrationException结束，
+	 * 其中只包含失败的部分，重试时已成功的负载变化不会重复计入
+	 */
+	private void submitRegistration(final SwitchRegistration r, final SettableFuture<Void> done) {
+		String localId = floodlightProvider.getControllerModel().getControllerId();
+		final ListenableFuture<?> model;
+		if (r.getModel() != null)
+			model = hazelcast.putAsync(SWITCHS_MAP_NAME, r.getDpid(), r.getModel());
+		else if (r.isRemoveModel())
+			model = hazelcast.removeAsync(SWITCHS_MAP_NAME, r.getDpid());
+		else
+			model = null;
+		final ListenableFuture<?> role = r.isUpdateRole() ? hazelcast.executeOnKeyAsync(SWITCH_OWNERSHIP_MAP_NAME,
+				r.getDpid(), new OwnershipUpdateProcessor(localId, r.getRole())) : null;
+		final ListenableFuture<?> load = r.getLoadDelta() != 0 ? hazelcast.executeOnKeyAsync(CONTROLLER_LOAD_MAP_NAME,
+				localId, new LoadDeltaProcessor(r.getLoadDelta())) : null;
+		List<ListenableFuture<?>> parts = new ArrayList<ListenableFuture<?>>(3);
+		for (ListenableFuture<?> f : Arrays.asList(model, role, load)) {
+			if (f != null)
+				parts.add(f);
+		}
+		// successfulAsList在全部结束后才回调，失败的部分各自取得原因
+		Futures.addCallback(Futures.successfulAsList(parts), new FutureCallback<List<Object>>() {
+			@Override
+			public void onSuccess(List<Object> result) {
+				Throwable modelFailure = failure(model);
+				Throwable roleFailure = failure(role);
+				Throwable loadFailure = failure(load);
+				if (modelFailure == null && roleFailure == null && loadFailure == null) {
+					done.set(null);
+					return;
+				}
+				Throwable cause = roleFailure != null ? roleFailure : loadFailure != null ? loadFailure : modelFailure;
+				done.setException(new SwitchRegistrationException(r.remaining(roleFailure != null,
+						loadFailure != null, modelFailure != null), cause));
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				done.setException(new SwitchRegistrationException(r, t));
 			}
+		});
+	}
+	/**
+	 * @return 已结束的future的失败原因，成功或为null时返回null
+	 */
+	private static Throwable failure(ListenableFuture<?> f) {
+		if (f == null)
+			return null;
+		try {
+			f.get();
+			return null;
+		} catch (ExecutionException e) {
+			return e.getCause();
+		} catch (Exception e) {
+			return e;
 		}
-		controllerMappingSwitch.put(c, s);
 	}
+
+	@Override
+	public void removeControllerMappingSwitch(ControllerModel c, String dpid) {
+		switchOwnership.executeOnKey(dpid, new OwnershipUpdateProcessor(c.getControllerId(), null));
+	}
+
 	@Override
-	public MultiMap<ControllerModel, SwitchConnectModel> getControllerMappingSwitch() {
-		return controllerMappingSwitch;
+	public void putControllerMappingSwitch(ControllerModel c,
+			String dpid, String role) {
+		switchOwnership.executeOnKey(dpid, new OwnershipUpdateProcessor(c.getControllerId(), role));
 	}
 	@Override
 	public void switchRemove(String dpid) {
 		switchDisconnected(dpid);
 	}
+	@Override
+	public boolean isHashOwnership() {
+		return hashOwnership;
+	}
+	@Override
+	public String getHashOwner(String dpid, Set<String> eligible) {
+		ConsistentHashRing r = ring;
+		return r == null ? null : r.getOwner(dpid, eligible);
+	}
+
+	@Override
+	public Set<String> getLiveControllers() {
+		return hazelcast.getLiveControllers();
+	}
+	/**
+	 * 用当前成员重建哈希环
+	 */
+	private void updateRing(Set<String> live) {
+		if (!hashOwnership || (ring != null && ring.getMembers().equals(live)))
+			return;
+		ring = new ConsistentHashRing(live);
+		log.info("ownership ring updated: {} controllers", live.size());
+	}
+	/**
+	 * 把本控制器作为master、但按哈希环应归属其他已连接控制器的交换机移交出去，
+	 * 每个目标控制器一条批量消息。每个控制器只处理自己的交换机，成员变化时只有约1/N的交换机移动。
+	 * 与BalanceResource一样先升级后降级：归属控制器成为master后，本控制器再经批量SLAVE请求降级。
+	 * 两次请求都经握手状态机切换角色，完成时switch_ownership已登记新角色，下一轮不会重复移交；
+	 * 正在移交的交换机跳过，switch_ownership中归属控制器已是master的只需降级本控制器。
+	 */
+	private void rebalanceToRing() {
+		updateRing(hazelcast.getLiveControllers());// 被误判的控制器恢复后重新加入环
+		ConsistentHashRing r = ring;
+		if (r == null)
+			return;
+		String localId = floodlightProvider.getControllerModel().getControllerId();
+		Map<String, Set<String>> connected = ownership.getConnections();
+		Map<String, Set<String>> promote = new HashMap<String, Set<String>>();
+		Map<String, Set<String>> demote = new HashMap<String, Set<String>>();
+		for (Map.Entry<String, String> e : ownership.getMasterMap().entrySet()) {
+			String dpid = e.getKey();
+			if (!localId.equals(e.getValue()) || handingOver.contains(dpid))
+				continue;
+			String owner = r.getOwner(dpid, connected.get(dpid));
+			if (owner == null || owner.equals(localId))
+				continue;
+			boolean promoted = OFControllerRole.ROLE_MASTER.toString().equals(ownership.getRoles(dpid).get(owner));
+			Map<String, Set<String>> batches = promoted ? demote : promote;
+			Set<String> batch = batches.get(owner);
+			if (batch == null) {
+				batch = new HashSet<String>();
+				batches.put(owner, batch);
+			}
+			batch.add(dpid);
+		}
+		for (Map.Entry<String, Set<String>> e : promote.entrySet()) {
+			log.info("handing {} switches over to ring owner {}", e.getValue().size(), e.getKey());
+			handOver(e.getValue(), e.getKey(), localId);
+		}
+		for (Map.Entry<String, Set<String>> e : demote.entrySet()) {
+			log.info("{} switches already mastered by ring owner {}, demoting", e.getValue().size(), e.getKey());
+			handingOver.addAll(e.getValue());
+			demote(e.getValue(), e.getKey(), localId);
+		}
+	}
+	/**
+	 * 请求owner成为这些交换机的master，成功升级的交换机再由本控制器降级为SLAVE
+	 */
+	private void handOver(final Set<String> dpids, final String owner, final String localId) {
+		final Map<String, String> promote = new HashMap<String, String>();
+		for (String dpid : dpids)
+			promote.put(dpid, "MASTER");
+		handingOver.addAll(dpids);
+		Futures.addCallback(hazelcast.requestRoleBatch(promote, owner), new FutureCallback<Map<String, String>>() {
+			@Override
+			public void onSuccess(Map<String, String> results) {
+				Set<String> promoted = new HashSet<String>();
+				for (String dpid : dpids) {
+					if (OFControllerRole.ROLE_MASTER.toString().equals(results.get(dpid)))
+						promoted.add(dpid);
+					else
+						log.warn("handover of {} to {} failed: {}", new Object[] { dpid, owner, results.get(dpid) });
+				}
+				Set<String> failed = new HashSet<String>(dpids);
+				failed.removeAll(promoted);
+				handingOver.removeAll(failed);
+				if (!promoted.isEmpty())
+					demote(promoted, owner, localId);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				log.warn("handover to ring owner {} failed: {}", owner, t.toString());
+				handingOver.removeAll(dpids);
+			}
+		});
+	}
+	/**
+	 * owner已成为master后把本控制器降级为SLAVE，结束时从handingOver中移除
+	 */
+	private void demote(final Set<String> dpids, final String owner, String localId) {
+		Map<String, String> batch = new HashMap<String, String>();
+		for (String dpid : dpids)
+			batch.put(dpid, "SLAVE");
+		Futures.addCallback(hazelcast.requestRoleBatch(batch, localId), new FutureCallback<Map<String, String>>() {
+			@Override
+			public void onSuccess(Map<String, String> r) {
+				handingOver.removeAll(dpids);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				log.warn("demotion after handover to {} failed: {}", owner, t.toString());
+				handingOver.removeAll(dpids);
+			}
+		});
+	}
+	private final Runnable rebalanceTask = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				rebalanceToRing();
+			} catch (Exception e) {
+				log.warn("ring rebalance failed", e);
+			}
+		}
+	};
+	@Override
+	public Map<String, String> getBackupPlan() {
+		return failover.getBackupPlan();
+	}
+	@Override
+	public Map<String, Map<String, Object>> getFailoverStats() {
+		Map<String, Map<String, Object>> stats = new LinkedHashMap<String, Map<String, Object>>(failover.getStats());
+		stats.putAll(hazelcast.getFailureDetectorStats());
+		return stats;
+	}
 	// ===============================IFloodlightModule=======================
 	@Override
 	public Collection<Class<? extends IFloodlightService>> getModuleServices() {
@@ -282,6 +645,7 @@ public class ClusterManager implements IFloodlightModule, IClusterService,
 		l.add(IHazelcastService.class);
 		l.add(IOFSwitchService.class);
 		l.add(IRestApiService.class);
+		l.add(IThreadPoolService.class);
 		return l;
 	}
 
@@ -294,25 +658,69 @@ public class ClusterManager implements IFloodlightModule, IClusterService,
 		hazelcast = context.getServiceImpl(IHazelcastService.class);
 		switchService = context.getServiceImpl(IOFSwitchService.class);
 		restApiService = context.getServiceImpl(IRestApiService.class);
+		threadPoolService = context.getServiceImpl(IThreadPoolService.class);
+		hashOwnership = "consistent-hash".equalsIgnoreCase(context.getConfigParams(this).get("ownership"));
+		log.info("switch ownership: {}", hashOwnership ? "consistent-hash" : "first-come");
 		controllers = hazelcast.getMap(CONTROLLER_MAP_NAME);
 		controllerLoad = hazelcast.getMap(CONTROLLER_LOAD_MAP_NAME);
-		masterMap = hazelcast.getMap(MASTER_MAP);
 		switchs = hazelcast.getMap(SWITCHS_MAP_NAME);
-		controllerMappingSwitch = hazelcast.getMultiMap(CONTROLLER_SWITCH_MULITMAP_NAME);
+		switchOwnership = hazelcast.getMap(SWITCH_OWNERSHIP_MAP_NAME);
 		switchlinks=hazelcast.getMultiMap(SWITCHS_LINKS_MULITMAP_NAME);
+		//先注册监听再全量加载，避免加载期间丢失事件
+		switchOwnership.addEntryListener(ownership, true);
+		ownership.reload(switchOwnership);
+		switchlinks.addEntryListener(linkGraph, true);
+		linkGraph.reload(switchlinks.values());
+		controllerLoad.addEntryListener(loadView, true);
+		loadView.reload(controllerLoad);
+		switchs.addEntryListener(switchView, true);
+		switchView.reload(switchs);
+		controllers.addEntryListener(controllerView, true);
+		controllerView.reload(controllers);
+		trafficReporter = new TrafficLoadReporter(floodlightProvider, hazelcast, switchService);
+		trafficReporter.init();
+		failover = new FailoverManager(this, hazelcast, switchService);
+		failover.init();
+		IMap<String, HostLocationModel> hostLocationMap = hazelcast.getMap(HOST_LOCATION_MAP_NAME);
+		hostLocations = new HostLocationStore(hostLocationMap,
+				floodlightProvider.getControllerModel().getControllerId());
+		hostLocationMap.addEntryListener(hostLocations, true);
 		
 		/*System.out.println("controllers:"+controllers.values());
 		System.out.println("controllerLoad:"+controllerLoad.values());
-		System.out.println("masterMap:"+masterMap.values());
 		System.out.println("switchs:"+switchs.values());
-		System.out.println("controllerMappingSwitch:"+controllerMappingSwitch.values());	
+		System.out.println("switchOwnership:"+switchOwnership.values());	
 		System.out.println("switchlinks:"+switchlinks.values());	*/
 	}
 
 	@Override
 	public void startUp(FloodlightModuleContext context)
 			throws FloodlightModuleException {
-		hazelcast.addMemberListener(new ControllerMembershipListener(this));
+		hazelcast.addControllerListener(this);
+		if (hashOwnership) {
+			updateRing(hazelcast.getLiveControllers());
+			hazelcast.addMemberListener(new MembershipListener() {
+				@Override
+				public void memberAdded(MembershipEvent event) {
+					updateRing(hazelcast.getLiveControllers());
+					threadPoolService.getScheduledExecutor().schedule(rebalanceTask,
+							REBALANCE_DELAY_MS, TimeUnit.MILLISECONDS);
+				}
+
+				@Override
+				public void memberRemoved(MembershipEvent event) {
+				}
+
+				@Override
+				public void memberAttributeChanged(MemberAttributeEvent event) {
+				}
+			});
+			threadPoolService.getScheduledExecutor().scheduleWithFixedDelay(rebalanceTask,
+					REBALANCE_INTERVAL_MS, REBALANCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+		}
+		trafficReporter.startUp(threadPoolService.getScheduledExecutor());
+		failover.startUp(threadPoolService.getScheduledExecutor());
+		hostLocations.startUp(threadPoolService.getScheduledExecutor());
 		if (restApiService != null)
 			restApiService.addRestletRoutable(new ClusterWebRoutable());
 
@@ -320,43 +728,164 @@ public class ClusterManager implements IFloodlightModule, IClusterService,
 
 	// IControllerListener implements
 	@Override
-	public void controllerRemoved(MembershipEvent event) {
-		Member m = event.getMember();
-		log.info("{} disconnected", m.getUuid());
-		controllerLoad.remove(m.getUuid());// 移除故障控制器负载
-		List<String> load = ImmutableList.copyOf(getSortedControllerLoad());// 取得控制器负载排序
+	public void controllerRemoved(String failedId, Set<String> live, boolean confirmed) {
+		long start = System.nanoTime();
+		log.info("{} disconnected{}", failedId, confirmed ? "" : " (suspected)");
+		updateRing(live);
+		List<String> failedDpids = new ArrayList<String>();// 故障控制器作为master的交换机
+		for (Map.Entry<String, String> e : ownership.getMasterMap().entrySet()) {
+			if (failedId.equals(e.getValue()))
+				failedDpids.add(e.getKey());
+		}
+		// 各备份控制器并行接管自己负责的交换机，只使用本地的备份计划和交换机连接
+		Set<String> orphans = failover.takeOver(failedDpids, live);
 		String uuid = floodlightProvider.getControllerModel().getControllerId();// 得到本机uuid
-		ControllerModel c = controllers.get(m.getUuid());// 得到故障控制器模型
-		Collection<SwitchConnectModel> switchs = controllerMappingSwitch.get(c);// 得到故障控制器控制的交换机
-		if (!load.isEmpty()&&uuid.equals(load.get(0))) {
-			for (SwitchConnectModel s : switchs) {// 遍历交换机a
-				if(!s.getRole().equals(OFControllerRole.ROLE_MASTER.toString())) continue;
-				DatapathId dpid = DatapathId.of(s.getDpid());
-//				removeMasterMap(dpid.toString());
-				for (int i = 0; i < load.size(); i++) {
-					if (isConnected(s.getDpid(), load.get(i))) {
-						IOFSwitch sw = switchService.getSwitch(dpid);
-						log.info("change master {}<-->{}", uuid, dpid);
-						sw.writeRequest(sw.getOFFactory().buildRoleRequest()
-								.setGenerationId(U64.ZERO)
-								.setRole(OFControllerRole.ROLE_MASTER).build());
-						break;
-					}
+		boolean leader = uuid.equals(leastLoaded(live));
+		if (leader) {
+			// 负载最低的控制器重新分配没有备份的交换机
+			failover.reassign(orphans, live);
+		}
+		if (confirmed) {
+			controllerLoad.remove(failedId);// 移除故障控制器负载
+			if (leader) {
+				// 清理故障控制器
+				trafficReporter.removeController(failedId);
+				for (String dpid : new ArrayList<String>(ownership.getSwitches(failedId))) {
+					switchOwnership.executeOnKey(dpid, new OwnershipUpdateProcessor(failedId, null));
 				}
+				controllers.remove(failedId);
 			}
-			controllerMappingSwitch.remove(c);
-			controllers.remove(c.getControllerId());
+			redirectCommands(failedId, leader);
 		}
+		failover.recordFailover(start);
+		log.info("failover of {} finished in {} ms: {} switches, {} without backup",
+				new Object[] { failedId, (System.nanoTime() - start) / 1000000,
+						failedDpids.size(), orphans.size() });
+	}
+	/**
+	 * 被怀疑的控制器恢复：用存活控制器重建哈希环。其他控制器恢复时，
+	 * 各控制器把按环应归属它的交换机移交回去；本控制器恢复时，重新核对本地交换机的角色
+	 */
+	@Override
+	public void controllerRecovered(String controllerId, Set<String> live) {
+		log.info("{} recovered", controllerId);
+		updateRing(live);
+		String uuid = floodlightProvider.getControllerModel().getControllerId();
+		if (uuid.equals(controllerId)) {
+			reassertRoles(uuid);
+		} else if (hashOwnership) {
+			threadPoolService.getScheduledExecutor().schedule(rebalanceTask,
+					REBALANCE_DELAY_MS, TimeUnit.MILLISECONDS);
+		}
+	}
+	/**
+	 * 本控制器的心跳中断期间，其他控制器可能已接管其交换机。
+	 * 重新读取switch_ownership：仍登记为master的交换机重新请求MASTER，
+	 * 已有其他master的交换机降为SLAVE，经一条发给自己的批量角色请求完成
+	 */
+	private void reassertRoles(final String localId) {
+		Map<String, IOFSwitch> local = new HashMap<String, IOFSwitch>();
+		for (Map.Entry<DatapathId, IOFSwitch> e : switchService.getAllSwitchMap().entrySet()) {
+			local.put(e.getKey().toString(), e.getValue());
+		}
+		if (local.isEmpty())
+			return;
+		Map<String, SwitchOwnershipModel> current = switchOwnership.getAll(local.keySet());
+		Map<String, String> roles = new HashMap<String, String>();
+		for (Map.Entry<String, IOFSwitch> e : local.entrySet()) {
+			SwitchOwnershipModel model = current.get(e.getKey());
+			String master = model == null ? null : model.getMaster();
+			if (localId.equals(master))
+				roles.put(e.getKey(), "MASTER");
+			else if (master != null && e.getValue().getControllerRole() != OFControllerRole.ROLE_SLAVE)
+				roles.put(e.getKey(), "SLAVE");
+		}
+		if (roles.isEmpty())
+			return;
+		log.info("re-asserting roles of {} switches after heartbeat interruption", roles.size());
+		Futures.addCallback(hazelcast.requestRoleBatch(roles, localId), new FutureCallback<Map<String, String>>() {
+			@Override
+			public void onSuccess(Map<String, String> results) {
+				log.info("roles re-asserted: {}", results);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				log.warn("failed to re-assert switch roles: {}", t.toString());
+			}
+		});
+	}
+	/**
+	 * 本地负载视图中负载最低的存活控制器，本地视图可能尚未收到故障控制器的移除事件
+	 */
+	private String leastLoaded(Set<String> live) {
+		for (String uuid : getSortedControllerLoad()) {
+			if (live.contains(uuid))
+				return uuid;
+		}
+		return null;
 	}
 	@Override
 	public void switchDisconnected(String dpid) {
+		String uuid = floodlightProvider.getControllerModel().getControllerId();// 本控制器已断开
+		String next = successor(dpid, uuid);
+		if (next != null) {
+			hazelcast.publishRoleMessage(new RoleMessage("MASTER", dpid), next);
+			return;
+		}
+		log.info("{} move cluster",dpid);
+	}
+	/**
+	 * 选择接替excluded成为交换机master的控制器：优先哈希环归属，其次负载最低的已连接控制器
+	 * @return 没有其他已连接控制器时返回null
+	 */
+	private String successor(String dpid, String excluded) {
+		Set<String> connected = new HashSet<String>(ownership.getRoles(dpid).keySet());
+		connected.remove(excluded);
+		String owner = getHashOwner(dpid, connected);
+		if (owner != null)
+			return owner;
 		List<String> load = ImmutableList.copyOf(getSortedControllerLoad());// 取得控制器负载排序
 		for(String uuid:load){
-			if(isConnected(dpid, uuid)){
-				hazelcast.publishRoleMessage(new RoleMessage("MASTER", dpid), uuid);
-				return;
+			if(!uuid.equals(excluded) && isConnected(dpid, uuid))
+				return uuid;
+		}
+		return null;
+	}
+	/**
+	 * 把发往已移除控制器、尚未处理的流表转发给各交换机新的master；角色命令已失去意义，丢弃
+	 * @param drainQueue 是否同时取出其命令队列中的命令，只由leader执行
+	 */
+	private void redirectCommands(String failedId, boolean drainQueue) {
+		List<Object> pending = hazelcast.recoverCommands(failedId, drainQueue);
+		if (pending.isEmpty())
+			return;
+		Map<String, String> masters = ownership.getMasterMap();
+		int redirected = 0;
+		for (Object command : pending) {
+			List<Map<String, String>> rows;
+			if (command instanceof FlowMessage) {
+				rows = Collections.singletonList(((FlowMessage) command).row);
+			} else if (command instanceof FlowBatchMessage) {
+				rows = ((FlowBatchMessage) command).rows;
+			} else {
+				continue;
+			}
+			for (Map<String, String> row : rows) {
+				String dpid = row.get(StaticFlowEntryPusher.COLUMN_SWITCH);
+				String target = dpid == null ? null : masters.get(dpid);
+				if (target == null || target.equals(failedId))
+					target = dpid == null ? null : successor(dpid, failedId);
+				if (target == null) {
+					log.warn("no controller for flow {} of removed controller {}",
+							row.get(StaticFlowEntryPusher.COLUMN_NAME), failedId);
+					continue;
+				}
+				hazelcast.publishFlowMessage(new FlowMessage(row), target);
+				redirected++;
 			}
 		}
-		log.info("{} move cluster",dpid);
+		log.info("recovered {} commands for {}, redirected {} flows",
+				new Object[] { pending.size(), failedId, redirected });
 	}
 }
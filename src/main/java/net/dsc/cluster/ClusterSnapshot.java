@@ -0,0 +1,89 @@
+package net.dsc.cluster;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import net.dsc.cluster.model.ControllerModel;
+import net.dsc.cluster.model.LinkModel;
+import net.dsc.cluster.model.SwitchModel;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+
+/**
+ * 集群状态的不可变快照，供REST接口读取
+ * <p>
+ * 由本地视图(交换机、控制器、负载、归属索引、链路图)生成，不访问集群。各视图的版本
+ * 只增不减，其和作为快照版本，任一视图变化后版本增大，同一版本的快照内容相同。
+ * 版本在进程重启后从0开始，ETag因此再带上进程的EPOCH。交换机和角色按dpid排序，便于分页。
+ */
+public class ClusterSnapshot {
+
+	/** 本进程的标识(启动时间+随机数)，重启后不同，版本计数重新开始也不会与旧ETag相同 */
+	public static final String EPOCH = Long.toHexString(System.currentTimeMillis())
+			+ Integer.toHexString(new Random().nextInt());
+
+	private final long version;
+	private final ImmutableSortedMap<String, SwitchModel> switches;
+	private final ImmutableSortedMap<String, ControllerModel> controllers;
+	private final ImmutableMap<String, Integer> loads;
+	private final ImmutableSortedMap<String, Map<String, String>> roles;
+	private final ImmutableSet<LinkModel> links;
+
+	public ClusterSnapshot(long version, Map<String, SwitchModel> switches,
+			Map<String, ControllerModel> controllers, Map<String, Integer> loads,
+			Map<String, Map<String, String>> roles, Set<LinkModel> links) {
+		this.version = version;
+		this.switches = ImmutableSortedMap.copyOf(switches);
+		this.controllers = ImmutableSortedMap.copyOf(controllers);
+		this.loads = ImmutableMap.copyOf(loads);
+		ImmutableSortedMap.Builder<String, Map<String, String>> r = ImmutableSortedMap.naturalOrder();
+		for (Map.Entry<String, Map<String, String>> e : roles.entrySet()) {
+			r.put(e.getKey(), ImmutableMap.copyOf(e.getValue()));
+		}
+		this.roles = r.build();
+		this.links = ImmutableSet.copyOf(links);
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return EPOCH-版本
+	 */
+	public String getETag() {
+		return EPOCH + "-" + version;
+	}
+
+	/**
+	 * @return dpid->交换机，按dpid排序
+	 */
+	public ImmutableSortedMap<String, SwitchModel> getSwitches() {
+		return switches;
+	}
+
+	/**
+	 * @return controllerId->控制器，按id排序
+	 */
+	public ImmutableSortedMap<String, ControllerModel> getControllers() {
+		return controllers;
+	}
+
+	public ImmutableMap<String, Integer> getLoads() {
+		return loads;
+	}
+
+	/**
+	 * @return dpid->controllerId->角色，按dpid排序
+	 */
+	public ImmutableSortedMap<String, Map<String, String>> getRoles() {
+		return roles;
+	}
+
+	public ImmutableSet<LinkModel> getLinks() {
+		return links;
+	}
+}
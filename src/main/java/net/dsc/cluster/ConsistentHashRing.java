@@ -0,0 +1,88 @@
+package net.dsc.cluster;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * 带虚拟节点的一致性哈希环，不可变，成员变化时整体替换
+ * <p>
+ * 每个控制器在环上有VIRTUAL_NODES个位置，交换机归属于dpid哈希位置顺时针方向的第一个
+ * 控制器。增加或移除一个控制器只影响约1/N的交换机；各控制器用相同的成员集合得到相同
+ * 的结果，不需要协调。
+ */
+public class ConsistentHashRing {
+
+	/** 每个控制器的虚拟节点数，越多分布越均匀 */
+	public static final int VIRTUAL_NODES = 160;
+
+	private static final HashFunction HASH = Hashing.murmur3_128();
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final TreeMap<Long, String> ring = new TreeMap<Long, String>();
+	private final Set<String> members;
+
+	public ConsistentHashRing(Collection<String> members) {
+		this(members, VIRTUAL_NODES);
+	}
+
+	public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+		this.members = ImmutableSet.copyOf(members);
+		for (String m : this.members) {
+			for (int i = 0; i < virtualNodes; i++) {
+				long h = hash(m + "#" + i);
+				// 哈希冲突时保留id较小的控制器，保证各节点结果一致
+				String old = ring.get(h);
+				if (old == null || m.compareTo(old) < 0)
+					ring.put(h, m);
+			}
+		}
+	}
+
+	private static long hash(String key) {
+		return HASH.hashString(key, UTF8).asLong();
+	}
+
+	public Set<String> getMembers() {
+		return members;
+	}
+
+	/**
+	 * @return key的归属控制器，环为空时返回null
+	 */
+	public String getOwner(String key) {
+		return getOwner(key, null);
+	}
+
+	/**
+	 * 从key的位置顺时针查找第一个在eligible中的控制器
+	 * @param eligible 可选的控制器(如已连接该交换机的控制器)，为null时不限制
+	 * @return 归属控制器，没有满足条件的控制器时返回null
+	 */
+	public String getOwner(String key, Set<String> eligible) {
+		if (ring.isEmpty() || (eligible != null && Collections.disjoint(members, eligible)))
+			return null;
+		long h = hash(key);
+		SortedMap<Long, String> tail = ring.tailMap(h);
+		String owner = first(tail, eligible);
+		if (owner == null)
+			owner = first(ring.headMap(h), eligible);
+		return owner;
+	}
+
+	private static String first(SortedMap<Long, String> range, Set<String> eligible) {
+		for (Map.Entry<Long, String> e : range.entrySet()) {
+			if (eligible == null || eligible.contains(e.getValue()))
+				return e.getValue();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,98 @@
+package net.dsc.cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.hazelcast.core.EntryAdapter;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.MapEvent;
+
+/**
+ * controller_load的本地视图，由条目事件维护
+ * Local view of controller_load kept up to date by entry events. The
+ * load-sorted controller list is rebuilt once per change, so readers get an
+ * immutable list without touching the cluster or sorting.
+ */
+public class ControllerLoadView extends EntryAdapter<String, Integer> {
+
+	private final Map<String, Integer> loads = new HashMap<String, Integer>();
+	private volatile List<String> sorted = ImmutableList.of();
+	private volatile Map<String, Integer> snapshot = ImmutableMap.of();
+	private volatile long version;
+
+	public List<String> getSorted() {
+		return sorted;
+	}
+
+	public Map<String, Integer> getLoads() {
+		return snapshot;
+	}
+
+	/**
+	 * @return 每次变化加1
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public synchronized void reload(Map<String, Integer> all) {
+		loads.clear();
+		loads.putAll(all);
+		rebuild();
+	}
+
+	private synchronized void update(String controllerId, Integer load) {
+		if (load == null)
+			loads.remove(controllerId);
+		else
+			loads.put(controllerId, load);
+		rebuild();
+	}
+
+	private void rebuild() {
+		List<String> ids = new ArrayList<String>(loads.keySet());
+		Collections.sort(ids, new Comparator<String>() {
+			@Override
+			public int compare(String c1, String c2) {
+				int l1 = loads.get(c1), l2 = loads.get(c2);
+				if (l1 != l2)
+					return l1 < l2 ? -1 : 1;
+				return c1.compareTo(c2);
+			}
+		});
+		sorted = ImmutableList.copyOf(ids);
+		snapshot = ImmutableMap.copyOf(loads);
+		version++;
+	}
+
+	@Override
+	public void entryAdded(EntryEvent<String, Integer> event) {
+		update(event.getKey(), event.getValue());
+	}
+
+	@Override
+	public void entryUpdated(EntryEvent<String, Integer> event) {
+		update(event.getKey(), event.getValue());
+	}
+
+	@Override
+	public void entryRemoved(EntryEvent<String, Integer> event) {
+		update(event.getKey(), null);
+	}
+
+	@Override
+	public void entryEvicted(EntryEvent<String, Integer> event) {
+		update(event.getKey(), null);
+	}
+
+	@Override
+	public void mapCleared(MapEvent event) {
+		reload(Collections.<String, Integer>emptyMap());
+	}
+}
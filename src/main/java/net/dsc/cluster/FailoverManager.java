@@ -0,0 +1,285 @@
+package net.dsc.cluster;
+
+import static net.dsc.cluster.HazelcastTableNameConstant.BACKUP_MASTER_MAP_NAME;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.dsc.cluster.model.ControllerTrafficModel;
+import net.dsc.hazelcast.HazelcastService;
+import net.dsc.hazelcast.IHazelcastService;
+import net.dsc.hazelcast.listener.MirrorMapEntryListener;
+import net.floodlightcontroller.core.internal.IOFSwitchService;
+
+import org.projectfloodlight.openflow.protocol.OFControllerRole;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.hazelcast.core.IMap;
+
+/**
+ * 故障切换管理
+ * <p>
+ * 集群正常时，每个控制器周期性地为自己作为master的交换机选出备份master
+ * (已连接该交换机、流量加权负载最低的其他控制器)，写入backup_master表；
+ * 每个控制器通过条目监听在本地保留整张备份表。
+ * 控制器故障时，各备份控制器经握手状态机并行把自己负责的交换机切换为MASTER(登记完成后才算接管)，
+ * 没有可用备份的交换机由负载最低的控制器按控制器分组批量重新分配。
+ */
+public class FailoverManager {
+	private static final Logger log = LoggerFactory.getLogger(FailoverManager.class);
+
+	/** 备份计划刷新周期 */
+	public static final long PLAN_INTERVAL_MS = 5000;
+
+	private final IClusterService clusterService;
+	private final IHazelcastService hazelcast;
+	private final IOFSwitchService switchService;
+
+	private IMap<String, String> backupMaster;
+	// dpid->备份master控制器，backup_master的本地镜像
+	private final ConcurrentMap<String, String> backupPlan = new ConcurrentHashMap<String, String>();
+
+	private final LatencyHistogram failoverTime = new LatencyHistogram("failover");
+	private final LatencyHistogram takeoverTime = new LatencyHistogram("local-takeover");
+	// 请求MASTER到交换机进入MasterState并完成登记
+	private final LatencyHistogram roleChangeTime = new LatencyHistogram("role-change");
+	private final LatencyHistogram reassignTime = new LatencyHistogram("orphan-reassign");
+
+	public FailoverManager(IClusterService clusterService,
+			IHazelcastService hazelcast, IOFSwitchService switchService) {
+		this.clusterService = clusterService;
+		this.hazelcast = hazelcast;
+		this.switchService = switchService;
+	}
+
+	public void init() {
+		backupMaster = hazelcast.getMap(BACKUP_MASTER_MAP_NAME);
+		backupMaster.addEntryListener(new MirrorMapEntryListener<String, String>(backupPlan), true);
+		backupPlan.putAll(backupMaster);
+	}
+
+	public void startUp(ScheduledExecutorService ses) {
+		ses.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					plan();
+				} catch (Exception e) {
+					log.warn("failed to refresh failover plan", e);
+				}
+			}
+		}, PLAN_INTERVAL_MS, PLAN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+	}
+
+	public Map<String, String> getBackupPlan() {
+		return Collections.unmodifiableMap(backupPlan);
+	}
+
+	/**
+	 * 为本控制器作为master的交换机计算备份master，只写入有变化的条目
+	 */
+	public void plan() {
+		String localId = hazelcast.getLocalMember().getUuid();
+		Map<String, Set<String>> connected = clusterService.getSwitchConnections();
+		Map<String, ControllerTrafficModel> reports = clusterService.getTrafficLoad();
+		Map<String, Double> load = LoadBalancePlanner.weightedLoads(reports);
+
+		List<String> mine = new ArrayList<String>();
+		for (Map.Entry<String, String> e : clusterService.getMasterMap().entrySet()) {
+			if (localId.equals(e.getValue()))
+				mine.add(e.getKey());
+		}
+		Collections.sort(mine);
+
+		Map<String, String> updates = new HashMap<String, String>();
+		for (String dpid : mine) {
+			String best = ringOwner(dpid, connected.get(dpid), localId, null);
+			if (best == null)
+				best = pickLeastLoaded(connected.get(dpid), localId, load, null);
+			if (best == null) {
+				if (backupPlan.containsKey(dpid))
+					backupMaster.delete(dpid);
+				continue;
+			}
+			addLoad(load, best, LoadBalancePlanner.switchWeight(reports, dpid, localId)
+					* LoadBalancePlanner.cpuFactor(reports, best));
+			if (!best.equals(backupPlan.get(dpid)))
+				updates.put(dpid, best);
+		}
+		if (!updates.isEmpty())
+			backupMaster.putAll(updates);
+
+		// 清除已经没有任何控制器连接的交换机
+		for (String dpid : backupPlan.keySet()) {
+			if (!connected.containsKey(dpid))
+				backupMaster.delete(dpid);
+		}
+	}
+
+	private static void addLoad(Map<String, Double> load, String controllerId, double weight) {
+		Double l = load.get(controllerId);
+		load.put(controllerId, l == null ? weight : l + weight);
+	}
+
+	/**
+	 * 一致性哈希归属模式下，候选控制器中哈希环上的归属控制器，使故障切换的结果与环一致
+	 * @return 未启用该模式或没有候选时返回null
+	 */
+	private String ringOwner(String dpid, Collection<String> candidates, String exclude, Set<String> live) {
+		if (candidates == null)
+			return null;
+		Set<String> eligible = new HashSet<String>(candidates);
+		if (exclude != null)
+			eligible.remove(exclude);
+		if (live != null)
+			eligible.retainAll(live);
+		return clusterService.getHashOwner(dpid, eligible);
+	}
+
+	/**
+	 * 从候选控制器中选出负载最低的一个，负载相同按id排序保证各节点结果一致
+	 */
+	private static String pickLeastLoaded(Collection<String> candidates, String exclude,
+			Map<String, Double> load, Set<String> live) {
+		if (candidates == null)
+			return null;
+		String best = null;
+		double bestLoad = Double.MAX_VALUE;
+		for (String c : candidates) {
+			if (c.equals(exclude) || (live != null && !live.contains(c)))
+				continue;
+			Double l = load.get(c);
+			double v = l == null ? 0 : l;
+			if (best == null || v < bestLoad || (v == bestLoad && c.compareTo(best) < 0)) {
+				best = c;
+				bestLoad = v;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * 接管故障控制器上备份为本控制器的交换机：经各交换机的握手处理器并行请求MASTER，
+	 * 等待交换机进入MasterState并完成集群登记
+	 * @param dpids 故障控制器作为master的交换机
+	 * @param live 当前存活的控制器
+	 * @return 没有存活备份的交换机，需要重新分配
+	 */
+	public Set<String> takeOver(Collection<String> dpids, Set<String> live) {
+		long start = System.nanoTime();
+		String localId = hazelcast.getLocalMember().getUuid();
+		Set<String> orphans = new HashSet<String>();
+		List<ListenableFuture<OFControllerRole>> futures = new ArrayList<ListenableFuture<OFControllerRole>>();
+		for (final String dpid : dpids) {
+			String backup = backupPlan.get(dpid);
+			if (backup == null || !live.contains(backup)) {
+				orphans.add(dpid);
+				continue;
+			}
+			if (!backup.equals(localId))
+				continue;// 由对应的备份控制器接管
+			final long sent = System.nanoTime();
+			ListenableFuture<OFControllerRole> f = switchService.requestRole(DatapathId.of(dpid),
+					OFControllerRole.ROLE_MASTER);
+			Futures.addCallback(f, new FutureCallback<OFControllerRole>() {
+				@Override
+				public void onSuccess(OFControllerRole result) {
+					roleChangeTime.recordSince(sent);
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					log.warn("takeover of {} failed: {}", dpid, t.toString());
+				}
+			});
+			futures.add(f);
+		}
+		if (!futures.isEmpty()) {
+			try {
+				Futures.successfulAsList(futures).get(HazelcastService.ROLE_REPLY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				log.warn("role changes still pending after {} ms", HazelcastService.ROLE_REPLY_TIMEOUT_MS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				log.warn("takeover failed", e);
+			}
+			takeoverTime.recordSince(start);
+			log.info("took over {} switches as backup master", futures.size());
+		}
+		return orphans;
+	}
+
+	/**
+	 * 将没有备份的交换机分配给已连接且负载最低的存活控制器，每个控制器一条批量消息
+	 */
+	public void reassign(Set<String> orphans, Set<String> live) {
+		if (orphans.isEmpty())
+			return;
+		long start = System.nanoTime();
+		Map<String, Set<String>> connected = clusterService.getSwitchConnections();
+		Map<String, String> master = clusterService.getMasterMap();
+		Map<String, ControllerTrafficModel> reports = clusterService.getTrafficLoad();
+		Map<String, Double> load = LoadBalancePlanner.weightedLoads(reports);
+		Map<String, Map<String, String>> batches = new HashMap<String, Map<String, String>>();
+		for (String dpid : orphans) {
+			String target = ringOwner(dpid, connected.get(dpid), null, live);
+			if (target == null)
+				target = pickLeastLoaded(connected.get(dpid), null, load, live);
+			if (target == null) {
+				log.info("{} move cluster", dpid);
+				continue;
+			}
+			addLoad(load, target, LoadBalancePlanner.switchWeight(reports, dpid, master.get(dpid))
+					* LoadBalancePlanner.cpuFactor(reports, target));
+			Map<String, String> batch = batches.get(target);
+			if (batch == null) {
+				batch = new HashMap<String, String>();
+				batches.put(target, batch);
+			}
+			batch.put(dpid, "MASTER");
+		}
+		Map<String, ListenableFuture<Map<String, String>>> futures = new HashMap<String, ListenableFuture<Map<String, String>>>();
+		for (Map.Entry<String, Map<String, String>> e : batches.entrySet()) {
+			futures.put(e.getKey(), hazelcast.requestRoleBatch(e.getValue(), e.getKey()));
+		}
+		for (Map.Entry<String, ListenableFuture<Map<String, String>>> e : futures.entrySet()) {
+			try {
+				e.getValue().get(HazelcastService.ROLE_BATCH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+			} catch (Exception ex) {
+				log.warn("orphan reassignment to {} failed: {}", e.getKey(), ex.toString());
+			}
+		}
+		reassignTime.recordSince(start);
+	}
+
+	public void recordFailover(long startNs) {
+		failoverTime.recordSince(startNs);
+	}
+
+	public Map<String, Map<String, Object>> getStats() {
+		Map<String, Map<String, Object>> stats = new LinkedHashMap<String, Map<String, Object>>();
+		for (LatencyHistogram h : new LatencyHistogram[] { failoverTime, takeoverTime, roleChangeTime, reassignTime }) {
+			stats.put(h.getName(), h.snapshot());
+		}
+		return stats;
+	}
+}
@@ -0,0 +1,219 @@
+package net.dsc.cluster;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.dsc.cluster.model.LinkModel;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.hazelcast.core.EntryAdapter;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.MapEvent;
+
+/**
+ * 全局链路图，由switchlinks MultiMap的条目事件增量维护
+ * In-memory graph of every controller's links kept up to date by entry
+ * events on switchlinks (key = source dpid). Each change bumps the version
+ * and is kept in a bounded change log, so readers can either take an
+ * immutable snapshot or ask for the changes after a version they hold.
+ */
+public class GlobalLinkGraph extends EntryAdapter<String, LinkModel> {
+
+	/** 保留的变更条数，更早的版本只能全量同步 */
+	public static final int MAX_CHANGES = 4096;
+
+	/**
+	 * 一次链路变更
+	 */
+	public static class LinkChange {
+		@JsonProperty("version")
+		private final long version;
+		@JsonProperty("added")
+		private final boolean added;
+		@JsonProperty("link")
+		private final LinkModel link;
+
+		public LinkChange(long version, boolean added, LinkModel link) {
+			this.version = version;
+			this.added = added;
+			this.link = link;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		public boolean isAdded() {
+			return added;
+		}
+
+		public LinkModel getLink() {
+			return link;
+		}
+	}
+
+	// src dpid->出链路
+	private final Map<String, Set<LinkModel>> adjacency = new HashMap<String, Set<LinkModel>>();
+	private final ArrayDeque<LinkChange> changes = new ArrayDeque<LinkChange>();
+	private volatile long version;
+	// 按版本缓存的只读快照
+	private volatile Map<String, Set<LinkModel>> snapshot = ImmutableMap.of();
+	private volatile Set<LinkModel> links = ImmutableSet.of();
+	// 链路两端的"dpid:端口"
+	private volatile Set<String> linkPorts = ImmutableSet.of();
+	private volatile long snapshotVersion;
+
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return src dpid->出链路的只读快照
+	 */
+	public Map<String, Set<LinkModel>> getAdjacency() {
+		if (snapshotVersion != version)
+			refresh();
+		return snapshot;
+	}
+
+	public Set<LinkModel> getLinks() {
+		if (snapshotVersion != version)
+			refresh();
+		return links;
+	}
+
+	/**
+	 * 端口是否连接其他交换机(包括其他控制器域的交换机)，否则为边缘端口
+	 */
+	public boolean isLinkPort(String dpid, int port) {
+		if (snapshotVersion != version)
+			refresh();
+		return linkPorts.contains(dpid + ":" + port);
+	}
+
+	public Set<LinkModel> getLinks(String dpid) {
+		Set<LinkModel> out = getAdjacency().get(dpid);
+		return out == null ? ImmutableSet.<LinkModel>of() : out;
+	}
+
+	/**
+	 * @return 版本since之后的变更，按版本排序；since早于保留的变更或晚于当前版本
+	 *         (如本控制器重启)时返回null，需全量同步
+	 */
+	public synchronized List<LinkChange> getChangesSince(long since) {
+		if (since > version)
+			return null;
+		if (since == version)
+			return Collections.emptyList();
+		if (changes.isEmpty() || changes.peekFirst().getVersion() > since + 1)
+			return null;
+		List<LinkChange> result = new ArrayList<LinkChange>();
+		for (Iterator<LinkChange> i = changes.descendingIterator(); i.hasNext();) {
+			LinkChange c = i.next();
+			if (c.getVersion() <= since)
+				break;
+			result.add(c);
+		}
+		Collections.reverse(result);
+		return result;
+	}
+
+	/**
+	 * 全量加载，与当前内容的差异作为变更记录
+	 */
+	public synchronized void reload(Collection<LinkModel> all) {
+		Set<LinkModel> target = new HashSet<LinkModel>(all);
+		for (Set<LinkModel> out : new ArrayList<Set<LinkModel>>(adjacency.values())) {
+			for (LinkModel l : new ArrayList<LinkModel>(out)) {
+				if (!target.contains(l))
+					remove(l);
+			}
+		}
+		for (LinkModel l : target) {
+			add(l);
+		}
+	}
+
+	private synchronized void add(LinkModel l) {
+		Set<LinkModel> out = adjacency.get(l.getSrc());
+		if (out == null) {
+			out = new HashSet<LinkModel>();
+			adjacency.put(l.getSrc(), out);
+		}
+		if (out.add(l))
+			record(true, l);
+	}
+
+	private synchronized void remove(LinkModel l) {
+		Set<LinkModel> out = adjacency.get(l.getSrc());
+		if (out != null && out.remove(l)) {
+			if (out.isEmpty())
+				adjacency.remove(l.getSrc());
+			record(false, l);
+		}
+	}
+
+	private synchronized void removeAll(String src) {
+		Set<LinkModel> out = adjacency.get(src);
+		if (out != null) {
+			for (LinkModel l : new ArrayList<LinkModel>(out))
+				remove(l);
+		}
+	}
+
+	private void record(boolean added, LinkModel l) {
+		changes.addLast(new LinkChange(++version, added, l));
+		if (changes.size() > MAX_CHANGES)
+			changes.removeFirst();
+	}
+
+	private synchronized void refresh() {
+		if (snapshotVersion == version)
+			return;
+		ImmutableMap.Builder<String, Set<LinkModel>> m = ImmutableMap.builder();
+		ImmutableSet.Builder<LinkModel> all = ImmutableSet.builder();
+		Set<String> ports = new HashSet<String>();
+		for (Map.Entry<String, Set<LinkModel>> e : adjacency.entrySet()) {
+			m.put(e.getKey(), ImmutableSet.copyOf(e.getValue()));
+			all.addAll(e.getValue());
+			for (LinkModel l : e.getValue()) {
+				ports.add(l.getSrc() + ":" + l.getSrcPort());
+				ports.add(l.getDst() + ":" + l.getDstPort());
+			}
+		}
+		snapshot = m.build();
+		links = all.build();
+		linkPorts = ImmutableSet.copyOf(ports);
+		snapshotVersion = version;
+	}
+
+	@Override
+	public void entryAdded(EntryEvent<String, LinkModel> event) {
+		if (event.getValue() != null)
+			add(event.getValue());
+	}
+
+	@Override
+	public void entryRemoved(EntryEvent<String, LinkModel> event) {
+		LinkModel l = event.getValue() != null ? event.getValue() : event.getOldValue();
+		if (l != null)
+			remove(l);
+		else
+			removeAll(event.getKey());// 整个key被移除
+	}
+
+	@Override
+	public void mapCleared(MapEvent event) {
+		reload(Collections.<LinkModel>emptySet());
+	}
+}
@@ -2,9 +2,11 @@ package net.dsc.cluster;
 
 public class HazelcastTableNameConstant {
 	public static final String CONTROLLER_MAP_NAME="controllers";
-	public static final String CONTROLLER_SWITCH_MULITMAP_NAME="controller_switch";
+	public static final String SWITCH_OWNERSHIP_MAP_NAME="switch_ownership";
 	public static final String CONTROLLER_LOAD_MAP_NAME="controller_load";
-	public static final String MASTER_MAP="master_map";
 	public static final String SWITCHS_MAP_NAME="switchs";
 	public static final String SWITCHS_LINKS_MULITMAP_NAME="switchlinks";
+	public static final String BACKUP_MASTER_MAP_NAME="backup_master";
+	public static final String CONTROLLER_TRAFFIC_MAP_NAME="controller_traffic";
+	public static final String HOST_LOCATION_MAP_NAME="host_location";
 }
@@ -0,0 +1,174 @@
+package net.dsc.cluster;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.dsc.cluster.model.HostLocationModel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.EntryAdapter;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.MapEvent;
+
+/**
+ * 集群共享的主机位置表
+ * <p>
+ * MAC+VLAN->(交换机, 端口, 控制器)保存在host_location表中，该表在hazelcast.xml中
+ * 配置了近缓存和TTL。学习到的位置先写入本地待写表，同一主机在一个周期内的多次学习
+ * 合并为一次，周期性地用一次putAll批量写入；位置不变的主机只在接近TTL时重新写入。
+ * 作为host_location的条目监听者，其他控制器改写或条目被移除时清除本控制器的写入记录，
+ * 主机移回本控制器的交换机时立即重新写入。
+ */
+public class HostLocationStore extends EntryAdapter<String, HostLocationModel> implements Runnable {
+	private static final Logger log = LoggerFactory.getLogger(HostLocationStore.class);
+
+	/** 批量写入周期 */
+	public static final long FLUSH_INTERVAL_MS = 100;
+	/** 与hazelcast.xml中host_location的time-to-live-seconds一致 */
+	public static final long HOST_TTL_MS = 300 * 1000;
+	/** 位置不变时重新写入以延长TTL的间隔 */
+	public static final long REFRESH_MS = HOST_TTL_MS / 3;
+	/** 未知主机的查询结果缓存时间，近缓存不缓存未命中 */
+	public static final long MISS_TTL_MS = 1000;
+	/** 最多缓存的未知主机数 */
+	public static final int MAX_MISSES = 10000;
+
+	private final IMap<String, HostLocationModel> hosts;
+	private final String controllerId;
+	// 待写入的位置，同一主机只保留最新一次
+	private final ConcurrentMap<String, HostLocationModel> pending = new ConcurrentHashMap<String, HostLocationModel>();
+	// 本控制器最近写入的位置，用于跳过未变化的学习
+	private final ConcurrentMap<String, HostLocationModel> written = new ConcurrentHashMap<String, HostLocationModel>();
+	// 未知主机->未命中缓存的过期时间
+	private final ConcurrentMap<String, Long> misses = new ConcurrentHashMap<String, Long>();
+	// 只在刷新线程中访问
+	private long lastPrune;
+
+	public HostLocationStore(IMap<String, HostLocationModel> hosts, String controllerId) {
+		this.hosts = hosts;
+		this.controllerId = controllerId;
+	}
+
+	public void startUp(ScheduledExecutorService ses) {
+		ses.scheduleWithFixedDelay(this, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 记录在本控制器的交换机边缘端口上学习到的主机，不阻塞
+	 */
+	public void learn(String mac, short vlan, String dpid, int port) {
+		long now = System.currentTimeMillis();
+		HostLocationModel h = new HostLocationModel(mac, vlan, dpid, port, controllerId, now);
+		String key = h.getKey();
+		HostLocationModel last = written.get(key);
+		if (h.sameLocation(last) && now - last.getTimestamp() < REFRESH_MS)
+			return;
+		misses.remove(key);
+		pending.put(key, h);
+	}
+
+	/**
+	 * @return 主机位置，未知时返回null；命中近缓存或MISS_TTL_MS内查询过的未知主机不产生远程调用
+	 */
+	public HostLocationModel lookup(String mac, short vlan) {
+		String key = HostLocationModel.key(mac, vlan);
+		Long expires = misses.get(key);
+		long now = System.currentTimeMillis();
+		if (expires != null) {
+			if (now < expires)
+				return null;
+			misses.remove(key, expires);
+		}
+		HostLocationModel h = hosts.get(key);
+		if (h == null && misses.size() < MAX_MISSES)
+			misses.put(key, now + MISS_TTL_MS);
+		return h;
+	}
+
+	@Override
+	public void run() {
+		try {
+			flush();
+		} catch (Exception e) {
+			log.warn("failed to flush host locations", e);
+		}
+	}
+
+	private void pruneMisses() {
+		if (misses.isEmpty())
+			return;
+		long now = System.currentTimeMillis();
+		for (Iterator<Long> i = misses.values().iterator(); i.hasNext();) {
+			if (i.next() <= now)
+				i.remove();
+		}
+	}
+
+	/**
+	 * 把待写入的位置一次批量写入
+	 */
+	public void flush() {
+		pruneMisses();
+		if (pending.isEmpty())
+			return;
+		Map<String, HostLocationModel> batch = new HashMap<String, HostLocationModel>();
+		for (Map.Entry<String, HostLocationModel> e : pending.entrySet()) {
+			// 只移除已取出的值，期间新学习到的位置留到下一周期
+			if (pending.remove(e.getKey(), e.getValue()))
+				batch.put(e.getKey(), e.getValue());
+		}
+		hosts.putAll(batch);
+		written.putAll(batch);
+
+		long now = System.currentTimeMillis();
+		if (now - lastPrune >= REFRESH_MS) {
+			lastPrune = now;
+			for (Iterator<HostLocationModel> i = written.values().iterator(); i.hasNext();) {
+				if (i.next().getTimestamp() < now - HOST_TTL_MS)
+					i.remove();
+			}
+		}
+	}
+
+	/**
+	 * 其他控制器写入的位置覆盖了本控制器的记录，未命中缓存也已过时
+	 */
+	private void updated(String key, HostLocationModel h) {
+		misses.remove(key);
+		if (h == null || !controllerId.equals(h.getControllerId()))
+			written.remove(key);
+	}
+
+	@Override
+	public void entryAdded(EntryEvent<String, HostLocationModel> event) {
+		updated(event.getKey(), event.getValue());
+	}
+
+	@Override
+	public void entryUpdated(EntryEvent<String, HostLocationModel> event) {
+		updated(event.getKey(), event.getValue());
+	}
+
+	@Override
+	public void entryRemoved(EntryEvent<String, HostLocationModel> event) {
+		written.remove(event.getKey());
+	}
+
+	@Override
+	public void entryEvicted(EntryEvent<String, HostLocationModel> event) {
+		written.remove(event.getKey());
+	}
+
+	@Override
+	public void mapCleared(MapEvent event) {
+		written.clear();
+	}
+}
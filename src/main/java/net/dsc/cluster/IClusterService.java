@@ -2,40 +2,54 @@ package net.dsc.cluster;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.hazelcast.core.IMap;
 import com.hazelcast.core.MultiMap;
 
 import net.dsc.cluster.model.ControllerModel;
+import net.dsc.cluster.model.ControllerTrafficModel;
 import net.dsc.cluster.model.LinkModel;
-import net.dsc.cluster.model.SwitchConnectModel;
 import net.dsc.cluster.model.SwitchModel;
 import net.floodlightcontroller.core.module.IFloodlightService;
 
 public interface  IClusterService extends IFloodlightService{
 	
-	//控制器<->交换机映射
+	//控制器<->交换机映射，按dpid存储，查询均读取本地索引
 	public  void putControllerMappingSwitch(ControllerModel c,String dpid,String role);
-	public void removeControllerMappingSwitch(ControllerModel c, String dpid,String role);
-	public MultiMap<ControllerModel, SwitchConnectModel> getControllerMappingSwitch();
+	public void removeControllerMappingSwitch(ControllerModel c, String dpid);
+	//controllerId->角色
+	public Map<String, String> getSwitchRoles(String dpid);
+	public Set<String> getControllerSwitches(String controllerId);
+	public Set<String> getAllMappedSwitches();
 	public boolean isConnected(String dpid,String uuid);
+	//dpid->已连接的控制器id集合，一次遍历得到
+	public Map<String, Set<String>> getSwitchConnections();
 	//控制器集合
 	public void addController(ControllerModel c);
 	public void removeController(ControllerModel c);
 	public IMap<String, ControllerModel> getControllers();
 	
 	//master switch dpid<->controllerId映射 
-	//Master集合
-	public void putMasterMap(String dpid);
-    public void removeMasterMap(String dpid);
 	public Map<String, String> getMasterMap();
 	public Map<String, String> getMasterMapFromCS();
 	//控制器负载集合
 	public void ControllerLoadIncrease(String controllerId,int num);
 	public void ControllerLoadReduce(String controllerId,int num);
 	public void ControllerLoadReset(String controllerId);
+	//一次原子操作把负载设为num，代替Reset后再Increase
+	public void ControllerLoadSet(String controllerId,int num);
 	public List<String> getSortedControllerLoad();
+	//本地维护的controllerId->负载只读快照
+	public Map<String, Integer> getControllerLoadSnapshot();
+	/**
+	 * 由本地视图生成的集群状态快照，状态未变化时返回同一对象
+	 */
+	public ClusterSnapshot getSnapshot();
+	//本地维护的controllerId->流量负载上报
+	public Map<String, ControllerTrafficModel> getTrafficLoad();
 	public IMap<String , Integer> getControllerLoad();
 	
 	//交换机集合
@@ -47,6 +61,34 @@ public interface  IClusterService extends IFloodlightService{
 	public MultiMap<String, LinkModel> getLinks();
 	public void addLink(String dpid,LinkModel link);
 	public void deleteLink(String dpid,LinkModel link);
+	//本地维护的全局链路图
+	public GlobalLinkGraph getLinkGraph();
+	//跨控制器域的最短路径，不可达时返回null
+	public List<InterDomainRouting.RouteHop> getRoute(String src, int srcPort, String dst, int dstPort);
+	//集群共享的主机位置表
+	public HostLocationStore getHostLocations();
 	
 	public void switchRemove(String dpid);
+	
+	/**
+	 * 异步提交一次交换机状态变化的全部集群更新，不阻塞调用线程(如Netty I/O线程)
+	 * @return 全部更新完成时结束，失败时以SwitchRegistrationException结束，其中只包含失败的部分
+	 */
+	public ListenableFuture<Void> registerSwitchAsync(SwitchRegistration registration);
+	
+	public boolean isHashOwnership();
+	/**
+	 * 一致性哈希归属模式下，dpid在哈希环上顺时针第一个属于eligible的控制器
+	 * @param eligible 可选控制器，为null时不限制
+	 * @return 归属控制器；未启用该模式或没有满足条件的控制器时返回null
+	 */
+	public String getHashOwner(String dpid, Set<String> eligible);
+	/**
+	 * @return 故障检测器认为存活的控制器
+	 */
+	public Set<String> getLiveControllers();
+	
+	//故障切换
+	public Map<String, String> getBackupPlan();
+	public Map<String, Map<String, Object>> getFailoverStats();
 }
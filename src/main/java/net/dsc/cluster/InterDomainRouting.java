@@ -0,0 +1,188 @@
+package net.dsc.cluster;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.dsc.cluster.model.LinkModel;
+import net.floodlightcontroller.staticflowentry.StaticFlowEntryPusher;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 跨控制器域的最短路径计算
+ * <p>
+ * 在全局链路图上按跳数做广度优先搜索，不受各控制器TopologyManager只包含本域交换机
+ * 的限制；路径上的每台交换机生成一条静态流表，由其master控制器安装。
+ */
+public final class InterDomainRouting {
+
+	private InterDomainRouting() {
+	}
+
+	/**
+	 * 路径上的一跳
+	 */
+	public static class RouteHop {
+		@JsonProperty("switch")
+		private final String dpid;
+		@JsonProperty("in_port")
+		private final int inPort;
+		@JsonProperty("out_port")
+		private final int outPort;
+
+		public RouteHop(String dpid, int inPort, int outPort) {
+			this.dpid = dpid;
+			this.inPort = inPort;
+			this.outPort = outPort;
+		}
+
+		public String getDpid() {
+			return dpid;
+		}
+
+		public int getInPort() {
+			return inPort;
+		}
+
+		public int getOutPort() {
+			return outPort;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof RouteHop)) return false;
+			RouteHop h = (RouteHop) obj;
+			return dpid.equals(h.dpid) && inPort == h.inPort && outPort == h.outPort;
+		}
+
+		@Override
+		public int hashCode() {
+			return (dpid.hashCode() * 31 + inPort) * 31 + outPort;
+		}
+
+		@Override
+		public String toString() {
+			return "RouteHop [switch=" + dpid + ", in_port=" + inPort + ", out_port=" + outPort + "]";
+		}
+	}
+
+	/**
+	 * 按链路图版本缓存的路径，包括不可达的结果；链路图变化后整体失效
+	 */
+	public static class RouteCache {
+		/** 每个版本最多缓存的路径数，超过后不再加入 */
+		public static final int MAX_ROUTES = 10000;
+		private static final List<RouteHop> NO_ROUTE = Collections.unmodifiableList(new ArrayList<RouteHop>(0));
+
+		private static class Entries {
+			final long version;
+			final ConcurrentMap<String, List<RouteHop>> routes = new ConcurrentHashMap<String, List<RouteHop>>();
+
+			Entries(long version) {
+				this.version = version;
+			}
+		}
+
+		private final GlobalLinkGraph graph;
+		private volatile Entries entries = new Entries(-1);
+
+		public RouteCache(GlobalLinkGraph graph) {
+			this.graph = graph;
+		}
+
+		/**
+		 * @return 同computeRoute，返回的列表不可修改
+		 */
+		public List<RouteHop> getRoute(String src, int srcPort, String dst, int dstPort) {
+			long version = graph.getVersion();
+			Entries e = entries;
+			if (e.version != version) {
+				e = new Entries(version);
+				entries = e;
+			}
+			String key = src + ":" + srcPort + "-" + dst + ":" + dstPort;
+			List<RouteHop> route = e.routes.get(key);
+			if (route == null) {
+				// 快照不早于version，缓存的路径不会比该版本旧
+				List<RouteHop> computed = computeRoute(graph.getAdjacency(), src, srcPort, dst, dstPort);
+				route = computed == null ? NO_ROUTE : Collections.unmodifiableList(computed);
+				if (e.routes.size() < MAX_ROUTES)
+					e.routes.put(key, route);
+			}
+			return route == NO_ROUTE ? null : route;
+		}
+	}
+
+	/**
+	 * 计算从src交换机srcPort端口进入、从dst交换机dstPort端口离开的最短路径
+	 * @param adjacency src dpid->出链路
+	 * @return 按顺序的每一跳，不可达时返回null
+	 */
+	public static List<RouteHop> computeRoute(Map<String, Set<LinkModel>> adjacency,
+			String src, int srcPort, String dst, int dstPort) {
+		// dpid->到达该交换机所用的链路
+		Map<String, LinkModel> via = new HashMap<String, LinkModel>();
+		Set<String> visited = new HashSet<String>();
+		ArrayDeque<String> queue = new ArrayDeque<String>();
+		visited.add(src);
+		queue.add(src);
+		while (!queue.isEmpty() && !visited.contains(dst)) {
+			String current = queue.poll();
+			Set<LinkModel> out = adjacency.get(current);
+			if (out == null)
+				continue;
+			for (LinkModel l : out) {
+				if (l.getSrcPort() == null || l.getDstPort() == null)
+					continue;// 端口未知的链路无法生成流表
+				if (visited.add(l.getDst())) {
+					via.put(l.getDst(), l);
+					queue.add(l.getDst());
+				}
+			}
+		}
+		if (!visited.contains(dst))
+			return null;
+
+		List<RouteHop> hops = new ArrayList<RouteHop>();
+		int outPort = dstPort;
+		String current = dst;
+		while (!current.equals(src)) {
+			LinkModel l = via.get(current);
+			hops.add(new RouteHop(current, l.getDstPort(), outPort));
+			outPort = l.getSrcPort();
+			current = l.getSrc();
+		}
+		hops.add(new RouteHop(src, srcPort, outPort));
+		Collections.reverse(hops);
+		return hops;
+	}
+
+	/**
+	 * 为路径上的每一跳生成静态流表：在模板的匹配字段上加入交换机和入端口，动作为从出端口转发
+	 * @param template 已解析的流表，不含交换机、入端口和动作
+	 * @param name 流表名前缀，第i跳的流表名为name_i
+	 */
+	public static List<Map<String, Object>> toFlowEntries(List<RouteHop> hops,
+			Map<String, Object> template, String name) {
+		List<Map<String, Object>> entries = new ArrayList<Map<String, Object>>(hops.size());
+		for (int i = 0; i < hops.size(); i++) {
+			RouteHop hop = hops.get(i);
+			Map<String, Object> entry = new HashMap<String, Object>(template);
+			entry.put(StaticFlowEntryPusher.COLUMN_NAME, name + "_" + i);
+			entry.put(StaticFlowEntryPusher.COLUMN_SWITCH, hop.getDpid());
+			entry.put(StaticFlowEntryPusher.COLUMN_IN_PORT, String.valueOf(hop.getInPort()));
+			entry.put(StaticFlowEntryPusher.COLUMN_ACTIONS, "output=" + hop.getOutPort());
+			entries.add(entry);
+		}
+		return entries;
+	}
+}
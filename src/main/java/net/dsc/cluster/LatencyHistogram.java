@@ -0,0 +1,91 @@
+package net.dsc.cluster;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 以2的幂次为桶的延迟直方图(单位微秒)，线程安全，记录开销为几次原子操作
+ * Lock-free latency histogram with power-of-two microsecond buckets.
+ * Percentiles are reported as the upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+	private static final int BUCKETS = 32;
+
+	private final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalUs = new AtomicLong();
+	private final AtomicLong maxUs = new AtomicLong();
+
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void record(long duration, TimeUnit unit) {
+		long us = Math.max(0, unit.toMicros(duration));
+		int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(us));
+		buckets.incrementAndGet(bucket);
+		count.incrementAndGet();
+		totalUs.addAndGet(us);
+		long max;
+		while (us > (max = maxUs.get()) && !maxUs.compareAndSet(max, us));
+	}
+
+	/** Records the time elapsed since {@code startNs} (from System.nanoTime()). */
+	public void recordSince(long startNs) {
+		record(System.nanoTime() - startNs, TimeUnit.NANOSECONDS);
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			buckets.set(i, 0);
+		count.set(0);
+		totalUs.set(0);
+		maxUs.set(0);
+	}
+
+	private long percentileUs(long[] snapshot, long n, double p) {
+		long rank = (long) Math.ceil(n * p);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank)
+				return i == 0 ? 0 : 1L << i;
+		}
+		return maxUs.get();
+	}
+
+	/**
+	 * 返回用于REST展示的快照
+	 * @return count, mean/max and p50/p90/p99 in microseconds
+	 */
+	public Map<String, Object> snapshot() {
+		long[] snapshot = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+			n += snapshot[i];
+		}
+		Map<String, Object> m = new LinkedHashMap<String, Object>();
+		m.put("count", n);
+		if (n > 0) {
+			m.put("mean-us", totalUs.get() / n);
+			m.put("p50-us", percentileUs(snapshot, n, 0.50));
+			m.put("p90-us", percentileUs(snapshot, n, 0.90));
+			m.put("p99-us", percentileUs(snapshot, n, 0.99));
+			m.put("max-us", maxUs.get());
+		}
+		return m;
+	}
+}
@@ -0,0 +1,142 @@
+package net.dsc.cluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.dsc.cluster.model.ControllerTrafficModel;
+
+/**
+ * 按流量加权负载计算master迁移方案
+ * <p>
+ * 每台交换机的权重取其当前master上报的packet-in速率(加上基础速率)，控制器负载为
+ * 其master交换机权重之和乘以CPU系数。每一步从负载最高的控制器中选出一次迁移，
+ * 使迁移后两端的较大负载最小，直到最高负载不超过平均值的(1+TOLERANCE)倍或没有
+ * 能降低最高负载的迁移。每台交换机最多迁移一次，因此迁移数量尽可能少。
+ */
+public final class LoadBalancePlanner {
+
+	/** 最高负载与平均负载之差在该比例以内视为已均衡 */
+	public static final double TOLERANCE = 0.1;
+
+	private LoadBalancePlanner() {
+	}
+
+	/**
+	 * 交换机的权重，取其当前master的上报
+	 */
+	public static double switchWeight(Map<String, ControllerTrafficModel> reports,
+			String dpid, String master) {
+		ControllerTrafficModel m = master == null ? null : reports.get(master);
+		return m == null ? ControllerTrafficModel.SWITCH_BASE_RATE : m.getSwitchWeight(dpid);
+	}
+
+	/**
+	 * CPU过载系数，尚未上报的控制器为1
+	 */
+	public static double cpuFactor(Map<String, ControllerTrafficModel> reports, String controllerId) {
+		ControllerTrafficModel m = reports.get(controllerId);
+		return m == null ? 1.0 : m.getCpuFactor();
+	}
+
+	/**
+	 * 各控制器的加权负载，尚未上报的控制器为0
+	 */
+	public static Map<String, Double> weightedLoads(Map<String, ControllerTrafficModel> reports) {
+		Map<String, Double> loads = new HashMap<String, Double>();
+		for (ControllerTrafficModel m : reports.values()) {
+			loads.put(m.getControllerId(), m.getWeightedLoad());
+		}
+		return loads;
+	}
+
+	/**
+	 * @param master dpid->当前master控制器
+	 * @param connected dpid->已连接的控制器
+	 * @param reports controllerId->流量上报
+	 * @param controllers 参与均衡的控制器
+	 * @return dpid->新master控制器，只包含需要迁移的交换机
+	 */
+	public static Map<String, String> plan(Map<String, String> master,
+			Map<String, Set<String>> connected,
+			Map<String, ControllerTrafficModel> reports,
+			Collection<String> controllers) {
+		List<String> ids = new ArrayList<String>(controllers);
+		Collections.sort(ids);
+		Map<String, Double> load = new HashMap<String, Double>();
+		Map<String, List<String>> owned = new HashMap<String, List<String>>();
+		for (String c : ids) {
+			load.put(c, 0.0);
+			owned.put(c, new ArrayList<String>());
+		}
+		Map<String, Double> weight = new HashMap<String, Double>();
+		for (Map.Entry<String, String> e : master.entrySet()) {
+			String c = e.getValue();
+			if (!load.containsKey(c))
+				continue;
+			double w = switchWeight(reports, e.getKey(), c);
+			weight.put(e.getKey(), w);
+			owned.get(c).add(e.getKey());
+			load.put(c, load.get(c) + w * cpuFactor(reports, c));
+		}
+		for (List<String> l : owned.values()) {
+			Collections.sort(l);
+		}
+
+		Map<String, String> moves = new HashMap<String, String>();
+		Set<String> moved = new HashSet<String>();
+		while (!ids.isEmpty()) {
+			double total = 0;
+			String heaviest = null;
+			for (String c : ids) {
+				double l = load.get(c);
+				total += l;
+				if (heaviest == null || l > load.get(heaviest))
+					heaviest = c;
+			}
+			double peak = load.get(heaviest);
+			if (peak <= total / ids.size() * (1 + TOLERANCE))
+				break;
+
+			// 选出使迁移后两端较大负载最小的一次迁移，相同时迁移流量较小的交换机
+			String bestDpid = null;
+			String bestTarget = null;
+			double bestPeak = peak;
+			double bestWeight = 0;
+			for (String dpid : owned.get(heaviest)) {
+				if (moved.contains(dpid) || connected.get(dpid) == null)
+					continue;
+				double w = weight.get(dpid);
+				double from = peak - w * cpuFactor(reports, heaviest);
+				for (String target : ids) {
+					if (target.equals(heaviest) || !connected.get(dpid).contains(target))
+						continue;
+					double to = load.get(target) + w * cpuFactor(reports, target);
+					double newPeak = Math.max(from, to);
+					if (newPeak < bestPeak || (newPeak == bestPeak && bestDpid != null && w < bestWeight)) {
+						bestPeak = newPeak;
+						bestWeight = w;
+						bestDpid = dpid;
+						bestTarget = target;
+					}
+				}
+			}
+			if (bestDpid == null)
+				break;
+
+			double w = weight.get(bestDpid);
+			load.put(heaviest, peak - w * cpuFactor(reports, heaviest));
+			load.put(bestTarget, load.get(bestTarget) + w * cpuFactor(reports, bestTarget));
+			owned.get(heaviest).remove(bestDpid);
+			owned.get(bestTarget).add(bestDpid);
+			moved.add(bestDpid);
+			moves.put(bestDpid, bestTarget);
+		}
+		return moves;
+	}
+}
@@ -0,0 +1,76 @@
+package net.dsc.cluster;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.hazelcast.core.EntryAdapter;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.MapEvent;
+
+/**
+ * 集群表的本地副本，由条目事件维护
+ * Local copy of a cluster map kept up to date by entry events, for readers
+ * such as the REST API that would otherwise iterate the remote map. The
+ * version changes with every update so readers can cache derived views.
+ */
+public class LocalMapView<V> extends EntryAdapter<String, V> {
+
+	private final ConcurrentMap<String, V> entries = new ConcurrentHashMap<String, V>();
+	private final Map<String, V> view = Collections.unmodifiableMap(entries);
+	private volatile long version;
+
+	/**
+	 * @return 只读视图
+	 */
+	public Map<String, V> getEntries() {
+		return view;
+	}
+
+	/**
+	 * @return 每次变化加1
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public synchronized void reload(Map<String, V> all) {
+		entries.keySet().retainAll(all.keySet());
+		entries.putAll(all);
+		version++;
+	}
+
+	private synchronized void update(String key, V value) {
+		if (value == null)
+			entries.remove(key);
+		else
+			entries.put(key, value);
+		version++;
+	}
+
+	@Override
+	public void entryAdded(EntryEvent<String, V> event) {
+		update(event.getKey(), event.getValue());
+	}
+
+	@Override
+	public void entryUpdated(EntryEvent<String, V> event) {
+		update(event.getKey(), event.getValue());
+	}
+
+	@Override
+	public void entryRemoved(EntryEvent<String, V> event) {
+		update(event.getKey(), null);
+	}
+
+	@Override
+	public void entryEvicted(EntryEvent<String, V> event) {
+		update(event.getKey(), null);
+	}
+
+	@Override
+	public void mapCleared(MapEvent event) {
+		reload(Collections.<String, V>emptyMap());
+	}
+}
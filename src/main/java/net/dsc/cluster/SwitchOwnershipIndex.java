@@ -0,0 +1,156 @@
+package net.dsc.cluster;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.dsc.cluster.model.SwitchOwnershipModel;
+
+import com.hazelcast.core.EntryAdapter;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.MapEvent;
+
+/**
+ * switch_ownership的本地索引，由条目事件维护
+ * Local index of switch_ownership kept up to date by entry events:
+ * dpid->controllerId->role, the secondary controllerId->dpids index and
+ * dpid->master. All lookups are local map reads.
+ */
+public class SwitchOwnershipIndex extends EntryAdapter<String, SwitchOwnershipModel> {
+
+	private final ConcurrentMap<String, Map<String, String>> bySwitch = new ConcurrentHashMap<String, Map<String, String>>();
+	private final ConcurrentMap<String, Set<String>> byController = new ConcurrentHashMap<String, Set<String>>();
+	private final ConcurrentMap<String, String> master = new ConcurrentHashMap<String, String>();
+	private final Map<String, String> masterView = Collections.unmodifiableMap(master);
+	private volatile long version;
+
+	/**
+	 * @return 每次变化加1
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return controllerId->role，交换机不存在时为空
+	 */
+	public Map<String, String> getRoles(String dpid) {
+		Map<String, String> roles = bySwitch.get(dpid);
+		return roles == null ? Collections.<String, String>emptyMap() : roles;
+	}
+
+	/**
+	 * @return 控制器已连接的交换机，只读
+	 */
+	public Set<String> getSwitches(String controllerId) {
+		Set<String> dpids = byController.get(controllerId);
+		return dpids == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(dpids);
+	}
+
+	public boolean isConnected(String dpid, String controllerId) {
+		return getRoles(dpid).containsKey(controllerId);
+	}
+
+	/**
+	 * @return dpid->master控制器只读视图
+	 */
+	public Map<String, String> getMasterMap() {
+		return masterView;
+	}
+
+	/**
+	 * @return dpid->controllerId->role只读视图
+	 */
+	public Map<String, Map<String, String>> getAllRoles() {
+		return Collections.<String, Map<String, String>>unmodifiableMap(bySwitch);
+	}
+
+	public Set<String> getAllSwitches() {
+		return Collections.unmodifiableSet(bySwitch.keySet());
+	}
+
+	/**
+	 * @return dpid->已连接的控制器
+	 */
+	public Map<String, Set<String>> getConnections() {
+		Map<String, Set<String>> connected = new HashMap<String, Set<String>>();
+		for (Map.Entry<String, Map<String, String>> e : bySwitch.entrySet()) {
+			connected.put(e.getKey(), new HashSet<String>(e.getValue().keySet()));
+		}
+		return connected;
+	}
+
+	public synchronized void reload(Map<String, SwitchOwnershipModel> all) {
+		for (String dpid : bySwitch.keySet()) {
+			if (!all.containsKey(dpid))
+				update(dpid, null);
+		}
+		for (Map.Entry<String, SwitchOwnershipModel> e : all.entrySet()) {
+			update(e.getKey(), e.getValue());
+		}
+	}
+
+	private synchronized void update(String dpid, SwitchOwnershipModel s) {
+		version++;
+		Map<String, String> old = bySwitch.get(dpid);
+		Map<String, String> roles = s == null ? null
+				: Collections.unmodifiableMap(new HashMap<String, String>(s.getRoles()));
+		if (old != null) {
+			for (String c : old.keySet()) {
+				if (roles == null || !roles.containsKey(c)) {
+					Set<String> dpids = byController.get(c);
+					if (dpids != null && dpids.remove(dpid) && dpids.isEmpty())
+						byController.remove(c);
+				}
+			}
+		}
+		if (roles == null || roles.isEmpty()) {
+			bySwitch.remove(dpid);
+			master.remove(dpid);
+			return;
+		}
+		for (String c : roles.keySet()) {
+			Set<String> dpids = byController.get(c);
+			if (dpids == null) {
+				dpids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+				byController.put(c, dpids);
+			}
+			dpids.add(dpid);
+		}
+		bySwitch.put(dpid, roles);
+		String m = s.getMaster();
+		if (m == null)
+			master.remove(dpid);
+		else
+			master.put(dpid, m);
+	}
+
+	@Override
+	public void entryAdded(EntryEvent<String, SwitchOwnershipModel> event) {
+		update(event.getKey(), event.getValue());
+	}
+
+	@Override
+	public void entryUpdated(EntryEvent<String, SwitchOwnershipModel> event) {
+		update(event.getKey(), event.getValue());
+	}
+
+	@Override
+	public void entryRemoved(EntryEvent<String, SwitchOwnershipModel> event) {
+		update(event.getKey(), null);
+	}
+
+	@Override
+	public void entryEvicted(EntryEvent<String, SwitchOwnershipModel> event) {
+		update(event.getKey(), null);
+	}
+
+	@Override
+	public void mapCleared(MapEvent event) {
+		reload(Collections.<String, SwitchOwnershipModel>emptyMap());
+	}
+}
@@ -0,0 +1,107 @@
+package net.dsc.cluster;
+
+import net.dsc.cluster.model.SwitchModel;
+
+/**
+ * 一次交换机状态变化需要的全部集群更新，由IClusterService.registerSwitchAsync并行提交
+ * <ul>
+ * <li>switchs表：写入交换机信息(首次进入MASTER/SLAVE时)或移除(断开时)</li>
+ * <li>switch_ownership表：记录或移除本控制器的角色</li>
+ * <li>controller_load表：本控制器的master交换机数变化</li>
+ * </ul>
+ */
+public class SwitchRegistration {
+
+	private final String dpid;
+	private final String role;
+	private final int loadDelta;
+	private SwitchModel model;
+	private boolean removeModel;
+	private boolean updateRole = true;
+
+	private SwitchRegistration(String dpid, String role, int loadDelta) {
+		this.dpid = dpid;
+		this.role = role;
+		this.loadDelta = loadDelta;
+	}
+
+	/**
+	 * 本控制器在交换机上的角色变为role
+	 */
+	public static SwitchRegistration role(String dpid, String role, int loadDelta) {
+		return new SwitchRegistration(dpid, role, loadDelta);
+	}
+
+	/**
+	 * 交换机与本控制器断开：移除角色和交换机信息
+	 */
+	public static SwitchRegistration disconnect(String dpid, int loadDelta) {
+		SwitchRegistration r = new SwitchRegistration(dpid, null, loadDelta);
+		r.removeModel = true;
+		return r;
+	}
+
+	/**
+	 * 同时写入交换机信息
+	 */
+	public SwitchRegistration withModel(SwitchModel model) {
+		this.model = model;
+		return this;
+	}
+
+	/**
+	 * 只包含失败部分的登记，用于重试；负载变化保持原值
+	 */
+	public SwitchRegistration remaining(boolean roleFailed, boolean loadFailed, boolean modelFailed) {
+		SwitchRegistration r = new SwitchRegistration(dpid, role, loadFailed ? loadDelta : 0);
+		r.updateRole = updateRole && roleFailed;
+		if (modelFailed) {
+			r.model = model;
+			r.removeModel = removeModel;
+		}
+		return r;
+	}
+
+	/**
+	 * @return 没有需要提交的更新
+	 */
+	public boolean isEmpty() {
+		return !updateRole && loadDelta == 0 && model == null && !removeModel;
+	}
+
+	public String getDpid() {
+		return dpid;
+	}
+
+	/**
+	 * @return 本控制器的角色，为null时移除
+	 */
+	public String getRole() {
+		return role;
+	}
+
+	/**
+	 * @return 是否更新switch_ownership中本控制器的角色
+	 */
+	public boolean isUpdateRole() {
+		return updateRole;
+	}
+
+	public int getLoadDelta() {
+		return loadDelta;
+	}
+
+	public SwitchModel getModel() {
+		return model;
+	}
+
+	public boolean isRemoveModel() {
+		return removeModel;
+	}
+
+	@Override
+	public String toString() {
+		return "SwitchRegistration [dpid=" + dpid + ", role=" + role + ", updateRole=" + updateRole
+				+ ", loadDelta=" + loadDelta + ", model=" + (model != null) + ", removeModel=" + removeModel + "]";
+	}
+}
@@ -0,0 +1,20 @@
+package net.dsc.cluster;
+
+/**
+ * 交换机登记部分失败，getRemaining()只包含失败的部分，已成功的更新不应重复提交
+ */
+public class SwitchRegistrationException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	private final SwitchRegistration remaining;
+
+	public SwitchRegistrationException(SwitchRegistration remaining, Throwable cause) {
+		super("cluster registration failed: " + remaining, cause);
+		this.remaining = remaining;
+	}
+
+	public SwitchRegistration getRemaining() {
+		return remaining;
+	}
+}
@@ -0,0 +1,132 @@
+package net.dsc.cluster;
+
+import static net.dsc.cluster.HazelcastTableNameConstant.CONTROLLER_TRAFFIC_MAP_NAME;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.dsc.cluster.model.ControllerTrafficModel;
+import net.dsc.hazelcast.IHazelcastService;
+import net.dsc.hazelcast.listener.MirrorMapEntryListener;
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.IOFConnection;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.OFConnection;
+import net.floodlightcontroller.core.internal.IOFSwitchService;
+import net.floodlightcontroller.util.LoadMonitor;
+
+import org.projectfloodlight.openflow.protocol.OFControllerRole;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.IMap;
+
+/**
+ * 流量负载上报
+ * <p>
+ * 每个控制器周期性地根据ControllerCounters的packet-in计数、LoadMonitor的CPU负载
+ * 以及自己作为master的各交换机连接的OFConnectionCounters计算实际负载，写入
+ * controller_traffic表；每个控制器通过条目监听在本地保留所有控制器的上报。
+ */
+public class TrafficLoadReporter implements Runnable {
+	private static final Logger log = LoggerFactory.getLogger(TrafficLoadReporter.class);
+
+	/** 上报周期 */
+	public static final long REPORT_INTERVAL_MS = 2000;
+
+	private final IFloodlightProviderService floodlightProvider;
+	private final IHazelcastService hazelcast;
+	private final IOFSwitchService switchService;
+
+	private IMap<String, ControllerTrafficModel> trafficMap;
+	// controllerId->最近一次上报，controller_traffic的本地镜像
+	private final ConcurrentMap<String, ControllerTrafficModel> reports = new ConcurrentHashMap<String, ControllerTrafficModel>();
+
+	// 上一周期的计数，只在上报线程中访问
+	private long lastNs;
+	private long lastPacketIn;
+	private Map<String, Long> lastSwitchPacketIn = new HashMap<String, Long>();
+
+	public TrafficLoadReporter(IFloodlightProviderService floodlightProvider,
+			IHazelcastService hazelcast, IOFSwitchService switchService) {
+		this.floodlightProvider = floodlightProvider;
+		this.hazelcast = hazelcast;
+		this.switchService = switchService;
+	}
+
+	public void init() {
+		trafficMap = hazelcast.getMap(CONTROLLER_TRAFFIC_MAP_NAME);
+		trafficMap.addEntryListener(new MirrorMapEntryListener<String, ControllerTrafficModel>(reports), true);
+		reports.putAll(trafficMap);
+	}
+
+	public void startUp(ScheduledExecutorService ses) {
+		ses.scheduleWithFixedDelay(this, REPORT_INTERVAL_MS, REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void run() {
+		try {
+			report();
+		} catch (Exception e) {
+			log.warn("failed to report traffic load", e);
+		}
+	}
+
+	/**
+	 * 计算本周期的速率并上报
+	 */
+	public void report() {
+		long now = System.nanoTime();
+		long packetIn = floodlightProvider.getPacketInCount();
+		Map<String, Long> switchPacketIn = new HashMap<String, Long>();
+		for (Map.Entry<DatapathId, IOFSwitch> e : switchService.getAllSwitchMap().entrySet()) {
+			if (e.getValue().getControllerRole() != OFControllerRole.ROLE_MASTER)
+				continue;// 只有master收到packet-in
+			long count = 0;
+			for (IOFConnection c : e.getValue().getConnections()) {
+				if (c instanceof OFConnection)
+					count += ((OFConnection) c).getCounters().getReadPacketInCount();
+			}
+			switchPacketIn.put(e.getKey().toString(), count);
+		}
+
+		if (lastNs != 0) {
+			double seconds = (now - lastNs) / 1e9;
+			Map<String, Double> switchRates = new HashMap<String, Double>();
+			for (Map.Entry<String, Long> e : switchPacketIn.entrySet()) {
+				switchRates.put(e.getKey(), rate(lastSwitchPacketIn.get(e.getKey()), e.getValue(), seconds));
+			}
+			LoadMonitor monitor = floodlightProvider.getLoadMonitor();
+			String localId = floodlightProvider.getControllerModel().getControllerId();
+			trafficMap.set(localId, new ControllerTrafficModel(localId, System.currentTimeMillis(),
+					rate(lastPacketIn, packetIn, seconds), monitor.getLoad(),
+					String.valueOf(monitor.getLoadLevel()), switchRates));
+		}
+		lastNs = now;
+		lastPacketIn = packetIn;
+		lastSwitchPacketIn = switchPacketIn;
+	}
+
+	/**
+	 * 计数器在连接重建时会归零，此时以当前值计算
+	 */
+	private static double rate(Long last, long current, double seconds) {
+		long delta = last == null || current < last ? current : current - last;
+		return seconds <= 0 ? 0 : delta / seconds;
+	}
+
+	public Map<String, ControllerTrafficModel> getReports() {
+		return Collections.unmodifiableMap(reports);
+	}
+
+	public void removeController(String controllerId) {
+		trafficMap.delete(controllerId);
+	}
+}
@@ -1,10 +1,15 @@
 package net.dsc.cluster.model;
 
-import java.io.Serializable;
+import java.io.IOException;
 
-public class ControllerModel implements Serializable{
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+public class ControllerModel implements IdentifiedDataSerializable{
 	
-	private static final long serialVersionUID = 1L;
 	private String controllerId;
 	private String controllerIp;
 	
@@ -36,7 +41,7 @@ public class ControllerModel implements Serializable{
 	public boolean equals(Object obj) {
 		if (this == obj) return true;
 		if(null==obj) return false;
-		if(!(obj instanceof SwitchConnectModel)) return false;
+		if(!(obj instanceof ControllerModel)) return false;
 		ControllerModel c=(ControllerModel)obj;
 
 		return c.getControllerId().equals(controllerId)&&c.getControllerIp().equals(controllerIp);
@@ -46,4 +51,26 @@ public class ControllerModel implements Serializable{
 	public int hashCode() {
 		return controllerId.hashCode() +controllerIp.hashCode();
 	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.CONTROLLER_MODEL;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(controllerId);
+		out.writeUTF(controllerIp);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		controllerId = in.readUTF();
+		controllerIp = in.readUTF();
+	}
 }
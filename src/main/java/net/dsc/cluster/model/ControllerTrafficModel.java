@@ -0,0 +1,136 @@
+package net.dsc.cluster.model;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * 控制器周期上报的实际负载：packet-in速率、CPU负载以及每台交换机的packet-in速率
+ */
+public class ControllerTrafficModel implements IdentifiedDataSerializable {
+
+	/** 空闲交换机也按该速率计入负载，使无流量时按交换机数量均衡 */
+	public static final double SWITCH_BASE_RATE = 1.0;
+
+	private String controllerId;
+	private long timestamp;
+	private double packetInRate;
+	private double cpuLoad;
+	private String loadLevel;
+	// dpid->packet-in/s
+	private Map<String, Double> switchRates = new HashMap<String, Double>();
+
+	public ControllerTrafficModel() {}
+
+	public ControllerTrafficModel(String controllerId, long timestamp,
+			double packetInRate, double cpuLoad, String loadLevel,
+			Map<String, Double> switchRates) {
+		this.controllerId = controllerId;
+		this.timestamp = timestamp;
+		this.packetInRate = packetInRate;
+		this.cpuLoad = cpuLoad;
+		this.loadLevel = loadLevel;
+		this.switchRates = switchRates;
+	}
+
+	public String getControllerId() {
+		return controllerId;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public double getPacketInRate() {
+		return packetInRate;
+	}
+
+	public double getCpuLoad() {
+		return cpuLoad;
+	}
+
+	public String getLoadLevel() {
+		return loadLevel;
+	}
+
+	public Map<String, Double> getSwitchRates() {
+		return switchRates;
+	}
+
+	/**
+	 * 交换机的权重：packet-in速率加上基础速率
+	 */
+	public double getSwitchWeight(String dpid) {
+		Double rate = switchRates.get(dpid);
+		return SWITCH_BASE_RATE + (rate == null ? 0 : rate);
+	}
+
+	/**
+	 * CPU过载时放大负载，使过载控制器不再被选为迁移目标
+	 */
+	public double getCpuFactor() {
+		if ("VERYHIGH".equals(loadLevel))
+			return 4.0;
+		if ("HIGH".equals(loadLevel))
+			return 2.0;
+		return 1.0;
+	}
+
+	/**
+	 * 加权负载 = (packet-in速率 + 交换机数 * 基础速率) * CPU系数
+	 */
+	public double getWeightedLoad() {
+		return (packetInRate + switchRates.size() * SWITCH_BASE_RATE) * getCpuFactor();
+	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.CONTROLLER_TRAFFIC_MODEL;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(controllerId);
+		out.writeLong(timestamp);
+		out.writeDouble(packetInRate);
+		out.writeDouble(cpuLoad);
+		out.writeUTF(loadLevel);
+		out.writeInt(switchRates.size());
+		for (Map.Entry<String, Double> e : switchRates.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeDouble(e.getValue());
+		}
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		controllerId = in.readUTF();
+		timestamp = in.readLong();
+		packetInRate = in.readDouble();
+		cpuLoad = in.readDouble();
+		loadLevel = in.readUTF();
+		int size = in.readInt();
+		switchRates = new HashMap<String, Double>(size * 2);
+		for (int i = 0; i < size; i++) {
+			switchRates.put(in.readUTF(), in.readDouble());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ControllerTrafficModel [controllerId=" + controllerId
+				+ ", packetInRate=" + packetInRate + ", cpuLoad=" + cpuLoad
+				+ ", loadLevel=" + loadLevel + ", switches=" + switchRates.size() + "]";
+	}
+}
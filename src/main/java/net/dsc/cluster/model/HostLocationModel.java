@@ -0,0 +1,113 @@
+package net.dsc.cluster.model;
+
+import java.io.IOException;
+
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * 主机位置：MAC+VLAN所在的交换机端口以及学习到它的控制器
+ */
+public class HostLocationModel implements IdentifiedDataSerializable {
+
+	private String mac;
+	private short vlan;
+	private String dpid;
+	private int port;
+	private String controllerId;
+	private long timestamp;
+
+	public HostLocationModel() {}
+
+	public HostLocationModel(String mac, short vlan, String dpid, int port,
+			String controllerId, long timestamp) {
+		this.mac = mac;
+		this.vlan = vlan;
+		this.dpid = dpid;
+		this.port = port;
+		this.controllerId = controllerId;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * host_location表的键
+	 */
+	public static String key(String mac, short vlan) {
+		return mac + "/" + vlan;
+	}
+
+	public String getKey() {
+		return key(mac, vlan);
+	}
+
+	public String getMac() {
+		return mac;
+	}
+
+	public short getVlan() {
+		return vlan;
+	}
+
+	public String getDpid() {
+		return dpid;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public String getControllerId() {
+		return controllerId;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * 位置相同(交换机、端口、控制器)，不比较时间
+	 */
+	public boolean sameLocation(HostLocationModel h) {
+		return h != null && dpid.equals(h.dpid) && port == h.port
+				&& controllerId.equals(h.controllerId);
+	}
+
+	@Override
+	public String toString() {
+		return "HostLocationModel [mac=" + mac + ", vlan=" + vlan + ", dpid=" + dpid
+				+ ", port=" + port + ", controllerId=" + controllerId + "]";
+	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.HOST_LOCATION_MODEL;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(mac);
+		out.writeShort(vlan);
+		out.writeUTF(dpid);
+		out.writeInt(port);
+		out.writeUTF(controllerId);
+		out.writeLong(timestamp);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		mac = in.readUTF();
+		vlan = in.readShort();
+		dpid = in.readUTF();
+		port = in.readInt();
+		controllerId = in.readUTF();
+		timestamp = in.readLong();
+	}
+}
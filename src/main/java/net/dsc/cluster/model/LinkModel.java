@@ -1,15 +1,20 @@
 package net.dsc.cluster.model;
 
-import java.io.Serializable;
+import java.io.IOException;
+
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
 import net.floodlightcontroller.routing.Link;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
 
-public class LinkModel implements Serializable{
+public class LinkModel implements IdentifiedDataSerializable{
 
-	private static final long serialVersionUID = 1L;
     @JsonProperty("src_switch")
 	private String src;
     @JsonProperty("src_port")
@@ -19,6 +24,8 @@ public class LinkModel implements Serializable{
     @JsonProperty("dst_port")
 	private Integer dstPort;
     
+	public LinkModel() {}
+
 	public LinkModel(String src, Integer srcPort, String dst, Integer dstPort) {
 		super();
 		this.src = src;
@@ -74,6 +81,44 @@ public class LinkModel implements Serializable{
         if (getClass() != obj.getClass())
             return false;
         LinkModel other = (LinkModel) obj;
-    	return src.equals(other.getSrc())&&srcPort.equals(other.getSrcPort())&&dst.equals(other.getDst())&&dstPort.equals(other.getDstPort());
+    	return Objects.equal(src, other.getSrc())&&Objects.equal(srcPort, other.getSrcPort())
+    			&&Objects.equal(dst, other.getDst())&&Objects.equal(dstPort, other.getDstPort());
+    }
+
+    @Override
+    public int getFactoryId() {
+        return DSCDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getId() {
+        return DSCDataSerializableFactory.LINK_MODEL;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+    	out.writeUTF(src);
+    	writePort(out, srcPort);
+    	out.writeUTF(dst);
+    	writePort(out, dstPort);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+    	src = in.readUTF();
+    	srcPort = readPort(in);
+    	dst = in.readUTF();
+    	dstPort = readPort(in);
+    }
+
+    // 端口可能为null，先写一个标记
+    private static void writePort(ObjectDataOutput out, Integer port) throws IOException {
+    	out.writeBoolean(port != null);
+    	if (port != null)
+    		out.writeInt(port);
+    }
+
+    private static Integer readPort(ObjectDataInput in) throws IOException {
+    	return in.readBoolean() ? in.readInt() : null;
     }
 }
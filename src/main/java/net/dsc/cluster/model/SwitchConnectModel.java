@@ -1,17 +1,22 @@
 package net.dsc.cluster.model;
 
-import java.io.Serializable;
-import java.util.Date;
+import java.io.IOException;
 
-public class SwitchConnectModel implements Serializable {
+import net.dsc.hazelcast.DSCDataSerializableFactory;
 
-	private static final long serialVersionUID = 1L;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+public class SwitchConnectModel implements IdentifiedDataSerializable {
 
 
 	private String controllerId;
 	private String dpid;
 	private String role;
 	
+	public SwitchConnectModel() {}
+
 	public SwitchConnectModel(String controllerId, String dpid, String role) {
 		super();
 		this.controllerId = controllerId;
@@ -62,4 +67,28 @@ public class SwitchConnectModel implements Serializable {
 	public int hashCode() {
 		return controllerId.hashCode()+dpid.hashCode()+role.hashCode();
 	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.SWITCH_CONNECT_MODEL;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(controllerId);
+		out.writeUTF(dpid);
+		out.writeUTF(role);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		controllerId = in.readUTF();
+		dpid = in.readUTF();
+		role = in.readUTF();
+	}
 }
@@ -1,11 +1,16 @@
 package net.dsc.cluster.model;
 
-import java.io.Serializable;
+import java.io.IOException;
 import java.util.Date;
 
-public class SwitchModel implements Serializable{
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+public class SwitchModel implements IdentifiedDataSerializable{
 
-	private static final long serialVersionUID = 1L;
 	private String dpid;
 	private Date date;
 	private String ip;
@@ -40,6 +45,8 @@ public class SwitchModel implements Serializable{
 		}
 	}
 	
+	public SwitchModel() {}
+
 	public SwitchModel(Builder builder) {
 		this.setDpid(builder.dpid);
 		this.setDate(builder.date);
@@ -72,5 +79,32 @@ public class SwitchModel implements Serializable{
 	public void setIp(String ip) {
 		this.ip = ip;
 	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.SWITCH_MODEL;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(dpid);
+		out.writeLong(date == null ? -1L : date.getTime());
+		out.writeUTF(ip);
+		out.writeUTF(versoin);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		dpid = in.readUTF();
+		long time = in.readLong();
+		date = time < 0 ? null : new Date(time);
+		ip = in.readUTF();
+		versoin = in.readUTF();
+	}
 	
 }
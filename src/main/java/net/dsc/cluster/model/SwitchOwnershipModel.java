@@ -0,0 +1,96 @@
+package net.dsc.cluster.model;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import org.projectfloodlight.openflow.protocol.OFControllerRole;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * switch_ownership表的值：一台交换机上各控制器的连接角色
+ * One entry per dpid holding controllerId->role for every controller
+ * connected to the switch, so a switch's owners are a single key lookup.
+ */
+public class SwitchOwnershipModel implements IdentifiedDataSerializable {
+
+	private static final String ROLE_MASTER = OFControllerRole.ROLE_MASTER.toString();
+
+	private String dpid;
+	// controllerId->role
+	private Map<String, String> roles = new HashMap<String, String>();
+
+	public SwitchOwnershipModel() {}
+
+	public SwitchOwnershipModel(String dpid) {
+		this.dpid = dpid;
+	}
+
+	public String getDpid() {
+		return dpid;
+	}
+
+	public Map<String, String> getRoles() {
+		return roles;
+	}
+
+	public String getRole(String controllerId) {
+		return roles.get(controllerId);
+	}
+
+	/**
+	 * @return 角色为master的控制器，没有则为null
+	 */
+	public String getMaster() {
+		for (Map.Entry<String, String> e : roles.entrySet()) {
+			if (ROLE_MASTER.equals(e.getValue()))
+				return e.getKey();
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return "SwitchOwnershipModel [dpid=" + dpid + ", roles=" + roles + "]";
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof SwitchOwnershipModel)) return false;
+		SwitchOwnershipModel s = (SwitchOwnershipModel) obj;
+		return dpid.equals(s.dpid) && roles.equals(s.roles);
+	}
+
+	@Override
+	public int hashCode() {
+		return dpid.hashCode() * 31 + roles.hashCode();
+	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.SWITCH_OWNERSHIP_MODEL;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(dpid);
+		DSCDataSerializableFactory.writeStringMap(out, roles);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		dpid = in.readUTF();
+		roles = DSCDataSerializableFactory.readStringMap(in, new HashMap<String, String>());
+	}
+}
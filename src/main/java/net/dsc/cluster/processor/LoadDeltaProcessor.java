@@ -0,0 +1,68 @@
+package net.dsc.cluster.processor;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * 在持有分区的成员上原子地增减控制器负载，结果不小于0
+ * Adds a delta to a controller_load entry on the partition owner, so the
+ * read-modify-write is atomic cluster-wide and costs one round trip.
+ * The same delta is replayed on the backups.
+ */
+public class LoadDeltaProcessor implements EntryProcessor<String, Integer>,
+		EntryBackupProcessor<String, Integer>, IdentifiedDataSerializable {
+
+	private int delta;
+
+	public LoadDeltaProcessor() {}
+
+	public LoadDeltaProcessor(int delta) {
+		this.delta = delta;
+	}
+
+	@Override
+	public Object process(Entry<String, Integer> entry) {
+		Integer i = entry.getValue();
+		int n = (i == null ? 0 : i) + delta;
+		entry.setValue(n < 0 ? 0 : n);
+		return entry.getValue();
+	}
+
+	@Override
+	public void processBackup(Entry<String, Integer> entry) {
+		process(entry);
+	}
+
+	@Override
+	public EntryBackupProcessor<String, Integer> getBackupProcessor() {
+		return this;
+	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.LOAD_DELTA_PROCESSOR;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeInt(delta);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		delta = in.readInt();
+	}
+}
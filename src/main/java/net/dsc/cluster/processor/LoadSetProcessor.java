@@ -0,0 +1,66 @@
+package net.dsc.cluster.processor;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * 在持有分区的成员上把控制器负载设为给定值，结果不小于0
+ * Replaces a controller_load entry in one step on the partition owner, so a
+ * concurrent LoadDeltaProcessor is applied either before or after the reset,
+ * never between a reset and the following increase.
+ */
+public class LoadSetProcessor implements EntryProcessor<String, Integer>,
+		EntryBackupProcessor<String, Integer>, IdentifiedDataSerializable {
+
+	private int value;
+
+	public LoadSetProcessor() {}
+
+	public LoadSetProcessor(int value) {
+		this.value = value;
+	}
+
+	@Override
+	public Object process(Entry<String, Integer> entry) {
+		entry.setValue(value < 0 ? 0 : value);
+		return entry.getValue();
+	}
+
+	@Override
+	public void processBackup(Entry<String, Integer> entry) {
+		process(entry);
+	}
+
+	@Override
+	public EntryBackupProcessor<String, Integer> getBackupProcessor() {
+		return this;
+	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.LOAD_SET_PROCESSOR;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeInt(value);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		value = in.readInt();
+	}
+}
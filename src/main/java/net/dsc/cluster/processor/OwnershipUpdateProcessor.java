@@ -0,0 +1,96 @@
+package net.dsc.cluster.processor;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.dsc.cluster.model.SwitchOwnershipModel;
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import org.projectfloodlight.openflow.protocol.OFControllerRole;
+
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * 在持有分区的成员上原子地设置或移除一个控制器对交换机的连接角色
+ * Sets (role != null) or removes (role == null) one controller's role in a
+ * switch_ownership entry on the partition owner. The entry is removed once
+ * no controller is connected. Setting ROLE_MASTER demotes any other master
+ * to ROLE_SLAVE. The same update is replayed on the backups.
+ */
+public class OwnershipUpdateProcessor implements EntryProcessor<String, SwitchOwnershipModel>,
+		EntryBackupProcessor<String, SwitchOwnershipModel>, IdentifiedDataSerializable {
+
+	private static final String ROLE_MASTER = OFControllerRole.ROLE_MASTER.toString();
+	private static final String ROLE_SLAVE = OFControllerRole.ROLE_SLAVE.toString();
+
+	private String controllerId;
+	private String role;
+
+	public OwnershipUpdateProcessor() {}
+
+	public OwnershipUpdateProcessor(String controllerId, String role) {
+		this.controllerId = controllerId;
+		this.role = role;
+	}
+
+	@Override
+	public Object process(Entry<String, SwitchOwnershipModel> entry) {
+		SwitchOwnershipModel s = entry.getValue();
+		if (s == null) {
+			if (role == null)
+				return null;
+			s = new SwitchOwnershipModel(entry.getKey());
+		}
+		if (role == null) {
+			if (s.getRoles().remove(controllerId) == null)
+				return null;// 没有变化，不产生事件
+		} else if (role.equals(s.getRoles().put(controllerId, role))) {
+			return null;
+		} else if (ROLE_MASTER.equals(role)) {
+			// 新master的角色先于原master的降级写入时，原master记为SLAVE，保证每个交换机只有一个master
+			for (Map.Entry<String, String> r : s.getRoles().entrySet()) {
+				if (!r.getKey().equals(controllerId) && ROLE_MASTER.equals(r.getValue()))
+					r.setValue(ROLE_SLAVE);
+			}
+		}
+		entry.setValue(s.getRoles().isEmpty() ? null : s);
+		return null;
+	}
+
+	@Override
+	public void processBackup(Entry<String, SwitchOwnershipModel> entry) {
+		process(entry);
+	}
+
+	@Override
+	public EntryBackupProcessor<String, SwitchOwnershipModel> getBackupProcessor() {
+		return this;
+	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.OWNERSHIP_UPDATE_PROCESSOR;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(controllerId);
+		out.writeUTF(role);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		controllerId = in.readUTF();
+		role = in.readUTF();
+	}
+}
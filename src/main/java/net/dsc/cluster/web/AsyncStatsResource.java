@@ -0,0 +1,25 @@
+package net.dsc.cluster.web;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.dsc.hazelcast.AsyncHazelcastOperations;
+import net.dsc.hazelcast.IHazelcastService;
+
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+/**
+ * hazelcast异步操作统计：当前未完成数及按数据结构的延迟分布、失败数、拒绝数
+ */
+public class AsyncStatsResource extends ServerResource{
+	@Get("json")
+	public Map<String, Object> retrieve(){
+        IHazelcastService hazelcastService = (IHazelcastService) getContext().getAttributes().get(IHazelcastService.class.getCanonicalName());
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("in-flight", hazelcastService.getAsyncInFlight());
+        result.put("max-in-flight", AsyncHazelcastOperations.MAX_IN_FLIGHT);
+        result.put("structures", hazelcastService.getAsyncStats());
+        return result;
+	}
+}
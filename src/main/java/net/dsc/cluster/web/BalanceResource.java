@@ -1,63 +1,156 @@
 package net.dsc.cluster.web;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import net.dsc.cluster.IClusterService;
+import net.dsc.cluster.LoadBalancePlanner;
+import net.dsc.cluster.model.ControllerTrafficModel;
+import net.dsc.hazelcast.HazelcastService;
 import net.dsc.hazelcast.IHazelcastService;
-import net.dsc.hazelcast.message.RoleMessage;
 
+import org.projectfloodlight.openflow.protocol.OFControllerRole;
 import org.restlet.resource.Get;
 import org.restlet.resource.ServerResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Lists;
-import com.hazelcast.core.MultiMap;
+import com.google.common.util.concurrent.ListenableFuture;
 
+/**
+ * 负载均衡：按各控制器上报的流量加权负载计算迁移方案(见LoadBalancePlanner)，
+ * 只迁移使packet-in负载趋于均衡所需的最少交换机。
+ * 先并行向各新master控制器发送一条批量MASTER请求，再并行向各原master
+ * 控制器发送一条批量SLAVE请求，每个阶段每个控制器只需一次往返；
+ * 先升级后降级，迁移期间交换机始终有master；只降级升级成功的交换机，其余在结果中标记为SKIPPED。
+ * 各控制器经握手状态机切换角色，master表(switch_ownership)和负载计数随集群登记更新，
+ * 结果中的角色是登记完成后达到的角色；迁移前按master表重置负载计数，纠正累积的偏差。
+ */
 public class BalanceResource extends ServerResource{
 	private static final Logger log = LoggerFactory
 			.getLogger(BalanceResource.class);
+	private static final String MASTER = "MASTER";
+	private static final String SLAVE = "SLAVE";
+	private static final String SKIPPED = "SKIPPED: promotion failed";
+
     @Get("json")
-    public String balance(){
+    public Map<String, Object> balance(){
         IClusterService clusterService = (IClusterService) getContext().getAttributes().get(IClusterService.class.getCanonicalName());
         IHazelcastService hazelcastService=(IHazelcastService) getContext().getAttributes().get(IHazelcastService.class.getCanonicalName());
-        
-        Map<String, String> master=clusterService.getMasterMapFromCS();
-        List<String> dpidList=Lists.newArrayList(master.keySet());
-        
-        log.info(dpidList.toString());
-        List<String> uuidList= Lists.newArrayList(clusterService.getControllers().keySet());
-        for(String u:uuidList){
-        	clusterService.ControllerLoadReset(u);
+        if (clusterService.isHashOwnership()) {
+        	// 哈希环决定master，手动迁移会被周期性检查移回
+        	Map<String, Object> response = new HashMap<String, Object>();
+        	response.put("moved", 0);
+        	response.put("status", "ERROR: master placement follows the consistent-hash ring");
+        	return response;
         }
-        
-        for(Map.Entry<String, String> m:master.entrySet()){//将所有主控变为从控
-       		hazelcastService.publishRoleMessage(new RoleMessage("SLAVE", m.getKey()),m.getValue().toString());	
-           try {
-			Thread.sleep(150);
-		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+
+        Map<String, String> master = new HashMap<String, String>(clusterService.getMasterMap());
+        Map<String, ControllerTrafficModel> reports = clusterService.getTrafficLoad();
+        Map<String, String> moves = LoadBalancePlanner.plan(master,
+        		clusterService.getSwitchConnections(), reports,
+        		clusterService.getControllers().keySet());
+
+        // 按控制器分组需要降级和升级的交换机
+        Map<String, Map<String, String>> demote = new HashMap<String, Map<String, String>>();
+        Map<String, Map<String, String>> promote = new HashMap<String, Map<String, String>>();
+        Map<String, Map<String, Object>> results = new HashMap<String, Map<String, Object>>();
+        for (Map.Entry<String, String> move : moves.entrySet()) {
+        	String dpid = move.getKey();
+        	String from = master.get(dpid);
+        	String to = move.getValue();
+        	batchFor(demote, from).put(dpid, SLAVE);
+        	batchFor(promote, to).put(dpid, MASTER);
+        	Map<String, Object> r = new HashMap<String, Object>();
+        	r.put("from", from);
+        	r.put("to", to);
+        	r.put("weight", LoadBalancePlanner.switchWeight(reports, dpid, from));
+        	results.put(dpid, r);
+        	log.info("change master {}: {}-->{}", new Object[] { dpid, from, to });
         }
-        log.info(clusterService.getControllerMappingSwitch().entrySet().toString());
-        for(int i=0;i<dpidList.size();i++){
-        	int length=uuidList.size();
-        	for(int index=0;index<length;index++){
-        		log.info(dpidList.get(i)+"---------"+uuidList.get(index));
-        		System.out.println(clusterService.isConnected(dpidList.get(i), uuidList.get(index)));
-        		if(clusterService.isConnected(dpidList.get(i), uuidList.get(index))){
-        			hazelcastService.publishRoleMessage(new RoleMessage("MASTER", dpidList.get(i)), uuidList.get(index));
-					log.info("change master {}<-->{}", uuidList.get(index),  dpidList.get(i));
-        			String temp=uuidList.get(index);
-        			uuidList.remove(index);
-        			uuidList.add(temp);
-        			break;
-        		}
-        	}
+
+        if (!moves.isEmpty())
+        	resetControllerLoad(clusterService, master);
+        Map<String, String> masterResults = sendBatches(hazelcastService, promote);
+        // 只降级已成功升级的交换机，升级失败的保留原master
+        for (Map<String, String> batch : demote.values()) {
+        	batch.keySet().retainAll(promoted(masterResults));
         }
-        return "balance begin";
+        Map<String, String> slaveResults = sendBatches(hazelcastService, demote);
+        for (Map.Entry<String, Map<String, Object>> e : results.entrySet()) {
+        	String slave = slaveResults.get(e.getKey());
+        	e.getValue().put("slave", slave == null ? SKIPPED : slave);
+        	e.getValue().put("master", masterResults.get(e.getKey()));
+        }
+
+        Map<String, Object> response = new HashMap<String, Object>();
+        response.put("moved", results.size());
+        response.put("switches", results);
+        response.put("loads", LoadBalancePlanner.weightedLoads(reports));
+        return response;
+    }
+
+    /**
+     * 把各控制器的负载计数重置为其在master表中的交换机数
+     */
+    private static void resetControllerLoad(IClusterService clusterService, Map<String, String> master) {
+    	Map<String, Integer> mastered = new HashMap<String, Integer>();
+    	for (String controllerId : master.values()) {
+    		Integer n = mastered.get(controllerId);
+    		mastered.put(controllerId, n == null ? 1 : n + 1);
+    	}
+    	for (String controllerId : clusterService.getControllers().keySet()) {
+    		Integer n = mastered.get(controllerId);
+    		clusterService.ControllerLoadSet(controllerId, n == null ? 0 : n);
+    	}
+    }
+
+    private static Set<String> promoted(Map<String, String> masterResults) {
+    	Set<String> dpids = new HashSet<String>();
+    	for (Map.Entry<String, String> e : masterResults.entrySet()) {
+    		if (OFControllerRole.ROLE_MASTER.toString().equals(e.getValue()))
+    			dpids.add(e.getKey());
+    		else
+    			log.warn("promotion of {} failed, keeping the old master: {}", e.getKey(), e.getValue());
+    	}
+    	return dpids;
+    }
+
+    private static Map<String, String> batchFor(Map<String, Map<String, String>> batches, String controllerId) {
+    	Map<String, String> batch = batches.get(controllerId);
+    	if (batch == null) {
+    		batch = new HashMap<String, String>();
+    		batches.put(controllerId, batch);
+    	}
+    	return batch;
+    }
+
+    /**
+     * 并行发送所有控制器的批量请求，并等待各控制器的应答
+     */
+    private static Map<String, String> sendBatches(IHazelcastService hazelcastService,
+    		Map<String, Map<String, String>> batches) {
+    	List<String> controllerIds = new ArrayList<String>(batches.keySet());
+    	List<ListenableFuture<Map<String, String>>> futures = new ArrayList<ListenableFuture<Map<String, String>>>();
+    	for (String controllerId : controllerIds) {
+    		futures.add(hazelcastService.requestRoleBatch(batches.get(controllerId), controllerId));
+    	}
+    	Map<String, String> results = new HashMap<String, String>();
+    	for (int i = 0; i < futures.size(); i++) {
+    		try {
+    			results.putAll(futures.get(i).get(HazelcastService.ROLE_BATCH_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    		} catch (Exception e) {
+    			log.warn("role batch to {} failed: {}", controllerIds.get(i), e.toString());
+    			for (String dpid : batches.get(controllerIds.get(i)).keySet()) {
+    				results.put(dpid, "ERROR: " + e.toString());
+    			}
+    		}
+    	}
+    	return results;
     }
 }
@@ -11,6 +11,10 @@ public class ClusterWebRoutable implements RestletRoutable{
 
 	public  static final String STR_SWITCH_ID = "switchId";
 	public static final String STR_ALL = "all";
+	public static final String STR_SRC_SWITCH = "srcSwitch";
+	public static final String STR_SRC_PORT = "srcPort";
+	public static final String STR_DST_SWITCH = "dstSwitch";
+	public static final String STR_DST_PORT = "dstPort";
 	@Override
 	public Restlet getRestlet(Context context) {
 		Router router = new Router(context);
@@ -19,9 +23,16 @@ public class ClusterWebRoutable implements RestletRoutable{
         router.attach("/balance/json", BalanceResource.class);
         router.attach("/switches/{" + STR_SWITCH_ID + "}/role/json", SwitchesRoleResource.class);
         router.attach("/entrypusher/json",FlowEntryPusherResource.class);
+        router.attach("/entrypusher/batch/json",FlowEntryBatchPusherResource.class);
         router.attach("/links/json",LinksResource.class);
+        router.attach("/links/changes/json",LinkChangesResource.class);
         router.attach("/master/json",MasterResource.class);
         router.attach("/shutdown/{controllerId}/json",ShutDownResource.class);
+        router.attach("/failover/json",FailoverResource.class);
+        router.attach("/async/json",AsyncStatsResource.class);
+        router.attach("/commands/json",CommandStatsResource.class);
+        router.attach("/route/{" + STR_SRC_SWITCH + "}/{" + STR_SRC_PORT + "}/{"
+        		+ STR_DST_SWITCH + "}/{" + STR_DST_PORT + "}/json", RouteResource.class);
 		return router;
 	}
 
@@ -0,0 +1,19 @@
+package net.dsc.cluster.web;
+
+import java.util.Map;
+
+import net.dsc.hazelcast.IHazelcastService;
+
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+/**
+ * 命令通道统计：发往各控制器的积压、已发送、拒绝、重试数及本控制器的处理数
+ */
+public class CommandStatsResource extends ServerResource{
+	@Get("json")
+	public Map<String, Object> retrieve(){
+        IHazelcastService hazelcastService = (IHazelcastService) getContext().getAttributes().get(IHazelcastService.class.getCanonicalName());
+        return hazelcastService.getCommandStats();
+	}
+}
@@ -1,15 +1,18 @@
 package net.dsc.cluster.web;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
-import net.dsc.cluster.IClusterService;
+import net.dsc.cluster.ClusterSnapshot;
 import net.dsc.cluster.model.ControllerModel;
 
+import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
-import org.restlet.resource.ServerResource;
 
-public class ControllersResource extends ServerResource{
+/**
+ * 控制器列表及负载，由本地快照提供，按控制器id排序
+ */
+public class ControllersResource extends SnapshotResource{
     public static class ControllersJsonSerializerWrapper {
         private final String controllerId;
         private final String controllerIp;
@@ -37,14 +40,16 @@ public class ControllersResource extends ServerResource{
     }
 
     @Get("json")
-    public Set<ControllersJsonSerializerWrapper> retrieve(){
-        IClusterService clusterService = (IClusterService) getContext().getAttributes().get(IClusterService.class.getCanonicalName());
-        
-        Set<ControllersJsonSerializerWrapper> controllersSets = new HashSet<ControllersJsonSerializerWrapper>();
-        for(ControllerModel  c:clusterService.getControllers().values()){
-        	controllersSets.add(new ControllersJsonSerializerWrapper(c.getControllerId(),c.getControllerIp(),clusterService.getControllerLoad().get(c.getControllerId())));	
+    public Representation retrieve(){
+        if (isNotModified())
+            return null;
+        ClusterSnapshot snapshot = getSnapshot();
+        List<ControllersJsonSerializerWrapper> controllers = new ArrayList<ControllersJsonSerializerWrapper>();
+        for(ControllerModel c:snapshot.getControllers().values()){
+        	controllers.add(new ControllersJsonSerializerWrapper(c.getControllerId(),c.getControllerIp(),snapshot.getLoads().get(c.getControllerId())));
         }
-        return controllersSets;
+        List<ControllersJsonSerializerWrapper> page = page(controllers);
+        return page == null ? error("invalid offset or limit") : tagged(page);
     }
 
 }
@@ -0,0 +1,23 @@
+package net.dsc.cluster.web;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.dsc.cluster.IClusterService;
+
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+/**
+ * 故障切换耗时统计及当前备份master计划
+ */
+public class FailoverResource extends ServerResource{
+	@Get("json")
+	public Map<String, Object> retrieve(){
+        IClusterService clusterService = (IClusterService) getContext().getAttributes().get(IClusterService.class.getCanonicalName());
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("stats", clusterService.getFailoverStats());
+        result.put("backup", clusterService.getBackupPlan());
+        return result;
+	}
+}
@@ -0,0 +1,145 @@
+package net.dsc.cluster.web;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.dsc.cluster.IClusterService;
+import net.dsc.hazelcast.HazelcastService;
+import net.dsc.hazelcast.IHazelcastService;
+import net.floodlightcontroller.staticflowentry.StaticFlowEntryPusher;
+import net.floodlightcontroller.storage.IStorageSourceService;
+
+import org.restlet.resource.Post;
+import org.restlet.resource.ServerResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * 批量下发流表：请求体为流表JSON数组。
+ * 在本节点一次性解析和校验所有流表，按交换机的master控制器分组，
+ * 本地master的流表一次写入存储，其他控制器每个只发送一条批量消息。
+ * 返回每条流表(按名称)的下发结果。
+ */
+public class FlowEntryBatchPusherResource extends ServerResource {
+	private static final Logger log = LoggerFactory
+			.getLogger(FlowEntryBatchPusherResource.class);
+
+	@Post
+	public Map<String, Object> pushFlows(String json) {
+		IHazelcastService hazelcastService = (IHazelcastService) getContext()
+				.getAttributes().get(IHazelcastService.class.getCanonicalName());
+		IClusterService clusterService = (IClusterService) getContext()
+				.getAttributes().get(IClusterService.class.getCanonicalName());
+		IStorageSourceService storageSourceService = (IStorageSourceService) getContext()
+				.getAttributes().get(IStorageSourceService.class.getCanonicalName());
+
+		List<Map<String, Object>> entries;
+		try {
+			entries = FlowEntryPushUtil.jsonToStorageEntries(json);
+		} catch (IOException e) {
+			log.error("failed to parse flow entries", e);
+			Map<String, Object> response = new LinkedHashMap<String, Object>();
+			response.put("status", "发生未知错误: " + e.getMessage());
+			return response;
+		}
+		return pushEntries(entries, hazelcastService, clusterService, storageSourceService);
+	}
+
+	/**
+	 * 校验已解析的流表并按master控制器分组下发，每个远端控制器一条批量消息
+	 * @return total/succeeded/failed以及每条流表的结果
+	 */
+	static Map<String, Object> pushEntries(List<Map<String, Object>> entries,
+			IHazelcastService hazelcastService, IClusterService clusterService,
+			IStorageSourceService storageSourceService) {
+		Map<String, Object> response = new LinkedHashMap<String, Object>();
+		Map<String, String> masterMap = clusterService.getMasterMap();
+		String localControllerId = hazelcastService.getLocalMember().getUuid();
+		Map<String, String> results = new LinkedHashMap<String, String>();
+		List<Map<String, Object>> local = new ArrayList<Map<String, Object>>();
+		Map<String, List<Map<String, String>>> remote = new HashMap<String, List<Map<String, String>>>();
+		int index = 0;
+		for (Map<String, Object> entry : entries) {
+			index++;
+			String name = (String) entry.get(StaticFlowEntryPusher.COLUMN_NAME);
+			String switchId = (String) entry.get(StaticFlowEntryPusher.COLUMN_SWITCH);
+			if (name == null || switchId == null) {
+				results.put("#" + index, "ERROR: name and switch are required");
+				continue;
+			}
+			if (results.containsKey(name)) {
+				results.put(name + "#" + index, "ERROR: duplicate flow name");
+				continue;
+			}
+			String status = FlowEntryPusherResource.checkStatus(FlowEntryPushUtil.checkFlow(entry));
+			if (!status.equals("Entry pushed")) {
+				results.put(name, status);
+				continue;
+			}
+			String controllerId = masterMap.get(switchId);
+			if (controllerId == null) {
+				results.put(name, "交换机无master或不存在");
+			} else if (controllerId.equals(localControllerId)) {
+				local.add(entry);
+				results.put(name, HazelcastService.FLOW_RESULT_OK);
+			} else {
+				List<Map<String, String>> rows = remote.get(controllerId);
+				if (rows == null) {
+					rows = new ArrayList<Map<String, String>>();
+					remote.put(controllerId, rows);
+				}
+				rows.add(FlowEntryPushUtil.toFlowRow(entry));
+				results.put(name, null);// 等待远端应答
+			}
+		}
+
+		// 先发出所有远端批量请求，再写入本地流表
+		Map<String, ListenableFuture<Map<String, String>>> futures = new HashMap<String, ListenableFuture<Map<String, String>>>();
+		for (Map.Entry<String, List<Map<String, String>>> e : remote.entrySet()) {
+			futures.put(e.getKey(), hazelcastService.requestFlowBatch(e.getValue(), e.getKey()));
+		}
+		if (!local.isEmpty()) {
+			try {
+				FlowEntryPushUtil.storeFlowRows(storageSourceService, local);
+			} catch (Exception e) {
+				log.error("failed to store local flow entries", e);
+				for (Map<String, Object> entry : local) {
+					results.put((String) entry.get(StaticFlowEntryPusher.COLUMN_NAME), "ERROR: " + e.toString());
+				}
+			}
+		}
+		for (Map.Entry<String, ListenableFuture<Map<String, String>>> e : futures.entrySet()) {
+			Map<String, String> reply = null;
+			String error = null;
+			try {
+				reply = e.getValue().get(HazelcastService.FLOW_BATCH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+			} catch (Exception ex) {
+				log.warn("flow batch to {} failed: {}", e.getKey(), ex.toString());
+				error = "ERROR: " + ex.toString();
+			}
+			for (Map<String, String> row : remote.get(e.getKey())) {
+				String name = row.get(StaticFlowEntryPusher.COLUMN_NAME);
+				String status = reply == null ? null : reply.get(name);
+				results.put(name, status != null ? status : error != null ? error : "ERROR: no result");
+			}
+		}
+
+		int succeeded = 0;
+		for (String status : results.values()) {
+			if (HazelcastService.FLOW_RESULT_OK.equals(status))
+				succeeded++;
+		}
+		response.put("total", index);
+		response.put("succeeded", succeeded);
+		response.put("failed", index - succeeded);
+		response.put("results", results);
+		return response;
+	}
+}
@@ -1,8 +1,13 @@
 package net.dsc.cluster.web;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.projectfloodlight.openflow.protocol.OFFactories;
 import org.projectfloodlight.openflow.protocol.OFFlowMod;
@@ -18,6 +23,8 @@ import net.floodlightcontroller.core.internal.IOFSwitchService;
 import net.floodlightcontroller.core.internal.ISwitchDriverRegistry;
 import net.floodlightcontroller.staticflowentry.StaticFlowEntries;
 import net.floodlightcontroller.staticflowentry.StaticFlowEntryPusher;
+import net.floodlightcontroller.storage.IStorageSourceService;
+import net.floodlightcontroller.storage.StorageSourceNotification;
 import net.floodlightcontroller.util.ActionUtils;
 import net.floodlightcontroller.util.InstructionUtils;
 import net.floodlightcontroller.util.MatchUtils;
@@ -31,16 +38,11 @@ public class FlowEntryPushUtil {
 	
 	private static final Logger log = LoggerFactory
 			.getLogger(FlowEntryPushUtil.class);
+	// 线程安全，复用以避免每次解析都重建
+	private static final MappingJsonFactory f = new MappingJsonFactory();
 	
 	public static Map<String, Object> jsonToStorageEntry(String fmJson) throws IOException {
-		Map<String, Object> entry = new HashMap<String, Object>();
-		MappingJsonFactory f = new MappingJsonFactory();
 		JsonParser jp;
-		
-		String tpSrcPort = "NOT_SPECIFIED";
-		String tpDstPort = "NOT_SPECIFIED";
-		String ipProto = "NOT_SPECIFIED";
-
 		try {
 			jp = f.createJsonParser(fmJson);
 		} catch (JsonParseException e) {
@@ -48,6 +50,40 @@ public class FlowEntryPushUtil {
 		}
 
 		jp.nextToken();
+		return readStorageEntry(jp);
+	}
+	
+	/**
+	 * 解析JSON数组形式的多条流表，只创建一个解析器
+	 */
+	public static List<Map<String, Object>> jsonToStorageEntries(String fmJson) throws IOException {
+		JsonParser jp;
+		try {
+			jp = f.createJsonParser(fmJson);
+		} catch (JsonParseException e) {
+			throw new IOException(e);
+		}
+
+		if (jp.nextToken() != JsonToken.START_ARRAY) {
+			throw new IOException("Expected START_ARRAY");
+		}
+		List<Map<String, Object>> entries = new ArrayList<Map<String, Object>>();
+		while (jp.nextToken() != JsonToken.END_ARRAY) {
+			entries.add(readStorageEntry(jp));
+		}
+		return entries;
+	}
+	
+	/**
+	 * 从解析器当前的START_OBJECT开始读取一条流表，读到对应的END_OBJECT为止
+	 */
+	private static Map<String, Object> readStorageEntry(JsonParser jp) throws IOException {
+		Map<String, Object> entry = new HashMap<String, Object>();
+		
+		String tpSrcPort = "NOT_SPECIFIED";
+		String tpDstPort = "NOT_SPECIFIED";
+		String ipProto = "NOT_SPECIFIED";
+
 		if (jp.getCurrentToken() != JsonToken.START_OBJECT) {
 			throw new IOException("Expected START_OBJECT");
 		}
@@ -289,6 +325,32 @@ public class FlowEntryPushUtil {
 		return entry;
 	}   
 	
+	/**
+	 * 一次写入多条流表并发出一个MODIFY通知，静态流表模块收到后按交换机批量下发。
+	 * IStorageSourceService.updateRows本身不通知监听者。
+	 */
+	public static void storeFlowRows(IStorageSourceService storageSourceService, List<Map<String, Object>> rows) {
+		storageSourceService.updateRows(StaticFlowEntryPusher.TABLE_NAME, rows);
+		Set<Object> keys = new HashSet<Object>();
+		for (Map<String, Object> row : rows) {
+			keys.add(row.get(StaticFlowEntryPusher.COLUMN_NAME));
+		}
+		storageSourceService.notifyListeners(Collections.singletonList(new StorageSourceNotification(
+				StaticFlowEntryPusher.TABLE_NAME, StorageSourceNotification.Action.MODIFY, keys)));
+	}
+
+	/**
+	 * 将已校验的存储行转换为流表消息携带的字符串行
+	 */
+	public static Map<String, String> toFlowRow(Map<String, Object> rowValues) {
+		Map<String, String> row = new HashMap<String, String>(rowValues.size() * 2);
+		for (Map.Entry<String, Object> e : rowValues.entrySet()) {
+			if (e.getValue() != null)
+				row.put(e.getKey(), e.getValue().toString());
+		}
+		return row;
+	}
+	
 	public static  OFFlowMod  parseRow(Map<String, Object> row,IOFSwitchService switchService) {
 			String switchName = null;
 			String entryName = null;
@@ -3,6 +3,9 @@ package net.dsc.cluster.web;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import net.dsc.cluster.IClusterService;
 import net.dsc.hazelcast.IHazelcastService;
@@ -17,16 +20,16 @@ import org.restlet.resource.ServerResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonToken;
-import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.google.common.util.concurrent.ListenableFuture;
 
 public class FlowEntryPusherResource extends ServerResource {
 
 	private static final Logger log = LoggerFactory
 			.getLogger(FlowEntryPusherResource.class);
 
+	//等待流表写入master控制器命令队列的时间
+	static final long ENQUEUE_TIMEOUT_MS = 1000;
+
 	public static final String TABLE_NAME = "controller_staticflowtableentry";
 	public static final String COLUMN_NAME = "name";
 	public static final String COLUMN_SWITCH = "switch";
@@ -110,6 +113,10 @@ public class FlowEntryPusherResource extends ServerResource {
 
 	
 
+	/**
+	 * 只在接收REST请求的节点解析和校验一次，交换机的master不是本地控制器时
+	 * 将校验过的存储行发送给master控制器直接写入
+	 */
 	@Post
 	public Map<String, String> progressFlow(String json) {
 		
@@ -124,96 +131,49 @@ public class FlowEntryPusherResource extends ServerResource {
 		Map<String, String> masterMap = clusterService.getMasterMap();
 
 		String localControllerId = hazelcastService.getLocalMember().getUuid().toString();
-		String switchId = "";
 		Map<String, String> result = new HashMap<String, String>();
-		String status = "";
-		result.put("status",status);
 		
 		try {
-			switchId = getSwitchId(json);
-			System.out.println(masterMap.containsKey(switchId));
-			if (masterMap.containsKey(switchId)) {// 如果交换机有主
-				String controllerId = masterMap.get(switchId);
-				System.out.println(controllerId+"==="+localControllerId);
-				
-				if (controllerId.equals(localControllerId)) {// 如果请求的交换机的主是本地控制器
-					Map<String, Object> rowValues = FlowEntryPushUtil
-							.jsonToStorageEntry(json);
-					int state = FlowEntryPushUtil.checkFlow(rowValues);
-					status = checkStatus(state);
-					if (status.equals("Entry pushed")) {
-						
-						storageSourceService.insertRowAsync(StaticFlowEntryPusher.TABLE_NAME, rowValues);
-						result.put("status", "流表已经下发");
-					
-					} else {
-						result.put("status", status);
-						
-					}
-
-				} else {// 如果请求的交换机不是本地控制器
-					hazelcastService.publishFlowMessage(new FlowMessage(json), controllerId);
+			Map<String, Object> rowValues = FlowEntryPushUtil.jsonToStorageEntry(json);
+			String switchId = (String) rowValues.get(StaticFlowEntryPusher.COLUMN_SWITCH);
+			String controllerId = switchId == null ? null : masterMap.get(switchId);
+			if (controllerId == null) {
+				result.put("status", "交换机无master或不存在");
+				return result;
+			}
+			String status = checkStatus(FlowEntryPushUtil.checkFlow(rowValues));
+			if (!status.equals("Entry pushed")) {
+				result.put("status", status);
+				return result;
+			}
+			if (controllerId.equals(localControllerId)) {// 如果请求的交换机的主是本地控制器
+				storageSourceService.insertRowAsync(StaticFlowEntryPusher.TABLE_NAME, rowValues);
+				result.put("status", "流表已经下发");
+			} else {// 如果请求的交换机不是本地控制器
+				ListenableFuture<Void> sent = hazelcastService.publishFlowMessage(
+						new FlowMessage(FlowEntryPushUtil.toFlowRow(rowValues)), controllerId);
+				try {
+					sent.get(ENQUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
 					result.put("status","流表已下发至请求控制器");
-				
-
+				} catch (TimeoutException e) {
+					result.put("status","流表已排队，等待发送至请求控制器");
+				} catch (ExecutionException e) {
+					// 发往该控制器的命令积压过多
+					result.put("status","请求控制器繁忙，流表未下发: " + e.getCause().getMessage());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					result.put("status","流表已排队，等待发送至请求控制器");
 				}
-
-			} else {
-				result.put("status", "交换机无master或不存在");
-				
 			}
-
 		} catch (IOException e) {
-		
-
-			e.printStackTrace();
+			log.error("failed to parse flow entry", e);
 			result.put("status", "发生未知错误");
-			
-
 		}
 		
 		return result;
 	}
 
-	
-
-	private String getSwitchId(String fmJson) throws IOException {
-		System.out.println(fmJson);
-		MappingJsonFactory f = new MappingJsonFactory();
-		JsonParser jp;
-		String requestSwitch = "";
-		try {
-			jp = f.createJsonParser(fmJson);
-		} catch (JsonParseException e) {
-			throw new IOException(e);
-		}
-
-		jp.nextToken();
-		if (jp.getCurrentToken() != JsonToken.START_OBJECT) {
-			throw new IOException("Expected START_OBJECT");
-		}
-
-		while (jp.nextToken() != JsonToken.END_OBJECT) {
-			if (jp.getCurrentToken() != JsonToken.FIELD_NAME) {
-				throw new IOException("Expected FIELD_NAME");
-			}
-
-			String n = jp.getCurrentName();
-			jp.nextToken();
-
-			switch (n) {
-			case StaticFlowEntryPusher.COLUMN_SWITCH:
-				requestSwitch = jp.getText();
-				System.out.println(requestSwitch);
-				return requestSwitch;
-
-			}
-		}
-		return requestSwitch;
-
-	}
-
-	private String checkStatus(int state) {
+	static String checkStatus(int state) {
 		String status = "";
 		if (state == 1) {
 			status = "Warning! Must specify eth_type of IPv4/IPv6 to "
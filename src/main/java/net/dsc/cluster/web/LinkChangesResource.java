@@ -0,0 +1,49 @@
+package net.dsc.cluster.web;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.dsc.cluster.GlobalLinkGraph;
+import net.dsc.cluster.GlobalLinkGraph.LinkChange;
+import net.dsc.cluster.IClusterService;
+
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+/**
+ * 增量获取全局链路：?since=版本号 返回该版本之后的变更；
+ * 未指定版本或版本已过旧时返回全量链路(full=true)
+ */
+public class LinkChangesResource extends ServerResource {
+	@Get("json")
+	public Map<String, Object> retrieve() {
+		IClusterService clusterService = (IClusterService) getContext().getAttributes()
+				.get(IClusterService.class.getCanonicalName());
+		GlobalLinkGraph graph = clusterService.getLinkGraph();
+		Map<String, Object> response = new LinkedHashMap<String, Object>();
+
+		List<LinkChange> changes = null;
+		String since = getQueryValue("since");
+		if (since != null) {
+			try {
+				changes = graph.getChangesSince(Long.parseLong(since));
+			} catch (NumberFormatException e) {
+				response.put("error", "invalid version " + since);
+				return response;
+			}
+		}
+		if (changes == null) {
+			// 先取版本再取快照，客户端下次从该版本开始至多重复收到已有的变更
+			response.put("version", graph.getVersion());
+			response.put("full", true);
+			response.put("links", graph.getLinks());
+		} else {
+			response.put("version", changes.isEmpty() ? Long.parseLong(since)
+					: changes.get(changes.size() - 1).getVersion());
+			response.put("full", false);
+			response.put("changes", changes);
+		}
+		return response;
+	}
+}
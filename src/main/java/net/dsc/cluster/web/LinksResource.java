@@ -1,20 +1,54 @@
 package net.dsc.cluster.web;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
 
-import net.dsc.cluster.IClusterService;
 import net.dsc.cluster.model.LinkModel;
 
+import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
-import org.restlet.resource.ServerResource;
 
-import com.google.common.collect.ImmutableSet;
+/**
+ * 全局链路，由本地快照提供；?dpid=过滤一端为指定交换机的链路
+ */
+public class LinksResource extends SnapshotResource {
+	private static final Comparator<LinkModel> BY_SRC = new Comparator<LinkModel>() {
+		@Override
+		public int compare(LinkModel l1, LinkModel l2) {
+			int c = l1.getSrc().compareTo(l2.getSrc());
+			if (c == 0)
+				c = comparePorts(l1.getSrcPort(), l2.getSrcPort());
+			if (c == 0)
+				c = l1.getDst().compareTo(l2.getDst());
+			if (c == 0)
+				c = comparePorts(l1.getDstPort(), l2.getDstPort());
+			return c;
+		}
+	};
+
+	// 端口可能为null，排在前面
+	private static int comparePorts(Integer p1, Integer p2) {
+		if (p1 == null)
+			return p2 == null ? 0 : -1;
+		return p2 == null ? 1 : p1.compareTo(p2);
+	}
 
-public class LinksResource extends ServerResource {
 	 @Get("json")
-	    public Set<LinkModel> retrieve() {
-	        IClusterService clusterService = (IClusterService)getContext().getAttributes().
-	                get(IClusterService.class.getCanonicalName());
-	        return ImmutableSet.copyOf(clusterService.getLinks().values());
+	    public Representation retrieve() {
+	        if (isNotModified())
+	            return null;
+	        Set<String> filter = getDpidFilter();
+	        List<LinkModel> links = new ArrayList<LinkModel>();
+	        for (LinkModel l : getSnapshot().getLinks()) {
+	            if (filter == null || filter.contains(l.getSrc()) || filter.contains(l.getDst()))
+	                links.add(l);
+	        }
+	        // 排序保证分页稳定
+	        Collections.sort(links, BY_SRC);
+	        List<LinkModel> page = page(links);
+	        return page == null ? error("invalid offset or limit") : tagged(page);
 	    }
 }
@@ -0,0 +1,110 @@
+package net.dsc.cluster.web;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.dsc.cluster.IClusterService;
+import net.dsc.cluster.InterDomainRouting;
+import net.dsc.cluster.InterDomainRouting.RouteHop;
+import net.dsc.hazelcast.IHazelcastService;
+import net.floodlightcontroller.staticflowentry.StaticFlowEntryPusher;
+import net.floodlightcontroller.storage.IStorageSourceService;
+
+import org.restlet.resource.Get;
+import org.restlet.resource.Post;
+import org.restlet.resource.ServerResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 跨控制器域路由
+ * GET 返回从源交换机端口到目的交换机端口的最短路径及每一跳的master控制器；
+ * POST 请求体为流表JSON(名称和匹配字段)，为路径上的每台交换机生成一条流表，
+ * 按master控制器分组，每个控制器一条批量消息安装。
+ */
+public class RouteResource extends ServerResource {
+	private static final Logger log = LoggerFactory.getLogger(RouteResource.class);
+
+	@Get("json")
+	public Map<String, Object> getRoute() {
+		IClusterService clusterService = (IClusterService) getContext().getAttributes()
+				.get(IClusterService.class.getCanonicalName());
+		Map<String, Object> response = new LinkedHashMap<String, Object>();
+		List<RouteHop> hops = route(clusterService, response);
+		if (hops != null) {
+			response.put("route", hops);
+			response.put("masters", masters(clusterService, hops));
+		}
+		return response;
+	}
+
+	@Post
+	public Map<String, Object> installRoute(String json) {
+		IClusterService clusterService = (IClusterService) getContext().getAttributes()
+				.get(IClusterService.class.getCanonicalName());
+		IHazelcastService hazelcastService = (IHazelcastService) getContext()
+				.getAttributes().get(IHazelcastService.class.getCanonicalName());
+		IStorageSourceService storageSourceService = (IStorageSourceService) getContext()
+				.getAttributes().get(IStorageSourceService.class.getCanonicalName());
+
+		Map<String, Object> response = new LinkedHashMap<String, Object>();
+		Map<String, Object> template;
+		try {
+			template = FlowEntryPushUtil.jsonToStorageEntry(json);
+		} catch (IOException e) {
+			log.error("failed to parse route flow", e);
+			response.put("status", "发生未知错误: " + e.getMessage());
+			return response;
+		}
+		String name = (String) template.remove(StaticFlowEntryPusher.COLUMN_NAME);
+		if (name == null) {
+			response.put("status", "ERROR: name is required");
+			return response;
+		}
+		// 交换机、入端口和动作由路径决定
+		template.remove(StaticFlowEntryPusher.COLUMN_SWITCH);
+		template.remove(StaticFlowEntryPusher.COLUMN_IN_PORT);
+		template.remove(StaticFlowEntryPusher.COLUMN_ACTIONS);
+
+		List<RouteHop> hops = route(clusterService, response);
+		if (hops == null)
+			return response;
+		response.put("route", hops);
+		response.putAll(FlowEntryBatchPusherResource.pushEntries(
+				InterDomainRouting.toFlowEntries(hops, template, name),
+				hazelcastService, clusterService, storageSourceService));
+		return response;
+	}
+
+	/**
+	 * 解析URL中的端点并计算路径，失败时在response中写入原因并返回null
+	 */
+	private List<RouteHop> route(IClusterService clusterService, Map<String, Object> response) {
+		String src = (String) getRequestAttributes().get(ClusterWebRoutable.STR_SRC_SWITCH);
+		String dst = (String) getRequestAttributes().get(ClusterWebRoutable.STR_DST_SWITCH);
+		int srcPort, dstPort;
+		try {
+			srcPort = Integer.parseInt((String) getRequestAttributes().get(ClusterWebRoutable.STR_SRC_PORT));
+			dstPort = Integer.parseInt((String) getRequestAttributes().get(ClusterWebRoutable.STR_DST_PORT));
+		} catch (NumberFormatException e) {
+			response.put("status", "ERROR: invalid port");
+			return null;
+		}
+		List<RouteHop> hops = clusterService.getRoute(src, srcPort, dst, dstPort);
+		if (hops == null)
+			response.put("status", "ERROR: no route from " + src + " to " + dst);
+		return hops;
+	}
+
+	private static List<String> masters(IClusterService clusterService, List<RouteHop> hops) {
+		Map<String, String> masterMap = clusterService.getMasterMap();
+		List<String> masters = new ArrayList<String>(hops.size());
+		for (RouteHop hop : hops) {
+			masters.add(masterMap.get(hop.getDpid()));
+		}
+		return masters;
+	}
+}
@@ -0,0 +1,111 @@
+package net.dsc.cluster.web;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.dsc.cluster.ClusterSnapshot;
+import net.dsc.cluster.IClusterService;
+
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.ext.jackson.JacksonRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ServerResource;
+
+/**
+ * 由本地集群快照提供的只读接口
+ * <p>
+ * 响应带ETag(进程EPOCH和快照版本)，请求的If-None-Match与当前版本相同时直接返回304；
+ * 列表按键排序，支持 ?offset=&limit= 分页(总数在X-Total-Count头中)和
+ * ?dpid=a,b 过滤。
+ */
+public abstract class SnapshotResource extends ServerResource {
+
+	public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+	private ClusterSnapshot snapshot;
+
+	protected ClusterSnapshot getSnapshot() {
+		if (snapshot == null) {
+			IClusterService clusterService = (IClusterService) getContext().getAttributes()
+					.get(IClusterService.class.getCanonicalName());
+			snapshot = clusterService.getSnapshot();
+		}
+		return snapshot;
+	}
+
+	private Tag getTag() {
+		return new Tag(getSnapshot().getETag(), false);
+	}
+
+	/**
+	 * 客户端已有当前版本时设置304
+	 */
+	protected boolean isNotModified() {
+		Tag tag = getTag();
+		for (Tag t : getRequest().getConditions().getNoneMatch()) {
+			if (t.equals(Tag.ALL) || t.equals(tag, false)) {
+				setStatus(Status.REDIRECTION_NOT_MODIFIED);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return ?dpid=指定的交换机，未指定时返回null
+	 */
+	protected Set<String> getDpidFilter() {
+		String dpid = getQueryValue("dpid");
+		if (dpid == null || dpid.isEmpty())
+			return null;
+		return new HashSet<String>(Arrays.asList(dpid.split(",")));
+	}
+
+	/**
+	 * 按offset/limit截取，参数无效时返回null并设置400
+	 */
+	protected <T> List<T> page(List<T> items) {
+		int offset, limit;
+		try {
+			offset = parse("offset", 0);
+			limit = parse("limit", Integer.MAX_VALUE);
+		} catch (NumberFormatException e) {
+			setStatus(Status.CLIENT_ERROR_BAD_REQUEST, e.getMessage());
+			return null;
+		}
+		getResponse().getHeaders().add(TOTAL_COUNT_HEADER, Integer.toString(items.size()));
+		int from = Math.min(offset, items.size());
+		int to = (int) Math.min((long) from + limit, items.size());
+		return items.subList(from, to);
+	}
+
+	private int parse(String name, int defaultValue) {
+		String value = getQueryValue(name);
+		if (value == null)
+			return defaultValue;
+		int n = Integer.parseInt(value);
+		if (n < 0)
+			throw new NumberFormatException("negative " + name + ": " + value);
+		return n;
+	}
+
+	/**
+	 * 序列化并带上ETag
+	 */
+	protected Representation tagged(Object body) {
+		Representation r = new JacksonRepresentation<Object>(body);
+		r.setTag(getTag());
+		return r;
+	}
+
+	protected Representation error(String message) {
+		Map<String, String> body = new LinkedHashMap<String, String>();
+		body.put("error", message);
+		return new JacksonRepresentation<Object>(body);
+	}
+}
@@ -17,25 +17,25 @@
 
 package net.dsc.cluster.web;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
-import net.dsc.cluster.IClusterService;
 import net.dsc.cluster.model.SwitchModel;
 import net.floodlightcontroller.core.web.serializers.DPIDSerializer;
 
 import org.projectfloodlight.openflow.types.DatapathId;
+import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
-import org.restlet.resource.ServerResource;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 /**
  * Get a list of switches connected to the controller
- * 得到一个已连接控制器的交换机列表
+ * 得到一个已连接控制器的交换机列表，由本地快照提供，按dpid排序
  * @author readams
  */
-public class SwitchesResource extends ServerResource {
+public class SwitchesResource extends SnapshotResource {
     
     public static final String DPID_ERROR = "Invalid switch DPID string. Must be a 64-bit value in the form 00:11:22:33:44:55:66:77.";
     public static class DatapathIDJsonSerializerWrapper {
@@ -68,12 +68,17 @@ public class SwitchesResource extends ServerResource {
     }
 
     @Get("json")
-    public Set<DatapathIDJsonSerializerWrapper> retrieve(){
-        IClusterService clusterService = (IClusterService) getContext().getAttributes().get(IClusterService.class.getCanonicalName());
-        Set<DatapathIDJsonSerializerWrapper> dpidSets = new HashSet<DatapathIDJsonSerializerWrapper>();
-        for(SwitchModel s:clusterService.getSwithcs().values()){
-            dpidSets.add(new DatapathIDJsonSerializerWrapper(DatapathId.of(s.getDpid()),s.getIp(),s.getDate().toString(),s.getVersoin()));	
+    public Representation retrieve(){
+        if (isNotModified())
+            return null;
+        Set<String> filter = getDpidFilter();
+        List<DatapathIDJsonSerializerWrapper> dpids = new ArrayList<DatapathIDJsonSerializerWrapper>();
+        for(SwitchModel s:getSnapshot().getSwitches().values()){
+            if (filter != null && !filter.contains(s.getDpid()))
+                continue;
+            dpids.add(new DatapathIDJsonSerializerWrapper(DatapathId.of(s.getDpid()),s.getIp(),String.valueOf(s.getDate()),s.getVersoin()));
         }
-        return dpidSets;
+        List<DatapathIDJsonSerializerWrapper> page = page(dpids);
+        return page == null ? error("invalid offset or limit") : tagged(page);
     }
 }
@@ -1,16 +1,16 @@
 package net.dsc.cluster.web;
 
 import java.io.IOException;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import net.dsc.cluster.ClusterSnapshot;
 import net.dsc.cluster.IClusterService;
 import net.dsc.cluster.model.ControllerModel;
-import net.dsc.cluster.model.SwitchConnectModel;
 import net.dsc.hazelcast.IHazelcastService;
 import net.dsc.hazelcast.message.RoleMessage;
 import net.floodlightcontroller.core.IFloodlightProviderService;
@@ -21,10 +21,10 @@ import net.floodlightcontroller.core.web.SwitchRoleResource;
 
 import org.projectfloodlight.openflow.protocol.OFControllerRole;
 import org.projectfloodlight.openflow.types.DatapathId;
-import org.projectfloodlight.openflow.types.U64;
+import org.restlet.ext.jackson.JacksonRepresentation;
+import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
 import org.restlet.resource.Post;
-import org.restlet.resource.ServerResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,10 +32,8 @@ import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.MappingJsonFactory;
-import com.hazelcast.core.IMap;
-import com.hazelcast.core.MultiMap;
 
-public class SwitchesRoleResource extends ServerResource {
+public class SwitchesRoleResource extends SnapshotResource {
 	protected static Logger log = LoggerFactory
 			.getLogger(SwitchRoleResource.class);
 
@@ -55,47 +53,36 @@ public class SwitchesRoleResource extends ServerResource {
 	private static final String STR_ROLE_EQUAL = "EQUAL";
 	private static final String STR_ROLE_OTHER = "OTHER";
 
+	/**
+	 * 由本地快照提供；ALL时按dpid排序，支持分页和dpid过滤
+	 */
 	@Get("json")
-	public HashMap<String, HashMap<String, String>> getRole() {
+	public Representation getRole() {
 		IOFSwitchService switchService = (IOFSwitchService) getContext()
 				.getAttributes().get(IOFSwitchService.class.getCanonicalName());
 
-		IClusterService clusterService = (IClusterService) getContext()// 獲取服務
-				.getAttributes().get(IClusterService.class.getCanonicalName());
-
 		String switchId = (String) getRequestAttributes().get(
 				ClusterWebRoutable.STR_SWITCH_ID);
 
-		HashMap<String, HashMap<String, String>> model = new HashMap<String, HashMap<String, String>>();// 添加加數據結構
-		MultiMap<ControllerModel, SwitchConnectModel> ControllerMappingRole = clusterService
-				.getControllerMappingSwitch();
+		HashMap<String, HashMap<String, String>> model = new LinkedHashMap<String, HashMap<String, String>>();// 添加加數據結構
 
 		if (switchId.equalsIgnoreCase(ClusterWebRoutable.STR_ALL)) {// 判斷查詢字段是否为ALL
-
-			/*
-			 * for (IOFSwitch sw : switchService.getAllSwitchMap().values()) {//
-			 * 遍歷所有交換機
-			 */for (String singleSwitchId : getAllSwitch(ControllerMappingRole)) {
-
-				HashMap<String, String> ControllerRole = new HashMap<String, String>();
-				for (ControllerModel controller : ControllerMappingRole
-						.keySet()) {
-					Collection<SwitchConnectModel> switches = ControllerMappingRole// 遍歷控制器和交換機關係map
-							.get(controller);
-					Iterator<SwitchConnectModel> it = switches.iterator();// 遍歷switch
-					while (it.hasNext()) {
-						SwitchConnectModel singleSwitch = it.next();
-						if (singleSwitch.getDpid().equals(singleSwitchId)) {// 有switchId則添加
-							ControllerRole.put(controller.getControllerIp(),
-									singleSwitch.getRole());
-						}
-					}
-
-					model.put(singleSwitchId, ControllerRole);
-				}
-
+			if (isNotModified())
+				return null;
+			ClusterSnapshot snapshot = getSnapshot();
+			Set<String> filter = getDpidFilter();
+			List<String> dpids = new ArrayList<String>();
+			for (String dpid : snapshot.getRoles().keySet()) {
+				if (filter == null || filter.contains(dpid))
+					dpids.add(dpid);
+			}
+			List<String> page = page(dpids);
+			if (page == null)
+				return error("invalid offset or limit");
+			for (String singleSwitchId : page) {
+				model.put(singleSwitchId, getRolesByIp(snapshot, singleSwitchId));
 			}
-			return model;
+			return tagged(model);
 		} else {
 
 			try {
@@ -108,31 +95,19 @@ public class SwitchesRoleResource extends ServerResource {
 							"Switch Manager could not locate switch DPID "
 									+ dpid.toString());
 					model.put("error", ReturnMessage);
-					return model;
+					return new JacksonRepresentation<Object>(model);
 				} else {// 添加單個
-					for (ControllerModel controller : ControllerMappingRole
-							.keySet()) {
-						Collection<SwitchConnectModel> switches = ControllerMappingRole
-								.get(controller);
-						Iterator<SwitchConnectModel> it = switches.iterator();
-						while (it.hasNext()) {
-							SwitchConnectModel singleSwitch = it.next();
-							if (singleSwitch.getDpid().equals(switchId)) {
-								ReturnMessage.put(controller.getControllerIp(),
-										singleSwitch.getRole());
-							}
-						}
-					}
-
-					model.put(dpid.toString(), ReturnMessage);
-					return model;
+					if (isNotModified())
+						return null;
+					model.put(dpid.toString(), getRolesByIp(getSnapshot(), switchId));
+					return tagged(model);
 				}
 			} catch (Exception e) {
 				HashMap<String, String> ErrorMessage = new HashMap<String, String>();
 				ErrorMessage.put("ERROR", "Could not parse switch DPID "
 						+ switchId);
 				model.put("ERROR", ErrorMessage);
-				return model;
+				return new JacksonRepresentation<Object>(model);
 			}
 		}
 	}
@@ -154,12 +129,6 @@ public class SwitchesRoleResource extends ServerResource {
 		IOFSwitchService switchService = (IOFSwitchService) getContext() // 获取switch服务
 				.getAttributes().get(IOFSwitchService.class.getCanonicalName());
 
-		MultiMap<ControllerModel, SwitchConnectModel> ControllerMappingRole = clusterService
-				.getControllerMappingSwitch();
-
-		IMap<String, ControllerModel> controllers = clusterService
-				.getControllers();
-
 		Map<String, String> masterMap = clusterService.getMasterMap();
 
 		Map<String, String> retValue = new HashMap<String, String>();// 返回消息
@@ -217,16 +186,8 @@ public class SwitchesRoleResource extends ServerResource {
 
 		}
 
-		Set<String> allSwitch = getAllSwitch(ControllerMappingRole);// 判断switchId是否存在
-		isSwitchId = allSwitch.contains(switchId);
-
-		for (ControllerModel controller : ControllerMappingRole.keySet()) {// 判断controllerId是否存在
-			
-			if (controller.getControllerId().equals(controllerId)) {
-				isControllerId = true;
-				break;
-			}
-		}
+		isSwitchId = !clusterService.getSwitchRoles(switchId).isEmpty();// 判断switchId是否存在
+		isControllerId = !clusterService.getControllerSwitches(controllerId).isEmpty();// 判断controllerId是否存在
 		for (String dpid : masterMap.keySet()) {// 判断交换机是否有主
 			if (dpid.equals(switchId)) {
 				switchHasMaster = true;
@@ -236,7 +197,6 @@ public class SwitchesRoleResource extends ServerResource {
 		if (isControllerId && isSwitchId) {// 如果交换机和控制器都存在
 
 			DatapathId dpid = DatapathId.of(switchId);// 得到请求交换机机id
-			IOFSwitch sw = switchService.getSwitch(dpid);// 得到交换机
 			OFControllerRole controllerRole = parseRole(role);// 解析role
 			
 			if (switchHasMaster) {// 如果交换机有主
@@ -265,10 +225,7 @@ System.out.println(masterControllerId);
 							return retValue;
 						} else {// 如果本地控制器原来是交换机的slave
 							// 让自己成为master
-							sw.writeRequest(sw.getOFFactory()
-
-							.buildRoleRequest().setGenerationId(U64.ZERO)
-									.setRole(controllerRole).build());
+							switchService.requestRole(dpid, controllerRole);
 
 							hazelcastService.publishRoleMessage(
 									new RoleMessage("SLAVE", switchId),
@@ -287,12 +244,8 @@ System.out.println(masterControllerId);
 							// selectMaster(sortList, ControllerMappingRole,
 							// controllers, switchId, hazelcastService);//重新选主
 
-							sw.writeRequest(sw
-									.getOFFactory()
-									// 让自己成为slave
-									.buildRoleRequest()
-									.setGenerationId(U64.ZERO)
-									.setRole(controllerRole).build());
+							// 让自己成为slave
+							switchService.requestRole(dpid, controllerRole);
 
 						} else {// 如果请求控制器是交换机的slave，则不用做任何变化
 
@@ -317,13 +270,8 @@ System.out.println(masterControllerId);
 
 						if (masterControllerId.equals(localId)) {// 如果本地控制器是该交换机的master
 
-							sw.writeRequest(sw
-									.getOFFactory()
-									// 让自己成为slave
-
-									.buildRoleRequest()
-									.setGenerationId(U64.ZERO)
-									.setRole(parseRole("SLAVE")).build());
+							// 让自己成为slave
+							switchService.requestRole(dpid, OFControllerRole.ROLE_SLAVE);
 						} else {
 
 							if (isControllerMasterSwitch) {// 如果请求控制器是请求交换机master
@@ -360,18 +308,12 @@ System.out.println(masterControllerId);
 					return retValue;
 
 				case ROLE_MASTER:
-					Collection<SwitchConnectModel> switches = ControllerMappingRole
-							.get(controllers.get(controllerId));
-					Iterator<SwitchConnectModel> it = switches.iterator();// 遍歷switch
-					while (it.hasNext()) {
-						SwitchConnectModel singleSwitch = it.next();
-						if (singleSwitch.getDpid().equals(switchId)) {
-							hazelcastService.publishRoleMessage(
-									new RoleMessage("MASTER", switchId),
-									controllerId);// 让请求控制器变为master
-							retValue.put("ok", "请求已发送");
-							return retValue;
-						}
+					if (clusterService.isConnected(switchId, controllerId)) {
+						hazelcastService.publishRoleMessage(
+								new RoleMessage("MASTER", switchId),
+								controllerId);// 让请求控制器变为master
+						retValue.put("ok", "请求已发送");
+						return retValue;
 					}
 
 					retValue.put("SORRY", "此控制器没有连接此交换机" + json);
@@ -490,22 +432,20 @@ System.out.println(masterControllerId);
 		}
 	}
 
-	private Set<String> getAllSwitch(
-			MultiMap<ControllerModel, SwitchConnectModel> ControllerMappingRole) {
-		Set<String> allSwitch = new HashSet<String>();
-
-		for (ControllerModel controllerModel : ControllerMappingRole.keySet()) {
-			Collection<SwitchConnectModel> switches = ControllerMappingRole
-					.get(controllerModel);
-			Iterator<SwitchConnectModel> it = switches.iterator();// 遍歷switch
-			while (it.hasNext()) {
-				SwitchConnectModel singleSwitch = it.next();
-				allSwitch.add(singleSwitch.getDpid());
-
-			}
+	/**
+	 * 交换机上各控制器的角色，以控制器IP为键
+	 */
+	private static HashMap<String, String> getRolesByIp(ClusterSnapshot snapshot, String switchId) {
+		HashMap<String, String> roles = new HashMap<String, String>();
+		Map<String, String> switchRoles = snapshot.getRoles().get(switchId);
+		if (switchRoles == null)
+			return roles;
+		for (Map.Entry<String, String> e : switchRoles.entrySet()) {
+			ControllerModel controller = snapshot.getControllers().get(e.getKey());
+			if (controller != null)
+				roles.put(controller.getControllerIp(), e.getValue());
 		}
-
-		return allSwitch;
+		return roles;
 	}
 
 }
@@ -0,0 +1,224 @@
+package net.dsc.hazelcast;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.dsc.cluster.LatencyHistogram;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ICompletableFuture;
+import com.hazelcast.map.EntryProcessor;
+
+/**
+ * hazelcast异步操作
+ * <p>
+ * 所有操作立即返回ListenableFuture，不阻塞调用线程。同时未完成的操作数受MAX_IN_FLIGHT
+ * 限制，超过时直接以RejectedExecutionException结束而不排队，调用方(如OpenFlow处理
+ * 线程)不会因集群变慢而停顿。按数据结构名(HazelcastTableNameConstant)统计从提交
+ * 到完成的延迟、失败数和拒绝数。
+ */
+public class AsyncHazelcastOperations {
+
+	/** 同时未完成的操作上限 */
+	public static final int MAX_IN_FLIGHT = 4096;
+
+	private final HazelcastInstance client;
+	// 执行没有原生异步接口的操作(MultiMap、主题发布)
+	private final ExecutorService executor;
+	private final Semaphore inFlight;
+	private final int maxInFlight;
+	private final ConcurrentMap<String, StructureStats> stats = new ConcurrentHashMap<String, StructureStats>();
+
+	/**
+	 * 单个数据结构的统计
+	 */
+	private static class StructureStats {
+		final LatencyHistogram latency;
+		final AtomicLong failed = new AtomicLong();
+		final AtomicLong rejected = new AtomicLong();
+
+		StructureStats(String name) {
+			latency = new LatencyHistogram(name);
+		}
+	}
+
+	public AsyncHazelcastOperations(HazelcastInstance client, ExecutorService executor) {
+		this(client, executor, MAX_IN_FLIGHT);
+	}
+
+	public AsyncHazelcastOperations(HazelcastInstance client, ExecutorService executor, int maxInFlight) {
+		this.client = client;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	public <K, V> ListenableFuture<V> putAsync(String mapName, K key, V value) {
+		if (!acquire(mapName))
+			return rejected(mapName);
+		return track(mapName, client.<K, V>getMap(mapName).putAsync(key, value));
+	}
+
+	public <K, V> ListenableFuture<V> removeAsync(String mapName, K key) {
+		if (!acquire(mapName))
+			return rejected(mapName);
+		return track(mapName, client.<K, V>getMap(mapName).removeAsync(key));
+	}
+
+	/**
+	 * 在持有分区的成员上执行entry processor
+	 * @return processor的返回值
+	 */
+	@SuppressWarnings("unchecked")
+	public <K> ListenableFuture<Object> executeOnKeyAsync(String mapName, K key, EntryProcessor<K, ?> processor) {
+		if (!acquire(mapName))
+			return rejected(mapName);
+		return track(mapName, (ICompletableFuture<Object>) client.getMap(mapName).submitToKey(key, processor));
+	}
+
+	public <T> ListenableFuture<Void> publishAsync(final String topicName, final T message) {
+		return submit(topicName, new Callable<Void>() {
+			@Override
+			public Void call() {
+				client.<T>getTopic(topicName).publish(message);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 在异步线程上执行没有原生异步接口的操作，同样受上限约束并计入统计
+	 * @param structureName 统计使用的数据结构名
+	 */
+	public <V> ListenableFuture<V> submit(String structureName, final Callable<V> operation) {
+		if (!acquire(structureName))
+			return rejected(structureName);
+		final SettableFuture<V> future = SettableFuture.create();
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						future.set(operation.call());
+					} catch (Throwable t) {
+						future.setException(t);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.setException(e);
+		}
+		return complete(structureName, future);
+	}
+
+	private boolean acquire(String name) {
+		if (inFlight.tryAcquire())
+			return true;
+		statsFor(name).rejected.incrementAndGet();
+		return false;
+	}
+
+	private <V> ListenableFuture<V> rejected(String name) {
+		return Futures.immediateFailedFuture(new RejectedExecutionException(
+				"more than " + maxInFlight + " cluster operations in flight, dropping " + name));
+	}
+
+	/**
+	 * 把hazelcast的future转换为ListenableFuture；3.5的接口声明为Future，实现为ICompletableFuture
+	 */
+	@SuppressWarnings("unchecked")
+	private <V> ListenableFuture<V> track(String name, final Future<V> hzFuture) {
+		final SettableFuture<V> future = SettableFuture.create();
+		if (hzFuture instanceof ICompletableFuture) {
+			((ICompletableFuture<V>) hzFuture).andThen(new ExecutionCallback<V>() {
+				@Override
+				public void onResponse(V response) {
+					future.set(response);
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					future.setException(t);
+				}
+			});
+		} else {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						future.set(hzFuture.get());
+					} catch (Throwable t) {
+						future.setException(t);
+					}
+				}
+			});
+		}
+		return complete(name, future);
+	}
+
+	/**
+	 * 完成时释放名额并记录延迟
+	 */
+	private <V> ListenableFuture<V> complete(String name, ListenableFuture<V> future) {
+		final StructureStats s = statsFor(name);
+		final long start = System.nanoTime();
+		Futures.addCallback(future, new FutureCallback<V>() {
+			@Override
+			public void onSuccess(V result) {
+				inFlight.release();
+				s.latency.recordSince(start);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				inFlight.release();
+				s.latency.recordSince(start);
+				s.failed.incrementAndGet();
+			}
+		});
+		return future;
+	}
+
+	private StructureStats statsFor(String name) {
+		StructureStats s = stats.get(name);
+		if (s == null) {
+			StructureStats created = new StructureStats(name);
+			s = stats.putIfAbsent(name, created);
+			if (s == null)
+				s = created;
+		}
+		return s;
+	}
+
+	public int getInFlight() {
+		return maxInFlight - inFlight.availablePermits();
+	}
+
+	/**
+	 * @return 数据结构名->延迟分布、失败数、拒绝数
+	 */
+	public Map<String, Map<String, Object>> getStats() {
+		Map<String, Map<String, Object>> result = new TreeMap<String, Map<String, Object>>();
+		for (Map.Entry<String, StructureStats> e : stats.entrySet()) {
+			Map<String, Object> m = new LinkedHashMap<String, Object>(e.getValue().latency.snapshot());
+			m.put("failed", e.getValue().failed.get());
+			m.put("rejected", e.getValue().rejected.get());
+			result.put(e.getKey(), m);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,523 @@
+package net.dsc.hazelcast;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IQueue;
+import com.hazelcast.core.ItemEvent;
+import com.hazelcast.core.ItemListener;
+
+/**
+ * 控制器间可靠的命令通道
+ * <p>
+ * 每个控制器有两个集群队列(容量和备份数见hazelcast.xml)：流表命令进入控制器id+QUEUE_SUFFIX，
+ * 角色命令经sendPriority进入控制器id+PRIORITY_QUEUE_SUFFIX，不排在大量流表命令之后。
+ * 每个队列内按发送顺序：
+ * <ul>
+ * <li>发送方先把命令放入本地发件箱(每个队列最多MAX_PENDING条，满时立即以
+ * RejectedExecutionException失败)，由发送线程按顺序写入集群队列；集群队列满时
+ * 保留命令并退避重试，不丢弃，也不阻塞调用线程。返回的future在命令写入集群队列
+ * (已有备份)后完成。控制器被recover后，发往它的命令立即失败。</li>
+ * <li>接收方只有一个消费线程，优先处理角色队列；先peek处理、处理完成后再从队列移除(确认)。
+ * 消费线程或控制器在处理中途停止时命令仍在队列中，重新启动后再次投递，处理需可重复执行。
+ * 处理失败时退避重试，MAX_ATTEMPTS次后移入死信队列(控制器id+DEAD_LETTER_SUFFIX)再确认，
+ * 命令不会丢失：消费线程启动时死信重新投递，控制器被移除时随其他命令一起取出。</li>
+ * <li>处理可以异步完成：处理返回future时命令立即确认，消费线程继续处理下一条，
+ * 最多MAX_IN_FLIGHT条未完成；future失败时同样退避重试、最终移入死信队列。
+ * 异步处理的命令在确认后、完成前控制器停止时不会重新投递。</li>
+ * </ul>
+ * 接收方处理慢只会让其队列积压，发送方在队列满之前不受影响。
+ * <p>
+ * 队列以控制器id(hazelcast成员UUID)命名，控制器重启后成员UUID改变，不再读取原来的队列：
+ * 其中未处理的命令只由集群中执行recover的控制器取出重新分发，而recover时丢弃角色命令
+ * (由接管重新决定角色)，因此重启前未处理的角色命令不会再执行。
+ */
+public class CommandChannel {
+	private static final Logger log = LoggerFactory.getLogger(CommandChannel.class);
+
+	public static final String QUEUE_SUFFIX = "commands";
+	public static final String PRIORITY_QUEUE_SUFFIX = "rolecommands";
+	public static final String DEAD_LETTER_SUFFIX = "deadcommands";
+	/** 每个目标控制器在本地等待写入集群队列的命令上限 */
+	public static final int MAX_PENDING = 10000;
+	/** 一次连续写入同一目标的命令数，之后让出发送线程 */
+	public static final int DRAIN_BATCH = 256;
+	/** 集群队列满或不可用时的重试间隔 */
+	public static final long RETRY_MIN_MS = 10;
+	public static final long RETRY_MAX_MS = 1000;
+	/** 队列为空时消费线程的最长等待时间 */
+	public static final long IDLE_WAIT_MS = 100;
+	/** 一条命令的最多处理次数，之后移入死信队列 */
+	public static final int MAX_ATTEMPTS = 3;
+	/** 异步处理中、尚未完成的命令上限，达到时消费线程等待 */
+	public static final int MAX_IN_FLIGHT = 256;
+
+	/**
+	 * 命令处理
+	 */
+	public interface ICommandHandler {
+		/**
+		 * 处理一条命令，返回后命令被确认；抛出异常时重试，多次失败后移入死信队列，避免阻塞后续命令
+		 * @return null表示已处理完成；否则为异步处理的结果，失败时同样重试
+		 */
+		ListenableFuture<?> handle(Object command) throws Exception;
+	}
+
+	private final HazelcastInstance client;
+	private final String localId;
+	// 队列名->发件箱
+	private final ConcurrentMap<String, Outbox> outboxes = new ConcurrentHashMap<String, Outbox>();
+	// 已被recover的控制器，不再向其发送
+	private final Set<String> removed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final ScheduledExecutorService sender;
+
+	private final AtomicLong processed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong deadLettered = new AtomicLong();
+	private volatile Thread consumer;
+	// 本控制器队列有新命令时唤醒消费线程
+	private final Semaphore arrived = new Semaphore(0);
+	// 异步处理中的命令
+	private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
+	/**
+	 * 发往一个控制器一个队列的待发送命令
+	 */
+	private class Outbox {
+		final String queueName;
+		final ArrayDeque<Pending> pending = new ArrayDeque<Pending>();
+		boolean scheduled;
+		boolean closed;
+		long retryMs = RETRY_MIN_MS;
+		final AtomicLong sent = new AtomicLong();
+		final AtomicLong rejected = new AtomicLong();
+		final AtomicLong retries = new AtomicLong();
+
+		Outbox(String queueName) {
+			this.queueName = queueName;
+		}
+	}
+
+	private static class Pending {
+		final Object command;
+		final SettableFuture<Void> future = SettableFuture.create();
+
+		Pending(Object command) {
+			this.command = command;
+		}
+	}
+
+	public CommandChannel(HazelcastInstance client, String localId) {
+		this.client = client;
+		this.localId = localId;
+		this.sender = Executors.newSingleThreadScheduledExecutor(daemon("dsc-command-sender"));
+	}
+
+	private static ThreadFactory daemon(final String name) {
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name);
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	/**
+	 * 集群队列
+	 */
+	protected BlockingQueue<Object> queue(String name) {
+		return client.getQueue(name);
+	}
+
+	/**
+	 * 按顺序发送命令给controllerId
+	 * @return 命令写入对方队列后完成；本地积压超过MAX_PENDING时以RejectedExecutionException失败，
+	 * 控制器已被recover时以IllegalStateException失败
+	 */
+	public ListenableFuture<Void> send(String controllerId, Object command) {
+		return send(controllerId, controllerId + QUEUE_SUFFIX, command);
+	}
+
+	/**
+	 * 经优先队列发送，接收方先于send发送的命令处理；只在优先命令之间保持顺序
+	 */
+	public ListenableFuture<Void> sendPriority(String controllerId, Object command) {
+		return send(controllerId, controllerId + PRIORITY_QUEUE_SUFFIX, command);
+	}
+
+	private ListenableFuture<Void> send(String controllerId, String queueName, Object command) {
+		if (removed.contains(controllerId))
+			return removedFailure(controllerId);
+		Outbox outbox = outboxes.get(queueName);
+		if (outbox == null) {
+			Outbox created = new Outbox(queueName);
+			outbox = outboxes.putIfAbsent(queueName, created);
+			if (outbox == null)
+				outbox = created;
+		}
+		Pending p = new Pending(command);
+		synchronized (outbox) {
+			if (outbox.closed || removed.contains(controllerId)) {
+				// 与recover并发：发件箱已关闭，或在recover取出后新建
+				outbox.closed = true;
+				outboxes.remove(queueName, outbox);
+				return removedFailure(controllerId);
+			}
+			if (outbox.pending.size() >= MAX_PENDING) {
+				outbox.rejected.incrementAndGet();
+				return Futures.immediateFailedFuture(new RejectedExecutionException(
+						outbox.pending.size() + " commands waiting for " + queueName));
+			}
+			outbox.pending.addLast(p);
+			if (!outbox.scheduled) {
+				outbox.scheduled = true;
+				schedule(outbox, 0);
+			}
+		}
+		return p.future;
+	}
+
+	private static ListenableFuture<Void> removedFailure(String controllerId) {
+		return Futures.immediateFailedFuture(new IllegalStateException("controller " + controllerId + " removed"));
+	}
+
+	private void schedule(final Outbox outbox, long delayMs) {
+		sender.schedule(new Runnable() {
+			@Override
+			public void run() {
+				drain(outbox);
+			}
+		}, delayMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 在发送线程上按顺序把发件箱中的命令写入目标队列
+	 */
+	private void drain(Outbox outbox) {
+		BlockingQueue<Object> queue = queue(outbox.queueName);
+		for (int i = 0; i < DRAIN_BATCH; i++) {
+			Pending p;
+			synchronized (outbox) {
+				p = outbox.pending.peekFirst();
+				if (p == null) {
+					outbox.scheduled = false;
+					return;
+				}
+			}
+			boolean offered;
+			try {
+				offered = queue.offer(p.command);
+			} catch (Exception e) {
+				log.warn("failed to send command to {}: {}", outbox.queueName, e.toString());
+				offered = false;
+			}
+			if (!offered) {
+				// 对方队列满或集群不可用，保留命令稍后重试
+				outbox.retries.incrementAndGet();
+				schedule(outbox, outbox.retryMs);
+				outbox.retryMs = Math.min(RETRY_MAX_MS, outbox.retryMs * 2);
+				return;
+			}
+			outbox.retryMs = RETRY_MIN_MS;
+			synchronized (outbox) {
+				outbox.pending.pollFirst();
+			}
+			outbox.sent.incrementAndGet();
+			p.future.set(null);
+		}
+		schedule(outbox, 0);
+	}
+
+	/**
+	 * 启动本控制器队列的消费线程
+	 */
+	public synchronized void startConsumer(final ICommandHandler handler) {
+		if (consumer != null)
+			return;
+		final BlockingQueue<Object> priority = queue(localId + PRIORITY_QUEUE_SUFFIX);
+		final BlockingQueue<Object> normal = queue(localId + QUEUE_SUFFIX);
+		for (BlockingQueue<Object> queue : Arrays.asList(priority, normal)) {
+			if (queue instanceof IQueue) {
+				((IQueue<Object>) queue).addItemListener(new ItemListener<Object>() {
+					@Override
+					public void itemAdded(ItemEvent<Object> item) {
+						arrived.release();
+					}
+
+					@Override
+					public void itemRemoved(ItemEvent<Object> item) {
+					}
+				}, false);
+			}
+		}
+		redeliverDeadLetters(normal);
+		consumer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				consume(priority, normal, handler);
+			}
+		}, "dsc-command-consumer");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	public synchronized void stopConsumer() {
+		Thread t = consumer;
+		consumer = null;
+		if (t != null)
+			t.interrupt();
+	}
+
+	/**
+	 * 停止消费和发送，未写入集群队列的命令被丢弃
+	 */
+	public void shutDown() {
+		stopConsumer();
+		sender.shutdownNow();
+	}
+
+	private void consume(BlockingQueue<Object> priority, BlockingQueue<Object> normal, ICommandHandler handler) {
+		Thread self = Thread.currentThread();
+		while (consumer == self) {
+			BlockingQueue<Object> queue = priority;
+			Object command;
+			try {
+				command = priority.peek();
+				if (command == null) {
+					queue = normal;
+					command = normal.peek();
+				}
+				if (command == null) {
+					arrived.tryAcquire(IDLE_WAIT_MS, TimeUnit.MILLISECONDS);
+					arrived.drainPermits();
+					continue;
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				log.warn("failed to read command queue: {}", e.toString());
+				sleep(RETRY_MAX_MS);
+				continue;
+			}
+			try {
+				inFlight.acquire();
+			} catch (InterruptedException e) {
+				return;
+			}
+			boolean handled = handle(handler, command, self);
+			if (consumer != self)
+				return;// 已停止：不确认，重新启动后再次投递
+			if (!handled && !deadLetter(command)) {
+				sleep(RETRY_MAX_MS);// 死信队列不可用，不确认，稍后再次处理
+				continue;
+			}
+			try {
+				queue.poll();
+			} catch (Exception e) {
+				log.warn("failed to acknowledge command: {}", e.toString());
+			}
+		}
+	}
+
+	/**
+	 * 处理一条命令，失败时退避重试；同步处理结束时释放inFlight，异步处理在完成时释放
+	 * @return 是否成功或已交给异步处理；MAX_ATTEMPTS次都失败或消费已停止时返回false
+	 */
+	private boolean handle(ICommandHandler handler, Object command, Thread self) {
+		long backoffMs = RETRY_MIN_MS;
+		for (int attempt = 1;; attempt++) {
+			try {
+				ListenableFuture<?> f = handler.handle(command);
+				if (f != null && !f.isDone()) {
+					track(handler, command, f, attempt, backoffMs);
+					return true;
+				}
+				if (f != null)
+					f.get();
+				processed.incrementAndGet();
+				inFlight.release();
+				return true;
+			} catch (Exception e) {
+				failed.incrementAndGet();
+				if (consumer != self || attempt >= MAX_ATTEMPTS) {
+					if (consumer == self)
+						log.error("failed to handle command " + command + " after " + attempt + " attempts", e);
+					inFlight.release();
+					return false;
+				}
+				log.warn("failed to handle command {}, retrying: {}", command, e.toString());
+				sleep(backoffMs);
+				backoffMs = Math.min(RETRY_MAX_MS, backoffMs * 2);
+			}
+		}
+	}
+
+	/**
+	 * 等待异步处理完成，失败时在发送线程上退避重试，MAX_ATTEMPTS次后移入死信队列
+	 */
+	private void track(final ICommandHandler handler, final Object command, ListenableFuture<?> f,
+			final int attempt, final long backoffMs) {
+		Futures.addCallback(f, new FutureCallback<Object>() {
+			@Override
+			public void onSuccess(Object result) {
+				processed.incrementAndGet();
+				inFlight.release();
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				failed.incrementAndGet();
+				if (attempt >= MAX_ATTEMPTS) {
+					log.error("failed to handle command " + command + " after " + attempt + " attempts", t);
+					if (!deadLetter(command))
+						log.error("dropping command {}", command);
+					inFlight.release();
+					return;
+				}
+				log.warn("failed to handle command {}, retrying: {}", command, t.toString());
+				try {
+					sender.schedule(new Runnable() {
+						@Override
+						public void run() {
+							retry(handler, command, attempt + 1, Math.min(RETRY_MAX_MS, backoffMs * 2));
+						}
+					}, backoffMs, TimeUnit.MILLISECONDS);
+				} catch (RejectedExecutionException e) {
+					inFlight.release();// 已关闭
+				}
+			}
+		});
+	}
+
+	private void retry(ICommandHandler handler, Object command, int attempt, long backoffMs) {
+		ListenableFuture<?> f;
+		try {
+			f = handler.handle(command);
+		} catch (Exception e) {
+			f = Futures.immediateFailedFuture(e);
+		}
+		track(handler, command, f == null ? Futures.immediateFuture(null) : f, attempt, backoffMs);
+	}
+
+	/**
+	 * 把处理失败的命令移入本控制器的死信队列
+	 * @return 是否已写入
+	 */
+	private boolean deadLetter(Object command) {
+		try {
+			if (queue(localId + DEAD_LETTER_SUFFIX).offer(command)) {
+				deadLettered.incrementAndGet();
+				return true;
+			}
+			log.warn("dead letter queue of {} is full", localId);
+		} catch (Exception e) {
+			log.warn("failed to dead-letter command: {}", e.toString());
+		}
+		return false;
+	}
+
+	/**
+	 * 把上次运行时移入死信队列的命令放回命令队列重新处理
+	 */
+	private void redeliverDeadLetters(BlockingQueue<Object> normal) {
+		BlockingQueue<Object> dead = queue(localId + DEAD_LETTER_SUFFIX);
+		int n = 0;
+		try {
+			Object command;
+			while ((command = dead.peek()) != null && normal.offer(command)) {
+				dead.poll();
+				n++;
+			}
+		} catch (Exception e) {
+			log.warn("failed to redeliver dead letters: {}", e.toString());
+		}
+		if (n > 0)
+			log.info("redelivering {} dead-lettered commands", n);
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 控制器已被移除：取出发往它的待发送命令，并可取出其队列中未处理的命令；之后发往它的命令立即失败
+	 * @param drainQueue 是否取出队列中的命令，集群中只应由一个控制器执行
+	 * @return 未处理的命令，先死信和命令队列、后角色队列，再本地待发送，各自按发送顺序
+	 */
+	public List<Object> recover(String controllerId, boolean drainQueue) {
+		removed.add(controllerId);
+		List<Object> commands = new ArrayList<Object>();
+		if (drainQueue) {
+			for (String suffix : new String[] { DEAD_LETTER_SUFFIX, QUEUE_SUFFIX, PRIORITY_QUEUE_SUFFIX })
+				queue(controllerId + suffix).drainTo(commands);
+		}
+		for (String suffix : new String[] { QUEUE_SUFFIX, PRIORITY_QUEUE_SUFFIX }) {
+			Outbox outbox = outboxes.remove(controllerId + suffix);
+			if (outbox == null)
+				continue;
+			synchronized (outbox) {
+				outbox.closed = true;
+				for (Pending p : outbox.pending) {
+					commands.add(p.command);
+					p.future.setException(new IllegalStateException("controller " + controllerId + " removed"));
+				}
+				outbox.pending.clear();
+			}
+		}
+		return commands;
+	}
+
+	/**
+	 * @return 各目标的积压/已发送/拒绝/重试数，以及本控制器的处理统计
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		Map<String, Object> targets = new TreeMap<String, Object>();
+		for (Outbox o : outboxes.values()) {
+			Map<String, Object> m = new LinkedHashMap<String, Object>();
+			synchronized (o) {
+				m.put("pending", o.pending.size());
+			}
+			m.put("sent", o.sent.get());
+			m.put("rejected", o.rejected.get());
+			m.put("retries", o.retries.get());
+			targets.put(o.queueName, m);
+		}
+		stats.put("targets", targets);
+		stats.put("processed", processed.get());
+		stats.put("failed", failed.get());
+		stats.put("deadLettered", deadLettered.get());
+		return stats;
+	}
+}
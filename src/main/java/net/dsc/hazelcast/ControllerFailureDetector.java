@@ -0,0 +1,348 @@
+package net.dsc.hazelcast;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.dsc.cluster.LatencyHistogram;
+import net.dsc.hazelcast.listener.IControllerListener;
+import net.dsc.hazelcast.message.HeartbeatMessage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Ticker;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.MemberAttributeEvent;
+import com.hazelcast.core.MembershipEvent;
+import com.hazelcast.core.MembershipListener;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+
+/**
+ * 控制器存活检测
+ * <p>
+ * 每个控制器以HEARTBEAT_INTERVAL_MS的间隔向心跳主题发布心跳，并对其他控制器的心跳
+ * 做phi-accrual检测。phi超过阈值、且距最后一次心跳已超过可接受停顿时间时，
+ * 不等hazelcast移除成员(默认心跳超时为数十秒)，立即通知IControllerListener，由备份控制器按预先计算的备份计划接管交换机；
+ * 成员真正被移除时再通知一次，用于清理集群数据。被怀疑的控制器恢复心跳时通知恢复；
+ * 本控制器也检测自己的心跳，自己的心跳曾中断(如长时间停顿)后恢复时通知本控制器恢复，
+ * 由其重新核对交换机角色。
+ * 心跳稳定时phi在约两百毫秒的中断后即超过阈值，可接受停顿时间(默认DEFAULT_ACCEPTABLE_PAUSE_MS)
+ * 避免GC停顿或主题投递延迟引起接管。
+ * 心跳和检测在独立线程上运行，不受公共线程池中其他任务的影响；通知在另一个线程上
+ * 串行执行，接管期间检测照常进行。
+ */
+public class ControllerFailureDetector implements MessageListener<HeartbeatMessage>, MembershipListener {
+	private static final Logger log = LoggerFactory.getLogger(ControllerFailureDetector.class);
+
+	public static final String HEARTBEAT_TOPIC = "controllerHeartbeat";
+	/** 心跳发布间隔 */
+	public static final long HEARTBEAT_INTERVAL_MS = 50;
+	/** 检测间隔 */
+	public static final long CHECK_INTERVAL_MS = 25;
+	/** 怀疑阈值，约为均值加5.6倍标准差，对应误判概率1e-8 */
+	public static final double PHI_THRESHOLD = 8.0;
+	public static final int WINDOW_SIZE = 100;
+	public static final double MIN_STD_DEV_MS = 25;
+	/** 怀疑前至少要经过的心跳中断时间 */
+	public static final long DEFAULT_ACCEPTABLE_PAUSE_MS = 500;
+
+	private final HazelcastInstance hazelcast;
+	private final String localId;
+	private final long acceptablePauseMs;
+	private final PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(
+			WINDOW_SIZE, MIN_STD_DEV_MS, HEARTBEAT_INTERVAL_MS);
+	private final List<IControllerListener> listeners = new CopyOnWriteArrayList<IControllerListener>();
+	// 已怀疑且已通知的控制器，与detector使用同一把锁
+	private final Set<String> suspected = new HashSet<String>();
+	// 本控制器自己的心跳曾超过阈值，其他控制器可能已怀疑本控制器
+	private boolean selfSuspected;
+	private final Ticker ticker;
+
+	private ScheduledExecutorService timer;
+	private ExecutorService notifier;
+	private ITopic<HeartbeatMessage> topic;
+	private long sequence;
+	private long lastCheckMs;
+
+	// 最后一次心跳->怀疑
+	private final LatencyHistogram detectionTime = new LatencyHistogram("detection");
+	// 怀疑->接管完成
+	private final LatencyHistogram suspectToTakeoverTime = new LatencyHistogram("suspect-to-takeover");
+	// 最后一次心跳->接管完成，即控制器故障到交换机有新master的近似时间
+	private final LatencyHistogram crashToMasterTime = new LatencyHistogram("crash-to-master");
+
+	/**
+	 * @param acceptablePauseMs 怀疑前至少要经过的心跳中断时间
+	 */
+	public ControllerFailureDetector(HazelcastInstance hazelcast, String localId, long acceptablePauseMs) {
+		this(hazelcast, localId, acceptablePauseMs, Ticker.systemTicker(), null);
+	}
+
+	/**
+	 * 测试用：指定时钟和通知线程
+	 */
+	ControllerFailureDetector(HazelcastInstance hazelcast, String localId, long acceptablePauseMs,
+			Ticker ticker, ExecutorService notifier) {
+		if (acceptablePauseMs < 0)
+			throw new IllegalArgumentException("acceptablePauseMs < 0");
+		this.hazelcast = hazelcast;
+		this.localId = localId;
+		this.acceptablePauseMs = acceptablePauseMs;
+		this.ticker = ticker;
+		this.notifier = notifier;
+		this.lastCheckMs = nowMs();
+	}
+
+	public void addListener(IControllerListener listener) {
+		listeners.add(listener);
+	}
+
+	public void startUp(HazelcastInstance client) {
+		timer = Executors.newSingleThreadScheduledExecutor(daemon("dsc-heartbeat"));
+		if (notifier == null)
+			notifier = Executors.newSingleThreadExecutor(daemon("dsc-failover"));
+		topic = client.getTopic(HEARTBEAT_TOPIC);
+		topic.addMessageListener(this);
+		hazelcast.getCluster().addMembershipListener(this);
+		lastCheckMs = nowMs();
+		timer.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					topic.publish(new HeartbeatMessage(localId, ++sequence));
+				} catch (Exception e) {
+					log.warn("failed to publish heartbeat: {}", e.toString());
+				}
+			}
+		}, 0, HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+		timer.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					check();
+				} catch (Exception e) {
+					log.warn("failure detection failed", e);
+				}
+			}
+		}, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 停止心跳和检测，之后不再通知监听者
+	 */
+	public void shutDown() {
+		if (timer != null)
+			timer.shutdownNow();
+		if (notifier != null)
+			notifier.shutdownNow();
+	}
+
+	private static ThreadFactory daemon(final String name) {
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name);
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	private long nowMs() {
+		return TimeUnit.NANOSECONDS.toMillis(ticker.read());
+	}
+
+	@Override
+	public void onMessage(Message<HeartbeatMessage> message) {
+		heartbeat(message.getMessageObject().controllerId);
+	}
+
+	/**
+	 * 记录一次心跳，本控制器自己的心跳也记录，用于发现自己的心跳中断
+	 */
+	void heartbeat(String id) {
+		synchronized (detector) {
+			detector.heartbeat(id, nowMs());
+		}
+	}
+
+	/**
+	 * 计算各控制器的phi，新超过阈值的控制器提交通知，恢复心跳的被怀疑控制器通知恢复
+	 */
+	void check() {
+		long now = nowMs();
+		// 本机自身停顿(如GC)时所有心跳都会显得迟到，跳过本轮
+		boolean paused = now - lastCheckMs > 4 * CHECK_INTERVAL_MS;
+		lastCheckMs = now;
+		boolean selfRecovered = false;
+		synchronized (detector) {
+			// 自己的心跳与发往其他控制器的心跳同时中断，超过阈值说明其他控制器可能已怀疑本控制器
+			boolean selfLate = detector.getLastHeartbeat(localId) >= 0 && isLate(localId, now);
+			if (selfLate) {
+				selfSuspected = true;
+			} else if (selfSuspected && !paused) {
+				selfSuspected = false;
+				selfRecovered = true;
+			}
+		}
+		if (selfRecovered) {
+			log.warn("heartbeats of this controller resumed after an interruption");
+			notifyRecovered(localId);
+		}
+		if (paused)
+			return;
+		Set<String> members = new HashSet<String>();
+		for (Member m : hazelcast.getCluster().getMembers()) {
+			members.add(m.getUuid());
+		}
+		List<String> failed = new ArrayList<String>();
+		List<String> recovered = new ArrayList<String>();
+		synchronized (detector) {
+			for (String id : new ArrayList<String>(detector.getMonitored())) {
+				if (localId.equals(id))
+					continue;
+				if (!members.contains(id)) {
+					// 已被移除的成员，丢弃移除后才到达的心跳
+					detector.remove(id);
+					suspected.remove(id);
+					continue;
+				}
+				boolean suspect = isLate(id, now);
+				if (suspect && suspected.add(id)) {
+					failed.add(id);
+					detectionTime.record(now - detector.getLastHeartbeat(id), TimeUnit.MILLISECONDS);
+				} else if (!suspect && suspected.remove(id)) {
+					recovered.add(id);
+				}
+			}
+		}
+		for (String id : failed) {
+			log.warn("controller {} suspected by phi-accrual detector", id);
+			notifyRemoved(id, true);
+		}
+		for (String id : recovered) {
+			log.warn("controller {} is sending heartbeats again after being suspected", id);
+			notifyRecovered(id);
+		}
+	}
+
+	/**
+	 * phi超过阈值且中断时间不短于可接受停顿时间，调用者持有detector的锁
+	 */
+	private boolean isLate(String id, long now) {
+		return detector.phi(id, now) > PHI_THRESHOLD
+				&& now - detector.getLastHeartbeat(id) >= acceptablePauseMs;
+	}
+
+	/**
+	 * 在通知线程上调用各监听者
+	 * @param early 由心跳检测触发，成员尚未被hazelcast移除
+	 */
+	private void notifyRemoved(final String id, final boolean early) {
+		final long start = nowMs();
+		final long lastHeartbeat;
+		synchronized (detector) {
+			lastHeartbeat = detector.getLastHeartbeat(id);
+		}
+		notifier.execute(new Runnable() {
+			@Override
+			public void run() {
+				Set<String> live = getLiveControllers();
+				live.remove(id);
+				for (IControllerListener l : listeners) {
+					try {
+						l.controllerRemoved(id, live, !early);
+					} catch (Exception e) {
+						log.error("controller listener failed for " + id, e);
+					}
+				}
+				if (early) {
+					long end = nowMs();
+					suspectToTakeoverTime.record(end - start, TimeUnit.MILLISECONDS);
+					crashToMasterTime.record(end - lastHeartbeat, TimeUnit.MILLISECONDS);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 在通知线程上调用各监听者，排在之前的移除通知之后
+	 */
+	private void notifyRecovered(final String id) {
+		notifier.execute(new Runnable() {
+			@Override
+			public void run() {
+				Set<String> live = getLiveControllers();
+				for (IControllerListener l : listeners) {
+					try {
+						l.controllerRecovered(id, live);
+					} catch (Exception e) {
+						log.error("controller listener failed for " + id, e);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return hazelcast成员中未被怀疑的控制器
+	 */
+	public Set<String> getLiveControllers() {
+		Set<String> live = new HashSet<String>();
+		for (Member m : hazelcast.getCluster().getMembers()) {
+			live.add(m.getUuid());
+		}
+		synchronized (detector) {
+			live.removeAll(suspected);
+		}
+		return live;
+	}
+
+	@Override
+	public void memberAdded(MembershipEvent event) {
+	}
+
+	@Override
+	public void memberRemoved(MembershipEvent event) {
+		String id = event.getMember().getUuid();
+		synchronized (detector) {
+			detector.remove(id);
+			suspected.remove(id);
+		}
+		notifyRemoved(id, false);
+	}
+
+	@Override
+	public void memberAttributeChanged(MemberAttributeEvent event) {
+	}
+
+	public Map<String, Map<String, Object>> getStats() {
+		Map<String, Map<String, Object>> stats = new LinkedHashMap<String, Map<String, Object>>();
+		for (LatencyHistogram h : new LatencyHistogram[] { detectionTime, suspectToTakeoverTime, crashToMasterTime }) {
+			stats.put(h.getName(), h.snapshot());
+		}
+		Map<String, Object> phi = new LinkedHashMap<String, Object>();
+		long now = nowMs();
+		synchronized (detector) {
+			for (String id : detector.getMonitored()) {
+				phi.put(id, detector.phi(id, now));
+			}
+			phi.put("suspected", new ArrayList<String>(suspected));
+		}
+		stats.put("phi", phi);
+		return stats;
+	}
+}
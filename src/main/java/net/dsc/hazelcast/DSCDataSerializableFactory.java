@@ -0,0 +1,118 @@
+package net.dsc.hazelcast;
+
+import java.io.IOException;
+import java.util.Map;
+
+import net.dsc.cluster.model.ControllerModel;
+import net.dsc.cluster.model.ControllerTrafficModel;
+import net.dsc.cluster.model.HostLocationModel;
+import net.dsc.cluster.model.LinkModel;
+import net.dsc.cluster.model.SwitchConnectModel;
+import net.dsc.cluster.model.SwitchModel;
+import net.dsc.cluster.model.SwitchOwnershipModel;
+import net.dsc.cluster.processor.LoadDeltaProcessor;
+import net.dsc.cluster.processor.LoadSetProcessor;
+import net.dsc.cluster.processor.OwnershipUpdateProcessor;
+import net.dsc.hazelcast.message.FlowBatchMessage;
+import net.dsc.hazelcast.message.FlowBatchReplyMessage;
+import net.dsc.hazelcast.message.FlowMessage;
+import net.dsc.hazelcast.message.HeartbeatMessage;
+import net.dsc.hazelcast.message.RoleBatchMessage;
+import net.dsc.hazelcast.message.RoleBatchReplyMessage;
+import net.dsc.hazelcast.message.RoleMessage;
+import net.dsc.hazelcast.message.ShutDownMessage;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializableFactory;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * 集群模型与消息的序列化工厂
+ * Creates the cluster models and messages by type id so that Hazelcast can
+ * (de)serialize them without reflection or class descriptors. Registered
+ * under {@link #FACTORY_ID} in hazelcast.xml and hazelcast-client.xml.
+ */
+public class DSCDataSerializableFactory implements DataSerializableFactory {
+
+	public static final int FACTORY_ID = 1;
+
+	public static final int CONTROLLER_MODEL = 1;
+	public static final int SWITCH_MODEL = 2;
+	public static final int LINK_MODEL = 3;
+	public static final int SWITCH_CONNECT_MODEL = 4;
+	public static final int ROLE_MESSAGE = 5;
+	public static final int FLOW_MESSAGE = 6;
+	public static final int SHUTDOWN_MESSAGE = 7;
+	public static final int ROLE_BATCH_MESSAGE = 8;
+	public static final int ROLE_BATCH_REPLY_MESSAGE = 9;
+	public static final int LOAD_DELTA_PROCESSOR = 10;
+	public static final int CONTROLLER_TRAFFIC_MODEL = 11;
+	public static final int FLOW_BATCH_MESSAGE = 12;
+	public static final int FLOW_BATCH_REPLY_MESSAGE = 13;
+	public static final int SWITCH_OWNERSHIP_MODEL = 14;
+	public static final int OWNERSHIP_UPDATE_PROCESSOR = 15;
+	public static final int HOST_LOCATION_MODEL = 16;
+	public static final int HEARTBEAT_MESSAGE = 17;
+	public static final int LOAD_SET_PROCESSOR = 18;
+
+	@Override
+	public IdentifiedDataSerializable create(int typeId) {
+		switch (typeId) {
+		case CONTROLLER_MODEL:
+			return new ControllerModel();
+		case SWITCH_MODEL:
+			return new SwitchModel();
+		case LINK_MODEL:
+			return new LinkModel();
+		case SWITCH_CONNECT_MODEL:
+			return new SwitchConnectModel();
+		case ROLE_MESSAGE:
+			return new RoleMessage();
+		case FLOW_MESSAGE:
+			return new FlowMessage();
+		case SHUTDOWN_MESSAGE:
+			return new ShutDownMessage();
+		case ROLE_BATCH_MESSAGE:
+			return new RoleBatchMessage();
+		case ROLE_BATCH_REPLY_MESSAGE:
+			return new RoleBatchReplyMessage();
+		case LOAD_DELTA_PROCESSOR:
+			return new LoadDeltaProcessor();
+		case CONTROLLER_TRAFFIC_MODEL:
+			return new ControllerTrafficModel();
+		case FLOW_BATCH_MESSAGE:
+			return new FlowBatchMessage();
+		case FLOW_BATCH_REPLY_MESSAGE:
+			return new FlowBatchReplyMessage();
+		case SWITCH_OWNERSHIP_MODEL:
+			return new SwitchOwnershipModel();
+		case OWNERSHIP_UPDATE_PROCESSOR:
+			return new OwnershipUpdateProcessor();
+		case HOST_LOCATION_MODEL:
+			return new HostLocationModel();
+		case HEARTBEAT_MESSAGE:
+			return new HeartbeatMessage();
+		case LOAD_SET_PROCESSOR:
+			return new LoadSetProcessor();
+		default:
+			return null;
+		}
+	}
+
+	public static void writeStringMap(ObjectDataOutput out, Map<String, String> map) throws IOException {
+		out.writeInt(map.size());
+		for (Map.Entry<String, String> e : map.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeUTF(e.getValue());
+		}
+	}
+
+	public static <M extends Map<String, String>> M readStringMap(ObjectDataInput in, M map) throws IOException {
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			map.put(in.readUTF(), in.readUTF());
+		}
+		return map;
+	}
+}
@@ -6,26 +6,50 @@ import com.hazelcast.client.HazelcastClient;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
 
+/**
+ * Hazelcast实例管理
+ * <p>
+ * 嵌入模式(embedded)下所有数据结构和主题都直接由本JVM中的成员实例提供；
+ * 客户端模式(client)下另外启动一个连接本地成员的客户端，MultiMap、集合、
+ * 队列、列表和主题经由该客户端访问，每次操作多一次客户端到成员的网络往返。
+ * 模式须在首次获取实例之前设置。
+ */
 public class HazelcastManager {
 	private HazelcastManager(){ }
 	
+	private static volatile boolean embedded = false;
+	
 	private static class  InstanceHolder{
 		private static HazelcastInstance  instance = Hazelcast.newHazelcastInstance();
+	}
+	
+	private static class  ClientHolder{
 		private static HazelcastInstance client = HazelcastClient.newHazelcastClient();
 	}
 	
+	public static void setEmbedded(boolean embedded){
+		HazelcastManager.embedded = embedded;
+	}
+	
+	public static boolean isEmbedded(){
+		return embedded;
+	}
+	
 	public static HazelcastInstance  getHazelcastInstance(){
 		return InstanceHolder.instance;
 	}
 	
 	
-	
+	/**
+	 * 嵌入模式下返回成员实例本身
+	 */
 	public static HazelcastInstance getHazelcastClient(){
-		return InstanceHolder.client;
+		return embedded ? InstanceHolder.instance : ClientHolder.client;
 	}
 	
 	public static void ShutDownClient(){
-		InstanceHolder.client.shutdown();
+		if (!embedded)
+			ClientHolder.client.shutdown();
 	}
 	
 	public static void ShutDownInstance(){
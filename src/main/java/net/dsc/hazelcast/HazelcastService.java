@@ -1,20 +1,41 @@
 package net.dsc.hazelcast;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.dsc.cluster.web.FlowEntryPushUtil;
+import net.dsc.hazelcast.listener.FlowBatchMessageListener;
+import net.dsc.hazelcast.listener.FlowBatchReplyMessageListener;
 import net.dsc.hazelcast.listener.FlowMessageListener;
+import net.dsc.hazelcast.listener.IControllerListener;
+import net.dsc.hazelcast.listener.RoleBatchMessageListener;
+import net.dsc.hazelcast.listener.RoleBatchReplyMessageListener;
 import net.dsc.hazelcast.listener.RoleMessageListener;
 import net.dsc.hazelcast.listener.ShutDownMessageListener;
+import net.dsc.hazelcast.message.FlowBatchMessage;
+import net.dsc.hazelcast.message.FlowBatchReplyMessage;
 import net.dsc.hazelcast.message.FlowMessage;
+import net.dsc.hazelcast.message.RoleBatchMessage;
+import net.dsc.hazelcast.message.RoleBatchReplyMessage;
 import net.dsc.hazelcast.message.RoleMessage;
 import net.dsc.hazelcast.message.ShutDownMessage;
-import net.floodlightcontroller.core.IOFSwitch;
 import net.floodlightcontroller.core.IShutdownService;
+import net.floodlightcontroller.core.SwitchDisconnectedException;
 import net.floodlightcontroller.core.internal.IOFSwitchService;
 import net.floodlightcontroller.core.module.FloodlightModuleContext;
 import net.floodlightcontroller.core.module.FloodlightModuleException;
@@ -22,14 +43,20 @@ import net.floodlightcontroller.core.module.IFloodlightModule;
 import net.floodlightcontroller.core.module.IFloodlightService;
 import net.floodlightcontroller.staticflowentry.StaticFlowEntryPusher;
 import net.floodlightcontroller.storage.IStorageSourceService;
+import net.floodlightcontroller.threadpool.IThreadPoolService;
 
 import org.projectfloodlight.openflow.protocol.OFControllerRole;
 import org.projectfloodlight.openflow.protocol.OFFlowMod;
 import org.projectfloodlight.openflow.types.DatapathId;
-import org.projectfloodlight.openflow.types.U64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IList;
 import com.hazelcast.core.IMap;
@@ -41,6 +68,7 @@ import com.hazelcast.core.MembershipListener;
 import com.hazelcast.core.Message;
 import com.hazelcast.core.MessageListener;
 import com.hazelcast.core.MultiMap;
+import com.hazelcast.map.EntryProcessor;
 
 public class HazelcastService implements IHazelcastService,IFloodlightModule,IMessageListener{
 	private  static final String FlowMessageTopic = "flowMessageTopic";
@@ -50,14 +78,61 @@ public class HazelcastService implements IHazelcastService,IFloodlightModule,IMe
 	private static final String STR_ROLE_EQUAL = "EQUAL";
 	private static final String STR_ROLE_OTHER = "OTHER";
 	
+	private static final String ROLE_BATCH_TOPIC_SUFFIX = "rolebatch";
+	private static final String ROLE_BATCH_REPLY_TOPIC_SUFFIX = "rolebatchreply";
+	//等待交换机角色回复的超时时间
+	public static final long ROLE_REPLY_TIMEOUT_MS = 3000;
+	//等待远端控制器批量应答的超时时间
+	public static final long ROLE_BATCH_TIMEOUT_MS = 2 * ROLE_REPLY_TIMEOUT_MS;
+	public static final String ROLE_RESULT_NOT_CONNECTED = "ERROR: switch not connected";
+	public static final String ROLE_RESULT_TIMEOUT = "ERROR: role reply timeout";
+	private static final String FLOW_BATCH_TOPIC_SUFFIX = "flowbatch";
+	private static final String FLOW_BATCH_REPLY_TOPIC_SUFFIX = "flowbatchreply";
+	//等待远端控制器写入批量流表的超时时间
+	public static final long FLOW_BATCH_TIMEOUT_MS = 10000;
+	public static final String FLOW_RESULT_OK = "OK";
+	/** 执行没有原生异步接口的操作的线程数 */
+	public static final int ASYNC_THREADS = 4;
+	
 	private static final Logger log = LoggerFactory
 			.getLogger(HazelcastService.class);
 
 	private HazelcastInstance hazelcastInstance = null;
+	// 客户端模式下为回环客户端，嵌入模式下即为成员实例
 	private HazelcastInstance client = null;
-	private static IStorageSourceService storageSourceService = null;
-	private static IOFSwitchService switchService = null;
-	private static IShutdownService shutService=null;
+	private ControllerFailureDetector failureDetector = null;
+	private AsyncHazelcastOperations async = null;
+	// 命令通道中的流表命令的存储写入线程
+	private ListeningExecutorService flowWriter = null;
+	private CommandChannel commands = null;
+	private IStorageSourceService storageSourceService = null;
+	private IOFSwitchService switchService = null;
+	private IShutdownService shutService=null;
+	private IThreadPoolService threadPoolService = null;
+	private ExecutorService asyncExecutor = null;
+	//经topic收到的批量流表在此线程上写入存储，不阻塞topic的监听线程；单线程保持到达顺序
+	private final ExecutorService flowBatchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "dsc-flow-batch");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	//本控制器发出、尚未收到应答的批量请求 requestId->future
+	private final ConcurrentMap<String, SettableFuture<Map<String, String>>> pendingBatches =
+			new ConcurrentHashMap<String, SettableFuture<Map<String, String>>>();
+
+	public HazelcastService() {
+	}
+
+	/**
+	 * 使用给定的嵌入式成员，不经过HazelcastManager，一个JVM中可以有多个实例(如多控制器测试)
+	 */
+	public HazelcastService(HazelcastInstance member) {
+		this.hazelcastInstance = member;
+		this.client = member;
+	}
 
 	@Override
 	public <K, V> IMap<K,V> getMap(String MapName) {
@@ -107,6 +182,7 @@ public class HazelcastService implements IHazelcastService,IFloodlightModule,IMe
 		l.add(IOFSwitchService.class);
 		l.add(IStorageSourceService.class);
 		l.add(IShutdownService.class);
+		l.add(IThreadPoolService.class);
 		return l;
 	}
 	//test
@@ -114,11 +190,49 @@ public class HazelcastService implements IHazelcastService,IFloodlightModule,IMe
 	public void init(FloodlightModuleContext context)
 			throws FloodlightModuleException {
 		log.info("Hazelcast Init");
+		if (hazelcastInstance == null) {
+			// mode=embedded: 所有数据结构由本地成员提供，不再经过回环客户端
+			String mode = context.getConfigParams(this).get("mode");
+			HazelcastManager.setEmbedded("embedded".equalsIgnoreCase(mode));
+			log.info("Hazelcast mode: {}", HazelcastManager.isEmbedded() ? "embedded" : "client");
+			hazelcastInstance = HazelcastManager.getHazelcastInstance();
+			client = HazelcastManager.getHazelcastClient();
+		}
 		switchService = context.getServiceImpl(IOFSwitchService.class);
 		storageSourceService = context.getServiceImpl(IStorageSourceService.class);
-		hazelcastInstance = HazelcastManager.getHazelcastInstance();
 		shutService=context.getServiceImpl(IShutdownService.class);
-		client = HazelcastManager.getHazelcastClient();
+		threadPoolService = context.getServiceImpl(IThreadPoolService.class);
+		// acceptablePauseMs: 心跳中断多久后才可能怀疑控制器并提前接管
+		long acceptablePauseMs = ControllerFailureDetector.DEFAULT_ACCEPTABLE_PAUSE_MS;
+		String pause = context.getConfigParams(this).get("acceptablePauseMs");
+		if (pause != null) {
+			try {
+				acceptablePauseMs = Long.parseLong(pause.trim());
+			} catch (NumberFormatException e) {
+				throw new FloodlightModuleException("invalid acceptablePauseMs " + pause);
+			}
+		}
+		log.info("Failure detector acceptable pause: {} ms", acceptablePauseMs);
+		failureDetector = new ControllerFailureDetector(hazelcastInstance, getLocalMember().getUuid(), acceptablePauseMs);
+		asyncExecutor = Executors.newFixedThreadPool(ASYNC_THREADS, new ThreadFactory() {
+			private final AtomicInteger n = new AtomicInteger();
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "dsc-hazelcast-async-" + n.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		async = new AsyncHazelcastOperations(client, asyncExecutor);
+		commands = new CommandChannel(client, getLocalMember().getUuid());
+		flowWriter = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "dsc-flow-writer");
+				t.setDaemon(true);
+				return t;
+			}
+		}));
 	}
 
 	@Override
@@ -127,22 +241,57 @@ public class HazelcastService implements IHazelcastService,IFloodlightModule,IMe
 /*		HazelcastListenerManager.addFlowMessageListener(FlowMessageTopic);
 		HazelcastListenerManager.addListenRoleChange(getLocalMember().getUuid(),new FlowM);*/
 		
-		HazelcastListenerManager.addMessageListener(getLocalMember().getUuid(), new RoleMessageListener(this));
-		HazelcastListenerManager.addMessageListener(getLocalMember().getUuid()+"flow", new FlowMessageListener(this));
-		HazelcastListenerManager.addMessageListener(getLocalMember().getUuid()+"shutdown", new ShutDownMessageListener(this));
-		
+		// 流表和角色命令经命令通道发送，主题只接收旧版本节点发来的消息
+		addMessageListener(getLocalMember().getUuid(), new RoleMessageListener(this));
+		addMessageListener(getLocalMember().getUuid()+"flow", new FlowMessageListener(this));
+		addMessageListener(getLocalMember().getUuid()+"shutdown", new ShutDownMessageListener(this));
+		addMessageListener(getLocalMember().getUuid()+ROLE_BATCH_TOPIC_SUFFIX, new RoleBatchMessageListener(this));
+		addMessageListener(getLocalMember().getUuid()+ROLE_BATCH_REPLY_TOPIC_SUFFIX, new RoleBatchReplyMessageListener(this));
+		addMessageListener(getLocalMember().getUuid()+FLOW_BATCH_TOPIC_SUFFIX, new FlowBatchMessageListener(this));
+		addMessageListener(getLocalMember().getUuid()+FLOW_BATCH_REPLY_TOPIC_SUFFIX, new FlowBatchReplyMessageListener(this));
+		failureDetector.startUp(client);
+		commands.startConsumer(new CommandChannel.ICommandHandler() {
+			@Override
+			public ListenableFuture<?> handle(Object command) throws Exception {
+				return handleCommand(command);
+			}
+		});
+	}
+
+	/**
+	 * 停止故障检测、命令通道和各工作线程，不关闭hazelcast成员
+	 */
+	public void shutDown() {
+		failureDetector.shutDown();
+		commands.shutDown();
+		asyncExecutor.shutdownNow();
+		flowWriter.shutdownNow();
+		flowBatchExecutor.shutdownNow();
+	}
+
+	private <T> void addMessageListener(String topicName, MessageListener<T> listener) {
+		ITopic<T> topic = client.getTopic(topicName);
+		topic.addMessageListener(listener);
+	}
+	
+	@Override
+	public ListenableFuture<Void> publishFlowMessage(FlowMessage flowMessage,String ControllerId) {
+		return commands.send(ControllerId, flowMessage);
+	}
+	
+	@Override
+	public ListenableFuture<Void> publishRoleMessage(RoleMessage roleMessage,String ControllerId) {
+		return commands.sendPriority(ControllerId, roleMessage);
 	}
 	
 	@Override
-	public void publishFlowMessage(FlowMessage flowMessage,String ControllerId) {
-		ITopic<FlowMessage> topic =  client.getTopic(ControllerId+"flow");
-		topic.publish(flowMessage);
+	public List<Object> recoverCommands(String controllerId, boolean drainQueue) {
+		return commands.recover(controllerId, drainQueue);
 	}
 	
 	@Override
-	public void publishRoleMessage(RoleMessage roleMessage,String ControllerId) {
-		ITopic<RoleMessage> topic = client.getTopic(ControllerId);
-		topic.publish(roleMessage);
+	public Map<String, Object> getCommandStats() {
+		return commands.getStats();
 	}
 	
 	@Override
@@ -152,6 +301,78 @@ public class HazelcastService implements IHazelcastService,IFloodlightModule,IMe
 		topic.publish(shutmessage);
 	}
 	
+	@Override
+	public ListenableFuture<Void> publishRoleBatchMessage(RoleBatchMessage roleBatchMessage,
+			String controllerId) {
+		return commands.sendPriority(controllerId, roleBatchMessage);
+	}
+	
+	private void publishRoleBatchReply(RoleBatchReplyMessage reply, String controllerId) {
+		ITopic<RoleBatchReplyMessage> topic = client.getTopic(controllerId+ROLE_BATCH_REPLY_TOPIC_SUFFIX);
+		topic.publish(reply);
+	}
+	
+	@Override
+	public ListenableFuture<Map<String, String>> requestRoleBatch(
+			Map<String, String> roles, final String controllerId) {
+		String requestId = UUID.randomUUID().toString();
+		SettableFuture<Map<String, String>> future = registerPendingBatch(requestId,
+				ROLE_BATCH_TIMEOUT_MS, "no role batch reply from " + controllerId);
+		failPendingBatchOnSendFailure(requestId, publishRoleBatchMessage(new RoleBatchMessage(requestId,
+				getLocalMember().getUuid(), new HashMap<String, String>(roles)), controllerId));
+		return future;
+	}
+	
+	@Override
+	public ListenableFuture<Map<String, String>> requestFlowBatch(
+			List<Map<String, String>> rows, String controllerId) {
+		String requestId = UUID.randomUUID().toString();
+		SettableFuture<Map<String, String>> future = registerPendingBatch(requestId,
+				FLOW_BATCH_TIMEOUT_MS, "no flow batch reply from " + controllerId);
+		// 经命令通道发送；写入对方队列后即使应答超时，流表仍会在对方写入
+		failPendingBatchOnSendFailure(requestId,
+				commands.send(controllerId, new FlowBatchMessage(requestId, getLocalMember().getUuid(), rows)));
+		return future;
+	}
+	
+	/**
+	 * 命令未能写入对方队列(发件箱已满或对方已被移除)时，以发送异常结束等待应答的请求
+	 */
+	private void failPendingBatchOnSendFailure(final String requestId, ListenableFuture<Void> sent) {
+		Futures.addCallback(sent, new FutureCallback<Void>() {
+			@Override
+			public void onSuccess(Void result) {
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				SettableFuture<Map<String, String>> f = pendingBatches.remove(requestId);
+				if (f != null) {
+					f.setException(t);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * 登记等待应答的批量请求，超时未收到应答则以TimeoutException结束
+	 */
+	private SettableFuture<Map<String, String>> registerPendingBatch(final String requestId,
+			long timeoutMs, final String timeoutMessage) {
+		SettableFuture<Map<String, String>> future = SettableFuture.create();
+		pendingBatches.put(requestId, future);
+		threadPoolService.getScheduledExecutor().schedule(new Runnable() {
+			@Override
+			public void run() {
+				SettableFuture<Map<String, String>> f = pendingBatches.remove(requestId);
+				if (f != null) {
+					f.setException(new TimeoutException(timeoutMessage));
+				}
+			}
+		}, timeoutMs, TimeUnit.MILLISECONDS);
+		return future;
+	}
+	
 	@Override
 	public Member getLocalMember() {
 		return hazelcastInstance.getCluster().getLocalMember();
@@ -160,7 +381,57 @@ public class HazelcastService implements IHazelcastService,IFloodlightModule,IMe
 	
 	@Override
 	public void addMemberListener(MembershipListener mebershipListener) {
-		HazelcastListenerManager.addMemberListener(mebershipListener);	
+		hazelcastInstance.getCluster().addMembershipListener(mebershipListener);
+	}
+	
+	@Override
+	public void addControllerListener(IControllerListener controllerListener) {
+		failureDetector.addListener(controllerListener);
+	}
+	
+	@Override
+	public Map<String, Map<String, Object>> getFailureDetectorStats() {
+		return failureDetector.getStats();
+	}
+	
+	@Override
+	public <K, V> ListenableFuture<V> putAsync(String mapName, K key, V value) {
+		return async.putAsync(mapName, key, value);
+	}
+	
+	@Override
+	public <K, V> ListenableFuture<V> removeAsync(String mapName, K key) {
+		return async.removeAsync(mapName, key);
+	}
+	
+	@Override
+	public <K> ListenableFuture<Object> executeOnKeyAsync(String mapName, K key, EntryProcessor<K, ?> processor) {
+		return async.executeOnKeyAsync(mapName, key, processor);
+	}
+	
+	@Override
+	public <T> ListenableFuture<Void> publishAsync(String topicName, T message) {
+		return async.publishAsync(topicName, message);
+	}
+	
+	@Override
+	public <V> ListenableFuture<V> submitAsync(String structureName, Callable<V> operation) {
+		return async.submit(structureName, operation);
+	}
+	
+	@Override
+	public Map<String, Map<String, Object>> getAsyncStats() {
+		return async.getStats();
+	}
+	
+	@Override
+	public int getAsyncInFlight() {
+		return async.getInFlight();
+	}
+	
+	@Override
+	public Set<String> getLiveControllers() {
+		return failureDetector.getLiveControllers();
 	}
 	
 
@@ -185,36 +456,167 @@ public class HazelcastService implements IHazelcastService,IFloodlightModule,IMe
 			return OFControllerRole.ROLE_NOCHANGE;
 		}
 	}
+	/**
+	 * 处理命令通道中的一条命令，返回即确认
+	 * @return 流表命令的存储写入，其他命令为null
+	 */
+	private ListenableFuture<?> handleCommand(Object command) throws Exception {
+		if (command instanceof RoleMessage) {
+			handleRoleMessage((RoleMessage) command);
+		} else if (command instanceof FlowMessage) {
+			// 按到达顺序在写入线程上写入存储，消费线程不等待，写入失败时由命令通道重试
+			final Map<String, Object> row = new HashMap<String, Object>(((FlowMessage) command).row);
+			return flowWriter.submit(new Runnable() {
+				@Override
+				public void run() {
+					storageSourceService.insertRow(StaticFlowEntryPusher.TABLE_NAME, row);
+				}
+			});
+		} else if (command instanceof FlowBatchMessage) {
+			handleFlowBatch((FlowBatchMessage) command);
+		} else if (command instanceof RoleBatchMessage) {
+			handleRoleBatch((RoleBatchMessage) command);
+		} else {
+			log.warn("unknown command {}", command);
+		}
+		return null;
+	}
+	
 	@Override
 	public void progressRoleMessage(Message<RoleMessage> message) {//处理角色请求订阅消息
-		RoleMessage roleMessage = message.getMessageObject();
-		String switchId = roleMessage.SwitchId;
-		DatapathId dpid = DatapathId.of(switchId);// 得到请求交换机机id
-
-		IOFSwitch sw = switchService.getSwitch(dpid);// 得到交换机
-		OFControllerRole controllerRole = parseRole(roleMessage.Role);
-		sw.writeRequest(sw.getOFFactory()
-				.buildRoleRequest()
-				.setGenerationId(U64.ZERO)
-				.setRole(controllerRole).
-				build());
-		
+		handleRoleMessage(message.getMessageObject());
+	}
+	
+	private void handleRoleMessage(final RoleMessage roleMessage) {
+		// 经握手状态机切换角色，由其完成集群登记和负载计数
+		ListenableFuture<OFControllerRole> f = switchService.requestRole(
+				DatapathId.of(roleMessage.SwitchId), parseRole(roleMessage.Role));
+		Futures.addCallback(f, new FutureCallback<OFControllerRole>() {
+			@Override
+			public void onSuccess(OFControllerRole role) {
+				log.debug("switch {} is now {}", roleMessage.SwitchId, role);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				log.warn("role {} for switch {} failed: {}",
+						new Object[] { roleMessage.Role, roleMessage.SwitchId, t.getMessage() });
+			}
+		});
+	}
+	@Override
+	public void progressRoleBatchMessage(Message<RoleBatchMessage> message) {//处理旧版本节点经topic发来的批量角色请求
+		handleRoleBatch(message.getMessageObject());
+	}
+	
+	/**
+	 * 处理批量角色请求，经握手状态机并行切换角色并收集结果
+	 */
+	private void handleRoleBatch(final RoleBatchMessage batch) {
+		final Map<String, String> results = new ConcurrentHashMap<String, String>();
+		final AtomicInteger remaining = new AtomicInteger(batch.roles.size());
+		final AtomicBoolean replied = new AtomicBoolean(false);
+		final Runnable reply = new Runnable() {
+			@Override
+			public void run() {
+				if (!replied.compareAndSet(false, true))
+					return;
+				Map<String, String> snapshot = new HashMap<String, String>(results);
+				for (String dpid : batch.roles.keySet()) {
+					if (!snapshot.containsKey(dpid))
+						snapshot.put(dpid, ROLE_RESULT_TIMEOUT);
+				}
+				publishRoleBatchReply(new RoleBatchReplyMessage(batch.requestId,
+						getLocalMember().getUuid(), snapshot), batch.replyTo);
+			}
+		};
+		if (batch.roles.isEmpty()) {
+			reply.run();
+			return;
+		}
+		for (Map.Entry<String, String> e : batch.roles.entrySet()) {
+			final String dpid = e.getKey();
+			// 结果是状态机转换和集群登记后达到的角色，而不只是交换机的角色回复
+			ListenableFuture<OFControllerRole> f = switchService.requestRole(
+					DatapathId.of(dpid), parseRole(e.getValue()));
+			Futures.addCallback(f, new FutureCallback<OFControllerRole>() {
+				@Override
+				public void onSuccess(OFControllerRole role) {
+					results.put(dpid, role.toString());
+					if (remaining.decrementAndGet() == 0)
+						reply.run();
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					results.put(dpid, t instanceof SwitchDisconnectedException
+							? ROLE_RESULT_NOT_CONNECTED : "ERROR: " + t.getMessage());
+					if (remaining.decrementAndGet() == 0)
+						reply.run();
+				}
+			});
+		}
+		threadPoolService.getScheduledExecutor().schedule(reply,
+				ROLE_REPLY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
 	}
+	
 	@Override
-	public void progressFlowMessage(Message<FlowMessage> Message) {//处理流表订阅消息
+	public void progressRoleBatchReplyMessage(Message<RoleBatchReplyMessage> message) {
+		RoleBatchReplyMessage reply = message.getMessageObject();
+		SettableFuture<Map<String, String>> f = pendingBatches.remove(reply.requestId);
+		if (f != null) {
+			f.set(reply.results);
+		} else {
+			log.debug("late role batch reply {} from {}", reply.requestId, reply.controllerId);
+		}
+	}
+	
+	@Override
+	public void progressFlowMessage(Message<FlowMessage> Message) {//处理流表订阅消息，发起节点已完成解析和校验
 		FlowMessage flowMessage = Message.getMessageObject();
-		Map<String,Object> rawValues = new HashMap<String,Object>();
-		
-		String json = flowMessage.json;
-		System.out.println(json);
-		try {
-			rawValues = FlowEntryPushUtil.jsonToStorageEntry(json);
-			int state = FlowEntryPushUtil.checkFlow(rawValues);
-			if(state == 0 ){
-				storageSourceService.insertRowAsync(StaticFlowEntryPusher.TABLE_NAME, rawValues);
+		storageSourceService.insertRowAsync(StaticFlowEntryPusher.TABLE_NAME,
+				new HashMap<String, Object>(flowMessage.row));
+	}
+	
+	@Override
+	public void progressFlowBatchMessage(Message<FlowBatchMessage> message) {//处理批量流表，一次写入存储，静态流表模块按交换机批量下发
+		final FlowBatchMessage batch = message.getMessageObject();
+		flowBatchExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				handleFlowBatch(batch);
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
+		});
+	}
+	
+	private void handleFlowBatch(FlowBatchMessage batch) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(batch.rows.size());
+		for (Map<String, String> row : batch.rows) {
+			rows.add(new HashMap<String, Object>(row));
+		}
+		Map<String, String> results = new HashMap<String, String>();
+		String status = FLOW_RESULT_OK;
+		try {
+			FlowEntryPushUtil.storeFlowRows(storageSourceService, rows);
+		} catch (Exception e) {
+			log.warn("failed to store flow batch " + batch.requestId, e);
+			status = "ERROR: " + e.toString();
+		}
+		for (Map<String, String> row : batch.rows) {
+			results.put(row.get(StaticFlowEntryPusher.COLUMN_NAME), status);
+		}
+		ITopic<FlowBatchReplyMessage> topic = client.getTopic(batch.replyTo+FLOW_BATCH_REPLY_TOPIC_SUFFIX);
+		topic.publish(new FlowBatchReplyMessage(batch.requestId, getLocalMember().getUuid(), results));
+	}
+	
+	@Override
+	public void progressFlowBatchReplyMessage(Message<FlowBatchReplyMessage> message) {
+		FlowBatchReplyMessage reply = message.getMessageObject();
+		SettableFuture<Map<String, String>> f = pendingBatches.remove(reply.requestId);
+		if (f != null) {
+			f.set(reply.results);
+		} else {
+			log.debug("late flow batch reply {} from {}", reply.requestId, reply.controllerId);
 		}
 	}
 	
@@ -227,7 +629,7 @@ public class HazelcastService implements IHazelcastService,IFloodlightModule,IMe
 	
 	@Override
 	public HazelcastInstance getInstance() {
-		return HazelcastManager.getHazelcastInstance();
+		return hazelcastInstance;
 	};
 }
 	
@@ -1,10 +1,18 @@
 package net.dsc.hazelcast;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import net.dsc.hazelcast.listener.IControllerListener;
 import net.dsc.hazelcast.message.FlowMessage;
+import net.dsc.hazelcast.message.RoleBatchMessage;
 import net.dsc.hazelcast.message.RoleMessage;
 import net.dsc.hazelcast.message.ShutDownMessage;
 import net.floodlightcontroller.core.module.IFloodlightService;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IList;
 import com.hazelcast.core.IMap;
@@ -13,6 +21,7 @@ import com.hazelcast.core.ISet;
 import com.hazelcast.core.Member;
 import com.hazelcast.core.MembershipListener;
 import com.hazelcast.core.MultiMap;
+import com.hazelcast.map.EntryProcessor;
 
 public interface IHazelcastService extends IFloodlightService{
 	public <K,V> IMap<K,V> getMap(String MapName);
@@ -29,11 +38,90 @@ public interface IHazelcastService extends IFloodlightService{
 	
 	public void addMemberListener(MembershipListener mebershipListener);
 	
-	public void publishFlowMessage(FlowMessage flowMessage,String ControllerId);
+	/**
+	 * 注册控制器故障监听，心跳检测怀疑控制器故障时即通知，不等hazelcast移除成员
+	 */
+	public void addControllerListener(IControllerListener controllerListener);
+	
+	/**
+	 * 故障检测和接管延迟统计以及各控制器当前的phi
+	 */
+	public Map<String, Map<String, Object>> getFailureDetectorStats();
+	
+	/**
+	 * hazelcast成员中未被心跳检测怀疑的控制器
+	 */
+	public Set<String> getLiveControllers();
+	
+	/**
+	 * 经命令通道按顺序发送流表，对方写入存储后确认
+	 * @return 写入对方命令队列后完成；本地积压过多时以RejectedExecutionException失败
+	 */
+	public ListenableFuture<Void> publishFlowMessage(FlowMessage flowMessage,String ControllerId);
 
-	public void publishRoleMessage(RoleMessage roleMessage,String ControllerId);
+	/**
+	 * 经命令通道的优先队列按顺序发送角色请求，不排在流表命令之后
+	 * @see #publishFlowMessage(FlowMessage, String)
+	 */
+	public ListenableFuture<Void> publishRoleMessage(RoleMessage roleMessage,String ControllerId);
+	
+	/**
+	 * 取出发往已移除控制器、尚未处理的命令
+	 * @param drainQueue 同时取出其命令队列中的命令，只应由一个控制器执行
+	 */
+	public List<Object> recoverCommands(String controllerId, boolean drainQueue);
+	
+	/**
+	 * 命令通道统计
+	 */
+	public Map<String, Object> getCommandStats();
 	
 	public void publishShutMessage(ShutDownMessage shutmessage,String controllerId);
 	
+	/**
+	 * 经命令通道的优先队列发送批量角色请求，与publishRoleMessage保持顺序
+	 */
+	public ListenableFuture<Void> publishRoleBatchMessage(RoleBatchMessage roleBatchMessage,String controllerId);
+	
+	/**
+	 * 向指定控制器发送批量角色请求
+	 * Sends all dpid->role assignments to one controller in a single message.
+	 * The future completes with dpid->result once that controller has
+	 * collected the role replies from its switches.
+	 */
+	public ListenableFuture<Map<String, String>> requestRoleBatch(Map<String, String> roles,String controllerId);
+	
+	/**
+	 * 向指定控制器发送批量流表
+	 * Sends validated static flow rows to one controller in a single message.
+	 * The future completes with flow name->result once that controller has
+	 * queued the rows into its static flow table.
+	 */
+	public ListenableFuture<Map<String, String>> requestFlowBatch(List<Map<String, String>> rows,String controllerId);
+	
 	public HazelcastInstance getInstance();
+	
+	/*
+	 * 异步操作：立即返回，不阻塞调用线程；未完成的操作超过上限时以RejectedExecutionException结束。
+	 * 按数据结构名统计延迟，名称使用HazelcastTableNameConstant中的常量。
+	 */
+	public <K,V> ListenableFuture<V> putAsync(String mapName, K key, V value);
+	
+	public <K,V> ListenableFuture<V> removeAsync(String mapName, K key);
+	
+	public <K> ListenableFuture<Object> executeOnKeyAsync(String mapName, K key, EntryProcessor<K, ?> processor);
+	
+	public <T> ListenableFuture<Void> publishAsync(String topicName, T message);
+	
+	/**
+	 * 在异步线程上执行没有原生异步接口的操作(如MultiMap)
+	 */
+	public <V> ListenableFuture<V> submitAsync(String structureName, Callable<V> operation);
+	
+	/**
+	 * 数据结构名->异步操作的延迟分布、失败数和拒绝数
+	 */
+	public Map<String, Map<String, Object>> getAsyncStats();
+	
+	public int getAsyncInFlight();
 }
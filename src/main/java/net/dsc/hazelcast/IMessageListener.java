@@ -1,6 +1,10 @@
 package net.dsc.hazelcast;
 
+import net.dsc.hazelcast.message.FlowBatchMessage;
+import net.dsc.hazelcast.message.FlowBatchReplyMessage;
 import net.dsc.hazelcast.message.FlowMessage;
+import net.dsc.hazelcast.message.RoleBatchMessage;
+import net.dsc.hazelcast.message.RoleBatchReplyMessage;
 import net.dsc.hazelcast.message.RoleMessage;
 import net.dsc.hazelcast.message.ShutDownMessage;
 
@@ -12,4 +16,12 @@ public interface IMessageListener  {
 	public void progressFlowMessage(Message<FlowMessage> flowMessage);
 	
 	public void progressShutDownMessage(Message<ShutDownMessage> flowMessage);
+	
+	public void progressRoleBatchMessage(Message<RoleBatchMessage> roleBatchMessage);
+	
+	public void progressRoleBatchReplyMessage(Message<RoleBatchReplyMessage> roleBatchReplyMessage);
+	
+	public void progressFlowBatchMessage(Message<FlowBatchMessage> flowBatchMessage);
+	
+	public void progressFlowBatchReplyMessage(Message<FlowBatchReplyMessage> flowBatchReplyMessage);
 }
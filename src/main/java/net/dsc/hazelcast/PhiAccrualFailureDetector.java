@@ -0,0 +1,123 @@
+package net.dsc.hazelcast;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Phi-accrual故障检测
+ * <p>
+ * 每个被监控的控制器保留最近若干次心跳到达间隔，按正态分布估计"下一次心跳还没到"
+ * 的概率P，phi = -log10(P)。phi超过阈值即怀疑该控制器故障；阈值越大误判越少、检测越慢。
+ * Not thread-safe on its own; callers synchronize on the detector.
+ */
+public class PhiAccrualFailureDetector {
+
+	private final int windowSize;
+	private final double minStdDevMs;
+	private final long firstIntervalEstimateMs;
+	private final Map<String, History> histories = new HashMap<String, History>();
+
+	/**
+	 * @param windowSize 保留的心跳间隔个数
+	 * @param minStdDevMs 标准差下限，避免间隔非常稳定时对微小抖动过于敏感
+	 * @param firstIntervalEstimateMs 只收到第一次心跳时假设的间隔
+	 */
+	public PhiAccrualFailureDetector(int windowSize, double minStdDevMs, long firstIntervalEstimateMs) {
+		this.windowSize = windowSize;
+		this.minStdDevMs = minStdDevMs;
+		this.firstIntervalEstimateMs = firstIntervalEstimateMs;
+	}
+
+	/**
+	 * 固定大小的心跳间隔窗口
+	 */
+	private static class History {
+		final long[] intervals;
+		int next;
+		int size;
+		double sum;
+		double squaredSum;
+		long lastMs;
+
+		History(int windowSize, long lastMs) {
+			intervals = new long[windowSize];
+			this.lastMs = lastMs;
+		}
+
+		void add(long interval) {
+			if (size == intervals.length) {
+				long old = intervals[next];
+				sum -= old;
+				squaredSum -= (double) old * old;
+			} else {
+				size++;
+			}
+			intervals[next] = interval;
+			next = (next + 1) % intervals.length;
+			sum += interval;
+			squaredSum += (double) interval * interval;
+		}
+
+		double mean() {
+			return sum / size;
+		}
+
+		double stdDev() {
+			double mean = mean();
+			return Math.sqrt(Math.max(0, squaredSum / size - mean * mean));
+		}
+	}
+
+	/**
+	 * 记录一次心跳
+	 */
+	public void heartbeat(String id, long nowMs) {
+		History h = histories.get(id);
+		if (h == null) {
+			h = new History(windowSize, nowMs);
+			h.add(firstIntervalEstimateMs);
+			histories.put(id, h);
+			return;
+		}
+		h.add(Math.max(0, nowMs - h.lastMs));
+		h.lastMs = nowMs;
+	}
+
+	/**
+	 * @return 当前的怀疑程度，未收到过心跳的控制器返回0
+	 */
+	public double phi(String id, long nowMs) {
+		History h = histories.get(id);
+		if (h == null)
+			return 0.0;
+		return phi(nowMs - h.lastMs, h.mean(), Math.max(minStdDevMs, h.stdDev()));
+	}
+
+	/**
+	 * 正态分布累积函数的logistic近似，避免在检测线程中求误差函数
+	 */
+	static double phi(long sinceLastMs, double mean, double stdDev) {
+		double y = (sinceLastMs - mean) / stdDev;
+		double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+		if (sinceLastMs > mean)
+			return -Math.log10(e / (1.0 + e));
+		return -Math.log10(1.0 - 1.0 / (1.0 + e));
+	}
+
+	/**
+	 * @return 最近一次心跳的时间，未收到过时返回-1
+	 */
+	public long getLastHeartbeat(String id) {
+		History h = histories.get(id);
+		return h == null ? -1 : h.lastMs;
+	}
+
+	public Set<String> getMonitored() {
+		return histories.keySet();
+	}
+
+	public void remove(String id) {
+		histories.remove(id);
+	}
+}
@@ -0,0 +1,20 @@
+package net.dsc.hazelcast.listener;
+
+import net.dsc.hazelcast.IMessageListener;
+import net.dsc.hazelcast.message.FlowBatchMessage;
+
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+
+public class FlowBatchMessageListener implements MessageListener<FlowBatchMessage>{
+	private final IMessageListener iMessageListener;
+
+	public FlowBatchMessageListener(IMessageListener iMessageListener){
+		this.iMessageListener = iMessageListener;
+	}
+	@Override
+	public void onMessage(Message<FlowBatchMessage> message) {
+		iMessageListener.progressFlowBatchMessage(message);
+	}
+
+}
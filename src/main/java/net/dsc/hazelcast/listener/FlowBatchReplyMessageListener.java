@@ -0,0 +1,20 @@
+package net.dsc.hazelcast.listener;
+
+import net.dsc.hazelcast.IMessageListener;
+import net.dsc.hazelcast.message.FlowBatchReplyMessage;
+
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+
+public class FlowBatchReplyMessageListener implements MessageListener<FlowBatchReplyMessage>{
+	private final IMessageListener iMessageListener;
+
+	public FlowBatchReplyMessageListener(IMessageListener iMessageListener){
+		this.iMessageListener = iMessageListener;
+	}
+	@Override
+	public void onMessage(Message<FlowBatchReplyMessage> message) {
+		iMessageListener.progressFlowBatchReplyMessage(message);
+	}
+
+}
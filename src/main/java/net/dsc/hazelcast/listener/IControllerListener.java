@@ -1,7 +1,21 @@
 package net.dsc.hazelcast.listener;
 
-import com.hazelcast.core.MembershipEvent;
+import java.util.Set;
 
 public interface  IControllerListener {
-	public void controllerRemoved(MembershipEvent event);
+	/**
+	 * 控制器故障：心跳检测怀疑其故障时提前通知，成员被hazelcast移除时再次通知，实现需可重入
+	 * @param controllerId 故障控制器
+	 * @param liveControllers 当前认为存活的控制器
+	 * @param confirmed hazelcast已移除该成员；为false时该成员的分区仍不可用，不宜访问集群数据
+	 */
+	public void controllerRemoved(String controllerId, Set<String> liveControllers, boolean confirmed);
+
+	/**
+	 * 被心跳检测怀疑、但未被hazelcast移除的控制器恢复发送心跳；controllerId为本控制器时，
+	 * 表示本控制器的心跳曾经中断，其他控制器可能已接管其交换机
+	 * @param controllerId 恢复的控制器
+	 * @param liveControllers 当前认为存活的控制器，包括controllerId
+	 */
+	public void controllerRecovered(String controllerId, Set<String> liveControllers);
 }
@@ -0,0 +1,51 @@
+package net.dsc.hazelcast.listener;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.hazelcast.core.EntryAdapter;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.MapEvent;
+
+/**
+ * 将IMap的条目事件同步到本地ConcurrentMap，使读操作不离开本JVM
+ * Mirrors an IMap into a local ConcurrentMap. Register it with
+ * includeValue=true before loading the initial contents.
+ */
+public class MirrorMapEntryListener<K, V> extends EntryAdapter<K, V> {
+
+	private final ConcurrentMap<K, V> mirror;
+
+	public MirrorMapEntryListener(ConcurrentMap<K, V> mirror) {
+		this.mirror = mirror;
+	}
+
+	@Override
+	public void entryAdded(EntryEvent<K, V> event) {
+		mirror.put(event.getKey(), event.getValue());
+	}
+
+	@Override
+	public void entryUpdated(EntryEvent<K, V> event) {
+		mirror.put(event.getKey(), event.getValue());
+	}
+
+	@Override
+	public void entryRemoved(EntryEvent<K, V> event) {
+		mirror.remove(event.getKey());
+	}
+
+	@Override
+	public void entryEvicted(EntryEvent<K, V> event) {
+		mirror.remove(event.getKey());
+	}
+
+	@Override
+	public void mapCleared(MapEvent event) {
+		mirror.clear();
+	}
+
+	@Override
+	public void mapEvicted(MapEvent event) {
+		mirror.clear();
+	}
+}
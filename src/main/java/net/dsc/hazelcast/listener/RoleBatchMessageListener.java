@@ -0,0 +1,20 @@
+package net.dsc.hazelcast.listener;
+
+import net.dsc.hazelcast.IMessageListener;
+import net.dsc.hazelcast.message.RoleBatchMessage;
+
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+
+public class RoleBatchMessageListener implements MessageListener<RoleBatchMessage>{
+	private final IMessageListener iMessageListener;
+
+	public RoleBatchMessageListener(IMessageListener iMessageListener){
+		this.iMessageListener = iMessageListener;
+	}
+	@Override
+	public void onMessage(Message<RoleBatchMessage> message) {
+		iMessageListener.progressRoleBatchMessage(message);
+	}
+
+}
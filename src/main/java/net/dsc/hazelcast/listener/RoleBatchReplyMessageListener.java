@@ -0,0 +1,20 @@
+package net.dsc.hazelcast.listener;
+
+import net.dsc.hazelcast.IMessageListener;
+import net.dsc.hazelcast.message.RoleBatchReplyMessage;
+
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+
+public class RoleBatchReplyMessageListener implements MessageListener<RoleBatchReplyMessage>{
+	private final IMessageListener iMessageListener;
+
+	public RoleBatchReplyMessageListener(IMessageListener iMessageListener){
+		this.iMessageListener = iMessageListener;
+	}
+	@Override
+	public void onMessage(Message<RoleBatchReplyMessage> message) {
+		iMessageListener.progressRoleBatchReplyMessage(message);
+	}
+
+}
@@ -0,0 +1,64 @@
+package net.dsc.hazelcast.message;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * 批量流表消息，一条消息携带发往同一控制器的多条已校验流表行
+ * Rows use the {@link FlowMessage} encoding. The receiver answers with a
+ * {@link FlowBatchReplyMessage} carrying the same requestId on the replyTo
+ * controller's topic.
+ */
+public class FlowBatchMessage implements IdentifiedDataSerializable{
+
+	public String requestId;
+	public String replyTo;
+	public List<Map<String, String>> rows;
+
+	public FlowBatchMessage(){}
+
+	public FlowBatchMessage(String requestId, String replyTo, List<Map<String, String>> rows){
+		this.requestId = requestId;
+		this.replyTo = replyTo;
+		this.rows = rows;
+	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.FLOW_BATCH_MESSAGE;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(requestId);
+		out.writeUTF(replyTo);
+		out.writeInt(rows.size());
+		for (Map<String, String> row : rows) {
+			FlowMessage.writeRow(out, row);
+		}
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		requestId = in.readUTF();
+		replyTo = in.readUTF();
+		int size = in.readInt();
+		rows = new ArrayList<Map<String, String>>(size);
+		for (int i = 0; i < size; i++) {
+			rows.add(FlowMessage.readRow(in));
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package net.dsc.hazelcast.message;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * 批量流表请求的应答，流表名->写入结果或错误原因
+ * Per-flow outcome of a {@link FlowBatchMessage}, keyed by flow entry name.
+ */
+public class FlowBatchReplyMessage implements IdentifiedDataSerializable{
+
+	public String requestId;
+	public String controllerId;
+	public Map<String, String> results;
+
+	public FlowBatchReplyMessage(){}
+
+	public FlowBatchReplyMessage(String requestId, String controllerId, Map<String, String> results){
+		this.requestId = requestId;
+		this.controllerId = controllerId;
+		this.results = results;
+	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.FLOW_BATCH_REPLY_MESSAGE;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(requestId);
+		out.writeUTF(controllerId);
+		DSCDataSerializableFactory.writeStringMap(out, results);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		requestId = in.readUTF();
+		controllerId = in.readUTF();
+		results = DSCDataSerializableFactory.readStringMap(in, new HashMap<String, String>());
+	}
+}
@@ -1,15 +1,84 @@
 package net.dsc.hazelcast.message;
 
-import java.io.Serializable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
-public class FlowMessage implements Serializable{
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+import net.floodlightcontroller.staticflowentry.StaticFlowEntryPusher;
 
-	private static final long serialVersionUID = 1L;
-	public String json;
-	
-	
-	public FlowMessage(String json){
-		this.json = json;
-	
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * 流表消息，携带发起节点已解析并校验过的静态流表行，接收方直接写入存储
+ * Column names known to the static flow pusher are written as a one byte
+ * index into {@link StaticFlowEntryPusher#ColumnNames}; other keys are
+ * written as strings after a -1 marker.
+ */
+public class FlowMessage implements IdentifiedDataSerializable{
+
+	private static final String[] COLUMNS = StaticFlowEntryPusher.ColumnNames.clone();
+	private static final Map<String, Integer> COLUMN_INDEX = new HashMap<String, Integer>();
+	static {
+		for (int i = 0; i < COLUMNS.length; i++) {
+			COLUMN_INDEX.put(COLUMNS[i], i);
+		}
+	}
+
+	public Map<String, String> row;
+
+
+	public FlowMessage(){}
+
+	public FlowMessage(Map<String, String> row){
+		this.row = row;
+
+	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.FLOW_MESSAGE;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		writeRow(out, row);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		row = readRow(in);
+	}
+
+	public static void writeRow(ObjectDataOutput out, Map<String, String> row) throws IOException {
+		out.writeShort(row.size());
+		for (Map.Entry<String, String> e : row.entrySet()) {
+			Integer index = COLUMN_INDEX.get(e.getKey());
+			if (index != null) {
+				out.writeByte(index);
+			} else {
+				out.writeByte(-1);
+				out.writeUTF(e.getKey());
+			}
+			out.writeUTF(e.getValue());
+		}
+	}
+
+	public static Map<String, String> readRow(ObjectDataInput in) throws IOException {
+		int size = in.readUnsignedShort();
+		Map<String, String> row = new HashMap<String, String>(size * 2);
+		for (int i = 0; i < size; i++) {
+			byte index = in.readByte();
+			String key = index < 0 ? in.readUTF() : COLUMNS[index];
+			row.put(key, in.readUTF());
+		}
+		return row;
 	}
 }
@@ -0,0 +1,47 @@
+package net.dsc.hazelcast.message;
+
+import java.io.IOException;
+
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * 控制器存活心跳，所有控制器发布到同一个主题
+ */
+public class HeartbeatMessage implements IdentifiedDataSerializable{
+	
+	public String controllerId;
+	public long sequence;
+	
+	public HeartbeatMessage(){}
+	
+	public HeartbeatMessage(String controllerId, long sequence){
+		this.controllerId = controllerId;
+		this.sequence = sequence;
+	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.HEARTBEAT_MESSAGE;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(controllerId);
+		out.writeLong(sequence);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		controllerId = in.readUTF();
+		sequence = in.readLong();
+	}
+}
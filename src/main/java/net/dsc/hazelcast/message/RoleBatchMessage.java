@@ -0,0 +1,56 @@
+package net.dsc.hazelcast.message;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * 批量角色请求，一条消息携带发往同一控制器的多个dpid->角色
+ * Carries many dpid->role assignments for one controller. The receiver
+ * answers with a {@link RoleBatchReplyMessage} carrying the same requestId
+ * on the replyTo controller's topic.
+ */
+public class RoleBatchMessage implements IdentifiedDataSerializable{
+
+	public String requestId;
+	public String replyTo;
+	public Map<String, String> roles;
+
+	public RoleBatchMessage(){}
+
+	public RoleBatchMessage(String requestId, String replyTo, Map<String, String> roles){
+		this.requestId = requestId;
+		this.replyTo = replyTo;
+		this.roles = roles;
+	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.ROLE_BATCH_MESSAGE;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(requestId);
+		out.writeUTF(replyTo);
+		DSCDataSerializableFactory.writeStringMap(out, roles);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		requestId = in.readUTF();
+		replyTo = in.readUTF();
+		roles = DSCDataSerializableFactory.readStringMap(in, new HashMap<String, String>());
+	}
+}
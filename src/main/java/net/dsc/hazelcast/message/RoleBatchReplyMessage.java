@@ -0,0 +1,55 @@
+package net.dsc.hazelcast.message;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * 批量角色请求的应答，dpid->交换机回复的角色或错误原因
+ * Per-switch outcome of a {@link RoleBatchMessage}: the role reported back
+ * by the switch, or the reason the request failed.
+ */
+public class RoleBatchReplyMessage implements IdentifiedDataSerializable{
+
+	public String requestId;
+	public String controllerId;
+	public Map<String, String> results;
+
+	public RoleBatchReplyMessage(){}
+
+	public RoleBatchReplyMessage(String requestId, String controllerId, Map<String, String> results){
+		this.requestId = requestId;
+		this.controllerId = controllerId;
+		this.results = results;
+	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.ROLE_BATCH_REPLY_MESSAGE;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(requestId);
+		out.writeUTF(controllerId);
+		DSCDataSerializableFactory.writeStringMap(out, results);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		requestId = in.readUTF();
+		controllerId = in.readUTF();
+		results = DSCDataSerializableFactory.readStringMap(in, new HashMap<String, String>());
+	}
+}
@@ -1,19 +1,45 @@
 package net.dsc.hazelcast.message;
 
-import java.io.Serializable;
+import java.io.IOException;
 
-public class RoleMessage implements Serializable{
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+public class RoleMessage implements IdentifiedDataSerializable{
 	
-	/**
-	 * 
-	 */
-	private static final long serialVersionUID = 1L;
 	public String Role ;
 	public String SwitchId;
 	
+	public RoleMessage(){}
+	
 	public RoleMessage(String Role,String SwitchId){
 		this.Role = Role;
 		
 		this.SwitchId = SwitchId;
 	}
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.ROLE_MESSAGE;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(Role);
+		out.writeUTF(SwitchId);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		Role = in.readUTF();
+		SwitchId = in.readUTF();
+	}
 }
@@ -1,9 +1,30 @@
 package net.dsc.hazelcast.message;
 
-import java.io.Serializable;
+import java.io.IOException;
 
-public class ShutDownMessage implements Serializable{
+import net.dsc.hazelcast.DSCDataSerializableFactory;
 
-	private static final long serialVersionUID = 1L;
-	
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+public class ShutDownMessage implements IdentifiedDataSerializable{
+
+	@Override
+	public int getFactoryId() {
+		return DSCDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return DSCDataSerializableFactory.SHUTDOWN_MESSAGE;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+	}
 }
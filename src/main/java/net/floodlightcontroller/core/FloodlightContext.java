@@ -17,21 +17,88 @@
 
 package net.floodlightcontroller.core;
 
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This is a context object where floodlight listeners can register 
  * and later retrieve context information associated with an
  * event
  * 这是一个上下文对象，可以被floodlight的listener所注册，之后检索与事件相关的上下文信息。
+ * <p>
+ * 预先注册的键({@link #registerSlot(String)}，由FloodlightContextStore构造时注册)
+ * 存放在按槽位编号索引的数组中，存取不需要哈希；其他键放在按需创建的map中。
+ * 一个上下文同一时间只由处理该消息的线程使用，清空后可复用(见Controller.flcontext_alloc)。
  * @author readams
  */
 public class FloodlightContext {
-	//一个线程安全的HashMap仓库
-    protected ConcurrentHashMap<String, Object> storage =
-            new ConcurrentHashMap<String, Object>();
 
+    private static final ConcurrentMap<String, Integer> slotIndex =
+            new ConcurrentHashMap<String, Integer>();
+    private static volatile int slotCount = 0;
+
+    /**
+     * 为key分配槽位，同一key多次注册返回同一槽位
+     * @return 槽位编号
+     */
+    public static int registerSlot(String key) {
+        Integer slot = slotIndex.get(key);
+        if (slot != null)
+            return slot;
+        synchronized (slotIndex) {
+            slot = slotIndex.get(key);
+            if (slot == null) {
+                slot = slotCount;
+                slotIndex.put(key, slot);
+                slotCount = slot + 1;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * @return key的槽位编号，未注册时为-1
+     */
+    public static int slotOf(String key) {
+        Integer slot = slotIndex.get(key);
+        return slot == null ? -1 : slot;
+    }
+
+    protected Object[] slots = new Object[slotCount];
+    //未注册的键，第一次使用时创建
+    protected ConcurrentHashMap<String, Object> storage;
+
+    public Object getSlot(int slot) {
+        return slot < slots.length ? slots[slot] : null;
+    }
+
+    public void putSlot(int slot, Object value) {
+        if (slot >= slots.length)
+            slots = Arrays.copyOf(slots, Math.max(slot + 1, slotCount));
+        slots[slot] = value;
+    }
+
+    public void removeSlot(int slot) {
+        if (slot < slots.length)
+            slots[slot] = null;
+    }
+
+    /**
+     * 未注册键的存储
+     */
     public ConcurrentHashMap<String, Object> getStorage() {
+        if (storage == null)
+            storage = new ConcurrentHashMap<String, Object>();
         return storage;
     }
+
+    /**
+     * 清空所有内容，以便复用
+     */
+    public void clear() {
+        Arrays.fill(slots, null);
+        if (storage != null)
+            storage.clear();
+    }
 }
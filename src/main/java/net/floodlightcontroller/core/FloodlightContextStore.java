@@ -17,18 +17,62 @@
 
 package net.floodlightcontroller.core;
 
+/**
+ * 按键存取FloodlightContext中的内容
+ * <p>
+ * 构造时给出的键预先注册槽位，存取时按引用比较找到槽位后直接访问数组；
+ * 其他键仍可使用，存放在上下文的map中。
+ */
 public class FloodlightContextStore<V> {
+
+    private final String[] keys;
+    private final int[] slots;
+
+    /**
+     * @param keys 通过此store存取的键，预先分配槽位
+     */
+    public FloodlightContextStore(String... keys) {
+        this.keys = keys.clone();
+        this.slots = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            slots[i] = FloodlightContext.registerSlot(keys[i]);
+        }
+    }
+
+    private int slotOf(String key) {
+        // 键一般是常量，先按引用比较
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key)
+                return slots[i];
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key))
+                return slots[i];
+        }
+        return -1;
+    }
     
     @SuppressWarnings("unchecked")
     public V get(FloodlightContext bc, String key) {
-        return (V)bc.storage.get(key);
+        int slot = slotOf(key);
+        if (slot >= 0)
+            return (V)bc.getSlot(slot);
+        return bc.storage == null ? null : (V)bc.storage.get(key);
     }
     
     public void put(FloodlightContext bc, String key, V value) {
-        bc.storage.put(key, value);
+        int slot = slotOf(key);
+        if (slot >= 0)
+            bc.putSlot(slot, value);
+        else
+            bc.getStorage().put(key, value);
     }
     
     public void remove(FloodlightContext bc, String key) {
-        bc.storage.remove(key);
+        int slot = slotOf(key);
+        if (slot >= 0)
+            bc.removeSlot(slot);
+        else if (bc.storage != null)
+            bc.storage.remove(key);
     }
 }
@@ -30,6 +30,7 @@ import net.floodlightcontroller.core.internal.Controller.ModuleLoaderState;
 import net.floodlightcontroller.core.internal.RoleManager;
 import net.floodlightcontroller.core.module.IFloodlightService;
 import net.floodlightcontroller.packet.Ethernet;
+import net.floodlightcontroller.util.LoadMonitor;
 
 import org.jboss.netty.util.Timer;
 import org.projectfloodlight.openflow.protocol.OFMessage;
@@ -57,7 +58,7 @@ public interface IFloodlightProviderService extends
      * 一个FloodlightContextStore对象，该对象可以被用于获取PACKET_IN消息携带的数据。
      */
     public static final FloodlightContextStore<Ethernet> bcStore =
-            new FloodlightContextStore<Ethernet>();
+            new FloodlightContextStore<Ethernet>(IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
 
     /**
      * Service name used in the service directory representing
@@ -221,6 +222,17 @@ public interface IFloodlightProviderService extends
     */
    public Long getUptime();
 
+   /**
+    * 返回本控制器分发的packet-in总数
+    * @return the number of packet-ins dispatched to listeners
+    */
+   public long getPacketInCount();
+
+   /**
+    * 返回控制器CPU负载监视器
+    */
+   public LoadMonitor getLoadMonitor();
+
    /**
     * Get the set of port prefixes that will define an UPLINK port.
     * 获取一个端口的前缀的集合，这将定义一个上行端口
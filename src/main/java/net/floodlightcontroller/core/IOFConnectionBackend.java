@@ -27,4 +27,10 @@ public interface IOFConnectionBackend extends IOFConnection {
      * set the message/closing listener for this connection 
      **/
     void setListener(IOFConnectionListener listener);
+
+    /**
+     * 在该连接的I/O线程上执行任务，与消息处理串行；已在I/O线程上时立即执行
+     * @param task the task to run on the connection's I/O thread
+     */
+    void execute(Runnable task);
 }
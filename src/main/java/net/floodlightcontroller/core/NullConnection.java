@@ -88,6 +88,11 @@ public class NullConnection implements IOFConnectionBackend, IOFMessageWriter {
         // noop
     }
 
+    @Override
+    public void execute(Runnable task) {
+        // noop
+    }
+
     public void disconnected() {
         // noop
     }
@@ -88,6 +88,7 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
 
 
     private final OFConnectionCounters counters;
+    private final OFConnectionWriteQueue writeQueue;
     private IOFConnectionListener listener;
 
     public OFConnection(@Nonnull DatapathId dpid,
@@ -110,6 +111,7 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
         this.connectedSince = new Date();
         this.xidDeliverableMap = new ConcurrentHashMap<>();
         this.counters = new OFConnectionCounters(debugCounters, dpid, this.auxId);
+        this.writeQueue = new OFConnectionWriteQueue(channel, counters);
         this.timer = timer;
     }
 
@@ -169,11 +171,30 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
                 logger.trace("{}: send {}", this, m);
             counters.updateWriteStats(m);
         }
-        this.channel.write(msglist);
+        if (!writeQueue.write(msglist)) {
+            logger.error("{}: outbound queue exceeded {} messages, switch is not reading - disconnecting",
+                    this, OFConnectionWriteQueue.MAX_QUEUED);
+            disconnect();
+        }
+    }
+
+    /**
+     * 通道的可写状态改变时由OFChannelHandler调用，写出排队的消息
+     */
+    public void channelWritabilityChanged() {
+        writeQueue.drain();
+    }
+
+    /**
+     * @return 因通道不可写而排队的消息数
+     */
+    public int getWriteQueueSize() {
+        return writeQueue.size();
     }
 
     // Notifies the connection object that the channel has been disconnected
     public void disconnected() {
+        writeQueue.clear();
         SwitchDisconnectedException exception = new SwitchDisconnectedException(getDatapathId());
         for (Long xid : xidDeliverableMap.keySet()) {
             // protect against other mechanisms running at the same time
@@ -187,10 +208,16 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
 
     @Override
     public void disconnect() {
+        writeQueue.clear();
         this.channel.disconnect();
         this.counters.uninstallCounters();
     }
 
+    @Override
+    public void execute(Runnable task) {
+        this.channel.getPipeline().execute(task);
+    }
+
     @Override
     public String toString() {
         String channelString = (channel != null) ? String.valueOf(channel.getRemoteAddress()): "?";
@@ -313,9 +340,16 @@ public class OFConnection implements IOFConnection, IOFConnectionBackend{
             return false;
     }
 
+    /**
+     * 通道可写且发送队列未拥塞
+     */
     @Override
     public boolean isWritable() {
-        return channel.isWritable();
+        return channel.isWritable() && !writeQueue.isCongested();
+    }
+
+    public OFConnectionCounters getCounters() {
+        return counters;
     }
 
     @Override
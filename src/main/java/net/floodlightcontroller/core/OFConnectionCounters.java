@@ -101,6 +101,14 @@ public class OFConnectionCounters {
     private final IDebugCounter ctrReadBundleControl;
     private final IDebugCounter ctrReadRequestForward;
 
+    // Write Queue Counters
+    //
+    private final IDebugCounter ctrWriteQueued;
+    private final IDebugCounter ctrWriteBlocked;
+    private final IDebugCounter ctrPacketOutDropped;
+    private final IDebugCounter ctrPacketOutStale;
+    private final IDebugCounter ctrWriteQueueOverflow;
+
     private static final Logger logger =
             LoggerFactory.getLogger(OFConnectionCounters.class);
 
@@ -518,6 +526,23 @@ public class OFConnectionCounters {
                                      hierarchy,
                                      stringId,
                                      OFType.TABLE_STATUS.toString());
+
+        // Register Write Queue Counters
+        // 通道不可写时排队的消息，见OFConnectionWriteQueue
+        hierarchy = stringId + "/write-queue";
+        counters.registerCounter(COUNTER_MODULE, hierarchy,
+                                 "Counter for the outbound queue of this connection");
+        ctrWriteQueued = counters.registerCounter(COUNTER_MODULE, hierarchy + "/queued",
+                "Number of messages queued because the channel was not writable");
+        ctrWriteBlocked = counters.registerCounter(COUNTER_MODULE, hierarchy + "/blocked",
+                "Number of times queued messages waited for the channel to become writable");
+        ctrPacketOutDropped = counters.registerCounter(COUNTER_MODULE, hierarchy + "/packet-out-dropped",
+                "Number of PACKET_OUT messages dropped because the queue was above its high watermark");
+        ctrPacketOutStale = counters.registerCounter(COUNTER_MODULE, hierarchy + "/packet-out-stale",
+                "Number of queued PACKET_OUT messages dropped because they were too old");
+        ctrWriteQueueOverflow = counters.registerCounter(COUNTER_MODULE, hierarchy + "/overflow",
+                "Number of times the queue overflowed and the connection was closed",
+                IDebugCounterService.MetaData.ERROR);
     }
     
     /**
@@ -532,6 +557,42 @@ public class OFConnectionCounters {
     	return debugCounterService.removeCounterHierarchy(COUNTER_MODULE, dpidAndConnIdString);
     }
 
+    /**
+     * 该连接上收到的packet-in数量
+     * @return number of packet-ins read from this connection
+     */
+    public long getReadPacketInCount() {
+        return ctrReadPacketIn.getCounterValue();
+    }
+
+    public void updateWriteQueued() {
+        ctrWriteQueued.increment();
+    }
+
+    public void updateWriteBlocked() {
+        ctrWriteBlocked.increment();
+    }
+
+    public void updatePacketOutDropped() {
+        ctrPacketOutDropped.increment();
+    }
+
+    public void updatePacketOutStale() {
+        ctrPacketOutStale.increment();
+    }
+
+    public void updateWriteQueueOverflow() {
+        ctrWriteQueueOverflow.increment();
+    }
+
+    /**
+     * 拥塞时丢弃的packet-out数量，包括排队过久的
+     * @return number of packet-outs shed by the write queue
+     */
+    public long getPacketOutDroppedCount() {
+        return ctrPacketOutDropped.getCounterValue() + ctrPacketOutStale.getCounterValue();
+    }
+
    /**
     * Update Write Counters for Open flow messages
     * 更新写入计数器
@@ -0,0 +1,195 @@
+package net.floodlightcontroller.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.channel.Channel;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFType;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * 一个OF连接的发送队列
+ * <p>
+ * 通道可写(Netty发送缓冲区低于其水位线)且队列为空时消息直接写入通道；否则按类别排队，
+ * 通道重新可写时(channelInterestChanged)按优先级写出：
+ * <ol>
+ * <li>控制消息：角色、echo、barrier、统计请求等</li>
+ * <li>FLOW_MOD、GROUP_MOD、METER_MOD等修改交换机状态的消息</li>
+ * <li>PACKET_OUT</li>
+ * </ol>
+ * BARRIER_REQUEST是所有类别共同的栅栏：在它之前排队的消息(按上面的优先级)都在它之前写出，
+ * 在它之后排队的消息(包括控制消息)都在它之后写出，否则barrier失去意义。
+ * <p>
+ * 排队消息数超过HIGH_WATERMARK后进入拥塞状态，新的PACKET_OUT被丢弃，直到降到
+ * LOW_WATERMARK以下；排队超过PACKET_OUT_MAX_AGE_MS的PACKET_OUT在写出前丢弃(对应的
+ * 包在交换机上已过期或已按流表转发)。其他消息不丢弃，超过MAX_QUEUED时由连接断开。
+ */
+class OFConnectionWriteQueue {
+
+    static final int HIGH_WATERMARK = 1000;
+    static final int LOW_WATERMARK = 500;
+    static final int MAX_QUEUED = 20000;
+    static final long PACKET_OUT_MAX_AGE_MS = 200;
+    /** 每次写入通道的最大消息数，之后重新检查可写状态 */
+    static final int DRAIN_BATCH = 64;
+
+    private static final long PACKET_OUT_MAX_AGE_NS = TimeUnit.MILLISECONDS.toNanos(PACKET_OUT_MAX_AGE_MS);
+
+    private static class Queued {
+        final OFMessage message;
+        final long enqueuedNs;
+        /** 排队顺序，用于barrier栅栏 */
+        final long seq;
+
+        Queued(OFMessage message, long enqueuedNs, long seq) {
+            this.message = message;
+            this.enqueuedNs = enqueuedNs;
+            this.seq = seq;
+        }
+    }
+
+    private final Channel channel;
+    private final OFConnectionCounters counters;
+
+    private final ArrayDeque<Queued> control = new ArrayDeque<Queued>();
+    private final ArrayDeque<Queued> flowMods = new ArrayDeque<Queued>();
+    private final ArrayDeque<Queued> packetOuts = new ArrayDeque<Queued>();
+    // 按优先级排列的队列
+    private final List<ArrayDeque<Queued>> lanes = ImmutableList.of(control, flowMods, packetOuts);
+    // 排队中的BARRIER_REQUEST的seq，按顺序
+    private final ArrayDeque<Long> fences = new ArrayDeque<Long>();
+    private long nextSeq;
+    private int size;
+    private boolean congested;
+
+    OFConnectionWriteQueue(Channel channel, OFConnectionCounters counters) {
+        this.channel = channel;
+        this.counters = counters;
+    }
+
+    static boolean isFlowMod(OFType type) {
+        switch (type) {
+            case FLOW_MOD:
+            case GROUP_MOD:
+            case METER_MOD:
+            case PORT_MOD:
+            case TABLE_MOD:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 写入或排队
+     * @return false表示排队消息超过MAX_QUEUED，调用方应断开连接
+     */
+    synchronized boolean write(Iterable<OFMessage> msglist) {
+        if (size == 0 && channel.isWritable()) {
+            channel.write(msglist);
+            return true;
+        }
+        long now = System.nanoTime();
+        for (OFMessage m : msglist) {
+            if (!enqueue(m, now))
+                return false;
+        }
+        drain();
+        return true;
+    }
+
+    private boolean enqueue(OFMessage m, long now) {
+        OFType type = m.getType();
+        if (type == OFType.PACKET_OUT) {
+            if (congested) {
+                counters.updatePacketOutDropped();
+                return true;
+            }
+            packetOuts.addLast(new Queued(m, now, nextSeq++));
+        } else {
+            if (size >= MAX_QUEUED) {
+                counters.updateWriteQueueOverflow();
+                return false;
+            }
+            long seq = nextSeq++;
+            if (isFlowMod(type)) {
+                flowMods.addLast(new Queued(m, now, seq));
+            } else {
+                if (type == OFType.BARRIER_REQUEST)
+                    fences.addLast(seq);
+                control.addLast(new Queued(m, now, seq));
+            }
+        }
+        size++;
+        counters.updateWriteQueued();
+        if (size >= HIGH_WATERMARK)
+            congested = true;
+        return true;
+    }
+
+    /**
+     * 通道可写时按优先级写出排队的消息
+     */
+    synchronized void drain() {
+        if (size > 0 && !channel.isWritable())
+            counters.updateWriteBlocked();
+        long now = System.nanoTime();
+        while (size > 0 && channel.isWritable() && channel.isConnected()) {
+            List<OFMessage> batch = new ArrayList<OFMessage>(Math.min(size, DRAIN_BATCH));
+            while (batch.size() < DRAIN_BATCH && size > 0) {
+                Queued q = poll();
+                if (q.message.getType() == OFType.PACKET_OUT
+                        && now - q.enqueuedNs > PACKET_OUT_MAX_AGE_NS) {
+                    counters.updatePacketOutStale();
+                    continue;
+                }
+                batch.add(q.message);
+            }
+            if (!batch.isEmpty())
+                channel.write(batch);
+        }
+        if (congested && size <= LOW_WATERMARK)
+            congested = false;
+    }
+
+    /**
+     * 按优先级取出下一条消息，但不越过第一个排队中的barrier：之后排队的消息等它写出后才能取出。
+     * 各队列按seq有序，所有seq最小的消息总在某个队列头部，因此size>0时总能取出一条
+     */
+    private Queued poll() {
+        Long fence = fences.peekFirst();
+        Queued q = null;
+        for (ArrayDeque<Queued> lane : lanes) {
+            Queued head = lane.peekFirst();
+            if (head != null && (fence == null || head.seq <= fence)) {
+                q = lane.pollFirst();
+                break;
+            }
+        }
+        if (fence != null && q.seq == fence)
+            fences.pollFirst();
+        size--;
+        return q;
+    }
+
+    synchronized void clear() {
+        control.clear();
+        flowMods.clear();
+        packetOuts.clear();
+        fences.clear();
+        size = 0;
+        congested = false;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized boolean isCongested() {
+        return congested;
+    }
+}
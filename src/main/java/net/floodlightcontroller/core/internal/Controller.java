@@ -20,7 +20,9 @@ package net.floodlightcontroller.core.internal;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -29,7 +31,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.Stack;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -51,6 +52,7 @@ import net.floodlightcontroller.core.IListener.Command;
 import net.floodlightcontroller.core.IOFMessageListener;
 import net.floodlightcontroller.core.IOFSwitch;
 import net.floodlightcontroller.core.IOFSwitchListener;
+import net.floodlightcontroller.core.IShutdownListener;
 import net.floodlightcontroller.core.IShutdownService;
 import net.floodlightcontroller.core.LogicalOFMessageCategory;
 import net.floodlightcontroller.core.PortChangeType;
@@ -65,6 +67,7 @@ import net.floodlightcontroller.debugevent.IDebugEventService;
 import net.floodlightcontroller.notification.INotificationManager;
 import net.floodlightcontroller.notification.NotificationManagerFactory;
 import net.floodlightcontroller.packet.Ethernet;
+import net.floodlightcontroller.packet.LazyEthernet;
 import net.floodlightcontroller.perfmon.IPktInProcessingTimeService;
 import net.floodlightcontroller.restserver.IRestApiService;
 import net.floodlightcontroller.storage.IResultSet;
@@ -185,6 +188,14 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
     protected int openFlowPort = 6653; // new registered OF port number
     private String openFlowHostname = null;
     protected int workerThreads = 0;
+    /**
+     * PacketIn处理线程数，0表示在I/O线程上直接处理
+     */
+    protected int packetInWorkers = 0;
+    protected int packetInQueueSize = 1024;
+    protected PacketInDispatcher.OverflowPolicy packetInOverflow =
+            PacketInDispatcher.OverflowPolicy.DROP_NEWEST;
+    protected PacketInDispatcher packetInDispatcher;
     
     // The id for this controller node. Should be unique for each controller
     // node in a controller cluster.
@@ -441,15 +452,20 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
     // Handler for SwitchPortsChanged was here (notifyPortChanged). Handled in OFSwitchManager
     //处理交换机端口变化
     
+    /**
+     * 每个线程缓存的上下文数上限
+     */
+    protected static final int FLCONTEXT_CACHE_SIZE = 16;
+
     /**
      * flcontext_cache - Keep a thread local stack of contexts
      * FloodlightContext缓存，持有一个本地线程上下文栈
      */
-    protected static final ThreadLocal<Stack<FloodlightContext>> flcontext_cache =
-        new ThreadLocal <Stack<FloodlightContext>> () {
+    protected static final ThreadLocal<ArrayDeque<FloodlightContext>> flcontext_cache =
+        new ThreadLocal <ArrayDeque<FloodlightContext>> () {
             @Override
-            protected Stack<FloodlightContext> initialValue() {
-                return new Stack<FloodlightContext>();
+            protected ArrayDeque<FloodlightContext> initialValue() {
+                return new ArrayDeque<FloodlightContext>(FLCONTEXT_CACHE_SIZE);
             }
         };
 
@@ -459,26 +475,26 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
      * @return FloodlightContext
      */
     protected static FloodlightContext flcontext_alloc() {
-        FloodlightContext flcontext = null;
+        FloodlightContext flcontext = flcontext_cache.get().pollFirst();
 
-        if (flcontext_cache.get().empty()) {
+        if (flcontext == null) {
             flcontext = new FloodlightContext();
         }
-        else {
-            flcontext = flcontext_cache.get().pop();
-        }
 
         return flcontext;
     }
 
     /**
      * flcontext_free - Free the context to the current thread
-     * 在当前线程释放上下文
+     * 在当前线程释放上下文，缓存已满时丢弃
      * @param flcontext
      */
     protected void flcontext_free(FloodlightContext flcontext) {
-        flcontext.getStorage().clear();
-        flcontext_cache.get().push(flcontext);
+        ArrayDeque<FloodlightContext> cache = flcontext_cache.get();
+        if (cache.size() < FLCONTEXT_CACHE_SIZE) {
+            flcontext.clear();
+            cache.addFirst(flcontext);
+        }
     }
 
 
@@ -511,10 +527,29 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
                 explanation="The switch sent a message not handled by " +
                         "the controller")
     })
+    @Override
+    public void handleMessage(final IOFSwitch sw, final OFMessage m,
+                                 FloodlightContext bContext) {
+        // 调用方未传入上下文的PacketIn交给按交换机分区的工作线程，其他消息仍在当前线程处理
+        if (packetInDispatcher != null && bContext == null
+                && m.getType() == OFType.PACKET_IN) {
+            packetInDispatcher.dispatch(sw.getId().getLong(), new Runnable() {
+                @Override
+                public void run() {
+                    dispatchMessage(sw, m, null);
+                }
+            });
+            return;
+        }
+        dispatchMessage(sw, m, bContext);
+    }
+
+    /**
+     * 按顺序调用该类型消息的监听器
+     */
     @SuppressFBWarnings(value="SF_SWITCH_NO_DEFAULT",
                         justification="False positive -- has default")
-    @Override
-    public void handleMessage(IOFSwitch sw, OFMessage m,
+    protected void dispatchMessage(IOFSwitch sw, OFMessage m,
                                  FloodlightContext bContext) {
         Ethernet eth = null;
         log.trace("Dispatching OFMessage to listeners.");
@@ -536,7 +571,8 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
                 }
 
                 if (Controller.ALWAYS_DECODE_ETH) {
-                    eth = new Ethernet();
+                    // 只解析以太网头部，负载在监听器第一次访问时解析
+                    eth = new LazyEthernet();
                     eth.deserialize(pi.getData(), 0, pi.getData().length);
                 }
                 // fall through to default case...
@@ -822,6 +858,31 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
             this.workerThreads = Integer.parseInt(threads);
         }
         log.debug("Number of worker threads set to {}", this.workerThreads);
+
+        try {
+            String pktInWorkers = configParams.get("packetInWorkers");
+            if (!Strings.isNullOrEmpty(pktInWorkers)) {
+                this.packetInWorkers = Integer.parseInt(pktInWorkers);
+            }
+            String pktInQueueSize = configParams.get("packetInQueueSize");
+            if (!Strings.isNullOrEmpty(pktInQueueSize)) {
+                this.packetInQueueSize = Integer.parseInt(pktInQueueSize);
+            }
+        } catch (NumberFormatException e) {
+            log.error("invalid packet_in worker specifier", e);
+            throw new FloodlightModuleException("invalid packet_in worker specifier in config");
+        }
+        String pktInOverflow = configParams.get("packetInOverflow");
+        if (!Strings.isNullOrEmpty(pktInOverflow)) {
+            try {
+                this.packetInOverflow = PacketInDispatcher.OverflowPolicy.valueOf(pktInOverflow.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new FloodlightModuleException("invalid packetInOverflow " + pktInOverflow
+                        + ", expected one of " + Arrays.toString(PacketInDispatcher.OverflowPolicy.values()));
+            }
+        }
+        log.debug("Number of packet_in worker threads set to {}, queue size {}, overflow {}",
+                new Object[] { this.packetInWorkers, this.packetInQueueSize, this.packetInOverflow });
     }
 
     /**
@@ -855,7 +916,17 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
         this.switchService.addOFSwitchListener(new NotificationSwitchListener());
 
         this.counters = new ControllerCounters(debugCounterService);
-        
+        if (this.packetInWorkers > 0) {
+            this.packetInDispatcher = new PacketInDispatcher(this.packetInWorkers,
+                    this.packetInQueueSize, this.packetInOverflow, this.counters);
+            this.shutdownService.registerShutdownListener(new IShutdownListener() {
+                @Override
+                public void floodlightIsShuttingDown() {
+                    packetInDispatcher.shutDown();
+                }
+            });
+        }
+
 
         this.controller=new ControllerModel(hazelcast.getLocalMember().getUuid(),hazelcast.getLocalMember().getSocketAddress().getAddress().toString());
         clusterService.addController(controller);
@@ -1106,6 +1177,16 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
         return rb.getUptime();
     }
 
+    @Override
+    public long getPacketInCount() {
+        return counters.packetIn.getCounterValue();
+    }
+
+    @Override
+    public LoadMonitor getLoadMonitor() {
+        return loadmonitor;
+    }
+
     @LogMessageDoc(level="WARN",
             message="Failure adding update {} to queue",
             explanation="The controller tried to add an internal notification" +
@@ -1163,6 +1244,8 @@ public class Controller implements IFloodlightProviderService, IStorageSourceLis
         Map<String, Object> info = new HashMap<String, Object>();
 
         info.put("# Switches", this.switchService.getAllSwitchDpids().size());
+        if (packetInDispatcher != null)
+            info.put("PacketIn queue depths", packetInDispatcher.getQueueDepths());
         return info;
     }
 
@@ -19,6 +19,10 @@ public class ControllerCounters {
     public final IDebugCounter dispatchMessageWhileStandby;
     public final IDebugCounter dispatchMessage;
     public final IDebugCounter packetIn;
+    public final IDebugCounter packetInQueued;
+    public final IDebugCounter packetInDequeued;
+    public final IDebugCounter packetInDropped;
+    public final IDebugCounter packetInBlocked;
 
     public ControllerCounters(IDebugCounterService debugCounters) {
         debugCounters.registerModule(prefix);
@@ -46,5 +50,26 @@ public class ControllerCounters {
                                                            MetaData.ERROR);
         
         packetIn = debugCounters.registerCounter(prefix, "packet-in", "Number of packet_in's seen");
+
+        // PacketInDispatcher: current queue depth = queued - dequeued
+        packetInQueued = debugCounters.registerCounter(prefix,
+                                                       "packet-in-queued",
+                                                       "Number of packet_in's handed to the "
+                                                               + "packet_in worker queues");
+        packetInDequeued = debugCounters.registerCounter(prefix,
+                                                         "packet-in-dequeued",
+                                                         "Number of packet_in's taken from the "
+                                                                 + "packet_in worker queues");
+        packetInDropped = debugCounters.registerCounter(prefix,
+                                                        "packet-in-dropped",
+                                                        "Number of packet_in's dropped because "
+                                                                + "a packet_in worker queue was full",
+                                                        MetaData.DROP);
+        packetInBlocked = debugCounters.registerCounter(prefix,
+                                                        "packet-in-blocked",
+                                                        "Number of times an I/O thread waited "
+                                                                + "for room in a full packet_in "
+                                                                + "worker queue",
+                                                        MetaData.WARN);
     }
 }
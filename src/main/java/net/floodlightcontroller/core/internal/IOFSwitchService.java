@@ -11,8 +11,11 @@ import net.floodlightcontroller.core.LogicalOFMessageCategory;
 import net.floodlightcontroller.core.module.IFloodlightService;
 import net.floodlightcontroller.core.rest.SwitchRepresentation;
 
+import org.projectfloodlight.openflow.protocol.OFControllerRole;
 import org.projectfloodlight.openflow.types.DatapathId;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 public interface IOFSwitchService extends IFloodlightService {
 
     /**
@@ -128,4 +131,13 @@ public interface IOFSwitchService extends IFloodlightService {
      */
     List<OFSwitchHandshakeHandler> getSwitchHandshakeHandlers();
 
+    /**
+     * 经交换机的握手处理器请求角色，角色变化驱动状态机并登记到集群
+     * @param dpid 交换机
+     * @param role 请求的角色
+     * @return 达到的角色；交换机未连接时以SwitchDisconnectedException结束
+     * @see OFSwitchHandshakeHandler#requestRole(OFControllerRole)
+     */
+    ListenableFuture<OFControllerRole> requestRole(DatapathId dpid, OFControllerRole role);
+
 }
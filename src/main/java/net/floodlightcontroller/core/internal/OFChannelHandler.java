@@ -499,6 +499,18 @@ class OFChannelHandler extends IdleStateAwareChannelHandler {
 		log.info("[{}] Disconnected connection", getConnectionInfoString());
 	}
 
+	/**
+	 * 发送缓冲区低于低水位线后通道重新可写，写出连接中排队的消息
+	 */
+	@Override
+	public void channelInterestChanged(ChannelHandlerContext ctx,
+			ChannelStateEvent e) throws Exception {
+		if (this.connection != null && e.getChannel().isWritable()) {
+			this.connection.channelWritabilityChanged();
+		}
+		super.channelInterestChanged(ctx, e);
+	}
+
 	@Override
 	@LogMessageDocs({
 		@LogMessageDoc(level="ERROR",
@@ -14,6 +14,8 @@ import javax.annotation.Nonnull;
 
 import net.dsc.cluster.HARole;
 import net.dsc.cluster.IClusterService;
+import net.dsc.cluster.SwitchRegistration;
+import net.dsc.cluster.SwitchRegistrationException;
 import net.dsc.cluster.model.SwitchModel;
 import net.floodlightcontroller.core.IOFConnection;
 import net.floodlightcontroller.core.IOFConnectionBackend;
@@ -21,12 +23,15 @@ import net.floodlightcontroller.core.IOFSwitch;
 import net.floodlightcontroller.core.IOFSwitch.SwitchStatus;
 import net.floodlightcontroller.core.IOFSwitchBackend;
 import net.floodlightcontroller.core.PortChangeEvent;
+import net.floodlightcontroller.core.SwitchDisconnectedException;
 import net.floodlightcontroller.core.SwitchDescription;
 import net.floodlightcontroller.core.annotations.LogMessageDoc;
 import net.floodlightcontroller.core.annotations.LogMessageDocs;
 import net.floodlightcontroller.core.internal.OFSwitchAppHandshakePlugin.PluginResultType;
 
+import org.jboss.netty.util.Timeout;
 import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
 import org.projectfloodlight.openflow.protocol.OFBadRequestCode;
 import org.projectfloodlight.openflow.protocol.OFBarrierReply;
 import org.projectfloodlight.openflow.protocol.OFBarrierRequest;
@@ -79,6 +84,10 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 /**
  * Switch handler deals with the switch connection and dispatches
@@ -106,8 +115,16 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 	
 	//cluster
 	private IClusterService clusterService;
+	// 本控制器的负载中是否已计入该交换机(作为master)
+	private volatile boolean countedAsMaster = false;
+	// 交换机信息是否已随角色一起登记到集群
+	private volatile boolean switchRegistered = false;
+	private static final int CLUSTER_REGISTRATION_RETRIES = 3;
+	private static final long CLUSTER_REGISTRATION_RETRY_MS = 500;
 	
 	private volatile OFControllerRole initialRole = null;
+	// 经requestRole发出、等待状态机转换的角色请求
+	private final List<PendingRole> pendingRoles = new ArrayList<PendingRole>();
 
 	private final ArrayList<OFPortStatus> pendingPortStatusMsg;
 
@@ -451,7 +468,7 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 			sw.setControllerRole(role);
 
 			if (role != OFControllerRole.ROLE_SLAVE) {
-				OFSwitchHandshakeHandler.this.setState(new MasterState());
+				OFSwitchHandshakeHandler.this.registerMaster();
 			} else {
 				if (status != RoleRecvStatus.RECEIVED_REPLY) {
 					if (log.isDebugEnabled()) {
@@ -1265,14 +1282,7 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 
 		@Override
 		void enterState(){
-			//cluster
-			clusterService.putSwitch(new SwitchModel.Builder()
-			.dpid(getDpid()
-			.toString())
-			.date(new Date())
-			.ip(sw.getInetAddress().toString())
-			.version(featuresReply.getVersion().toString()).build());
-			
+			// 角色由本地视图决定；交换机信息在进入MASTER/SLAVE时随角色一起异步登记
 			sendRoleRequest(roleManager.getOFControllerRole(getDpid()));
 		}
 	}
@@ -1295,11 +1305,7 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 		void enterState() {
 			setSwitchStatus(SwitchStatus.MASTER);
 			
-			//cluster
-
-//			clusterService.putMasterMap(getDpid().toString());
-			clusterService.putControllerMappingSwitch(roleManager.getController().getControllerModel(), getDpid().toString(),OFControllerRole.ROLE_MASTER.toString());
-			clusterService.ControllerLoadIncrease(roleManager.getController().getControllerModel().getControllerId(), 1);
+			//cluster：进入本状态前已完成登记(见registerMaster)
 			
 			initialRole = OFControllerRole.ROLE_MASTER;
 			if (OFSwitchManager.clearTablesOnEachTransitionToMaster) {
@@ -1439,9 +1445,18 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 			setSwitchStatus(SwitchStatus.SLAVE);
 			
 			//cluster
-//			clusterService.removeMasterMap(getDpid().toString());
-			clusterService.putControllerMappingSwitch(roleManager.getController().getControllerModel(), getDpid().toString(),OFControllerRole.ROLE_SLAVE.toString());
-			clusterService.ControllerLoadReduce(roleManager.getController().getControllerModel().getControllerId(), 1);		
+			registerInCluster(this, OFControllerRole.ROLE_SLAVE, countedAsMaster ? -1 : 0, new FutureCallback<Void>() {
+				@Override
+				public void onSuccess(Void result) {
+					completeRoleRequests(OFControllerRole.ROLE_SLAVE, null);
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					completeRoleRequests(OFControllerRole.ROLE_SLAVE, t);
+				}
+			});
+			countedAsMaster = false;
 			
 			if (initialRole == null) {
 				initialRole = OFControllerRole.ROLE_SLAVE;
@@ -1658,6 +1673,83 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 		}
 	}
 
+	private static class PendingRole {
+		final OFControllerRole role;
+		final SettableFuture<OFControllerRole> future = SettableFuture.create();
+
+		PendingRole(OFControllerRole role) {
+			this.role = role;
+		}
+	}
+
+	/**
+	 * 集群请求的角色变化：与握手时一样经RoleChanger发送角色请求，由角色回复驱动状态机。
+	 * MASTER在集群登记完成、进入MasterState后完成，SLAVE在进入SlaveState、登记完成后完成。
+	 * 在连接的I/O线程上发送；被其他角色的请求取代、登记失败或连接断开时以异常结束
+	 * @param role ROLE_MASTER或ROLE_SLAVE
+	 * @return 达到的角色
+	 */
+	public ListenableFuture<OFControllerRole> requestRole(final OFControllerRole role) {
+		if (role != OFControllerRole.ROLE_MASTER && role != OFControllerRole.ROLE_SLAVE)
+			return Futures.immediateFailedFuture(new IllegalArgumentException("unsupported role " + role));
+		final PendingRole request = new PendingRole(role);
+		mainConnection.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (!mainConnection.isConnected()) {
+					request.future.setException(new SwitchDisconnectedException(getDpid()));
+					return;
+				}
+				if (!(state instanceof MasterState) && !(state instanceof SlaveState)) {
+					request.future.setException(new IllegalStateException(
+							"switch " + getSwitchInfoString() + " is in state " + getState()));
+					return;
+				}
+				synchronized (pendingRoles) {
+					// RoleChanger只跟踪最后一个请求，之前其他角色的请求不会再有回复
+					for (Iterator<PendingRole> i = pendingRoles.iterator(); i.hasNext();) {
+						PendingRole p = i.next();
+						if (p.role != role) {
+							i.remove();
+							p.future.setException(new IllegalStateException("superseded by role request " + role));
+						}
+					}
+					pendingRoles.add(request);
+				}
+				sendRoleRequest(role);
+			}
+		});
+		return request.future;
+	}
+
+	/**
+	 * 结束等待role的请求
+	 * @param failure 为null时以role完成
+	 */
+	private void completeRoleRequests(OFControllerRole role, Throwable failure) {
+		synchronized (pendingRoles) {
+			for (Iterator<PendingRole> i = pendingRoles.iterator(); i.hasNext();) {
+				PendingRole p = i.next();
+				if (p.role != role)
+					continue;
+				i.remove();
+				if (failure == null)
+					p.future.set(role);
+				else
+					p.future.setException(failure);
+			}
+		}
+	}
+
+	private void failRoleRequests(Throwable failure) {
+		synchronized (pendingRoles) {
+			for (PendingRole p : pendingRoles) {
+				p.future.setException(failure);
+			}
+			pendingRoles.clear();
+		}
+	}
+
 	/**
 	 * Dispatches the message to the controller packet pipeline
 	 * 调度报文给控制器
@@ -1689,6 +1781,166 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 		return String.format("[%s DPID[%s]]", channelString, dpidString);
 	}
 
+	/**
+	 * 交换机接受MASTER角色：集群登记完成后才进入MasterState，此前保持当前状态；
+	 * 重试后仍失败时断开交换机，重连后重新握手
+	 */
+	private void registerMaster() {
+		final OFSwitchHandshakeState expected = state;
+		int loadDelta = countedAsMaster ? 0 : 1;
+		countedAsMaster = true;
+		registerInCluster(expected, OFControllerRole.ROLE_MASTER, loadDelta, new FutureCallback<Void>() {
+			@Override
+			public void onSuccess(Void result) {
+				setState(new MasterState());
+				completeRoleRequests(OFControllerRole.ROLE_MASTER, null);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				SwitchRegistration rest = ((SwitchRegistrationException) t).getRemaining();
+				if (rest.getLoadDelta() > 0)
+					countedAsMaster = false;// 负载未计入，断开时不再减少
+				completeRoleRequests(OFControllerRole.ROLE_MASTER, t);
+				log.error("[{}] - not taking MASTER role without cluster registration, disconnecting",
+						getDpid());
+				sw.disconnect();
+			}
+		});
+	}
+
+	/**
+	 * 异步登记本控制器在交换机上的新角色，不阻塞I/O线程。
+	 * 首次登记时一并写入交换机信息；失败时经timer只重试失败的部分，负载变化保持原值。
+	 * @param done 仍处于expected状态时在登记完成或最终失败时回调，可以为null
+	 */
+	private void registerInCluster(final OFSwitchHandshakeState expected, final OFControllerRole role, int loadDelta,
+			FutureCallback<Void> done) {
+		SwitchRegistration r = SwitchRegistration.role(getDpid().toString(), role.toString(), loadDelta);
+		if (!switchRegistered) {
+			switchRegistered = true;
+			r.withModel(new SwitchModel.Builder()
+					.dpid(getDpid().toString())
+					.date(new Date())
+					.ip(sw.getInetAddress().toString())
+					.version(featuresReply.getVersion().toString()).build());
+		}
+		submitRegistration(expected, r, 0, done);
+	}
+
+	private void submitRegistration(final OFSwitchHandshakeState expected,
+			final SwitchRegistration r, final int attempt, final FutureCallback<Void> done) {
+		Futures.addCallback(clusterService.registerSwitchAsync(r), new FutureCallback<Void>() {
+			@Override
+			public void onSuccess(Void result) {
+				log.debug("[{}] - cluster registration done: {}", getDpid(), r);
+				if (done != null)
+					completeOnChannel(expected, done, null);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				SwitchRegistration rest = t instanceof SwitchRegistrationException
+						? ((SwitchRegistrationException) t).getRemaining() : r;
+				boolean current = isCurrent(expected);
+				if (!current) {
+					// 状态已变化，角色由新状态重新登记；负载变化已计入countedAsMaster，仍需重试
+					rest = rest.remaining(false, true, mainConnection.isConnected());
+					if (rest.isEmpty())
+						return;
+				}
+				if (attempt >= CLUSTER_REGISTRATION_RETRIES) {
+					log.error("[{}] - cluster registration failed: {} ({})", new Object[] { getDpid(), rest, t.toString() });
+					if (done != null && current)
+						completeOnChannel(expected, done, new SwitchRegistrationException(rest, t));
+					return;
+				}
+				log.warn("[{}] - cluster registration failed, retrying: {} ({})", new Object[] { getDpid(), rest, t.toString() });
+				final SwitchRegistration retry = rest;
+				final FutureCallback<Void> next = current ? done : null;
+				timer.newTimeout(new TimerTask() {
+					@Override
+					public void run(Timeout timeout) {
+						// 等待期间状态可能已变化或连接已断开，不再重新登记旧角色
+						if (!isCurrent(expected)) {
+							SwitchRegistration stale = retry.remaining(false, true, mainConnection.isConnected());
+							if (!stale.isEmpty())
+								submitRegistration(expected, stale, attempt + 1, null);
+							return;
+						}
+						submitRegistration(expected, retry, attempt + 1, next);
+					}
+				}, CLUSTER_REGISTRATION_RETRY_MS, TimeUnit.MILLISECONDS);
+			}
+		});
+	}
+
+	/**
+	 * 登记回调运行在Hazelcast线程上，转到连接的I/O线程再驱动状态机，
+	 * 与processOFMessage串行，并在该线程上重新检查状态
+	 */
+	private void completeOnChannel(final OFSwitchHandshakeState expected,
+			final FutureCallback<Void> done, final Throwable failure) {
+		mainConnection.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (!isCurrent(expected))
+					return;
+				if (failure == null)
+					done.onSuccess(null);
+				else
+					done.onFailure(failure);
+			}
+		});
+	}
+
+	private boolean isCurrent(OFSwitchHandshakeState expected) {
+		return state == expected && mainConnection.isConnected();
+	}
+
+	/**
+	 * 连接断开：异步移除角色和交换机信息；本控制器为master时完成后把交换机移交给其他控制器
+	 */
+	private void unregisterFromCluster() {
+		final boolean wasMaster = countedAsMaster;
+		countedAsMaster = false;
+		final String dpid = getDpid().toString();
+		submitUnregistration(SwitchRegistration.disconnect(dpid, wasMaster ? -1 : 0), wasMaster, 0);
+	}
+
+	/**
+	 * 断开登记失败时与注册一样经timer只重试失败的部分，最多重试CLUSTER_REGISTRATION_RETRIES次
+	 */
+	private void submitUnregistration(final SwitchRegistration r, final boolean wasMaster, final int attempt) {
+		final String dpid = r.getDpid();
+		Futures.addCallback(clusterService.registerSwitchAsync(r), new FutureCallback<Void>() {
+			@Override
+			public void onSuccess(Void result) {
+				if (wasMaster)
+					clusterService.switchRemove(dpid);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				final SwitchRegistration rest = t instanceof SwitchRegistrationException
+						? ((SwitchRegistrationException) t).getRemaining() : r;
+				if (attempt >= CLUSTER_REGISTRATION_RETRIES) {
+					log.error("[{}] - cluster unregistration failed: {} ({})", new Object[] { dpid, rest, t.toString() });
+					if (wasMaster)
+						clusterService.switchRemove(dpid);
+					return;
+				}
+				log.warn("[{}] - cluster unregistration failed, retrying: {} ({})", new Object[] { dpid, rest, t.toString() });
+				timer.newTimeout(new TimerTask() {
+					@Override
+					public void run(Timeout timeout) {
+						submitUnregistration(rest, wasMaster, attempt + 1);
+					}
+				}, CLUSTER_REGISTRATION_RETRY_MS, TimeUnit.MILLISECONDS);
+			}
+		});
+	}
+
 	/**
 	 * Update the channels state. Only called from the state machine.
 	 * TODO: enforce restricted state transitions
@@ -1848,17 +2100,8 @@ public class OFSwitchHandshakeHandler implements IOFConnectionListener {
 	public void connectionClosed(IOFConnectionBackend connection) {
 		
 		//culster
-
-		if(initialRole==OFControllerRole.ROLE_MASTER){
-			clusterService.ControllerLoadReduce(roleManager.getController().getControllerModel().getControllerId(), 1);
-			clusterService.removeControllerMappingSwitch(roleManager.getController().getControllerModel(), getDpid().toString(),OFControllerRole.ROLE_SLAVE.toString());
-//			clusterService.removeMasterMap(getDpid().toString());
-			clusterService.switchRemove(getDpid().toString());
-		}
-		else{
-			clusterService.removeControllerMappingSwitch(roleManager.getController().getControllerModel(), getDpid().toString(),OFControllerRole.ROLE_MASTER.toString());
-		}
-		clusterService.removeSwitch(getDpid().toString());
+		unregisterFromCluster();
+		failRoleRequests(new SwitchDisconnectedException(getDpid()));
 		// Disconnect handler's remaining connections
 		cleanup();
 
@@ -1,6 +1,5 @@
 package net.floodlightcontroller.core.internal;
 
-import static net.dsc.cluster.HazelcastTableNameConstant.MASTER_MAP;
 
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
@@ -34,6 +33,7 @@ import net.floodlightcontroller.core.IOFSwitchListener;
 import net.floodlightcontroller.core.LogicalOFMessageCategory;
 import net.floodlightcontroller.core.PortChangeType;
 import net.floodlightcontroller.core.SwitchDescription;
+import net.floodlightcontroller.core.SwitchDisconnectedException;
 import net.floodlightcontroller.core.SwitchSyncRepresentation;
 import net.floodlightcontroller.core.annotations.LogMessageDoc;
 import net.floodlightcontroller.core.annotations.LogMessageDocs;
@@ -74,7 +74,8 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.hazelcast.core.IMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.hazelcast.core.MultiMap;
 
 /**
@@ -113,7 +114,6 @@ public class OFSwitchManager implements IOFSwitchManager, INewOFConnectionListen
 	private ConcurrentHashMap<DatapathId, IOFSwitch> syncedSwitches;
 	
 	//HA data structure
-	private IMap<String, String> masterMap;
 	private MultiMap<ControllerModel, SwitchConnectModel> controllerMappingSwitch;
 
 	private ISwitchDriverRegistry driverRegistry;
@@ -509,6 +509,14 @@ public class OFSwitchManager implements IOFSwitchManager, INewOFConnectionListen
 		return ImmutableList.copyOf(this.switchHandlers.values());
 	}
 
+	@Override
+	public ListenableFuture<OFControllerRole> requestRole(DatapathId dpid, OFControllerRole role) {
+		OFSwitchHandshakeHandler handler = switchHandlers.get(dpid);
+		if (handler == null)
+			return Futures.immediateFailedFuture(new SwitchDisconnectedException(dpid));
+		return handler.requestRole(role);
+	}
+
 	@Override
 	public int getNumRequiredConnections() {
 		Preconditions.checkState(numRequiredConnections >= 0, "numRequiredConnections not calculated");
@@ -656,7 +664,6 @@ public class OFSwitchManager implements IOFSwitchManager, INewOFConnectionListen
 		floodlightProvider.getTimer();
 		counters = new SwitchManagerCounters(debugCounterService);
 		driverRegistry = new NaiveSwitchDriverRegistry(this);
-		masterMap = hazelcast.getMap(MASTER_MAP);
 		this.switchListeners = new CopyOnWriteArraySet<IOFSwitchListener>();
 
 		/* TODO @Ryan
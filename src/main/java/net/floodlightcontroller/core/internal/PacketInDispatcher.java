@@ -0,0 +1,165 @@
+package net.floodlightcontroller.core.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PacketIn处理线程池
+ * <p>
+ * 把PacketIn的监听器链从Netty I/O线程移到固定数量的工作线程上执行，避免一个慢监听器
+ * 或一次阻塞的集群调用拖住同一I/O线程上的所有交换机。按dpid分区：同一交换机的消息
+ * 总是进入同一个工作线程的队列，保持到达顺序。
+ * <p>
+ * 每个队列有界，满时按{@link OverflowPolicy}处理。
+ * Queue depth is exported through ControllerCounters as queued - dequeued.
+ */
+public class PacketInDispatcher {
+    protected static final Logger log = LoggerFactory.getLogger(PacketInDispatcher.class);
+
+    /** BLOCK策略下I/O线程最长等待时间，超时后丢弃 */
+    public static final long BLOCK_TIMEOUT_MS = 100;
+
+    /**
+     * 队列满时的处理方式
+     */
+    public enum OverflowPolicy {
+        /** 丢弃新到的消息 */
+        DROP_NEWEST,
+        /** 丢弃队列中最早的消息，保留新消息 */
+        DROP_OLDEST,
+        /** I/O线程等待队列空出，对交换机形成背压，最多等待BLOCK_TIMEOUT_MS */
+        BLOCK
+    }
+
+    private final List<BlockingQueue<Runnable>> queues;
+    private final List<Thread> workers;
+    private final OverflowPolicy policy;
+    private final ControllerCounters counters;
+    private volatile boolean running = true;
+
+    /**
+     * @param workerCount 工作线程数
+     * @param queueSize 每个工作线程的队列容量
+     */
+    public PacketInDispatcher(int workerCount, int queueSize, OverflowPolicy policy,
+                              ControllerCounters counters) {
+        if (workerCount <= 0)
+            throw new IllegalArgumentException("workerCount must be > 0. Was " + workerCount);
+        if (queueSize <= 0)
+            throw new IllegalArgumentException("queueSize must be > 0. Was " + queueSize);
+        this.policy = policy;
+        this.counters = counters;
+        this.queues = new ArrayList<BlockingQueue<Runnable>>(workerCount);
+        this.workers = new ArrayList<Thread>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(queueSize);
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work(queue);
+                }
+            }, "packet-in-worker-" + i);
+            t.setDaemon(true);
+            queues.add(queue);
+            workers.add(t);
+        }
+        for (Thread t : workers) {
+            t.start();
+        }
+    }
+
+    /**
+     * 同一partitionKey的任务按提交顺序在同一线程上执行
+     * @param partitionKey 交换机dpid
+     * @return 任务是否进入队列；false表示被丢弃
+     */
+    public boolean dispatch(long partitionKey, Runnable task) {
+        BlockingQueue<Runnable> queue = queues.get(partition(partitionKey, queues.size()));
+        if (queue.offer(task)) {
+            counters.packetInQueued.increment();
+            return true;
+        }
+        switch (policy) {
+            case DROP_OLDEST:
+                // 消费线程可能同时取走队首，循环直到放入
+                while (!queue.offer(task)) {
+                    if (queue.poll() != null) {
+                        counters.packetInDequeued.increment();
+                        counters.packetInDropped.increment();
+                    }
+                }
+                counters.packetInQueued.increment();
+                return true;
+            case BLOCK:
+                counters.packetInBlocked.increment();
+                try {
+                    if (queue.offer(task, BLOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        counters.packetInQueued.increment();
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                counters.packetInDropped.increment();
+                return false;
+            case DROP_NEWEST:
+            default:
+                counters.packetInDropped.increment();
+                return false;
+        }
+    }
+
+    static int partition(long key, int n) {
+        int h = (int) (key ^ (key >>> 32));
+        h ^= (h >>> 16);
+        return (h & Integer.MAX_VALUE) % n;
+    }
+
+    private void work(BlockingQueue<Runnable> queue) {
+        while (running) {
+            Runnable task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            counters.packetInDequeued.increment();
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("Exception in packet_in worker", e);
+            }
+        }
+    }
+
+    /**
+     * @return 各工作线程当前的队列长度
+     */
+    public List<Integer> getQueueDepths() {
+        List<Integer> depths = new ArrayList<Integer>(queues.size());
+        for (BlockingQueue<Runnable> q : queues) {
+            depths.add(q.size());
+        }
+        return depths;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return policy;
+    }
+
+    /**
+     * 停止工作线程，队列中未处理的消息被丢弃
+     */
+    public void shutDown() {
+        running = false;
+        for (Thread t : workers) {
+            t.interrupt();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package net.floodlightcontroller.core.internal;
 
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.Map.Entry;
 
 import javax.annotation.Nonnull;
@@ -170,17 +173,31 @@ public class RoleManager {
     }
 
     public synchronized OFControllerRole getOFControllerRole(DatapathId dpid) {
-    	
-    	System.out.println(clusterService.getMasterMap().keySet());
-    	if(clusterService.getMasterMap().containsKey(dpid.toString())){
-    		log.info("SLAVE:{}<-------->{}",controller.getControllerModel().getControllerId(),dpid.toString());
+    	String localId = controller.getControllerModel().getControllerId();
+    	// 一致性哈希模式：交换机已有master时先作为SLAVE连接，由原master经批量角色请求移交给哈希环归属控制器，
+    	// 避免原master未降级就出现两个master；还没有master时只有哈希环归属控制器成为MASTER，
+    	// 归属控制器尚未连接该交换机时才先到先得
+    	String master = clusterService.getMasterMap().get(dpid.toString());
+    	if(master != null){
+    		if(!master.equals(localId) && localId.equals(clusterService.getHashOwner(dpid.toString(), connectedWith(dpid, localId))))
+    			log.info("SLAVE(ring owner, waiting for handover from {}):{}<-------->{}",new Object[]{master,localId,dpid.toString()});
+    		else
+    			log.info("SLAVE:{}<-------->{}",localId,dpid.toString());
     		return OFControllerRole.ROLE_SLAVE;
     	}
-    	else{
-    		log.info("MASTER:{}<-------->{}",controller.getControllerModel().getControllerId(),dpid.toString());
-    		return OFControllerRole.ROLE_MASTER;
+    	String owner = clusterService.getHashOwner(dpid.toString(), clusterService.getLiveControllers());
+    	if(owner != null && !owner.equals(localId) && clusterService.isConnected(dpid.toString(), owner)){
+    		log.info("SLAVE(ring owner {} connected, no master yet):{}<-------->{}",new Object[]{owner,localId,dpid.toString()});
+    		return OFControllerRole.ROLE_SLAVE;
     	}
-    			
+    	log.info("MASTER:{}<-------->{}",localId,dpid.toString());
+    	return OFControllerRole.ROLE_MASTER;
+    }
+
+    private Set<String> connectedWith(DatapathId dpid, String localId) {
+    	Set<String> connected = new HashSet<String>(clusterService.getSwitchRoles(dpid.toString()).keySet());
+    	connected.add(localId);
+    	return connected;
     }
     /**
      * Return the RoleInfo object describing the current role.
@@ -287,8 +304,9 @@ public class RoleManager {
                           this.role, this.role.getOFRole());
             }
 
+            Map<String, String> masterMap = clusterService.getMasterMap();
             for (OFSwitchHandshakeHandler h: getController().getSwitchService().getSwitchHandshakeHandlers()){
-            	if(clusterService.getMasterMap().keySet().contains(h.getDpid()))
+            	if(masterMap.containsKey(h.getDpid()))
             		h.sendRoleRequest(OFControllerRole.ROLE_SLAVE);
             	else
             		h.sendRoleRequest(OFControllerRole.ROLE_MASTER);
@@ -17,15 +17,12 @@
 package net.floodlightcontroller.core.web;
 
 import java.io.IOException;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import net.dsc.cluster.IClusterService;
 import net.dsc.cluster.model.ControllerModel;
-import net.dsc.cluster.model.SwitchConnectModel;
 import net.dsc.hazelcast.IHazelcastService;
 import net.dsc.hazelcast.message.RoleMessage;
 import net.floodlightcontroller.core.IFloodlightProviderService;
@@ -45,8 +42,6 @@ import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.MappingJsonFactory;
-import com.hazelcast.core.IMap;
-import com.hazelcast.core.MultiMap;
 
 public class SwitchRoleResource extends ServerResource {
 
@@ -81,29 +76,13 @@ public class SwitchRoleResource extends ServerResource {
 				CoreWebRoutable.STR_SWITCH_ID);
 
 		HashMap<String, HashMap<String, String>> model = new HashMap<String, HashMap<String, String>>();// 添加加數據結構
-		MultiMap<ControllerModel, SwitchConnectModel> ControllerMappingRole = clusterService
-				.getControllerMappingSwitch();
 
 		if (switchId.equalsIgnoreCase(CoreWebRoutable.STR_ALL)) {// 判斷查詢字段是否为ALL
-
+			Map<String, ControllerModel> controllers = new HashMap<String, ControllerModel>(
+					clusterService.getControllers());
 			for (IOFSwitch sw : switchService.getAllSwitchMap().values()) {// 遍歷所有交換機
 				switchId = sw.getId().toString();
-				HashMap<String, String> ControllerRole = new HashMap<String, String>();
-				for (ControllerModel controller : ControllerMappingRole
-						.keySet()) {
-					Collection<SwitchConnectModel> switches = ControllerMappingRole// 遍歷控制器和交換機關係map
-							.get(controller);
-					Iterator<SwitchConnectModel> it = switches.iterator();// 遍歷switch
-					while (it.hasNext()) {
-						SwitchConnectModel singleSwitch = it.next();
-						if (singleSwitch.getDpid().equals(switchId)) {// 有switchId則添加
-							ControllerRole.put(controller.getControllerIp(),
-									singleSwitch.getRole());
-						}
-					}
-				}
-
-				model.put(switchId, ControllerRole);
+				model.put(switchId, getRolesByIp(clusterService, controllers, switchId));
 			}
 			return model;
 		} else {
@@ -120,21 +99,8 @@ public class SwitchRoleResource extends ServerResource {
 					model.put("error", ReturnMessage);
 					return model;
 				} else {// 添加單個
-					for (ControllerModel controller : ControllerMappingRole
-							.keySet()) {
-						Collection<SwitchConnectModel> switches = ControllerMappingRole
-								.get(controller);
-						Iterator<SwitchConnectModel> it = switches.iterator();
-						while (it.hasNext()) {
-							SwitchConnectModel singleSwitch = it.next();
-							if (singleSwitch.getDpid().equals(switchId)) {
-								ReturnMessage.put(controller.getControllerIp(),
-										singleSwitch.getRole());
-							}
-						}
-					}
-
-					model.put(dpid.toString(), ReturnMessage);
+					model.put(dpid.toString(), getRolesByIp(clusterService,
+							clusterService.getControllers(), switchId));
 					return model;
 				}
 			} catch (Exception e) {
@@ -164,12 +130,6 @@ public class SwitchRoleResource extends ServerResource {
 		IOFSwitchService switchService = (IOFSwitchService) getContext() // 获取switch服务
 				.getAttributes().get(IOFSwitchService.class.getCanonicalName());
 
-		MultiMap<ControllerModel, SwitchConnectModel> ControllerMappingRole = clusterService
-				.getControllerMappingSwitch();
-
-		IMap<String, ControllerModel> controllers = clusterService
-				.getControllers();
-
 		Map<String, String> masterMap = clusterService.getMasterMap();
 
 		Map<String, String> retValue = new HashMap<String, String>();// 返回消息
@@ -226,15 +186,8 @@ public class SwitchRoleResource extends ServerResource {
 		}
 		
 
-		isSwitchId = isSwitchExist(switchId, ControllerMappingRole);// 判断switchId是否存在
-
-		for (ControllerModel controller : ControllerMappingRole.keySet()) {// 判断controllerId是否存在
-			System.out.println(controller.getControllerId());
-			if (controller.getControllerId().equals(controllerId)) {
-				isControllerId = true;
-				break;
-			}
-		}
+		isSwitchId = !clusterService.getSwitchRoles(switchId).isEmpty();// 判断switchId是否存在
+		isControllerId = !clusterService.getControllerSwitches(controllerId).isEmpty();// 判断controllerId是否存在
 		for (String dpid : masterMap.keySet()) {// 判断交换机是否有主
 			if (dpid.equals(switchId)) {
 				switchHasMaster = true;
@@ -366,18 +319,12 @@ public class SwitchRoleResource extends ServerResource {
 					return retValue;
 
 				case ROLE_MASTER:
-					Collection<SwitchConnectModel> switches = ControllerMappingRole
-							.get(controllers.get(controllerId));
-					Iterator<SwitchConnectModel> it = switches.iterator();// 遍歷switch
-					while (it.hasNext()) {
-						SwitchConnectModel singleSwitch = it.next();
-						if (singleSwitch.getDpid().equals(switchId)) {
-							hazelcastService.publishRoleMessage(
-									new RoleMessage("MASTER", switchId),
-									controllerId);// 让请求控制器变为master
-							retValue.put("ok", "请求已发送");
-							return retValue;
-						}
+					if (clusterService.isConnected(switchId, controllerId)) {
+						hazelcastService.publishRoleMessage(
+								new RoleMessage("MASTER", switchId),
+								controllerId);// 让请求控制器变为master
+						retValue.put("ok", "请求已发送");
+						return retValue;
 					}
 
 					retValue.put("SORRY", "此控制器没有连接此交换机" + json);
@@ -484,22 +431,18 @@ public class SwitchRoleResource extends ServerResource {
 		}
 	}*/
 
-	private boolean isSwitchExist(String switchId,
-			MultiMap<ControllerModel, SwitchConnectModel> ControllerMappingRole) {
-		for (ControllerModel controllerModel : ControllerMappingRole.keySet()) {
-			Collection<SwitchConnectModel> switches = ControllerMappingRole
-					.get(controllerModel);
-			Iterator<SwitchConnectModel> it = switches.iterator();// 遍歷switch
-			while (it.hasNext()) {
-				SwitchConnectModel singleSwitch = it.next();
-				if (singleSwitch.getDpid().equals(switchId)) {
-					return true;
-				}
-			}
+	/**
+	 * 交换机上各控制器的角色，以控制器IP为键
+	 */
+	private static HashMap<String, String> getRolesByIp(IClusterService clusterService,
+			Map<String, ControllerModel> controllers, String switchId) {
+		HashMap<String, String> roles = new HashMap<String, String>();
+		for (Map.Entry<String, String> e : clusterService.getSwitchRoles(switchId).entrySet()) {
+			ControllerModel controller = controllers.get(e.getKey());
+			if (controller != null)
+				roles.put(controller.getControllerIp(), e.getValue());
 		}
-
-		return false;
-
+		return roles;
 	}
 
 	/*protected class SetConcurrentRoleThread extends Thread {
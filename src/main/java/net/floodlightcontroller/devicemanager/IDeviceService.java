@@ -70,7 +70,8 @@ public interface IDeviceService extends IFloodlightService {
      * FloodlightContext information created by BVS manager.
      */
     public static final FloodlightContextStore<IDevice> fcStore = 
-        new FloodlightContextStore<IDevice>();
+        new FloodlightContextStore<IDevice>(IDeviceService.CONTEXT_SRC_DEVICE,
+                IDeviceService.CONTEXT_DST_DEVICE, IDeviceService.CONTEXT_ORIG_DST_DEVICE);
 
     /**
      * Get the device with the given device key.
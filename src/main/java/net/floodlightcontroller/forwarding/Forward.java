@@ -2,10 +2,14 @@ package net.floodlightcontroller.forwarding;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import net.dsc.cluster.IClusterService;
+import net.dsc.cluster.InterDomainRouting.RouteHop;
+import net.dsc.cluster.model.HostLocationModel;
 import net.floodlightcontroller.core.FloodlightContext;
 import net.floodlightcontroller.core.IFloodlightProviderService;
 import net.floodlightcontroller.core.IOFMessageListener;
@@ -37,10 +41,11 @@ public class Forward implements IFloodlightModule,IOFMessageListener{
 	public static int FLOWMOD_DEFAULT_IDLE_TIMEOUT = 5; // in seconds
 	public static int FLOWMOD_DEFAULT_HARD_TIMEOUT = 0; // infinite
 	public static int FLOWMOD_DEFAULT_PRIORITY = 1; // 0 is the default table-miss flow in OF1.3+, so we need to use 1
-	private Map<String, Map<String,Integer>> macPort;
+	private ConcurrentMap<String, Map<String,Integer>> macPort;
 	
 	protected IFloodlightProviderService floodlightProvider;
 	protected IOFSwitchService switchService;
+	protected IClusterService clusterService;
 	@Override
 	public String getName() {
 		return "Forward";
@@ -73,11 +78,18 @@ public class Forward implements IFloodlightModule,IOFMessageListener{
 		String dst=eth.getDestinationMACAddress().toString();
 		String src=eth.getSourceMACAddress().toString();
 		String dpid=sw.getId().toString();
+		short vlan=eth.getVlanID();
 		initMap(dpid);
 		macPort.get(dpid).put(src, inPort.getPortNumber());//记录地址
-		Integer outPort;
-		if(macPort.get(dpid).keySet().contains(dst)){
-			outPort=macPort.get(dpid).get(dst);
+		//边缘端口上学习到的主机写入集群主机位置表，交换机间链路端口不学习
+		if(!clusterService.getLinkGraph().isLinkPort(dpid, inPort.getPortNumber())){
+			clusterService.getHostLocations().learn(src, vlan, dpid, inPort.getPortNumber());
+		}
+		Integer outPort=macPort.get(dpid).get(dst);
+		if(outPort==null && !eth.isBroadcast() && !eth.isMulticast()){
+			outPort=lookupClusterPort(dpid, inPort.getPortNumber(), dst, vlan);
+		}
+		if(outPort!=null){
 			//构造match
 			Match.Builder mb = sw.getOFFactory().buildMatch();
 			mb.setExact(MatchField.IN_PORT, inPort);
@@ -98,8 +110,7 @@ public class Forward implements IFloodlightModule,IOFMessageListener{
 		//发送packetout
 		OFPacketOut.Builder pob = sw.getOFFactory().buildPacketOut();
 		List<OFAction> actions = new ArrayList<OFAction>();
-		actions.add(sw.getOFFactory().actions().output(OFPort.ALL, Integer.MAX_VALUE)); 
-		pob.setActions(actions);
+		actions.add(sw.getOFFactory().actions().output(OFPort.of(outPort), Integer.MAX_VALUE)); 
 		pob.setInPort(inPort);
 		pob.setActions(actions);
 		pob.setBufferId(OFBufferId.NO_BUFFER);
@@ -108,6 +119,22 @@ public class Forward implements IFloodlightModule,IOFMessageListener{
 		return Command.CONTINUE;
 		
 	}
+	/**
+	 * 本交换机未学习到目的主机时查询集群主机位置表(近缓存)，
+	 * 主机在其他交换机(包括其他控制器域)上时沿全局链路图的最短路径转发
+	 * @return 出端口，未知或不可达时返回null
+	 */
+	private Integer lookupClusterPort(String dpid, int inPort, String dst, short vlan){
+		HostLocationModel host=clusterService.getHostLocations().lookup(dst, vlan);
+		if(host==null)
+			return null;
+		if(host.getDpid().equals(dpid))
+			return host.getPort()==inPort ? null : host.getPort();
+		List<RouteHop> route=clusterService.getRoute(dpid, inPort, host.getDpid(), host.getPort());
+		if(route==null || route.isEmpty())
+			return null;
+		return route.get(0).getOutPort();
+	}
 	public void addFlow(String dpid,Match match,List<OFAction> actions,boolean doflush){
 		DatapathId swId=DatapathId.of(dpid);
 		IOFSwitch sw=switchService.getSwitch(swId);
@@ -144,15 +171,17 @@ public class Forward implements IFloodlightModule,IOFMessageListener{
 		Collection<Class<? extends IFloodlightService>> l = new ArrayList<Class<? extends IFloodlightService>>();
 		l.add(IOFSwitchService.class);
 		l.add(IFloodlightProviderService.class);
+		l.add(IClusterService.class);
 		return l;
 	}
 
 	@Override
 	public void init(FloodlightModuleContext context)
 			throws FloodlightModuleException {
-		macPort=new HashMap<String, Map<String,Integer>>();
+		macPort=new ConcurrentHashMap<String, Map<String,Integer>>();
 		switchService = context.getServiceImpl(IOFSwitchService.class);
 		floodlightProvider=context.getServiceImpl(IFloodlightProviderService.class);
+		clusterService=context.getServiceImpl(IClusterService.class);
 	}
 
 	@Override
@@ -162,12 +191,9 @@ public class Forward implements IFloodlightModule,IOFMessageListener{
 	}
 	
 	private Map<String, Map<String,Integer>> initMap(String dpid){
-		if(macPort.get(dpid)!=null){
-			return macPort;
-		}
-		else{
-			macPort.put(dpid, new HashMap<String, Integer>());
-			return macPort;
+		if(macPort.get(dpid)==null){
+			macPort.putIfAbsent(dpid, new ConcurrentHashMap<String, Integer>());
 		}
+		return macPort;
 	}
 }
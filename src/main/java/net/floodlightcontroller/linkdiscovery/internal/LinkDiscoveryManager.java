@@ -223,6 +223,8 @@ IFloodlightModule, IInfoProvider {
 	 * Map from link to the most recent time it was verified functioning
 	 */
 	protected Map<Link, LinkInfo> links;
+	// 其他控制器域到本域的链路->最近一次收到LLDP的时间，只写入集群链路表
+	protected final Map<LinkModel, Long> interDomainLinks = new ConcurrentHashMap<LinkModel, Long>();
 
 	/**
 	 * Map from switch id to a set of all links with it as an endpoint
@@ -575,7 +577,9 @@ IFloodlightModule, IInfoProvider {
 		Ethernet eth = IFloodlightProviderService.bcStore.get(cntx,
 				IFloodlightProviderService.CONTEXT_PI_PAYLOAD);
 		OFPort inPort = (pi.getVersion().compareTo(OFVersion.OF_12) < 0 ? pi.getInPort() : pi.getMatch().get(MatchField.IN_PORT));
-		if (eth.getPayload() instanceof BSN) {
+		// 先按以太网类型判断，其他包不必解析负载
+		if ((short) eth.getEtherType().getValue() == Ethernet.TYPE_BSN
+				&& eth.getPayload() instanceof BSN) {
 			BSN bsn = (BSN) eth.getPayload();
 			if (bsn == null) return Command.STOP;
 			if (bsn.getPayload() == null) return Command.STOP;
@@ -584,7 +588,8 @@ IFloodlightModule, IInfoProvider {
 			if (bsn.getPayload() instanceof LLDP == false)
 				return Command.CONTINUE;
 			return handleLldp((LLDP) bsn.getPayload(), sw, inPort, false, cntx);
-		} else if (eth.getPayload() instanceof LLDP) {
+		} else if ((short) eth.getEtherType().getValue() == Ethernet.TYPE_LLDP
+				&& eth.getPayload() instanceof LLDP) {
 			return handleLldp((LLDP) eth.getPayload(), sw, inPort, true, cntx);
 		} else if (eth.getEtherType().getValue() < 1536 && eth.getEtherType().getValue() >= 17) {
 	        long destMac = eth.getDestinationMACAddress().getLong();
@@ -678,11 +683,23 @@ IFloodlightModule, IInfoProvider {
 		}
 
 		
-		if(!clusterService.getMasterMap().containsKey(remoteDpid.toString())){
+		Map<String, String> masterMap = clusterService.getMasterMap();
+		String remoteMaster = masterMap.get(remoteDpid.toString());
+		if(remoteMaster == null){
 			return Command.STOP;
 		}
 
 		if (myLLDP == false) {
+			// 对端交换机属于其他控制器域：本域不建立链路，只记录域间链路供跨域路由使用
+			String localId = floodlightProviderService.getControllerModel().getControllerId();
+			if (isStandard && !remoteMaster.equals(localId)
+					&& localId.equals(masterMap.get(sw.toString()))) {
+				LinkModel l = new LinkModel(remoteDpid.toString(), remotePort.getPortNumber(),
+						sw.toString(), inPort.getPortNumber());
+				if (interDomainLinks.put(l, System.currentTimeMillis()) == null)
+					clusterService.addLink(l.getSrc(), l);
+				return Command.STOP;
+			}
 			// This is not the LLDP sent by this controller.
 			// If the LLDP message has multicast bit set, then we need to
 			// broadcast the packet as a regular packet (after checking IDs)
@@ -1562,6 +1579,15 @@ IFloodlightModule, IInfoProvider {
 		} finally {
 			lock.writeLock().unlock();
 		}
+
+		Iterator<Entry<LinkModel, Long>> it = interDomainLinks.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<LinkModel, Long> entry = it.next();
+			if (entry.getValue() + (this.LINK_TIMEOUT * 1000) < curTime) {
+				it.remove();
+				clusterService.deleteLink(entry.getKey().getSrc(), entry.getKey());
+			}
+		}
 	}
 
 	//******************
@@ -21,10 +21,16 @@ import java.util.Arrays;
 
 /**
  *
+ * deserialize不复制数据，只记录在原数组中的位置，第一次需要独立的数组
+ * (getData/serialize/equals/hashCode)时才复制；大部分包的负载从不被读取。
  * @author David Erickson (daviderickson@cs.stanford.edu)
  */
 public class Data extends BasePacket {
     protected byte[] data;
+    // deserialize的原数组和位置，data为null时有效
+    private byte[] source;
+    private int offset;
+    private int length;
 
     /**
      * 
@@ -39,11 +45,31 @@ public class Data extends BasePacket {
         this.data = data;
     }
 
+    /**
+     * 需要时从原数组复制出负载
+     */
+    private byte[] materialize() {
+        if (data == null && source != null) {
+            data = Arrays.copyOfRange(source, offset, offset + length);
+            source = null;
+        }
+        return data;
+    }
+
+    /**
+     * @return 数据长度，不复制数据
+     */
+    public int getLength() {
+        if (data == null)
+            return source == null ? 0 : length;
+        return data.length;
+    }
+
     /**
      * @return the data
      */
     public byte[] getData() {
-        return data;
+        return materialize();
     }
 
     /**
@@ -51,16 +77,25 @@ public class Data extends BasePacket {
      */
     public Data setData(byte[] data) {
         this.data = data;
+        this.source = null;
         return this;
     }
 
     public byte[] serialize() {
-        return this.data;
+        return materialize();
     }
 
     @Override
     public IPacket deserialize(byte[] data, int offset, int length) {
-        this.data = Arrays.copyOfRange(data, offset, offset + length);
+        // 与Arrays.copyOfRange相同的检查，超出原数组的部分复制时补0
+        if (offset < 0 || offset > data.length)
+            throw new ArrayIndexOutOfBoundsException(offset);
+        if (length < 0)
+            throw new IllegalArgumentException(offset + " > " + (offset + length));
+        this.data = null;
+        this.source = data;
+        this.offset = offset;
+        this.length = length;
         return this;
     }
 
@@ -71,7 +106,7 @@ public class Data extends BasePacket {
     public int hashCode() {
         final int prime = 1571;
         int result = super.hashCode();
-        result = prime * result + Arrays.hashCode(data);
+        result = prime * result + Arrays.hashCode(materialize());
         return result;
     }
 
@@ -87,7 +122,7 @@ public class Data extends BasePacket {
         if (!(obj instanceof Data))
             return false;
         Data other = (Data) obj;
-        if (!Arrays.equals(data, other.data))
+        if (!Arrays.equals(materialize(), other.materialize()))
             return false;
         return true;
     }
@@ -205,6 +205,7 @@ public class Ethernet extends BasePacket {
 
     public byte[] serialize() {
         byte[] payloadData = null;
+        IPacket payload = getPayload();
         if (payload != null) {
             payload.setParent(this);
             payloadData = payload.serialize();
@@ -236,17 +237,19 @@ public class Ethernet extends BasePacket {
         if (length <= 16)  // Ethernet packet minimum should be 60, this is reasonable
             return null;
         ByteBuffer bb = ByteBuffer.wrap(data, offset, length);
-        if (this.destinationMACAddress == null)
-            this.destinationMACAddress = MacAddress.of(new byte[6]);
-        byte[] dstAddr = new byte[MacAddress.NONE.getLength()];
-        bb.get(dstAddr);
-        this.destinationMACAddress = MacAddress.of(dstAddr);
-
-        if (this.sourceMACAddress == null)
-            this.sourceMACAddress = MacAddress.of(new byte[6]);
-        byte[] srcAddr = new byte[MacAddress.NONE.getLength()];
-        bb.get(srcAddr);
-        this.sourceMACAddress = MacAddress.of(srcAddr);
+        deserializeHeader(bb);
+        this.payload = deserializePayload(data, bb.position(), bb.limit() - bb.position());
+        this.payload.setParent(this);
+        return this;
+    }
+
+    /**
+     * 解析以太网头部(地址、VLAN、类型)，bb的位置移到负载起点
+     */
+    protected void deserializeHeader(ByteBuffer bb) {
+        // 地址直接从缓冲区读为long，不经过中间数组
+        this.destinationMACAddress = MacAddress.of(readMACAddress(bb));
+        this.sourceMACAddress = MacAddress.of(readMACAddress(bb));
 
         /* 
          * The ethertype is represented as 2 bytes in the packet header;
@@ -269,13 +272,25 @@ public class Ethernet extends BasePacket {
             this.vlanID = VLAN_UNTAGGED;
         }
         this.etherType = etherType;
-        
+    }
+
+    private static long readMACAddress(ByteBuffer bb) {
+        return ((long) (bb.getShort() & 0xffff) << 32) | (bb.getInt() & 0xffffffffL);
+    }
+
+    /**
+     * 按以太网类型解析负载，无法解析时整个帧作为Data
+     * @param data 整个帧
+     * @param offset 负载起点
+     * @param length 负载长度
+     */
+    protected IPacket deserializePayload(byte[] data, int offset, int length) {
         IPacket payload;
         if (Ethernet.etherTypeClassMap.containsKey((short) this.etherType.getValue())) {
             Class<? extends IPacket> clazz = Ethernet.etherTypeClassMap.get((short) this.etherType.getValue());
             try {
                 payload = clazz.newInstance();
-                this.payload = payload.deserialize(data, bb.position(), bb.limit() - bb.position());
+                payload = payload.deserialize(data, offset, length);
             } catch (PacketParsingException e) {
                 if (log.isTraceEnabled()) {
                     log.trace("Failed to parse ethernet packet {}->{}" +
@@ -285,30 +300,29 @@ public class Ethernet extends BasePacket {
                                           clazz.getClass().getName()});
                     log.trace("Exception from parsing {}", e);
                 }
-                this.payload = new Data(data);
+                payload = new Data(data);
             } catch (InstantiationException e) {
                 if (log.isTraceEnabled()) {
                     log.trace("Fail to instantiate class {}, {}",
                               clazz.getClass().getName(), e);
                 }
-                this.payload = new Data(data);
+                payload = new Data(data);
             } catch (IllegalAccessException e) {
                 if (log.isTraceEnabled()) {
                     log.trace("Fail to access class for instantiation {}, {}",
                               clazz.getClass().getName(), e);
                 }
-                this.payload = new Data(data);
+                payload = new Data(data);
             } catch (RuntimeException e) {
                 if (log.isTraceEnabled()) {
                     log.trace("Runtime exception during packet parsing {}", e);
                 }
-                this.payload = new Data(data);
+                payload = new Data(data);
             }
         } else {
-            this.payload = new Data(data);
+            payload = new Data(data);
         }
-        this.payload.setParent(this);
-        return this;
+        return payload;
     }
 
     /**
@@ -362,7 +376,8 @@ public class Ethernet extends BasePacket {
     @Override
 	public int hashCode() {
 		final int prime = 31;
-		int result = super.hashCode();
+		IPacket payload = getPayload();
+		int result = prime + ((payload == null) ? 0 : payload.hashCode());
 		result = prime
 				* result
 				+ ((destinationMACAddress == null) ? 0 : destinationMACAddress
@@ -382,11 +397,16 @@ public class Ethernet extends BasePacket {
 	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
-		if (!super.equals(obj))
-			return false;
-		if (getClass() != obj.getClass())
+		// 负载可能延迟解析(LazyEthernet)，通过getPayload()比较
+		if (!(obj instanceof Ethernet))
 			return false;
 		Ethernet other = (Ethernet) obj;
+		IPacket payload = getPayload();
+		if (payload == null) {
+			if (other.getPayload() != null)
+				return false;
+		} else if (!payload.equals(other.getPayload()))
+			return false;
 		if (destinationMACAddress == null) {
 			if (other.destinationMACAddress != null)
 				return false;
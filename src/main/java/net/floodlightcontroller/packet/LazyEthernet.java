@@ -0,0 +1,186 @@
+package net.floodlightcontroller.packet;
+
+import java.nio.ByteBuffer;
+
+import org.projectfloodlight.openflow.types.EthType;
+import org.projectfloodlight.openflow.types.IPv4Address;
+import org.projectfloodlight.openflow.types.IpProtocol;
+import org.projectfloodlight.openflow.types.TransportPort;
+import org.projectfloodlight.openflow.types.U8;
+
+/**
+ * 延迟解析负载的以太网帧，用于PacketIn
+ * <p>
+ * deserialize只解析以太网头部并保留原始数据，负载(IPv4/TCP/UDP等)在第一次调用
+ * getPayload()时才解析，之后与Ethernet相同。只需要以太网类型的监听器(如LLDP处理)
+ * 不再为每个包创建和复制各层对象；常用的IPv4和传输层字段可以通过getIpv4*和
+ * getTransport*直接从原始数据读取，不触发解析。
+ * <p>
+ * 原始数据不复制，调用方在帧使用期间不能修改该数组。
+ */
+public class LazyEthernet extends Ethernet {
+
+    private static final int IPV4_MIN_HEADER_LENGTH = 20;
+
+    private byte[] data;
+    private int payloadOffset;
+    private int payloadLength;
+    // 负载是否已解析或已设置
+    private boolean decoded = true;
+
+    @Override
+    public IPacket deserialize(byte[] data, int offset, int length) {
+        if (length <= 16)  // same minimum as Ethernet
+            return null;
+        ByteBuffer bb = ByteBuffer.wrap(data, offset, length);
+        deserializeHeader(bb);
+        this.data = data;
+        this.payloadOffset = bb.position();
+        this.payloadLength = bb.limit() - bb.position();
+        this.payload = null;
+        this.decoded = false;
+        return this;
+    }
+
+    /**
+     * @return 负载是否已解析
+     */
+    public boolean isDecoded() {
+        return decoded;
+    }
+
+    @Override
+    public IPacket getPayload() {
+        if (!decoded) {
+            decoded = true;
+            payload = deserializePayload(data, payloadOffset, payloadLength);
+            payload.setParent(this);
+            data = null;
+        }
+        return payload;
+    }
+
+    @Override
+    public IPacket setPayload(IPacket payload) {
+        decoded = true;
+        data = null;
+        return super.setPayload(payload);
+    }
+
+    @Override
+    public Ethernet setEtherType(EthType etherType) {
+        // 类型改变后原始负载按新类型解析
+        getPayload();
+        return super.setEtherType(etherType);
+    }
+
+    /**
+     * 未解析时原始数据中的IPv4头部起点，不是完整的IPv4头部时为-1
+     */
+    private int rawIpv4() {
+        if (decoded || !EthType.IPv4.equals(etherType) || payloadLength < IPV4_MIN_HEADER_LENGTH)
+            return -1;
+        int b = data[payloadOffset];
+        if (((b >> 4) & 0xf) != 4)
+            return -1;
+        return payloadOffset;
+    }
+
+    /**
+     * 已解析时的IPv4负载；未解析时原始数据已能确定结果，不再解析
+     */
+    private IPv4 decodedIpv4() {
+        return decoded && payload instanceof IPv4 ? (IPv4) payload : null;
+    }
+
+    private int readInt(int at) {
+        return ((data[at] & 0xff) << 24) | ((data[at + 1] & 0xff) << 16)
+                | ((data[at + 2] & 0xff) << 8) | (data[at + 3] & 0xff);
+    }
+
+    /**
+     * @return IPv4协议号，不是IPv4时为null
+     */
+    public IpProtocol getIpv4Protocol() {
+        int ip = rawIpv4();
+        if (ip >= 0)
+            return IpProtocol.of(U8.f(data[ip + 9]));
+        IPv4 ipv4 = decodedIpv4();
+        return ipv4 == null ? null : ipv4.getProtocol();
+    }
+
+    /**
+     * @return IPv4源地址，不是IPv4时为null
+     */
+    public IPv4Address getIpv4SourceAddress() {
+        int ip = rawIpv4();
+        if (ip >= 0)
+            return IPv4Address.of(readInt(ip + 12));
+        IPv4 ipv4 = decodedIpv4();
+        return ipv4 == null ? null : ipv4.getSourceAddress();
+    }
+
+    /**
+     * @return IPv4目的地址，不是IPv4时为null
+     */
+    public IPv4Address getIpv4DestinationAddress() {
+        int ip = rawIpv4();
+        if (ip >= 0)
+            return IPv4Address.of(readInt(ip + 16));
+        IPv4 ipv4 = decodedIpv4();
+        return ipv4 == null ? null : ipv4.getDestinationAddress();
+    }
+
+    /**
+     * 未解析时TCP/UDP头部起点；分片(与IPv4解析规则相同)或长度不足时为-1
+     */
+    private int rawTransport() {
+        int ip = rawIpv4();
+        if (ip < 0)
+            return -1;
+        int proto = U8.f(data[ip + 9]);
+        if (proto != IpProtocol.TCP.getIpProtocolNumber() && proto != IpProtocol.UDP.getIpProtocolNumber())
+            return -1;
+        int flagsAndOffset = ((data[ip + 6] & 0xff) << 8) | (data[ip + 7] & 0xff);
+        int flags = (flagsAndOffset >> IPv4.IPV4_FLAGS_SHIFT) & IPv4.IPV4_FLAGS_MASK;
+        int fragmentOffset = flagsAndOffset & IPv4.IPV4_OFFSET_MASK;
+        if ((flags & IPv4.IPV4_FLAGS_DONTFRAG) == 0
+                && ((flags & IPv4.IPV4_FLAGS_MOREFRAG) != 0 || fragmentOffset != 0))
+            return -1;
+        int headerLength = (data[ip] & 0xf) * 4;
+        if (headerLength < IPV4_MIN_HEADER_LENGTH || payloadLength < headerLength + 4)
+            return -1;
+        return ip + headerLength;
+    }
+
+    private TransportPort transportPort(boolean source) {
+        int l4 = rawTransport();
+        if (l4 >= 0) {
+            int at = source ? l4 : l4 + 2;
+            return TransportPort.of(((data[at] & 0xff) << 8) | (data[at + 1] & 0xff));
+        }
+        IPv4 ipv4 = decodedIpv4();
+        if (ipv4 == null)
+            return null;
+        IPacket p = ipv4.getPayload();
+        if (p instanceof TCP)
+            return source ? ((TCP) p).getSourcePort() : ((TCP) p).getDestinationPort();
+        if (p instanceof UDP)
+            return source ? ((UDP) p).getSourcePort() : ((UDP) p).getDestinationPort();
+        return null;
+    }
+
+    /**
+     * @return TCP/UDP源端口，不是未分片的TCP/UDP时为null
+     */
+    public TransportPort getTransportSourcePort() {
+        return transportPort(true);
+    }
+
+    /**
+     * @return TCP/UDP目的端口，不是未分片的TCP/UDP时为null
+     */
+    public TransportPort getTransportDestinationPort() {
+        return transportPort(false);
+    }
+}
@@ -0,0 +1,203 @@
+package net.dsc.cluster;
+
+import static net.dsc.cluster.HazelcastTableNameConstant.SWITCH_OWNERSHIP_MAP_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.dsc.cluster.ClusterHarness.SimulatedController;
+import net.dsc.cluster.model.SwitchOwnershipModel;
+import net.dsc.cluster.processor.OwnershipUpdateProcessor;
+import net.dsc.hazelcast.message.RoleMessage;
+import net.floodlightcontroller.core.module.FloodlightModuleException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.IMap;
+
+/**
+ * 多控制器集群的基准测试：故障检测、ClusterManager/FailoverManager的接管、哈希环移交、
+ * 命令通道和switch_ownership。交换机为mock，立即回复角色请求(见ClusterHarness)。
+ * 需要启动多个真实的Hazelcast成员，默认跳过，使用 -Ddsc.benchmark=true 运行；
+ * -Ddsc.benchmark.controllers、-Ddsc.benchmark.switches 调整规模，
+ * -Ddsc.benchmark.maxDetectMs、-Ddsc.benchmark.maxFailoverMs、-Ddsc.benchmark.maxRoleRoundTripMs
+ * 为对应p99的上限，-Ddsc.benchmark.minMapOpsPerSec 为switch_ownership操作速率的下限。
+ */
+public class ClusterFailoverBenchmarkTest {
+    protected static Logger log = LoggerFactory.getLogger(ClusterFailoverBenchmarkTest.class);
+
+    private static final int CONTROLLERS = Integer.getInteger("dsc.benchmark.controllers", 3);
+    private static final int SWITCHES = Integer.getInteger("dsc.benchmark.switches", 64);
+    private static final long MAX_DETECT_MS = Long.getLong("dsc.benchmark.maxDetectMs", 2000);
+    private static final long MAX_FAILOVER_MS = Long.getLong("dsc.benchmark.maxFailoverMs", 2000);
+    private static final long MAX_ROLE_ROUND_TRIP_MS = Long.getLong("dsc.benchmark.maxRoleRoundTripMs", 500);
+    private static final long MIN_MAP_OPS_PER_SEC = Long.getLong("dsc.benchmark.minMapOpsPerSec", 1000);
+    private static final long CONVERGE_TIMEOUT_MS = 30000;
+    private static final int ROUND_TRIPS = 500;
+    private static final int FLOWS = 5000;
+    private static final int MAP_OPS = 20000;
+
+    private ClusterHarness harness;
+
+    @Before
+    public void setUp() throws FloodlightModuleException, InterruptedException {
+        assumeTrue(Boolean.getBoolean("dsc.benchmark"));
+        harness = new ClusterHarness();
+        for (int i = 0; i < CONTROLLERS; i++) {
+            harness.startController();
+        }
+        harness.addSwitches(SWITCHES);
+        assertTrue("backup plan not ready", harness.awaitBackupPlan(CONVERGE_TIMEOUT_MS) >= 0);
+    }
+
+    @After
+    public void tearDown() {
+        if (harness != null)
+            harness.shutdown();
+    }
+
+    private static void assertP99(LatencyHistogram h, long maxMs) {
+        Long p99 = (Long) h.snapshot().get("p99-us");
+        assertTrue(h.getName() + " has no samples", p99 != null);
+        assertTrue(h.getName() + " p99 " + p99 + " us over " + maxMs + " ms",
+                p99 <= TimeUnit.MILLISECONDS.toMicros(maxMs));
+    }
+
+    @Test
+    public void testKillMaster() throws InterruptedException {
+        List<SimulatedController> controllers = harness.getControllers();
+        SimulatedController victim = controllers.get(controllers.size() - 1);
+        int orphaned = 0;
+        for (ClusterHarness.SimulatedSwitch sw : harness.getSwitches().values()) {
+            if (victim.getId().equals(sw.getMaster()))
+                orphaned++;
+        }
+        harness.kill(victim);
+        // 交换机有新master，且各存活控制器的本地索引都已看到
+        long ms = ClusterHarness.await(new ClusterHarness.Condition() {
+            @Override
+            public boolean done() {
+                return harness.countWithoutLiveMaster() == 0 && harness.countStaleMasters() == 0;
+            }
+        }, CONVERGE_TIMEOUT_MS);
+        LatencyHistogram detect = harness.getFailureDetection();
+        LatencyHistogram takeover = harness.getTimeToNewMaster();
+        log.info("kill: {} switches orphaned, all have a live master after {} ms, {}, {}",
+                new Object[] { orphaned, ms, detect.snapshot(), takeover.snapshot() });
+        for (Map.Entry<String, Map<String, Object>> e : harness.getControllers().get(0).getCluster()
+                .getFailoverStats().entrySet()) {
+            log.info("kill: {} {}", e.getKey(), e.getValue());
+        }
+        assertTrue("switches left without master", ms >= 0);
+        assertTrue("no switch was mastered by the killed controller", orphaned > 0);
+        assertEquals(orphaned, takeover.getCount());
+        assertP99(detect, MAX_DETECT_MS);
+        assertP99(takeover, MAX_FAILOVER_MS);
+    }
+
+    @Test
+    public void testJoinAndRebalance() throws InterruptedException, FloodlightModuleException {
+        long before = harness.getHandovers();
+        harness.startController();
+        // 新成员加入后，各ClusterManager把哈希环归属新成员的交换机移交给它
+        long ms = ClusterHarness.await(new ClusterHarness.Condition() {
+            @Override
+            public boolean done() {
+                return harness.countMisplaced() == 0;
+            }
+        }, CONVERGE_TIMEOUT_MS);
+        long moved = harness.getHandovers() - before;
+        log.info("join: moved {} of {} switches in {} ms", new Object[] { moved, SWITCHES, ms });
+        assertTrue("rebalance did not converge", ms >= 0);
+        // 一致性哈希只移动约1/N的交换机，留出一倍余量
+        int expected = SWITCHES / (CONTROLLERS + 1);
+        assertTrue("moved " + moved + " switches, expected about " + expected, moved <= 2 * expected + 1);
+    }
+
+    @Test
+    public void testRoleRoundTrip() throws InterruptedException {
+        List<SimulatedController> controllers = harness.getControllers();
+        final SimulatedController from = controllers.get(0);
+        LatencyHistogram h = new LatencyHistogram("role-round-trip");
+        List<String> dpids = new ArrayList<String>(harness.getSwitches().keySet());
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            final String dpid = dpids.get(i % dpids.size());
+            final String to = controllers.get(1 + i % (controllers.size() - 1)).getId();
+            if (to.equals(from.getCluster().getMasterMap().get(dpid)))
+                continue;
+            long start = System.nanoTime();
+            from.getHazelcast().publishRoleMessage(new RoleMessage("MASTER", dpid), to);
+            long ms = ClusterHarness.await(new ClusterHarness.Condition() {
+                @Override
+                public boolean done() {
+                    return to.equals(from.getCluster().getMasterMap().get(dpid));
+                }
+            }, 5000);
+            assertTrue("role change not observed for " + dpid, ms >= 0);
+            h.recordSince(start);
+        }
+        log.info("role: {}", h.snapshot());
+        assertP99(h, MAX_ROLE_ROUND_TRIP_MS);
+    }
+
+    @Test
+    public void testNoFlowLostWhenReceiverKilled() throws InterruptedException {
+        List<SimulatedController> controllers = harness.getControllers();
+        SimulatedController sender = controllers.get(0);
+        SimulatedController victim = controllers.get(controllers.size() - 1);
+        String dpid = harness.getSwitches().keySet().iterator().next();
+        for (int i = 0; i < FLOWS; i++) {
+            harness.sendFlow(sender, victim.getId(), dpid);
+            if (i == FLOWS / 2)
+                harness.kill(victim);
+        }
+        // 确认移除后，ClusterManager取出发往victim未处理的流表转发给交换机的新master
+        long ms = ClusterHarness.await(new ClusterHarness.Condition() {
+            @Override
+            public boolean done() {
+                return harness.getLostFlows() == 0;
+            }
+        }, CONVERGE_TIMEOUT_MS);
+        log.info("flows: sent {}, received {}, redirected {}, lost {} after {} ms", new Object[] {
+                harness.getSentFlows(), harness.getReceivedFlows(), harness.getRedirectedFlows(),
+                harness.getLostFlows(), ms });
+        assertEquals(0, harness.getLostFlows());
+        assertTrue("no flow was redirected", harness.getRedirectedFlows() > 0);
+    }
+
+    @Test
+    public void testMapOpRates() {
+        IMap<String, SwitchOwnershipModel> map = harness.getControllers().get(0).getMember()
+                .getMap(SWITCH_OWNERSHIP_MAP_NAME);
+        List<String> dpids = new ArrayList<String>(harness.getSwitches().keySet());
+        LatencyHistogram h = new LatencyHistogram("executeOnKey");
+        long start = System.nanoTime();
+        for (int i = 0; i < MAP_OPS; i++) {
+            long opStart = System.nanoTime();
+            map.executeOnKey(dpids.get(i % dpids.size()),
+                    new OwnershipUpdateProcessor("benchmark", i % 2 == 0 ? "ROLE_SLAVE" : "ROLE_EQUAL"));
+            h.recordSince(opStart);
+        }
+        long executeRate = (long) (MAP_OPS / ((System.nanoTime() - start) / 1e9));
+        log.info("map: {} executeOnKey/s {}", executeRate, h.snapshot());
+
+        start = System.nanoTime();
+        for (int i = 0; i < MAP_OPS; i++) {
+            map.get(dpids.get(i % dpids.size()));
+        }
+        long getRate = (long) (MAP_OPS / ((System.nanoTime() - start) / 1e9));
+        log.info("map: {} get/s", getRate);
+        assertTrue("executeOnKey " + executeRate + "/s below " + MIN_MAP_OPS_PER_SEC,
+                executeRate >= MIN_MAP_OPS_PER_SEC);
+        assertTrue("get " + getRate + "/s below " + MIN_MAP_OPS_PER_SEC, getRate >= MIN_MAP_OPS_PER_SEC);
+    }
+}
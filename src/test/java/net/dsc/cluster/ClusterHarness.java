@@ -0,0 +1,618 @@
+package net.dsc.cluster;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.dsc.cluster.model.ControllerModel;
+import net.dsc.hazelcast.CommandChannel;
+import net.dsc.hazelcast.DSCDataSerializableFactory;
+import net.dsc.hazelcast.HazelcastService;
+import net.dsc.hazelcast.IHazelcastService;
+import net.dsc.hazelcast.listener.IControllerListener;
+import net.dsc.hazelcast.message.FlowMessage;
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.IShutdownService;
+import net.floodlightcontroller.core.SwitchDisconnectedException;
+import net.floodlightcontroller.core.internal.IOFSwitchService;
+import net.floodlightcontroller.core.module.FloodlightModuleContext;
+import net.floodlightcontroller.core.module.FloodlightModuleException;
+import net.floodlightcontroller.staticflowentry.StaticFlowEntryPusher;
+import net.floodlightcontroller.storage.IStorageSourceService;
+import net.floodlightcontroller.threadpool.IThreadPoolService;
+import net.floodlightcontroller.threadpool.ThreadPool;
+import net.floodlightcontroller.util.LoadMonitor;
+
+import org.easymock.IAnswer;
+import org.projectfloodlight.openflow.protocol.OFControllerRole;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFRoleReply;
+import org.projectfloodlight.openflow.protocol.OFRoleRequest;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.types.DatapathId;
+import org.projectfloodlight.openflow.types.U64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.QueueConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * 在一个JVM中启动多个嵌入式hazelcast成员模拟多控制器集群
+ * <p>
+ * 每个模拟控制器运行真实的ClusterManager(一致性哈希归属)和HazelcastService(使用该成员)，
+ * 其故障切换经过controllerRemoved、FailoverManager的备份计划、takeOver和reassign，
+ * 移交经过rebalanceToRing的批量角色请求和CommandChannel，流表恢复经过redirectCommands。
+ * 交换机为内存中的SimulatedSwitch，连接到所有控制器，按OpenFlow角色语义保证同时只有一个master；
+ * 每个控制器到交换机的连接是一个mock IOFSwitch，收到角色请求时修改SimulatedSwitch并回复OFRoleReply。
+ * mock IOFSwitchService的requestRole代替握手处理器：发送角色请求，收到回复后与握手处理器一样
+ * 登记本控制器的角色和负载变化，登记完成后结束；被降级的控制器不登记，与生产环境相同。
+ * 流表命令由HazelcastService写入mock存储，记为已处理。
+ * 记录的指标：
+ * <ul>
+ * <li>failure-detection：kill控制器到各存活控制器的故障检测通知</li>
+ * <li>time-to-new-master：kill控制器到其作为master的每个交换机有新master</li>
+ * <li>handovers：master从一个存活控制器换到另一个控制器的次数</li>
+ * <li>flows sent/received/redirected：经命令通道发送、被处理、以及由收件人以外的控制器处理的流表数，
+ * 未被处理的即丢失</li>
+ * </ul>
+ */
+public class ClusterHarness {
+	protected static Logger log = LoggerFactory.getLogger(ClusterHarness.class);
+
+	public static final String GROUP = "dsc-cluster-benchmark";
+	private static final String ROLE_MASTER = OFControllerRole.ROLE_MASTER.toString();
+	private static final String ROLE_SLAVE = OFControllerRole.ROLE_SLAVE.toString();
+	private static final OFFactory FACTORY = OFFactories.getFactory(OFVersion.OF_13);
+
+	private final ConcurrentMap<String, SimulatedSwitch> switches = new ConcurrentHashMap<String, SimulatedSwitch>();
+	private final List<SimulatedController> controllers = new ArrayList<SimulatedController>();
+
+	private volatile long killedAtNanos;
+	private volatile String killedId;
+	// 被kill控制器作为master、尚未有新master的交换机
+	private final Set<String> orphans = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final LatencyHistogram failureDetection = new LatencyHistogram("failure-detection");
+	private final LatencyHistogram timeToNewMaster = new LatencyHistogram("time-to-new-master");
+	private final AtomicLong handovers = new AtomicLong();
+	// 流表名->收件控制器、实际处理的控制器
+	private final ConcurrentMap<String, String> flowTargets = new ConcurrentHashMap<String, String>();
+	private final ConcurrentMap<String, String> processedFlows = new ConcurrentHashMap<String, String>();
+	private final AtomicLong sentFlows = new AtomicLong();
+
+	/**
+	 * 内存中的交换机，记录各控制器的角色
+	 */
+	public static class SimulatedSwitch {
+		private final String dpid;
+		private final Map<String, String> roles = new LinkedHashMap<String, String>();
+
+		SimulatedSwitch(String dpid) {
+			this.dpid = dpid;
+		}
+
+		public String getDpid() {
+			return dpid;
+		}
+
+		/**
+		 * 处理角色请求；新master使原master变为slave
+		 * @return 被降为slave的控制器
+		 */
+		public synchronized List<String> setRole(String controllerId, String role) {
+			List<String> demoted = new ArrayList<String>();
+			if (ROLE_MASTER.equals(role)) {
+				for (Map.Entry<String, String> e : roles.entrySet()) {
+					if (ROLE_MASTER.equals(e.getValue()) && !e.getKey().equals(controllerId)) {
+						e.setValue(ROLE_SLAVE);
+						demoted.add(e.getKey());
+					}
+				}
+			}
+			roles.put(controllerId, role);
+			return demoted;
+		}
+
+		public synchronized String getRole(String controllerId) {
+			return roles.get(controllerId);
+		}
+
+		public synchronized void disconnect(String controllerId) {
+			roles.remove(controllerId);
+		}
+
+		public synchronized String getMaster() {
+			for (Map.Entry<String, String> e : roles.entrySet()) {
+				if (ROLE_MASTER.equals(e.getValue()))
+					return e.getKey();
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * 一个模拟控制器：真实的ClusterManager和HazelcastService，以及到各交换机的mock连接
+	 */
+	public class SimulatedController implements IControllerListener {
+		private final HazelcastInstance member;
+		private final String id;
+		private final HazelcastService hazelcast;
+		private final ThreadPool threadPool = new ThreadPool();
+		private final ClusterManager cluster = new ClusterManager();
+		private final ConcurrentMap<DatapathId, IOFSwitch> connections = new ConcurrentHashMap<DatapathId, IOFSwitch>();
+		// 已计入本控制器负载的交换机，与握手处理器的countedAsMaster相同
+		private final Set<String> countedAsMaster = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		private volatile boolean alive = true;
+		// 已记录检测延迟的故障控制器
+		private final Set<String> detected = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+		SimulatedController(HazelcastInstance member) throws FloodlightModuleException {
+			this.member = member;
+			this.id = member.getCluster().getLocalMember().getUuid();
+			IFloodlightProviderService provider = createNiceMock(IFloodlightProviderService.class);
+			expect(provider.getControllerModel()).andReturn(new ControllerModel(id, "127.0.0.1")).anyTimes();
+			expect(provider.getLoadMonitor()).andReturn(new LoadMonitor(log)).anyTimes();
+			IOFSwitchService switchService = createNiceMock(IOFSwitchService.class);
+			expect(switchService.getSwitch(anyObject(DatapathId.class))).andAnswer(new IAnswer<IOFSwitch>() {
+				@Override
+				public IOFSwitch answer() {
+					return connections.get(getCurrentArguments()[0]);
+				}
+			}).anyTimes();
+			expect(switchService.getAllSwitchMap()).andReturn(Collections.<DatapathId, IOFSwitch>emptyMap()).anyTimes();
+			expect(switchService.requestRole(anyObject(DatapathId.class), anyObject(OFControllerRole.class)))
+					.andAnswer(new IAnswer<ListenableFuture<OFControllerRole>>() {
+				@Override
+				public ListenableFuture<OFControllerRole> answer() {
+					return requestRole((DatapathId) getCurrentArguments()[0], (OFControllerRole) getCurrentArguments()[1]);
+				}
+			}).anyTimes();
+			IStorageSourceService storage = createNiceMock(IStorageSourceService.class);
+			storage.insertRow(anyObject(String.class), anyObject(Map.class));
+			expectLastCall().andAnswer(new IAnswer<Object>() {
+				@Override
+				public Object answer() {
+					Map<?, ?> row = (Map<?, ?>) getCurrentArguments()[1];
+					processedFlows.putIfAbsent((String) row.get(StaticFlowEntryPusher.COLUMN_NAME), id);
+					return null;
+				}
+			}).anyTimes();
+			replay(provider, switchService, storage);
+			hazelcast = new HazelcastService(member);
+
+			FloodlightModuleContext context = new FloodlightModuleContext();
+			context.addService(IFloodlightProviderService.class, provider);
+			context.addService(IOFSwitchService.class, switchService);
+			context.addService(IStorageSourceService.class, storage);
+			context.addService(IShutdownService.class, createNiceMock(IShutdownService.class));
+			context.addService(IHazelcastService.class, hazelcast);
+			context.addService(IThreadPoolService.class, threadPool);
+			context.addConfigParam(cluster, "ownership", "consistent-hash");
+			threadPool.init(context);
+			hazelcast.init(context);
+
+			// 先于ClusterManager注册，检测延迟不包含接管的时间
+			hazelcast.addControllerListener(this);
+			hazelcast.startUp(context);
+			cluster.init(context);
+			cluster.startUp(context);
+			// 与Controller启动时相同
+			cluster.addController(provider.getControllerModel());
+			cluster.ControllerLoadReset(id);
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public HazelcastInstance getMember() {
+			return member;
+		}
+
+		public ClusterManager getCluster() {
+			return cluster;
+		}
+
+		public IHazelcastService getHazelcast() {
+			return hazelcast;
+		}
+
+		/**
+		 * 交换机连接到本控制器，并以给定角色握手
+		 */
+		void connect(final String dpid, String role) {
+			IOFSwitch sw = createNiceMock(IOFSwitch.class);
+			expect(sw.getId()).andReturn(DatapathId.of(dpid)).anyTimes();
+			expect(sw.getOFFactory()).andReturn(FACTORY).anyTimes();
+			expect(sw.writeRequest(anyObject(OFRoleRequest.class))).andAnswer(new IAnswer<ListenableFuture<OFRoleReply>>() {
+				@Override
+				public ListenableFuture<OFRoleReply> answer() {
+					OFControllerRole role = ((OFRoleRequest) getCurrentArguments()[0]).getRole();
+					receiveRoleRequest(dpid, role.toString());
+					return Futures.immediateFuture(FACTORY.buildRoleReply()
+							.setRole(role)
+							.setGenerationId(U64.ZERO)
+							.build());
+				}
+			}).anyTimes();
+			replay(sw);
+			connections.put(DatapathId.of(dpid), sw);
+			receiveRoleRequest(dpid, role);
+			register(dpid, role);
+		}
+
+		/**
+		 * 交换机处理本控制器的角色请求；新master使原master变为slave，被降级的存活控制器计为一次移交
+		 */
+		private void receiveRoleRequest(String dpid, String role) {
+			for (String d : switches.get(dpid).setRole(id, role)) {
+				SimulatedController c = find(d);
+				if (c != null && c.alive)
+					handovers.incrementAndGet();
+			}
+			if (ROLE_MASTER.equals(role))
+				newMaster(dpid);
+		}
+
+		/**
+		 * 代替OFSwitchHandshakeHandler.requestRole：发送角色请求，收到回复后登记，登记完成时结束
+		 */
+		private ListenableFuture<OFControllerRole> requestRole(final DatapathId dpid, OFControllerRole role) {
+			IOFSwitch sw = connections.get(dpid);
+			if (sw == null)
+				return Futures.immediateFailedFuture(new SwitchDisconnectedException(dpid));
+			if (role != OFControllerRole.ROLE_MASTER && role != OFControllerRole.ROLE_SLAVE)
+				return Futures.immediateFailedFuture(new IllegalArgumentException("unsupported role " + role));
+			ListenableFuture<OFRoleReply> reply = sw.writeRequest(FACTORY.buildRoleRequest()
+					.setGenerationId(U64.ZERO)
+					.setRole(role)
+					.build());
+			return Futures.transform(reply, new AsyncFunction<OFRoleReply, OFControllerRole>() {
+				@Override
+				public ListenableFuture<OFControllerRole> apply(final OFRoleReply r) {
+					return Futures.transform(register(dpid.toString(), r.getRole().toString()),
+							new Function<Void, OFControllerRole>() {
+						@Override
+						public OFControllerRole apply(Void v) {
+							return r.getRole();
+						}
+					});
+				}
+			});
+		}
+
+		/**
+		 * 与握手处理器进入MasterState/SlaveState时相同：登记本控制器的角色，成为master时负载加一，
+		 * 不再是master时减一
+		 */
+		private ListenableFuture<Void> register(String dpid, String role) {
+			int delta = 0;
+			if (ROLE_MASTER.equals(role)) {
+				if (countedAsMaster.add(dpid))
+					delta = 1;
+			} else if (countedAsMaster.remove(dpid)) {
+				delta = -1;
+			}
+			return cluster.registerSwitchAsync(SwitchRegistration.role(dpid, role, delta));
+		}
+
+		@Override
+		public void controllerRemoved(String failedId, Set<String> live, boolean confirmed) {
+			if (alive && failedId.equals(killedId) && detected.add(failedId))
+				failureDetection.recordSince(killedAtNanos);
+		}
+
+		@Override
+		public void controllerRecovered(String controllerId, Set<String> live) {
+		}
+
+		/**
+		 * 模拟崩溃：不通知其他成员，直接终止
+		 */
+		void kill() {
+			alive = false;
+			hazelcast.shutDown();
+			threadPool.getScheduledExecutor().shutdownNow();
+			member.getLifecycleService().terminate();
+		}
+
+		void shutdown() {
+			alive = false;
+			hazelcast.shutDown();
+			threadPool.getScheduledExecutor().shutdownNow();
+			member.shutdown();
+		}
+	}
+
+	public static Config config() {
+		Config config = new Config();
+		config.setProperty("hazelcast.logging.type", "slf4j");
+		config.getGroupConfig().setName(GROUP);
+		config.getSerializationConfig().addDataSerializableFactory(
+				DSCDataSerializableFactory.FACTORY_ID, new DSCDataSerializableFactory());
+		JoinConfig join = config.getNetworkConfig().getJoin();
+		join.getMulticastConfig().setEnabled(false);
+		join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+		// 与hazelcast.xml中的命令队列一致
+		config.addQueueConfig(new QueueConfig().setName("*" + CommandChannel.QUEUE_SUFFIX)
+				.setMaxSize(10000).setBackupCount(1));
+		return config;
+	}
+
+	/**
+	 * 启动一个控制器，交换机连接到该控制器并成为slave
+	 */
+	public SimulatedController startController() throws FloodlightModuleException {
+		SimulatedController c = new SimulatedController(Hazelcast.newHazelcastInstance(config()));
+		synchronized (controllers) {
+			controllers.add(c);
+		}
+		for (SimulatedSwitch sw : switches.values()) {
+			c.connect(sw.getDpid(), ROLE_SLAVE);
+		}
+		return c;
+	}
+
+	/**
+	 * 添加交换机，连接到所有控制器，哈希环归属的控制器为master
+	 */
+	public void addSwitches(int count) {
+		List<SimulatedController> live = getControllers();
+		ConsistentHashRing ring = new ConsistentHashRing(liveIds());
+		for (int i = 0; i < count; i++) {
+			String dpid = String.format("00:00:00:00:00:00:%02x:%02x", (i >> 8) & 0xff, i & 0xff);
+			switches.put(dpid, new SimulatedSwitch(dpid));
+			String owner = ring.getOwner(dpid);
+			for (SimulatedController c : live) {
+				c.connect(dpid, c.getId().equals(owner) ? ROLE_MASTER : ROLE_SLAVE);
+			}
+		}
+	}
+
+	/**
+	 * 各控制器的本地索引看到所有连接和master后，立即计算备份计划(不等待周期任务)
+	 * @return 等待的毫秒数，超时返回-1
+	 */
+	public long awaitBackupPlan(long timeoutMs) throws InterruptedException {
+		final int expected = getControllers().size();
+		long ms = await(new Condition() {
+			@Override
+			public boolean done() {
+				for (SimulatedController c : getControllers()) {
+					Map<String, Set<String>> connections = c.getCluster().getSwitchConnections();
+					if (c.getCluster().getMasterMap().size() != switches.size() || connections.size() != switches.size())
+						return false;
+					for (Set<String> connected : connections.values()) {
+						if (connected.size() != expected)
+							return false;
+					}
+				}
+				return true;
+			}
+		}, timeoutMs);
+		if (ms < 0)
+			return ms;
+		for (SimulatedController c : getControllers()) {
+			c.getCluster().failover.plan();
+		}
+		long planned = await(new Condition() {
+			@Override
+			public boolean done() {
+				for (SimulatedController c : getControllers()) {
+					if (c.getCluster().getBackupPlan().size() != switches.size())
+						return false;
+				}
+				return true;
+			}
+		}, timeoutMs);
+		return planned < 0 ? planned : ms + planned;
+	}
+
+	/**
+	 * kill控制器并开始计时
+	 */
+	public void kill(SimulatedController c) {
+		synchronized (controllers) {
+			controllers.remove(c);
+		}
+		orphans.clear();
+		for (SimulatedSwitch sw : switches.values()) {
+			if (c.getId().equals(sw.getMaster()))
+				orphans.add(sw.getDpid());
+		}
+		killedAtNanos = System.nanoTime();
+		killedId = c.getId();
+		c.kill();
+		for (SimulatedSwitch sw : switches.values()) {
+			sw.disconnect(c.getId());
+		}
+	}
+
+	/**
+	 * 被kill控制器的交换机第一次有新master时记录延迟
+	 */
+	private void newMaster(String dpid) {
+		if (killedId != null && orphans.remove(dpid))
+			timeToNewMaster.recordSince(killedAtNanos);
+	}
+
+	public void shutdown() {
+		for (SimulatedController c : getControllers()) {
+			c.shutdown();
+		}
+		synchronized (controllers) {
+			controllers.clear();
+		}
+	}
+
+	public List<SimulatedController> getControllers() {
+		synchronized (controllers) {
+			return new ArrayList<SimulatedController>(controllers);
+		}
+	}
+
+	private SimulatedController find(String id) {
+		for (SimulatedController c : getControllers()) {
+			if (c.getId().equals(id))
+				return c;
+		}
+		return null;
+	}
+
+	public Set<String> liveIds() {
+		Set<String> ids = new HashSet<String>();
+		for (SimulatedController c : getControllers()) {
+			ids.add(c.getId());
+		}
+		return ids;
+	}
+
+	public Map<String, SimulatedSwitch> getSwitches() {
+		return switches;
+	}
+
+	/**
+	 * @return 没有存活master的交换机数
+	 */
+	public int countWithoutLiveMaster() {
+		Set<String> live = liveIds();
+		int n = 0;
+		for (SimulatedSwitch sw : switches.values()) {
+			if (!live.contains(sw.getMaster()))
+				n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @return master不是哈希环归属控制器的交换机数
+	 */
+	public int countMisplaced() {
+		ConsistentHashRing ring = new ConsistentHashRing(liveIds());
+		int n = 0;
+		for (SimulatedSwitch sw : switches.values()) {
+			if (!ring.getOwner(sw.getDpid()).equals(sw.getMaster()))
+				n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @return 各存活控制器的本地索引中master不是存活控制器的交换机数之和
+	 */
+	public int countStaleMasters() {
+		Set<String> live = liveIds();
+		int n = 0;
+		for (SimulatedController c : getControllers()) {
+			for (String dpid : switches.keySet()) {
+				if (!live.contains(c.getCluster().getMasterMap().get(dpid)))
+					n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * 等待条件成立
+	 * @return 等待的毫秒数，超时返回-1
+	 */
+	public static long await(Condition condition, long timeoutMs) throws InterruptedException {
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+		while (!condition.done()) {
+			if (System.nanoTime() > deadline)
+				return -1;
+			Thread.sleep(1);
+		}
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	public interface Condition {
+		boolean done();
+	}
+
+	/**
+	 * 经命令通道发送一条流表，流表名唯一
+	 */
+	public void sendFlow(SimulatedController from, String to, String dpid) {
+		String name = "flow-" + sentFlows.incrementAndGet();
+		Map<String, String> row = new LinkedHashMap<String, String>();
+		row.put(StaticFlowEntryPusher.COLUMN_NAME, name);
+		row.put(StaticFlowEntryPusher.COLUMN_SWITCH, dpid);
+		flowTargets.put(name, to);
+		from.getHazelcast().publishFlowMessage(new FlowMessage(row), to);
+	}
+
+	public long getSentFlows() {
+		return sentFlows.get();
+	}
+
+	/**
+	 * @return 被处理的流表数
+	 */
+	public int getReceivedFlows() {
+		return processedFlows.size();
+	}
+
+	/**
+	 * @return 由收件控制器以外的控制器处理的流表数，即ClusterManager转发给新master的流表
+	 */
+	public int getRedirectedFlows() {
+		int n = 0;
+		for (Map.Entry<String, String> e : processedFlows.entrySet()) {
+			if (!e.getValue().equals(flowTargets.get(e.getKey())))
+				n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @return 未被处理的流表数
+	 */
+	public long getLostFlows() {
+		return sentFlows.get() - processedFlows.size();
+	}
+
+	public LatencyHistogram getFailureDetection() {
+		return failureDetection;
+	}
+
+	public LatencyHistogram getTimeToNewMaster() {
+		return timeToNewMaster;
+	}
+
+	/**
+	 * @return 被kill控制器的交换机中尚无新master的数量
+	 */
+	public int getOrphans() {
+		return orphans.size();
+	}
+
+	public long getHandovers() {
+		return handovers.get();
+	}
+}
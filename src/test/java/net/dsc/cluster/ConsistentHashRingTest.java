@@ -0,0 +1,122 @@
+package net.dsc.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+
+    private static final int SWITCHES = 10000;
+
+    private static List<String> dpids() {
+        List<String> dpids = new ArrayList<String>();
+        for (int i = 0; i < SWITCHES; i++) {
+            dpids.add(String.format("00:00:00:00:00:00:%02x:%02x", i >> 8, i & 0xff));
+        }
+        return dpids;
+    }
+
+    private static List<String> controllers(int n) {
+        List<String> c = new ArrayList<String>();
+        for (int i = 0; i < n; i++) {
+            c.add("uuid-" + i);
+        }
+        return c;
+    }
+
+    private static Map<String, String> assign(ConsistentHashRing ring, List<String> dpids) {
+        Map<String, String> owners = new HashMap<String, String>();
+        for (String dpid : dpids) {
+            owners.put(dpid, ring.getOwner(dpid));
+        }
+        return owners;
+    }
+
+    private static int moved(Map<String, String> before, Map<String, String> after) {
+        int moved = 0;
+        for (Map.Entry<String, String> e : before.entrySet()) {
+            if (!e.getValue().equals(after.get(e.getKey())))
+                moved++;
+        }
+        return moved;
+    }
+
+    @Test
+    public void testDeterministicRegardlessOfOrder() {
+        List<String> c = controllers(4);
+        ConsistentHashRing a = new ConsistentHashRing(c);
+        Collections.reverse(c);
+        ConsistentHashRing b = new ConsistentHashRing(c);
+        List<String> dpids = dpids();
+        assertEquals(assign(a, dpids), assign(b, dpids));
+    }
+
+    @Test
+    public void testBalanced() {
+        List<String> dpids = dpids();
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (String owner : assign(new ConsistentHashRing(controllers(4)), dpids).values()) {
+            Integer n = counts.get(owner);
+            counts.put(owner, n == null ? 1 : n + 1);
+        }
+        assertEquals(4, counts.size());
+        for (int n : counts.values()) {
+            assertTrue("unbalanced: " + counts, Math.abs(n - SWITCHES / 4) < SWITCHES / 4 * 0.2);
+        }
+    }
+
+    @Test
+    public void testJoinMovesAboutOneNth() {
+        List<String> dpids = dpids();
+        Map<String, String> before = assign(new ConsistentHashRing(controllers(4)), dpids);
+        Map<String, String> after = assign(new ConsistentHashRing(controllers(5)), dpids);
+        int moved = moved(before, after);
+        assertTrue("moved " + moved, moved > SWITCHES / 5 * 0.7 && moved < SWITCHES / 5 * 1.3);
+        // 只移动到新控制器
+        for (Map.Entry<String, String> e : before.entrySet()) {
+            if (!e.getValue().equals(after.get(e.getKey())))
+                assertEquals("uuid-4", after.get(e.getKey()));
+        }
+    }
+
+    @Test
+    public void testLeaveMovesOnlyItsSwitches() {
+        List<String> dpids = dpids();
+        Map<String, String> before = assign(new ConsistentHashRing(controllers(4)), dpids);
+        List<String> remaining = controllers(4);
+        remaining.remove("uuid-2");
+        Map<String, String> after = assign(new ConsistentHashRing(remaining), dpids);
+        for (Map.Entry<String, String> e : before.entrySet()) {
+            if (!e.getValue().equals("uuid-2"))
+                assertEquals(e.getValue(), after.get(e.getKey()));
+        }
+    }
+
+    @Test
+    public void testEligible() {
+        ConsistentHashRing ring = new ConsistentHashRing(controllers(4));
+        String dpid = "00:00:00:00:00:00:00:01";
+        String owner = ring.getOwner(dpid);
+        HashSet<String> others = new HashSet<String>(controllers(4));
+        others.remove(owner);
+        String next = ring.getOwner(dpid, others);
+        assertTrue(others.contains(next));
+        // 下一个归属与移除原归属后的环一致
+        List<String> remaining = controllers(4);
+        remaining.remove(owner);
+        assertEquals(new ConsistentHashRing(remaining).getOwner(dpid), next);
+
+        assertNull(ring.getOwner(dpid, new HashSet<String>(Arrays.asList("uuid-9"))));
+        assertNull(new ConsistentHashRing(Collections.<String>emptyList()).getOwner(dpid));
+    }
+}
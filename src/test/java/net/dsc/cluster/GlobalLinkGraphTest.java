@@ -0,0 +1,59 @@
+package net.dsc.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import net.dsc.cluster.GlobalLinkGraph.LinkChange;
+import net.dsc.cluster.model.LinkModel;
+
+import org.junit.Test;
+
+public class GlobalLinkGraphTest {
+
+    private static final LinkModel L12 = new LinkModel("s1", 1, "s2", 1);
+    private static final LinkModel L21 = new LinkModel("s2", 1, "s1", 1);
+    private static final LinkModel L23 = new LinkModel("s2", 2, "s3", 1);
+
+    @Test
+    public void testReloadRecordsChanges() {
+        GlobalLinkGraph g = new GlobalLinkGraph();
+        g.reload(Arrays.asList(L12, L21));
+        assertEquals(2, g.getVersion());
+        assertEquals(Collections.singleton(L12), g.getLinks("s1"));
+        assertEquals(2, g.getLinks().size());
+
+        long v = g.getVersion();
+        g.reload(Arrays.asList(L12, L23));
+        List<LinkChange> changes = g.getChangesSince(v);
+        assertEquals(2, changes.size());
+        assertFalse(changes.get(0).isAdded());
+        assertEquals(L21, changes.get(0).getLink());
+        assertTrue(changes.get(1).isAdded());
+        assertEquals(L23, changes.get(1).getLink());
+        assertEquals(Collections.singleton(L23), g.getLinks("s2"));
+
+        assertTrue(g.getChangesSince(g.getVersion()).isEmpty());
+        assertNull(g.getChangesSince(g.getVersion() + 1));
+        // 快照不随后续变更改变
+        Set<LinkModel> before = g.getLinks();
+        g.reload(Collections.<LinkModel>emptySet());
+        assertEquals(2, before.size());
+        assertTrue(g.getLinks().isEmpty());
+    }
+
+    @Test
+    public void testOldVersionsNeedFullSync() {
+        GlobalLinkGraph g = new GlobalLinkGraph();
+        for (int i = 0; i <= GlobalLinkGraph.MAX_CHANGES; i++)
+            g.reload(Collections.singleton(new LinkModel("s1", i, "s2", i)));
+        assertNull(g.getChangesSince(0));
+        assertEquals(1, g.getChangesSince(g.getVersion() - 1).size());
+    }
+}
@@ -0,0 +1,124 @@
+package net.dsc.cluster;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.reset;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Map;
+
+import net.dsc.cluster.model.HostLocationModel;
+
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.EntryEventType;
+import com.hazelcast.core.IMap;
+
+public class HostLocationStoreTest {
+
+    private static final String MAC = "00:00:00:00:00:01";
+    private static final String SW1 = "00:00:00:00:00:00:00:01";
+    private static final String SW2 = "00:00:00:00:00:00:00:02";
+
+    private IMap<String, HostLocationModel> hosts;
+    private HostLocationStore store;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() {
+        hosts = createMock(IMap.class);
+        store = new HostLocationStore(hosts, "uuid-1");
+    }
+
+    @Test
+    public void testLearnCoalescedIntoOneBatch() {
+        Capture<Map<String, HostLocationModel>> batch = new Capture<Map<String, HostLocationModel>>();
+        hosts.putAll(capture(batch));
+        expectLastCall().once();
+        replay(hosts);
+
+        store.learn(MAC, (short) 0, SW1, 1);
+        store.learn(MAC, (short) 0, SW1, 2);
+        store.learn(MAC, (short) 10, SW1, 3);
+        store.flush();
+        // 待写表已清空，不再写入
+        store.flush();
+        verify(hosts);
+
+        assertEquals(2, batch.getValue().size());
+        assertEquals(2, batch.getValue().get(HostLocationModel.key(MAC, (short) 0)).getPort());
+        assertEquals(3, batch.getValue().get(HostLocationModel.key(MAC, (short) 10)).getPort());
+    }
+
+    @Test
+    public void testUnchangedLocationNotRewritten() {
+        hosts.putAll(capture(new Capture<Map<String, HostLocationModel>>()));
+        expectLastCall().once();
+        replay(hosts);
+
+        store.learn(MAC, (short) 0, SW1, 1);
+        store.flush();
+        store.learn(MAC, (short) 0, SW1, 1);
+        store.flush();
+        verify(hosts);
+    }
+
+    @Test
+    public void testMovedBackRewrittenAfterRemoteUpdate() {
+        Capture<Map<String, HostLocationModel>> batch = new Capture<Map<String, HostLocationModel>>();
+        hosts.putAll(capture(batch));
+        expectLastCall().times(2);
+        replay(hosts);
+
+        store.learn(MAC, (short) 0, SW1, 1);
+        store.flush();
+        // 主机移到其他控制器的域，再在REFRESH_MS内移回
+        HostLocationModel moved = new HostLocationModel(MAC, (short) 0, SW2, 5, "uuid-2", 0);
+        store.entryUpdated(new EntryEvent<String, HostLocationModel>("host_location", null,
+                EntryEventType.UPDATED.getType(), moved.getKey(), moved));
+        store.learn(MAC, (short) 0, SW1, 1);
+        store.flush();
+        verify(hosts);
+
+        assertEquals(SW1, batch.getValue().get(HostLocationModel.key(MAC, (short) 0)).getDpid());
+    }
+
+    @Test
+    public void testLookup() {
+        HostLocationModel h = new HostLocationModel(MAC, (short) 0, SW1, 1, "uuid-2", 0);
+        expect(hosts.get(HostLocationModel.key(MAC, (short) 0))).andReturn(h);
+        replay(hosts);
+
+        assertSame(h, store.lookup(MAC, (short) 0));
+        verify(hosts);
+    }
+
+    @Test
+    public void testMissCachedUntilLearned() {
+        expect(hosts.get(HostLocationModel.key(MAC, (short) 0))).andReturn(null).once();
+        replay(hosts);
+
+        assertNull(store.lookup(MAC, (short) 0));
+        // 未命中被缓存，不再远程查询
+        assertNull(store.lookup(MAC, (short) 0));
+        verify(hosts);
+
+        // 本地学习后清除未命中缓存
+        store.learn(MAC, (short) 0, SW1, 1);
+        reset(hosts);
+        HostLocationModel h = new HostLocationModel(MAC, (short) 0, SW1, 1, "uuid-1", 0);
+        expect(hosts.get(HostLocationModel.key(MAC, (short) 0))).andReturn(h);
+        replay(hosts);
+        assertSame(h, store.lookup(MAC, (short) 0));
+        verify(hosts);
+    }
+}
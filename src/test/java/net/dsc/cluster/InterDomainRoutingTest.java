@@ -0,0 +1,97 @@
+package net.dsc.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.dsc.cluster.InterDomainRouting.RouteHop;
+import net.dsc.cluster.model.LinkModel;
+import net.floodlightcontroller.staticflowentry.StaticFlowEntryPusher;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class InterDomainRoutingTest {
+
+    private GlobalLinkGraph graph;
+
+    @Before
+    public void setUp() {
+        // s1 -- s2 -- s3，另有 s1 -- s4 -- s5 -- s3 的较长路径
+        graph = new GlobalLinkGraph();
+        graph.reload(Arrays.asList(
+                new LinkModel("s1", 2, "s2", 1), new LinkModel("s2", 1, "s1", 2),
+                new LinkModel("s2", 2, "s3", 1), new LinkModel("s3", 1, "s2", 2),
+                new LinkModel("s1", 3, "s4", 1), new LinkModel("s4", 1, "s1", 3),
+                new LinkModel("s4", 2, "s5", 1), new LinkModel("s5", 1, "s4", 2),
+                new LinkModel("s5", 2, "s3", 3), new LinkModel("s3", 3, "s5", 2)));
+    }
+
+    @Test
+    public void testShortestRoute() {
+        List<RouteHop> hops = InterDomainRouting.computeRoute(graph.getAdjacency(), "s1", 10, "s3", 20);
+        assertEquals(Arrays.asList(new RouteHop("s1", 10, 2), new RouteHop("s2", 1, 2),
+                new RouteHop("s3", 1, 20)), hops);
+
+        assertEquals(Arrays.asList(new RouteHop("s1", 10, 11)),
+                InterDomainRouting.computeRoute(graph.getAdjacency(), "s1", 10, "s1", 11));
+    }
+
+    @Test
+    public void testLinksWithoutPortsSkipped() {
+        // s1 -- s2 的端口未知时改走较长路径
+        graph.reload(Arrays.asList(
+                new LinkModel("s1", null, "s2", 1), new LinkModel("s2", 1, "s1", null),
+                new LinkModel("s2", 2, "s3", 1), new LinkModel("s3", 1, "s2", 2),
+                new LinkModel("s1", 3, "s4", 1), new LinkModel("s4", 1, "s1", 3),
+                new LinkModel("s4", 2, "s5", 1), new LinkModel("s5", 1, "s4", 2),
+                new LinkModel("s5", 2, "s3", 3), new LinkModel("s3", 3, "s5", 2)));
+        List<RouteHop> hops = InterDomainRouting.computeRoute(graph.getAdjacency(), "s1", 10, "s3", 20);
+        assertEquals(Arrays.asList(new RouteHop("s1", 10, 3), new RouteHop("s4", 1, 2),
+                new RouteHop("s5", 1, 2), new RouteHop("s3", 3, 20)), hops);
+    }
+
+    @Test
+    public void testUnreachable() {
+        assertNull(InterDomainRouting.computeRoute(graph.getAdjacency(), "s1", 1, "s9", 1));
+    }
+
+    @Test
+    public void testRouteCacheInvalidatedByGraphVersion() {
+        InterDomainRouting.RouteCache cache = new InterDomainRouting.RouteCache(graph);
+        List<RouteHop> hops = cache.getRoute("s1", 10, "s3", 20);
+        assertSame(hops, cache.getRoute("s1", 10, "s3", 20));
+        assertNull(cache.getRoute("s1", 1, "s9", 1));
+
+        // 断开 s2 后改走较长路径
+        graph.reload(Arrays.asList(
+                new LinkModel("s1", 3, "s4", 1), new LinkModel("s4", 1, "s1", 3),
+                new LinkModel("s4", 2, "s5", 1), new LinkModel("s5", 1, "s4", 2),
+                new LinkModel("s5", 2, "s3", 3), new LinkModel("s3", 3, "s5", 2)));
+        assertEquals(4, cache.getRoute("s1", 10, "s3", 20).size());
+    }
+
+    @Test
+    public void testFlowEntries() {
+        Map<String, Object> template = new HashMap<String, Object>();
+        template.put(StaticFlowEntryPusher.COLUMN_DL_TYPE, "0x0800");
+        template.put(StaticFlowEntryPusher.COLUMN_NW_DST, "10.0.0.2");
+        List<Map<String, Object>> entries = InterDomainRouting.toFlowEntries(
+                InterDomainRouting.computeRoute(graph.getAdjacency(), "s3", 20, "s1", 10), template, "east");
+        assertEquals(3, entries.size());
+        Map<String, Object> first = entries.get(0);
+        assertEquals("east_0", first.get(StaticFlowEntryPusher.COLUMN_NAME));
+        assertEquals("s3", first.get(StaticFlowEntryPusher.COLUMN_SWITCH));
+        assertEquals("20", first.get(StaticFlowEntryPusher.COLUMN_IN_PORT));
+        assertEquals("output=1", first.get(StaticFlowEntryPusher.COLUMN_ACTIONS));
+        assertEquals("10.0.0.2", first.get(StaticFlowEntryPusher.COLUMN_NW_DST));
+        assertEquals("output=10", entries.get(2).get(StaticFlowEntryPusher.COLUMN_ACTIONS));
+        // 模板不被修改
+        assertEquals(2, template.size());
+    }
+}
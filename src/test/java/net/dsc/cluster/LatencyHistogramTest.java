@@ -0,0 +1,34 @@
+package net.dsc.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram("test");
+        assertFalse(h.snapshot().containsKey("p50-us"));
+
+        for (int i = 0; i < 90; i++)
+            h.record(100, TimeUnit.MICROSECONDS);
+        for (int i = 0; i < 10; i++)
+            h.record(5, TimeUnit.MILLISECONDS);
+
+        Map<String, Object> s = h.snapshot();
+        assertEquals(100L, s.get("count"));
+        assertEquals(128L, s.get("p50-us"));
+        assertEquals(128L, s.get("p90-us"));
+        assertEquals(8192L, s.get("p99-us"));
+        assertEquals(5000L, s.get("max-us"));
+        assertEquals((90 * 100L + 10 * 5000L) / 100, s.get("mean-us"));
+
+        h.reset();
+        assertEquals(0L, h.getCount());
+    }
+}
@@ -0,0 +1,109 @@
+package net.dsc.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.dsc.cluster.model.ControllerTrafficModel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoadBalancePlannerTest {
+
+    private static final List<String> CONTROLLERS = Arrays.asList("c1", "c2");
+
+    private Map<String, String> master;
+    private Map<String, Set<String>> connected;
+    private Map<String, Map<String, Double>> rates;
+
+    @Before
+    public void setUp() {
+        master = new HashMap<String, String>();
+        connected = new HashMap<String, Set<String>>();
+        rates = new HashMap<String, Map<String, Double>>();
+        for (String c : CONTROLLERS)
+            rates.put(c, new HashMap<String, Double>());
+    }
+
+    private void addSwitch(String dpid, String owner, double rate, String... connectedTo) {
+        master.put(dpid, owner);
+        connected.put(dpid, new HashSet<String>(Arrays.asList(connectedTo)));
+        rates.get(owner).put(dpid, rate);
+    }
+
+    private Map<String, ControllerTrafficModel> reports(String highCpu) {
+        Map<String, ControllerTrafficModel> reports = new HashMap<String, ControllerTrafficModel>();
+        for (String c : CONTROLLERS) {
+            double total = 0;
+            for (double r : rates.get(c).values())
+                total += r;
+            reports.put(c, new ControllerTrafficModel(c, 0, total, 0,
+                    c.equals(highCpu) ? "HIGH" : "OK", rates.get(c)));
+        }
+        return reports;
+    }
+
+    @Test
+    public void testBalancedClusterIsLeftAlone() {
+        addSwitch("s1", "c1", 10, "c1", "c2");
+        addSwitch("s2", "c2", 10, "c1", "c2");
+        assertTrue(LoadBalancePlanner.plan(master, connected, reports(null), CONTROLLERS).isEmpty());
+    }
+
+    @Test
+    public void testBusySwitchOutweighsIdleSwitches() {
+        // 按数量c2更重，按流量c1更重
+        addSwitch("s1", "c1", 50, "c1", "c2");
+        addSwitch("s2", "c1", 50, "c1", "c2");
+        for (int i = 3; i < 6; i++)
+            addSwitch("s" + i, "c2", 0, "c1", "c2");
+
+        Map<String, String> moves = LoadBalancePlanner.plan(master, connected, reports(null), CONTROLLERS);
+        assertEquals(1, moves.size());
+        String moved = moves.keySet().iterator().next();
+        assertTrue(moved.equals("s1") || moved.equals("s2"));
+        assertEquals("c2", moves.get(moved));
+    }
+
+    @Test
+    public void testHotSwitchStaysWhenMovingItDoesNotHelp() {
+        addSwitch("s1", "c1", 100, "c1", "c2");
+        addSwitch("s2", "c1", 0, "c1", "c2");
+        addSwitch("s3", "c1", 0, "c1", "c2");
+        addSwitch("s4", "c2", 0, "c1", "c2");
+
+        Map<String, String> moves = LoadBalancePlanner.plan(master, connected, reports(null), CONTROLLERS);
+        assertFalse(moves.containsKey("s1"));
+        assertEquals("c2", moves.get("s2"));
+        assertEquals("c2", moves.get("s3"));
+    }
+
+    @Test
+    public void testOnlyConnectedControllersAreTargets() {
+        addSwitch("s1", "c1", 50, "c1");
+        addSwitch("s2", "c1", 50, "c1");
+        addSwitch("s3", "c2", 0, "c1", "c2");
+        assertTrue(LoadBalancePlanner.plan(master, connected, reports(null), CONTROLLERS).isEmpty());
+    }
+
+    @Test
+    public void testCpuFactor() {
+        addSwitch("s1", "c1", 10, "c1", "c2");
+        addSwitch("s2", "c1", 10, "c1", "c2");
+        addSwitch("s3", "c2", 10, "c1", "c2");
+        addSwitch("s4", "c2", 10, "c1", "c2");
+
+        assertTrue(LoadBalancePlanner.plan(master, connected, reports(null), CONTROLLERS).isEmpty());
+        Map<String, String> moves = LoadBalancePlanner.plan(master, connected, reports("c1"), CONTROLLERS);
+        assertEquals(1, moves.size());
+        assertEquals("c2", moves.values().iterator().next());
+    }
+}
@@ -0,0 +1,124 @@
+package net.dsc.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import net.dsc.cluster.model.ControllerModel;
+import net.dsc.cluster.model.LinkModel;
+import net.dsc.cluster.model.SwitchModel;
+import net.dsc.cluster.model.SwitchOwnershipModel;
+import net.dsc.cluster.processor.OwnershipUpdateProcessor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SwitchOwnershipIndexTest {
+
+    private static final String MASTER = "ROLE_MASTER";
+    private static final String SLAVE = "ROLE_SLAVE";
+
+    private Map<String, SwitchOwnershipModel> store;
+    private SwitchOwnershipIndex index;
+
+    @Before
+    public void setUp() {
+        store = new HashMap<String, SwitchOwnershipModel>();
+        index = new SwitchOwnershipIndex();
+    }
+
+    /** 模拟executeOnKey，并把结果同步到索引 */
+    private void apply(String dpid, String controllerId, String role) {
+        Map.Entry<String, SwitchOwnershipModel> entry =
+                new AbstractMap.SimpleEntry<String, SwitchOwnershipModel>(dpid, store.get(dpid));
+        new OwnershipUpdateProcessor(controllerId, role).process(entry);
+        if (entry.getValue() == null)
+            store.remove(dpid);
+        else
+            store.put(dpid, entry.getValue());
+        index.reload(store);
+    }
+
+    @Test
+    public void testLookupsBySwitchAndController() {
+        apply("s1", "c1", MASTER);
+        apply("s1", "c2", SLAVE);
+        apply("s2", "c2", MASTER);
+
+        assertEquals(MASTER, index.getRoles("s1").get("c1"));
+        assertEquals(SLAVE, index.getRoles("s1").get("c2"));
+        assertEquals(Collections.singleton("s1"), index.getSwitches("c1"));
+        assertEquals(new HashSet<String>(Arrays.asList("s1", "s2")), index.getSwitches("c2"));
+        assertEquals("c1", index.getMasterMap().get("s1"));
+        assertEquals("c2", index.getMasterMap().get("s2"));
+        assertTrue(index.isConnected("s2", "c2"));
+        assertFalse(index.isConnected("s2", "c1"));
+    }
+
+    @Test
+    public void testRoleChangeAndRemoval() {
+        apply("s1", "c1", MASTER);
+        apply("s1", "c2", SLAVE);
+
+        apply("s1", "c1", SLAVE);
+        apply("s1", "c2", MASTER);
+        assertEquals("c2", index.getMasterMap().get("s1"));
+        assertEquals(1, store.size());
+
+        // 与角色无关，按控制器移除
+        apply("s1", "c2", null);
+        assertNull(index.getMasterMap().get("s1"));
+        assertTrue(index.getSwitches("c2").isEmpty());
+        assertEquals(Collections.singleton("s1"), index.getSwitches("c1"));
+
+        apply("s1", "c1", null);
+        assertTrue(store.isEmpty());
+        assertTrue(index.getRoles("s1").isEmpty());
+        assertTrue(index.getAllSwitches().isEmpty());
+    }
+
+    @Test
+    public void testHandoverDemotesOldMaster() {
+        apply("s1", "c1", MASTER);
+        apply("s1", "c2", SLAVE);
+
+        // 先升级后降级：新master写入时原master仍为MASTER
+        apply("s1", "c2", MASTER);
+        assertEquals(SLAVE, index.getRoles("s1").get("c1"));
+        assertEquals(MASTER, index.getRoles("s1").get("c2"));
+        assertEquals("c2", index.getMasterMap().get("s1"));
+
+        // 随后到达的降级不再改变结果
+        apply("s1", "c1", SLAVE);
+        assertEquals("c2", index.getMasterMap().get("s1"));
+        assertEquals(Collections.singleton("s1"), index.getSwitches("c1"));
+    }
+
+    @Test
+    public void testVersionAndSnapshot() {
+        long v0 = index.getVersion();
+        apply("s2", "c1", MASTER);
+        apply("s1", "c2", MASTER);
+        assertTrue(index.getVersion() > v0);
+
+        ClusterSnapshot snapshot = new ClusterSnapshot(index.getVersion(),
+                Collections.<String, SwitchModel>emptyMap(), Collections.<String, ControllerModel>emptyMap(),
+                Collections.<String, Integer>emptyMap(), index.getAllRoles(), Collections.<LinkModel>emptySet());
+        // 重启后版本从0开始，ETag带上进程EPOCH
+        assertEquals(ClusterSnapshot.EPOCH + "-" + index.getVersion(), snapshot.getETag());
+        // 按dpid排序，与之后的变化无关
+        assertEquals(Arrays.asList("s1", "s2"), new ArrayList<String>(snapshot.getRoles().keySet()));
+        apply("s1", "c2", null);
+        assertEquals(MASTER, snapshot.getRoles().get("s1").get("c2"));
+        assertFalse(index.getAllRoles().containsKey("s1"));
+    }
+}
@@ -0,0 +1,143 @@
+package net.dsc.cluster.web;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import net.dsc.cluster.IClusterService;
+import net.dsc.hazelcast.HazelcastService;
+import net.dsc.hazelcast.IHazelcastService;
+import net.floodlightcontroller.staticflowentry.StaticFlowEntryPusher;
+import net.floodlightcontroller.storage.IStorageSourceService;
+
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.hazelcast.core.Member;
+
+public class FlowEntryBatchPusherResourceTest {
+
+    private static final String LOCAL = "c1";
+    private static final String SW1 = "00:00:00:00:00:00:00:01";
+    private static final String SW2 = "00:00:00:00:00:00:00:02";
+    private static final String SW3 = "00:00:00:00:00:00:00:03";
+    private static final String SW4 = "00:00:00:00:00:00:00:04";
+
+    private IHazelcastService hazelcast;
+    private IClusterService cluster;
+    private IStorageSourceService storage;
+
+    @Before
+    public void setUp() {
+        hazelcast = createMock(IHazelcastService.class);
+        cluster = createMock(IClusterService.class);
+        storage = createMock(IStorageSourceService.class);
+        Member member = createMock(Member.class);
+        expect(member.getUuid()).andReturn(LOCAL).anyTimes();
+        expect(hazelcast.getLocalMember()).andReturn(member).anyTimes();
+        Map<String, String> masters = new HashMap<String, String>();
+        masters.put(SW1, LOCAL);
+        masters.put(SW2, "c2");
+        masters.put(SW3, "c2");
+        masters.put(SW4, "c3");
+        expect(cluster.getMasterMap()).andReturn(masters).anyTimes();
+        replay(member, cluster);
+    }
+
+    private static Map<String, Object> flow(String name, String sw) {
+        Map<String, Object> entry = new HashMap<String, Object>();
+        if (name != null)
+            entry.put(StaticFlowEntryPusher.COLUMN_NAME, name);
+        if (sw != null)
+            entry.put(StaticFlowEntryPusher.COLUMN_SWITCH, sw);
+        entry.put(StaticFlowEntryPusher.COLUMN_ACTIVE, "true");
+        return entry;
+    }
+
+    private static ListenableFuture<Map<String, String>> reply(String... names) {
+        Map<String, String> results = new HashMap<String, String>();
+        for (String name : names)
+            results.put(name, HazelcastService.FLOW_RESULT_OK);
+        return Futures.immediateFuture(results);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> results(Map<String, Object> response) {
+        return (Map<String, String>) response.get("results");
+    }
+
+    @Test
+    public void testOneBatchPerController() {
+        Capture<List<Map<String, Object>>> local = new Capture<List<Map<String, Object>>>();
+        storage.updateRows(eq(StaticFlowEntryPusher.TABLE_NAME), capture(local));
+        expectLastCall().once();
+        storage.notifyListeners(anyObject(List.class));
+        expectLastCall().once();
+        Capture<List<Map<String, String>>> toC2 = new Capture<List<Map<String, String>>>();
+        expect(hazelcast.requestFlowBatch(capture(toC2), eq("c2"))).andReturn(reply("f2", "f3")).once();
+        expect(hazelcast.requestFlowBatch(anyObject(List.class), eq("c3")))
+                .andReturn(Futures.<Map<String, String>>immediateFailedFuture(new IllegalStateException("c3 removed"))).once();
+        replay(hazelcast, storage);
+
+        Map<String, Object> response = FlowEntryBatchPusherResource.pushEntries(Arrays.asList(
+                flow("f1", SW1), flow("f2", SW2), flow("f3", SW3), flow("f4", SW4)),
+                hazelcast, cluster, storage);
+        verify(hazelcast, storage);
+
+        // 本地master的流表一次写入，c2的两条流表在同一条批量消息中
+        assertEquals(1, local.getValue().size());
+        assertEquals("f1", local.getValue().get(0).get(StaticFlowEntryPusher.COLUMN_NAME));
+        List<String> c2Names = new ArrayList<String>();
+        for (Map<String, String> row : toC2.getValue())
+            c2Names.add(row.get(StaticFlowEntryPusher.COLUMN_NAME));
+        assertEquals(new HashSet<String>(Arrays.asList("f2", "f3")), new HashSet<String>(c2Names));
+
+        Map<String, String> results = results(response);
+        assertEquals(HazelcastService.FLOW_RESULT_OK, results.get("f1"));
+        assertEquals(HazelcastService.FLOW_RESULT_OK, results.get("f2"));
+        assertEquals(HazelcastService.FLOW_RESULT_OK, results.get("f3"));
+        assertTrue(results.get("f4").startsWith("ERROR: "));
+        assertEquals(4, response.get("total"));
+        assertEquals(3, response.get("succeeded"));
+        assertEquals(1, response.get("failed"));
+    }
+
+    @Test
+    public void testInvalidEntriesNotSent() {
+        // 校验失败的流表不写入存储，也不发往任何控制器
+        replay(hazelcast, storage);
+
+        Map<String, Object> ipWithoutEthType = flow("f2", SW2);
+        ipWithoutEthType.put(StaticFlowEntryPusher.COLUMN_NW_SRC, "10.0.0.1");
+        Map<String, Object> response = FlowEntryBatchPusherResource.pushEntries(Arrays.asList(
+                flow(null, SW1), ipWithoutEthType, flow("f2", SW1),
+                flow("f4", "00:00:00:00:00:00:00:09")),
+                hazelcast, cluster, storage);
+        verify(hazelcast, storage);
+
+        Map<String, String> results = results(response);
+        assertEquals("ERROR: name and switch are required", results.get("#1"));
+        assertEquals(FlowEntryPusherResource.checkStatus(1), results.get("f2"));
+        assertEquals("ERROR: duplicate flow name", results.get("f2#3"));
+        assertEquals("交换机无master或不存在", results.get("f4"));
+        assertEquals(4, response.get("total"));
+        assertEquals(0, response.get("succeeded"));
+    }
+}
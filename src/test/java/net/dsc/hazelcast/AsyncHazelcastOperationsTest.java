@@ -0,0 +1,110 @@
+package net.dsc.hazelcast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class AsyncHazelcastOperationsTest {
+
+    private ExecutorService executor;
+    private AsyncHazelcastOperations async;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        async = new AsyncHazelcastOperations(null, executor, 2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static Callable<String> blockUntil(final CountDownLatch latch) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                latch.await(5, TimeUnit.SECONDS);
+                return "ok";
+            }
+        };
+    }
+
+    @Test
+    public void testRejectedWhenInFlightLimitReached() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ListenableFuture<String> a = async.submit("switchs", blockUntil(release));
+        ListenableFuture<String> b = async.submit("switchs", blockUntil(release));
+        assertEquals(2, async.getInFlight());
+
+        ListenableFuture<String> c = async.submit("switchlinks", blockUntil(release));
+        assertTrue(c.isDone());
+        try {
+            c.get();
+            fail("expected rejection");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        release.countDown();
+        assertEquals("ok", a.get(5, TimeUnit.SECONDS));
+        assertEquals("ok", b.get(5, TimeUnit.SECONDS));
+        // 名额在回调中释放
+        long deadline = System.currentTimeMillis() + 5000;
+        while (async.getInFlight() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        assertEquals(0, async.getInFlight());
+        assertTrue(async.submit("switchlinks", blockUntil(release)).get(5, TimeUnit.SECONDS) != null);
+    }
+
+    @Test
+    public void testStatsPerStructure() throws Exception {
+        CountDownLatch done = new CountDownLatch(0);
+        async.submit("switchs", blockUntil(done)).get(5, TimeUnit.SECONDS);
+        ListenableFuture<String> failed = async.submit("controller_load", new Callable<String>() {
+            @Override
+            public String call() {
+                throw new IllegalStateException("boom");
+            }
+        });
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        // 统计在回调中更新，get()返回时回调可能尚未执行
+        assertEquals(1L, awaitStat("switchs", "count", 1L));
+        assertEquals(0L, async.getStats().get("switchs").get("failed"));
+        assertEquals(1L, awaitStat("controller_load", "failed", 1L));
+    }
+
+    private Object awaitStat(String structure, String key, Object expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        Object value = null;
+        while (System.currentTimeMillis() < deadline) {
+            Map<String, Object> stats = async.getStats().get(structure);
+            value = stats == null ? null : stats.get(key);
+            if (expected.equals(value))
+                break;
+            Thread.sleep(1);
+        }
+        return value;
+    }
+}
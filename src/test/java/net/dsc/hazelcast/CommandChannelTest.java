@@ -0,0 +1,254 @@
+package net.dsc.hazelcast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class CommandChannelTest {
+
+    /**
+     * 以内存队列代替集群队列，同一个queues上的多个通道相当于多个控制器
+     */
+    private static class LocalChannel extends CommandChannel {
+        private final ConcurrentMap<String, BlockingQueue<Object>> queues;
+        private final int capacity;
+
+        LocalChannel(String localId, ConcurrentMap<String, BlockingQueue<Object>> queues, int capacity) {
+            super(null, localId);
+            this.queues = queues;
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected BlockingQueue<Object> queue(String name) {
+            BlockingQueue<Object> q = queues.get(name);
+            if (q == null) {
+                queues.putIfAbsent(name, new ArrayBlockingQueue<Object>(capacity));
+                q = queues.get(name);
+            }
+            return q;
+        }
+    }
+
+    private static final String B_COMMANDS = "b" + CommandChannel.QUEUE_SUFFIX;
+
+    private final ConcurrentMap<String, BlockingQueue<Object>> queues =
+            new ConcurrentHashMap<String, BlockingQueue<Object>>();
+
+    private static void await(CountDownLatch latch) throws InterruptedException {
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOrderedDeliveryThroughFullQueue() throws Exception {
+        CommandChannel a = new LocalChannel("a", queues, 2);
+        CommandChannel b = new LocalChannel("b", queues, 2);
+        final List<Object> received = Collections.synchronizedList(new ArrayList<Object>());
+        final CountDownLatch done = new CountDownLatch(20);
+
+        // 对方未启动时队列很快写满，其余命令留在发件箱
+        List<ListenableFuture<Void>> futures = new ArrayList<ListenableFuture<Void>>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(a.send("b", i));
+        }
+        Thread.sleep(50);
+        assertEquals(2, queues.get(B_COMMANDS).size());
+
+        b.startConsumer(new CommandChannel.ICommandHandler() {
+            @Override
+            public ListenableFuture<?> handle(Object command) {
+                received.add(command);
+                done.countDown();
+                return null;
+            }
+        });
+        await(done);
+        for (ListenableFuture<Void> f : futures) {
+            f.get(5, TimeUnit.SECONDS);
+        }
+        List<Object> expected = new ArrayList<Object>();
+        for (int i = 0; i < 20; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, received);
+        b.stopConsumer();
+    }
+
+    @Test
+    public void testRedeliveredAfterConsumerRestart() throws Exception {
+        LocalChannel b = new LocalChannel("b", queues, 10);
+        b.queue(B_COMMANDS).add("flow-1");
+        final CountDownLatch started = new CountDownLatch(1);
+        b.startConsumer(new CommandChannel.ICommandHandler() {
+            @Override
+            public ListenableFuture<?> handle(Object command) throws Exception {
+                started.countDown();
+                Thread.sleep(10000);
+                return null;
+            }
+        });
+        await(started);
+        b.stopConsumer();
+        Thread.sleep(50);
+        // 处理中途停止，未确认
+        assertEquals(Arrays.<Object>asList("flow-1"), new ArrayList<Object>(queues.get(B_COMMANDS)));
+
+        final List<Object> received = Collections.synchronizedList(new ArrayList<Object>());
+        final CountDownLatch done = new CountDownLatch(1);
+        b.startConsumer(new CommandChannel.ICommandHandler() {
+            @Override
+            public ListenableFuture<?> handle(Object command) {
+                received.add(command);
+                done.countDown();
+                return null;
+            }
+        });
+        await(done);
+        assertEquals(Arrays.<Object>asList("flow-1"), received);
+        b.stopConsumer();
+    }
+
+    @Test
+    public void testRecoverRemovedController() throws Exception {
+        CommandChannel a = new LocalChannel("a", queues, 1);
+        a.send("b", "first").get(5, TimeUnit.SECONDS);
+        ListenableFuture<Void> waiting = a.send("b", "second");
+        Thread.sleep(50);
+        assertEquals(Arrays.<Object>asList("first", "second"), a.recover("b", true));
+        assertTrue(waiting.isDone());
+        assertTrue(queues.get(B_COMMANDS).isEmpty());
+    }
+
+    @Test
+    public void testRoleCommandsNotQueuedBehindFlows() throws Exception {
+        CommandChannel a = new LocalChannel("a", queues, 100);
+        CommandChannel b = new LocalChannel("b", queues, 100);
+        for (int i = 0; i < 50; i++) {
+            a.send("b", "flow-" + i);
+        }
+        a.sendPriority("b", "role").get(5, TimeUnit.SECONDS);
+        Thread.sleep(50);
+
+        final List<Object> received = Collections.synchronizedList(new ArrayList<Object>());
+        final CountDownLatch done = new CountDownLatch(51);
+        b.startConsumer(new CommandChannel.ICommandHandler() {
+            @Override
+            public ListenableFuture<?> handle(Object command) {
+                received.add(command);
+                done.countDown();
+                return null;
+            }
+        });
+        await(done);
+        assertEquals("role", received.get(0));
+        assertEquals("flow-0", received.get(1));
+        b.stopConsumer();
+    }
+
+    @Test
+    public void testFailedCommandDeadLetteredAndRedelivered() throws Exception {
+        LocalChannel b = new LocalChannel("b", queues, 10);
+        b.queue(B_COMMANDS).add("bad");
+        b.queue(B_COMMANDS).add("good");
+        final List<Object> received = Collections.synchronizedList(new ArrayList<Object>());
+        final CountDownLatch done = new CountDownLatch(1);
+        b.startConsumer(new CommandChannel.ICommandHandler() {
+            @Override
+            public ListenableFuture<?> handle(Object command) throws Exception {
+                if ("bad".equals(command))
+                    throw new Exception("storage unavailable");
+                received.add(command);
+                done.countDown();
+                return null;
+            }
+        });
+        await(done);
+        b.stopConsumer();
+        // 失败的命令不丢弃，也不阻塞后续命令
+        assertEquals(Arrays.<Object>asList("good"), received);
+        assertEquals(Arrays.<Object>asList("bad"),
+                new ArrayList<Object>(queues.get("b" + CommandChannel.DEAD_LETTER_SUFFIX)));
+        assertEquals(1L, b.getStats().get("deadLettered"));
+
+        final CountDownLatch redelivered = new CountDownLatch(1);
+        b.startConsumer(new CommandChannel.ICommandHandler() {
+            @Override
+            public ListenableFuture<?> handle(Object command) {
+                received.add(command);
+                redelivered.countDown();
+                return null;
+            }
+        });
+        await(redelivered);
+        assertEquals(Arrays.<Object>asList("good", "bad"), received);
+        b.stopConsumer();
+    }
+
+    @Test
+    public void testAsyncHandlingDoesNotBlockConsumer() throws Exception {
+        LocalChannel b = new LocalChannel("b", queues, 10);
+        b.queue(B_COMMANDS).add("slow");
+        b.queue(B_COMMANDS).add("fast");
+        final SettableFuture<Void> slow = SettableFuture.create();
+        final List<Object> received = Collections.synchronizedList(new ArrayList<Object>());
+        final CountDownLatch done = new CountDownLatch(2);
+        final AtomicInteger slowAttempts = new AtomicInteger();
+        b.startConsumer(new CommandChannel.ICommandHandler() {
+            @Override
+            public ListenableFuture<?> handle(Object command) {
+                received.add(command);
+                done.countDown();
+                if ("slow".equals(command) && slowAttempts.incrementAndGet() == 1)
+                    return slow;
+                return null;
+            }
+        });
+        await(done);
+        // 异步处理的命令已确认，后续命令不等待其完成
+        assertEquals(Arrays.<Object>asList("slow", "fast"), received);
+        assertTrue(queues.get(B_COMMANDS).isEmpty());
+
+        // 异步处理失败时重试
+        slow.setException(new Exception("storage unavailable"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (b.getStats().get("processed").equals(1L) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Arrays.<Object>asList("slow", "fast", "slow"), received);
+        assertEquals(2L, b.getStats().get("processed"));
+        assertEquals(1L, b.getStats().get("failed"));
+        b.stopConsumer();
+    }
+
+    @Test
+    public void testSendToRecoveredControllerFails() throws Exception {
+        CommandChannel a = new LocalChannel("a", queues, 10);
+        a.recover("b", false);
+        try {
+            a.send("b", "flow").get(5, TimeUnit.SECONDS);
+            fail("send to a removed controller succeeded");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertNull(queues.get(B_COMMANDS));
+    }
+}
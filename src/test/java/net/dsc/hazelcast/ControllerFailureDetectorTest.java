@@ -0,0 +1,148 @@
+package net.dsc.hazelcast;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.dsc.hazelcast.listener.IControllerListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.hazelcast.core.Cluster;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.Member;
+
+public class ControllerFailureDetectorTest {
+
+    private static final String LOCAL = "uuid-local";
+    private static final String PEER = "uuid-peer";
+
+    private final FakeTicker ticker = new FakeTicker();
+    private final List<String> events = new ArrayList<String>();
+    private ControllerFailureDetector detector;
+
+    private static class FakeTicker extends Ticker {
+        private long nanos = TimeUnit.SECONDS.toNanos(1);
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long ms) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(ms);
+        }
+    }
+
+    private static Member member(String uuid) {
+        Member m = createNiceMock(Member.class);
+        expect(m.getUuid()).andReturn(uuid).anyTimes();
+        replay(m);
+        return m;
+    }
+
+    @Before
+    public void setUp() {
+        Set<Member> members = new HashSet<Member>();
+        members.add(member(LOCAL));
+        members.add(member(PEER));
+        Cluster cluster = createNiceMock(Cluster.class);
+        expect(cluster.getMembers()).andReturn(members).anyTimes();
+        HazelcastInstance hazelcast = createNiceMock(HazelcastInstance.class);
+        expect(hazelcast.getCluster()).andReturn(cluster).anyTimes();
+        replay(cluster, hazelcast);
+
+        detector = new ControllerFailureDetector(hazelcast, LOCAL,
+                ControllerFailureDetector.DEFAULT_ACCEPTABLE_PAUSE_MS, ticker, MoreExecutors.sameThreadExecutor());
+        detector.addListener(new IControllerListener() {
+            @Override
+            public void controllerRemoved(String controllerId, Set<String> live, boolean confirmed) {
+                events.add("removed " + controllerId + " " + live.contains(controllerId) + " " + confirmed);
+            }
+
+            @Override
+            public void controllerRecovered(String controllerId, Set<String> live) {
+                events.add("recovered " + controllerId + " " + live.contains(controllerId));
+            }
+        });
+    }
+
+    /**
+     * 按检测间隔推进时间，每个心跳间隔给出的控制器各发一次心跳
+     */
+    private void run(long ms, String... beating) {
+        for (long t = 0; t < ms; t += ControllerFailureDetector.CHECK_INTERVAL_MS) {
+            if (t % ControllerFailureDetector.HEARTBEAT_INTERVAL_MS == 0) {
+                for (String id : beating) {
+                    detector.heartbeat(id);
+                }
+            }
+            ticker.advance(ControllerFailureDetector.CHECK_INTERVAL_MS);
+            detector.check();
+        }
+    }
+
+    @Test
+    public void testRegularHeartbeatsNotSuspected() {
+        run(2000, LOCAL, PEER);
+        assertTrue(events.isEmpty());
+        assertTrue(detector.getLiveControllers().contains(PEER));
+    }
+
+    @Test
+    public void testShortPauseNotSuspected() {
+        run(2000, LOCAL, PEER);
+        // phi已超过阈值，但中断短于可接受停顿时间
+        run(ControllerFailureDetector.DEFAULT_ACCEPTABLE_PAUSE_MS - 100, LOCAL);
+        assertTrue(events.isEmpty());
+        assertTrue(detector.getLiveControllers().contains(PEER));
+
+        run(1000, LOCAL, PEER);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testPausedPeerRecovers() {
+        run(2000, LOCAL, PEER);
+        run(1000, LOCAL);
+        assertEquals(1, events.size());
+        assertEquals("removed " + PEER + " false false", events.get(0));
+        assertFalse(detector.getLiveControllers().contains(PEER));
+
+        run(200, LOCAL, PEER);
+        assertEquals(2, events.size());
+        assertEquals("recovered " + PEER + " true", events.get(1));
+        assertTrue(detector.getLiveControllers().contains(PEER));
+
+        // 恢复后只通知一次
+        run(1000, LOCAL, PEER);
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    public void testLocalPauseReportsSelfRecovery() {
+        run(2000, LOCAL, PEER);
+        // 本控制器停顿：心跳和检测都停止
+        ticker.advance(1000);
+        detector.check();
+        assertTrue(events.isEmpty());
+
+        // 停顿期间积压的心跳到达后照常检测
+        run(200, LOCAL, PEER);
+        assertEquals(1, events.size());
+        assertEquals("recovered " + LOCAL + " true", events.get(0));
+        assertTrue(detector.getLiveControllers().contains(PEER));
+    }
+}
@@ -0,0 +1,174 @@
+package net.dsc.hazelcast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.dsc.cluster.model.ControllerModel;
+import net.dsc.cluster.model.HostLocationModel;
+import net.dsc.cluster.model.LinkModel;
+import net.dsc.cluster.model.SwitchConnectModel;
+import net.dsc.cluster.model.SwitchModel;
+import net.dsc.cluster.model.SwitchOwnershipModel;
+import net.dsc.hazelcast.message.FlowBatchMessage;
+import net.dsc.hazelcast.message.FlowMessage;
+import net.dsc.hazelcast.message.HeartbeatMessage;
+import net.dsc.hazelcast.message.RoleMessage;
+import net.floodlightcontroller.staticflowentry.StaticFlowEntryPusher;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hazelcast.nio.serialization.Data;
+import com.hazelcast.nio.serialization.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.SerializationService;
+
+public class DSCDataSerializableFactoryTest {
+    private SerializationService ss;
+
+    @Before
+    public void setUp() {
+        ss = new DefaultSerializationServiceBuilder()
+                .addDataSerializableFactory(DSCDataSerializableFactory.FACTORY_ID,
+                                            new DSCDataSerializableFactory())
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T roundTrip(T o) {
+        return (T) ss.toObject(ss.toData(o));
+    }
+
+    @Test
+    public void testModelRoundTrip() {
+        ControllerModel c = new ControllerModel("uuid-1", "/192.168.150.1");
+        assertEquals(c.getControllerId(), roundTrip(c).getControllerId());
+        assertEquals(c.getControllerIp(), roundTrip(c).getControllerIp());
+
+        SwitchConnectModel scm = new SwitchConnectModel("uuid-1", "00:00:00:00:00:00:00:01", "ROLE_MASTER");
+        assertEquals(scm, roundTrip(scm));
+
+        SwitchOwnershipModel so = new SwitchOwnershipModel("00:00:00:00:00:00:00:01");
+        so.getRoles().put("uuid-1", "ROLE_MASTER");
+        so.getRoles().put("uuid-2", "ROLE_SLAVE");
+        assertEquals(so, roundTrip(so));
+        assertEquals("uuid-1", roundTrip(so).getMaster());
+
+        LinkModel l = new LinkModel("00:00:00:00:00:00:00:01", 1, "00:00:00:00:00:00:00:02", 2);
+        assertEquals(l, roundTrip(l));
+
+        HostLocationModel h = new HostLocationModel("00:00:00:00:00:01", (short) 10,
+                "00:00:00:00:00:00:00:01", 3, "uuid-1", 42L);
+        HostLocationModel h2 = roundTrip(h);
+        assertEquals(h.getKey(), h2.getKey());
+        assertTrue(h.sameLocation(h2));
+        assertEquals(42L, h2.getTimestamp());
+
+        Date now = new Date();
+        SwitchModel s = new SwitchModel.Builder().dpid("00:00:00:00:00:00:00:01")
+                .date(now).ip("/10.0.0.1:6633").version("OF_13").build();
+        SwitchModel s2 = roundTrip(s);
+        assertEquals(s.getDpid(), s2.getDpid());
+        assertEquals(now, s2.getDate());
+        assertEquals(s.getIp(), s2.getIp());
+        assertEquals(s.getVersoin(), s2.getVersoin());
+
+        assertNull(roundTrip(new SwitchModel.Builder().build()).getDate());
+    }
+
+    @Test
+    public void testMessageRoundTrip() {
+        RoleMessage r = roundTrip(new RoleMessage("MASTER", "00:00:00:00:00:00:00:01"));
+        assertEquals("MASTER", r.Role);
+        assertEquals("00:00:00:00:00:00:00:01", r.SwitchId);
+
+        HeartbeatMessage hb = roundTrip(new HeartbeatMessage("uuid-1", 7L));
+        assertEquals("uuid-1", hb.controllerId);
+        assertEquals(7L, hb.sequence);
+
+        Map<String, String> row = new HashMap<String, String>();
+        row.put(StaticFlowEntryPusher.COLUMN_SWITCH, "00:00:00:00:00:00:00:01");
+        row.put(StaticFlowEntryPusher.COLUMN_NAME, "f1");
+        row.put(StaticFlowEntryPusher.COLUMN_INSTR_APPLY_ACTIONS, "output=2");
+        row.put("unknown_column", "x");
+        assertEquals(row, roundTrip(new FlowMessage(row)).row);
+
+        FlowBatchMessage batch = roundTrip(new FlowBatchMessage("r1", "c1", Arrays.asList(row, row)));
+        assertEquals("r1", batch.requestId);
+        assertEquals("c1", batch.replyTo);
+        assertEquals(Arrays.asList(row, row), batch.rows);
+    }
+
+    /**
+     * Mirrors of the previous java.io.Serializable layouts, used as the size
+     * baseline for the identified encoding.
+     */
+    @SuppressWarnings("serial")
+    private static class LegacyControllerModel implements Serializable {
+        String controllerId = "8a2f9a7e-6b3c-4f0e-9d0e-1f1e2c3d4b5a";
+        String controllerIp = "/192.168.150.1";
+    }
+
+    @SuppressWarnings("serial")
+    private static class LegacySwitchConnectModel implements Serializable {
+        String controllerId = "8a2f9a7e-6b3c-4f0e-9d0e-1f1e2c3d4b5a";
+        String dpid = "00:00:00:00:00:00:00:01";
+        String role = "ROLE_MASTER";
+    }
+
+    @SuppressWarnings("serial")
+    private static class LegacyLinkModel implements Serializable {
+        String src = "00:00:00:00:00:00:00:01";
+        Integer srcPort = 1;
+        String dst = "00:00:00:00:00:00:00:02";
+        Integer dstPort = 2;
+    }
+
+    @Test
+    public void testSizeAndRoundTrip() throws IOException {
+        Object[] samples = {
+            new ControllerModel("8a2f9a7e-6b3c-4f0e-9d0e-1f1e2c3d4b5a", "/192.168.150.1"),
+            new SwitchConnectModel("8a2f9a7e-6b3c-4f0e-9d0e-1f1e2c3d4b5a", "00:00:00:00:00:00:00:01", "ROLE_MASTER"),
+            new LinkModel("00:00:00:00:00:00:00:01", 1, "00:00:00:00:00:00:00:02", 2),
+        };
+        Serializable[] legacy = {
+            new LegacyControllerModel(),
+            new LegacySwitchConnectModel(),
+            new LegacyLinkModel(),
+        };
+        for (int i = 0; i < samples.length; i++) {
+            Data d = ss.toData(samples[i]);
+            int javaSize = javaSerializedSize(legacy[i]);
+            assertTrue(samples[i].getClass().getSimpleName() + ": identified=" + d.totalSize()
+                    + "B, java=" + javaSize + "B", d.totalSize() < javaSize);
+        }
+        assertEquals(samples[1], roundTrip(samples[1]));
+        assertEquals(samples[2], roundTrip(samples[2]));
+    }
+
+    @Test
+    public void testLinkModelNullPorts() {
+        LinkModel l = new LinkModel("00:00:00:00:00:00:00:01", null, "00:00:00:00:00:00:00:02", 2);
+        LinkModel copy = roundTrip(l);
+        assertNull(copy.getSrcPort());
+        assertEquals(Integer.valueOf(2), copy.getDstPort());
+        assertEquals(l, copy);
+    }
+
+    private static int javaSerializedSize(Serializable o) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(o);
+        oos.close();
+        return bos.size();
+    }
+}
@@ -0,0 +1,141 @@
+package net.dsc.hazelcast;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.dsc.cluster.LatencyHistogram;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+import com.hazelcast.core.MultiMap;
+
+/**
+ * 对比嵌入模式与客户端模式下每次操作的延迟。
+ * 需要启动真实的Hazelcast成员，默认跳过，使用 -Ddsc.benchmark=true 运行。
+ * 嵌入模式的平均延迟不应高于客户端模式，两种模式的p99都不应超过dsc.benchmark.maxOpMs。
+ */
+public class HazelcastModeBenchmarkTest {
+    protected static Logger log = LoggerFactory.getLogger(HazelcastModeBenchmarkTest.class);
+
+    private static final long MAX_OP_MS = Long.getLong("dsc.benchmark.maxOpMs", 50);
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 20000;
+
+    private static HazelcastInstance member;
+    private static HazelcastInstance client;
+
+    @BeforeClass
+    public static void setUp() {
+        assumeTrue(Boolean.getBoolean("dsc.benchmark"));
+        Config config = new Config();
+        config.setProperty("hazelcast.logging.type", "slf4j");
+        config.getGroupConfig().setName("dsc-benchmark");
+        config.getSerializationConfig().addDataSerializableFactory(
+                DSCDataSerializableFactory.FACTORY_ID, new DSCDataSerializableFactory());
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        member = Hazelcast.newHazelcastInstance(config);
+
+        ClientConfig clientConfig = new ClientConfig();
+        clientConfig.getGroupConfig().setName("dsc-benchmark");
+        clientConfig.getNetworkConfig().addAddress("127.0.0.1:"
+                + member.getCluster().getLocalMember().getSocketAddress().getPort());
+        client = HazelcastClient.newHazelcastClient(clientConfig);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (client != null)
+            client.shutdown();
+        if (member != null)
+            member.shutdown();
+    }
+
+    @Test
+    public void testMultiMapLatency() {
+        report("multimap put+get", multiMap(member, "embedded"), multiMap(client, "client"));
+    }
+
+    @Test
+    public void testTopicLatency() throws InterruptedException {
+        report("topic publish->deliver", topic(member, "embedded"), topic(client, "client"));
+    }
+
+    private static LatencyHistogram multiMap(HazelcastInstance instance, String name) {
+        MultiMap<String, String> map = instance.getMultiMap("benchmark-" + name);
+        LatencyHistogram h = new LatencyHistogram(name);
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            String key = "00:00:00:00:00:00:00:" + (i % 64);
+            long start = System.nanoTime();
+            map.put(key, "c" + (i % 4));
+            map.get(key);
+            if (i >= WARMUP)
+                h.recordSince(start);
+        }
+        return h;
+    }
+
+    private static LatencyHistogram topic(HazelcastInstance instance, String name)
+            throws InterruptedException {
+        ITopic<Long> topic = instance.getTopic("benchmark-" + name);
+        final BlockingQueue<Long> delivered = new ArrayBlockingQueue<Long>(1);
+        String id = topic.addMessageListener(new MessageListener<Long>() {
+            @Override
+            public void onMessage(Message<Long> message) {
+                delivered.offer(message.getMessageObject());
+            }
+        });
+        LatencyHistogram h = new LatencyHistogram(name);
+        try {
+            for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+                long start = System.nanoTime();
+                topic.publish(start);
+                if (delivered.poll(5, TimeUnit.SECONDS) == null)
+                    throw new IllegalStateException("message not delivered");
+                if (i >= WARMUP)
+                    h.recordSince(start);
+            }
+        } finally {
+            topic.removeMessageListener(id);
+        }
+        return h;
+    }
+
+    private static void report(String op, LatencyHistogram embedded, LatencyHistogram client) {
+        Map<String, Object> e = embedded.snapshot();
+        Map<String, Object> c = client.snapshot();
+        log.info("{} embedded: {}", op, e);
+        log.info("{} client:   {}", op, c);
+        assertP99(op, embedded);
+        assertP99(op, client);
+        // 嵌入模式少一次到成员的网络往返
+        assertTrue(op + ": embedded mean " + e.get("mean-us") + " us slower than client mean " + c.get("mean-us") + " us",
+                (Long) e.get("mean-us") <= (Long) c.get("mean-us"));
+    }
+
+    private static void assertP99(String op, LatencyHistogram h) {
+        Long p99 = (Long) h.snapshot().get("p99-us");
+        assertTrue(op + " " + h.getName() + " has no samples", p99 != null);
+        assertTrue(op + " " + h.getName() + " p99 " + p99 + " us over " + MAX_OP_MS + " ms",
+                p99 <= TimeUnit.MILLISECONDS.toMicros(MAX_OP_MS));
+    }
+}
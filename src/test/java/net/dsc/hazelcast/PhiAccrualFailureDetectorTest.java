@@ -0,0 +1,77 @@
+package net.dsc.hazelcast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PhiAccrualFailureDetectorTest {
+
+    private static final String C1 = "uuid-1";
+    private static final double THRESHOLD = 8.0;
+
+    private PhiAccrualFailureDetector detector;
+
+    @Before
+    public void setUp() {
+        detector = new PhiAccrualFailureDetector(100, 25, 50);
+    }
+
+    /** 每50ms一次心跳 */
+    private long beat(int count, long start) {
+        long t = start;
+        for (int i = 0; i < count; i++) {
+            detector.heartbeat(C1, t);
+            t += 50;
+        }
+        return t - 50;
+    }
+
+    @Test
+    public void testUnknownControllerNotSuspected() {
+        assertEquals(0.0, detector.phi(C1, 1000), 0.0);
+        assertEquals(-1, detector.getLastHeartbeat(C1));
+    }
+
+    @Test
+    public void testRegularHeartbeatsNotSuspected() {
+        long last = beat(50, 0);
+        assertTrue(detector.phi(C1, last + 50) < 1.0);
+        assertTrue(detector.phi(C1, last + 100) < THRESHOLD);
+    }
+
+    @Test
+    public void testSuspectedWithinFewHundredMs() {
+        long last = beat(50, 0);
+        assertTrue(detector.phi(C1, last + 300) > THRESHOLD);
+        // phi随时间单调增加
+        assertTrue(detector.phi(C1, last + 200) < detector.phi(C1, last + 250));
+    }
+
+    @Test
+    public void testFirstHeartbeatUsesEstimate() {
+        detector.heartbeat(C1, 0);
+        assertTrue(detector.phi(C1, 50) < THRESHOLD);
+        assertTrue(detector.phi(C1, 400) > THRESHOLD);
+    }
+
+    @Test
+    public void testJitterRaisesTolerance() {
+        // 间隔在20ms和180ms之间交替，标准差远大于下限
+        long t = 0;
+        for (int i = 0; i < 50; i++) {
+            detector.heartbeat(C1, t);
+            t += (i % 2 == 0) ? 20 : 180;
+        }
+        long last = detector.getLastHeartbeat(C1);
+        assertTrue(detector.phi(C1, last + 300) < THRESHOLD);
+    }
+
+    @Test
+    public void testRemove() {
+        beat(10, 0);
+        detector.remove(C1);
+        assertEquals(0.0, detector.phi(C1, 10000), 0.0);
+    }
+}
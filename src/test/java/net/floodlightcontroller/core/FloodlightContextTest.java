@@ -0,0 +1,47 @@
+package net.floodlightcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FloodlightContextTest {
+
+    private static final String KEY = "net.floodlightcontroller.core.test.key";
+    private static final String OTHER = "net.floodlightcontroller.core.test.other";
+
+    @Test
+    public void testRegisteredAndUnregisteredKeys() {
+        FloodlightContext cntx = new FloodlightContext();
+        // 上下文创建之后注册的键也可以使用
+        FloodlightContextStore<String> store = new FloodlightContextStore<String>(KEY);
+        assertTrue(FloodlightContext.slotOf(KEY) >= 0);
+        assertEquals(-1, FloodlightContext.slotOf(OTHER));
+
+        store.put(cntx, KEY, "a");
+        store.put(cntx, OTHER, "b");
+        // 非同一引用的相等键映射到同一槽位
+        assertEquals("a", store.get(cntx, new String(KEY)));
+        assertEquals("b", store.get(cntx, OTHER));
+        assertEquals(1, cntx.getStorage().size());
+
+        store.remove(cntx, KEY);
+        assertNull(store.get(cntx, KEY));
+
+        store.put(cntx, KEY, "c");
+        cntx.clear();
+        assertNull(store.get(cntx, KEY));
+        assertNull(store.get(cntx, OTHER));
+    }
+
+    @Test
+    public void testSharedSlot() {
+        FloodlightContextStore<String> a = new FloodlightContextStore<String>(KEY);
+        FloodlightContextStore<String> b = new FloodlightContextStore<String>(KEY);
+        FloodlightContext cntx = new FloodlightContext();
+        a.put(cntx, KEY, "x");
+        assertEquals("x", b.get(cntx, KEY));
+        assertEquals(FloodlightContext.registerSlot(KEY), FloodlightContext.slotOf(KEY));
+    }
+}
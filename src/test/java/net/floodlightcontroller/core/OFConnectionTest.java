@@ -4,13 +4,19 @@ import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.hamcrest.CoreMatchers;
 import org.hamcrest.Matchers;
 import org.jboss.netty.channel.Channel;
@@ -24,11 +30,13 @@ import net.floodlightcontroller.debugcounter.IDebugCounterService;
 
 import org.projectfloodlight.openflow.protocol.OFControllerRole;
 import org.projectfloodlight.openflow.protocol.OFEchoReply;
+import org.projectfloodlight.openflow.protocol.OFBarrierRequest;
 import org.projectfloodlight.openflow.protocol.OFEchoRequest;
 import org.projectfloodlight.openflow.protocol.OFErrorMsg;
 import org.projectfloodlight.openflow.protocol.OFFactories;
 import org.projectfloodlight.openflow.protocol.OFFactory;
 import org.projectfloodlight.openflow.protocol.OFFlowStatsReply;
+import org.projectfloodlight.openflow.protocol.OFFlowAdd;
 import org.projectfloodlight.openflow.protocol.OFFlowStatsRequest;
 import org.projectfloodlight.openflow.protocol.OFHello;
 import org.projectfloodlight.openflow.protocol.OFHelloElem;
@@ -143,6 +151,7 @@ public class OFConnectionTest {
 
     private Capture<List<OFMessage>> prepareChannelForWriteList() {
         EasyMock.expect(channel.isConnected()).andReturn(Boolean.TRUE).anyTimes();
+        EasyMock.expect(channel.isWritable()).andReturn(Boolean.TRUE).anyTimes();
         Capture<List<OFMessage>> cMsgList = new Capture<>();
         expect(channel.write(capture(cMsgList))).andReturn(null).once();
         replay(channel);
@@ -255,4 +264,63 @@ public class OFConnectionTest {
                 Matchers.<OFMessage> contains(hello, packetOut));
     }
 
+    /** 通道不可写时消息排队，可写后按优先级写出；拥塞时丢弃packet-out */
+    @Test(timeout = 5000)
+    public void testWriteQueue() {
+        final boolean[] writable = { false };
+        channel = EasyMock.createNiceMock(Channel.class);
+        expect(channel.isConnected()).andReturn(Boolean.TRUE).anyTimes();
+        expect(channel.isWritable()).andAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+                return writable[0];
+            }
+        }).anyTimes();
+        Capture<List<OFMessage>> cMsgList = new Capture<>(CaptureType.ALL);
+        expect(channel.write(capture(cMsgList))).andReturn(null).anyTimes();
+        replay(channel);
+        IDebugCounterService debugCounterService = new DebugCounterServiceImpl();
+        debugCounterService.registerModule(OFConnectionCounters.COUNTER_MODULE);
+        conn = new OFConnection(switchId, factory, channel, OFAuxId.MAIN,
+                                debugCounterService, timer);
+
+        OFFlowAdd flowAdd = factory.buildFlowAdd().build();
+        OFPacketOut packetOut = factory.buildPacketOut()
+                .setData(new byte[] { 0x01, 0x02, 0x03, 0x04 })
+                .setActions(ImmutableList.<OFAction>of( factory.actions().output(OFPort.of(1), 0)))
+                .build();
+        OFBarrierRequest barrier = factory.barrierRequest();
+        OFEchoRequest echoRequest = factory.echoRequest(new byte[] {});
+        OFEchoRequest echoAfterBarrier = factory.echoRequest(new byte[] { 0x01 });
+        OFFlowAdd flowAddAfterBarrier = factory.buildFlowAdd().setPriority(1).build();
+
+        conn.write(ImmutableList.<OFMessage>of(flowAdd, packetOut, echoRequest, barrier,
+                flowAddAfterBarrier, echoAfterBarrier));
+        assertFalse("Nothing should be written", cMsgList.hasCaptured());
+        assertEquals(6, conn.getWriteQueueSize());
+
+        writable[0] = true;
+        conn.channelWritabilityChanged();
+        assertEquals(0, conn.getWriteQueueSize());
+        // barrier之前的消息按优先级写出，barrier不越过它们，之后的消息(包括控制消息)不越过barrier
+        assertThat(cMsgList.getValue(), Matchers.<OFMessage> contains(echoRequest, flowAdd, packetOut,
+                barrier, echoAfterBarrier, flowAddAfterBarrier));
+
+        writable[0] = false;
+        List<OFMessage> flowMods = new ArrayList<OFMessage>();
+        for (int i = 0; i < OFConnectionWriteQueue.HIGH_WATERMARK; i++) {
+            flowMods.add(flowAdd);
+        }
+        conn.write(flowMods);
+        assertFalse("Congested connection should not be writable", conn.isWritable());
+        conn.write(ImmutableList.<OFMessage>of(packetOut));
+        assertEquals(OFConnectionWriteQueue.HIGH_WATERMARK, conn.getWriteQueueSize());
+        assertEquals(1, conn.getCounters().getPacketOutDroppedCount());
+
+        writable[0] = true;
+        conn.channelWritabilityChanged();
+        assertEquals(0, conn.getWriteQueueSize());
+        assertTrue(conn.isWritable());
+    }
+
 }
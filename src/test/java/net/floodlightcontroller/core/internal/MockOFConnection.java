@@ -169,6 +169,11 @@ public class MockOFConnection implements IOFConnectionBackend {
         this.connected = false;
     }
 
+    @Override
+    public void execute(Runnable task) {
+        task.run();
+    }
+
     @Override
     public void cancelAllPendingRequests() {
        // no op
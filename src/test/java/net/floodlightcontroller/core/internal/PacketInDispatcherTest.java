@@ -0,0 +1,122 @@
+package net.floodlightcontroller.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.core.internal.PacketInDispatcher.OverflowPolicy;
+import net.floodlightcontroller.debugcounter.DebugCounterServiceImpl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PacketInDispatcherTest {
+
+    private ControllerCounters counters;
+    private PacketInDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        counters = new ControllerCounters(new DebugCounterServiceImpl());
+    }
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null)
+            dispatcher.shutDown();
+    }
+
+    @Test
+    public void testPerSwitchOrder() throws InterruptedException {
+        dispatcher = new PacketInDispatcher(4, 10000, OverflowPolicy.BLOCK, counters);
+        final int switches = 16;
+        final int perSwitch = 500;
+        final Map<Long, List<Integer>> seen = new HashMap<Long, List<Integer>>();
+        for (long dpid = 0; dpid < switches; dpid++) {
+            seen.put(dpid, Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        final CountDownLatch done = new CountDownLatch(switches * perSwitch);
+        for (int i = 0; i < perSwitch; i++) {
+            for (long dpid = 0; dpid < switches; dpid++) {
+                final long d = dpid;
+                final int seq = i;
+                assertTrue(dispatcher.dispatch(d, new Runnable() {
+                    @Override
+                    public void run() {
+                        seen.get(d).add(seq);
+                        done.countDown();
+                    }
+                }));
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Integer> l : seen.values()) {
+            for (int i = 0; i < perSwitch; i++) {
+                assertEquals(i, (int) l.get(i));
+            }
+        }
+        assertEquals(switches * perSwitch, counters.packetInQueued.getCounterValue());
+        assertEquals(0, counters.packetInDropped.getCounterValue());
+    }
+
+    @Test
+    public void testOverflow() throws InterruptedException {
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            setUp();
+            dispatcher = new PacketInDispatcher(1, 2, policy, counters);
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch started = new CountDownLatch(1);
+            // 占住唯一的工作线程，之后的任务留在队列中
+            dispatcher.dispatch(1L, new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                    }
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Runnable noop = new Runnable() {
+                @Override
+                public void run() {
+                }
+            };
+            assertTrue(dispatcher.dispatch(1L, noop));
+            assertTrue(dispatcher.dispatch(1L, noop));
+            boolean accepted = dispatcher.dispatch(1L, noop);
+            assertEquals(policy.toString(), policy == OverflowPolicy.DROP_OLDEST, accepted);
+            assertEquals(policy.toString(), 1, counters.packetInDropped.getCounterValue());
+            assertEquals(2, (int) dispatcher.getQueueDepths().get(0));
+            if (policy == OverflowPolicy.BLOCK)
+                assertEquals(1, counters.packetInBlocked.getCounterValue());
+            release.countDown();
+            dispatcher.shutDown();
+        }
+    }
+
+    @Test
+    public void testPartition() {
+        assertEquals(PacketInDispatcher.partition(42L, 8), PacketInDispatcher.partition(42L, 8));
+        boolean[] used = new boolean[8];
+        for (long dpid = 1; dpid <= 64; dpid++) {
+            int p = PacketInDispatcher.partition(dpid, 8);
+            assertTrue(p >= 0 && p < 8);
+            used[p] = true;
+        }
+        for (boolean u : used) {
+            assertTrue(u);
+        }
+        assertFalse(PacketInDispatcher.partition(Long.MIN_VALUE, 3) < 0);
+    }
+}
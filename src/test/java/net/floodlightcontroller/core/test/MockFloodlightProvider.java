@@ -55,6 +55,7 @@ import net.floodlightcontroller.core.module.IFloodlightModule;
 import net.floodlightcontroller.core.module.IFloodlightService;
 import net.floodlightcontroller.core.util.ListenerDispatcher;
 import net.floodlightcontroller.packet.Ethernet;
+import net.floodlightcontroller.util.LoadMonitor;
 
 import org.jboss.netty.util.Timer;
 import org.projectfloodlight.openflow.protocol.OFMessage;
@@ -77,6 +78,7 @@ public class MockFloodlightProvider implements IFloodlightModule, IFloodlightPro
     private final boolean useAsyncUpdates;
     private volatile ExecutorService executorService;
     private volatile Future<?> mostRecentUpdateFuture;
+    private final LoadMonitor loadMonitor = new LoadMonitor(log);
 
     /**
      *
@@ -375,6 +377,16 @@ public class MockFloodlightProvider implements IFloodlightModule, IFloodlightPro
         return 1000000L;
     }
 
+    @Override
+    public long getPacketInCount() {
+        return 0;
+    }
+
+    @Override
+    public LoadMonitor getLoadMonitor() {
+        return loadMonitor;
+    }
+
     @Override
     public String getOFHostname() {
         return openFlowHostname;
@@ -19,6 +19,7 @@ import net.floodlightcontroller.core.IOFSwitchListener;
 import net.floodlightcontroller.core.LogicalOFMessageCategory;
 import net.floodlightcontroller.core.PortChangeType;
 import net.floodlightcontroller.core.SwitchDescription;
+import net.floodlightcontroller.core.SwitchDisconnectedException;
 import net.floodlightcontroller.core.internal.IAppHandshakePluginFactory;
 import net.floodlightcontroller.core.internal.IOFSwitchManager;
 import net.floodlightcontroller.core.internal.IOFSwitchService;
@@ -31,12 +32,15 @@ import net.floodlightcontroller.core.module.IFloodlightService;
 import net.floodlightcontroller.core.rest.SwitchRepresentation;
 import net.floodlightcontroller.debugcounter.DebugCounterServiceImpl;
 
+import org.projectfloodlight.openflow.protocol.OFControllerRole;
 import org.projectfloodlight.openflow.protocol.OFFactory;
 import org.projectfloodlight.openflow.protocol.OFMessage;
 import org.projectfloodlight.openflow.protocol.OFPortDesc;
 import org.projectfloodlight.openflow.types.DatapathId;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 public class MockSwitchManager implements IFloodlightModule, IOFSwitchManager, IOFSwitchService {
 
@@ -100,6 +104,14 @@ public class MockSwitchManager implements IFloodlightModule, IOFSwitchManager, I
         return ImmutableList.copyOf(this.switchHandlers.values());
     }
 
+    @Override
+    public ListenableFuture<OFControllerRole> requestRole(DatapathId dpid, OFControllerRole role) {
+        OFSwitchHandshakeHandler handler = this.switchHandlers.get(dpid);
+        if (handler == null)
+            return Futures.immediateFailedFuture(new SwitchDisconnectedException(dpid));
+        return handler.requestRole(role);
+    }
+
     @Override
     public void addOFSwitchDriver(String manufacturerDescriptionPrefix,
                                   IOFSwitchDriver driver) {
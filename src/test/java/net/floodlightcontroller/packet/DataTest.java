@@ -0,0 +1,47 @@
+package net.floodlightcontroller.packet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class DataTest {
+
+    @Test
+    public void testDeserializeSlice() {
+        byte[] frame = new byte[] { 0, 1, 2, 3, 4, 5 };
+        Data d = new Data();
+        d.deserialize(frame, 2, 3);
+        assertEquals(3, d.getLength());
+        // 复制发生在第一次读取时，之后原数组的修改不影响数据
+        assertArrayEquals(new byte[] { 2, 3, 4 }, d.getData());
+        frame[2] = 9;
+        assertArrayEquals(new byte[] { 2, 3, 4 }, d.serialize());
+        assertEquals(new Data(new byte[] { 2, 3, 4 }), d);
+        assertEquals(new Data(new byte[] { 2, 3, 4 }).hashCode(), d.hashCode());
+    }
+
+    @Test
+    public void testSliceBeyondArray() {
+        // 与Arrays.copyOfRange相同，超出的部分补0
+        Data d = new Data();
+        d.deserialize(new byte[] { 1, 2 }, 1, 3);
+        assertEquals(3, d.getLength());
+        assertArrayEquals(new byte[] { 2, 0, 0 }, d.getData());
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testBadOffset() {
+        new Data().deserialize(new byte[2], 3, 0);
+    }
+
+    @Test
+    public void testSetData() {
+        byte[] b = new byte[] { 7 };
+        Data d = new Data();
+        d.deserialize(new byte[] { 1, 2 }, 0, 2);
+        d.setData(b);
+        assertEquals(1, d.getLength());
+        assertArrayEquals(b, d.getData());
+    }
+}
@@ -0,0 +1,138 @@
+package net.floodlightcontroller.packet;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.projectfloodlight.openflow.types.TransportPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 对比PacketIn数据完整解析(Ethernet)与延迟解析(LazyEthernet)每个包的开销。
+ * 默认跳过，使用 -Ddsc.benchmark=true 运行；每种情况先预热，再取多轮中最好的一轮。
+ */
+public class EthernetDecodeBenchmarkTest {
+    protected static Logger log = LoggerFactory.getLogger(EthernetDecodeBenchmarkTest.class);
+
+    private static final int WARMUP = 200000;
+    private static final int ITERATIONS = 1000000;
+    private static final int ROUNDS = 5;
+
+    private static byte[] tcp;
+    private static byte[] arp;
+    // 结果累加到这里，避免JIT消除未使用的解析
+    private static long sink;
+
+    private interface Decode {
+        long run(byte[] data);
+    }
+
+    @BeforeClass
+    public static void setUp() {
+        assumeTrue(Boolean.getBoolean("dsc.benchmark"));
+        tcp = LazyEthernetTest.tcpPacket().serialize();
+        arp = LazyEthernetTest.arpPacket().serialize();
+    }
+
+    private static final Decode EAGER_ETHERTYPE = new Decode() {
+        @Override
+        public long run(byte[] data) {
+            Ethernet eth = new Ethernet();
+            eth.deserialize(data, 0, data.length);
+            return eth.getEtherType().getValue();
+        }
+    };
+
+    private static final Decode LAZY_ETHERTYPE = new Decode() {
+        @Override
+        public long run(byte[] data) {
+            LazyEthernet eth = new LazyEthernet();
+            eth.deserialize(data, 0, data.length);
+            return eth.getEtherType().getValue();
+        }
+    };
+
+    private static final Decode EAGER_PORTS = new Decode() {
+        @Override
+        public long run(byte[] data) {
+            Ethernet eth = new Ethernet();
+            eth.deserialize(data, 0, data.length);
+            IPacket ip = eth.getPayload();
+            if (!(ip instanceof IPv4) || !(ip.getPayload() instanceof TCP))
+                return 0;
+            TCP tcp = (TCP) ip.getPayload();
+            return tcp.getSourcePort().getPort() + tcp.getDestinationPort().getPort();
+        }
+    };
+
+    private static final Decode LAZY_PORTS = new Decode() {
+        @Override
+        public long run(byte[] data) {
+            LazyEthernet eth = new LazyEthernet();
+            eth.deserialize(data, 0, data.length);
+            TransportPort src = eth.getTransportSourcePort();
+            TransportPort dst = eth.getTransportDestinationPort();
+            return src == null ? 0 : src.getPort() + dst.getPort();
+        }
+    };
+
+    private static final Decode LAZY_FULL = new Decode() {
+        @Override
+        public long run(byte[] data) {
+            LazyEthernet eth = new LazyEthernet();
+            eth.deserialize(data, 0, data.length);
+            return eth.getPayload().hashCode();
+        }
+    };
+
+    @Test
+    public void testEtherTypeOnly() {
+        // 只读以太网头时延迟解析跳过了上层协议，不应比完整解析慢
+        assertNotSlower("tcp ethertype", report("tcp ethertype", tcp, EAGER_ETHERTYPE, LAZY_ETHERTYPE));
+        assertNotSlower("arp ethertype", report("arp ethertype", arp, EAGER_ETHERTYPE, LAZY_ETHERTYPE));
+    }
+
+    @Test
+    public void testTransportPorts() {
+        report("tcp ports", tcp, EAGER_PORTS, LAZY_PORTS);
+    }
+
+    @Test
+    public void testFullDecode() {
+        // 所有层都被访问时延迟解析不应更慢
+        report("tcp full", tcp, EAGER_PORTS, LAZY_FULL);
+    }
+
+    private static double nsPerOp(byte[] data, Decode d) {
+        for (int i = 0; i < WARMUP; i++) {
+            sink += d.run(data);
+        }
+        double best = Double.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += d.run(data);
+            }
+            best = Math.min(best, (System.nanoTime() - start) / (double) ITERATIONS);
+        }
+        return best;
+    }
+
+    /**
+     * @return eager/lazy每个包耗时之比，大于1表示延迟解析更快
+     */
+    private static double report(String name, byte[] data, Decode eager, Decode lazy) {
+        double e = nsPerOp(data, eager);
+        double l = nsPerOp(data, lazy);
+        log.info(String.format("%s: eager %.1f ns/op, lazy %.1f ns/op (%.1fx) [%d]",
+                name, e, l, e / l, sink & 1));
+        return e / l;
+    }
+
+    private static void assertNotSlower(String name, double speedup) {
+        assertTrue(String.format("%s: lazy decode %.2fx slower than eager", name, 1 / speedup),
+                speedup >= 1.0);
+    }
+}
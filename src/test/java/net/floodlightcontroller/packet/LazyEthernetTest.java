@@ -0,0 +1,100 @@
+package net.floodlightcontroller.packet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.projectfloodlight.openflow.types.EthType;
+import org.projectfloodlight.openflow.types.IPv4Address;
+import org.projectfloodlight.openflow.types.IpProtocol;
+import org.projectfloodlight.openflow.types.TransportPort;
+
+public class LazyEthernetTest {
+
+    static Ethernet tcpPacket() {
+        return (Ethernet) new Ethernet()
+            .setDestinationMACAddress("00:11:22:33:44:55")
+            .setSourceMACAddress("00:44:33:22:11:00")
+            .setVlanID((short) 42)
+            .setEtherType(EthType.IPv4)
+            .setPayload(
+                    new IPv4()
+                    .setTtl((byte) 64)
+                    .setProtocol(IpProtocol.TCP)
+                    .setSourceAddress("10.0.0.1")
+                    .setDestinationAddress("10.0.0.2")
+                    .setPayload(new TCP()
+                    .setSourcePort(40000)
+                    .setDestinationPort(80)
+                    .setPayload(new Data(new byte[] {0x01, 0x02, 0x03}))));
+    }
+
+    static Ethernet arpPacket() {
+        return (Ethernet) new Ethernet()
+            .setDestinationMACAddress("ff:ff:ff:ff:ff:ff")
+            .setSourceMACAddress("00:44:33:22:11:00")
+            .setEtherType(EthType.ARP)
+            .setPayload(
+                    new ARP()
+                    .setHardwareType(ARP.HW_TYPE_ETHERNET)
+                    .setProtocolType(ARP.PROTO_TYPE_IP)
+                    .setHardwareAddressLength((byte) 6)
+                    .setProtocolAddressLength((byte) 4)
+                    .setOpCode(ARP.OP_REQUEST)
+                    .setSenderHardwareAddress(Ethernet.toMACAddress("00:44:33:22:11:00"))
+                    .setSenderProtocolAddress(IPv4.toIPv4AddressBytes("10.0.0.1"))
+                    .setTargetHardwareAddress(Ethernet.toMACAddress("00:00:00:00:00:00"))
+                    .setTargetProtocolAddress(IPv4.toIPv4AddressBytes("10.0.0.2")));
+    }
+
+    @Test
+    public void testHeaderOnly() {
+        byte[] data = tcpPacket().serialize();
+        Ethernet eager = new Ethernet();
+        eager.deserialize(data, 0, data.length);
+        LazyEthernet lazy = new LazyEthernet();
+        lazy.deserialize(data, 0, data.length);
+
+        assertEquals(eager.getEtherType(), lazy.getEtherType());
+        assertEquals(eager.getVlanID(), lazy.getVlanID());
+        assertEquals(eager.getSourceMACAddress(), lazy.getSourceMACAddress());
+        assertEquals(eager.getDestinationMACAddress(), lazy.getDestinationMACAddress());
+        assertEquals(IpProtocol.TCP, lazy.getIpv4Protocol());
+        assertEquals(IPv4Address.of("10.0.0.1"), lazy.getIpv4SourceAddress());
+        assertEquals(IPv4Address.of("10.0.0.2"), lazy.getIpv4DestinationAddress());
+        assertEquals(TransportPort.of(40000), lazy.getTransportSourcePort());
+        assertEquals(TransportPort.of(80), lazy.getTransportDestinationPort());
+        // 以上访问都不解析负载
+        assertFalse(lazy.isDecoded());
+
+        assertEquals(eager.getPayload(), lazy.getPayload());
+        assertTrue(lazy.isDecoded());
+        assertEquals(eager, lazy);
+        assertEquals(lazy, eager);
+        assertEquals(eager.hashCode(), lazy.hashCode());
+        assertEquals(TransportPort.of(80), lazy.getTransportDestinationPort());
+    }
+
+    @Test
+    public void testSerializeRoundTrip() {
+        byte[] data = tcpPacket().serialize();
+        LazyEthernet lazy = new LazyEthernet();
+        lazy.deserialize(data, 0, data.length);
+        assertArrayEquals(data, lazy.serialize());
+    }
+
+    @Test
+    public void testNonIpv4() {
+        byte[] data = arpPacket().serialize();
+        LazyEthernet lazy = new LazyEthernet();
+        lazy.deserialize(data, 0, data.length);
+        assertNull(lazy.getIpv4Protocol());
+        assertNull(lazy.getTransportSourcePort());
+        assertFalse(lazy.isDecoded());
+        assertTrue(lazy.getPayload() instanceof ARP);
+        assertNull(lazy.getIpv4SourceAddress());
+    }
+}